@@ -9,6 +9,7 @@
 //
 package io.dimeformat;
 
+import io.dimeformat.crypto.HashContext;
 import io.dimeformat.enums.Claim;
 import io.dimeformat.exceptions.*;
 import io.dimeformat.keyring.IntegrityState;
@@ -67,7 +68,7 @@ public class Data extends Item {
     public Data(UUID issuerId, long validFor, String context) {
         if (issuerId == null) { throw new IllegalArgumentException("Issuer identifier must not be null."); }
         if (context != null && context.length() > Dime.MAX_CONTEXT_LENGTH) { throw new IllegalArgumentException("Context must not be longer than " + Dime.MAX_CONTEXT_LENGTH + "."); }
-        putClaim(Claim.UID, UUID.randomUUID());
+        putClaim(Claim.UID, DimeContext.current().getCrypto().randomUUID());
         putClaim(Claim.ISS, issuerId);
         Instant iat = Utility.createTimestamp();
         putClaim(Claim.IAT, iat);
@@ -144,6 +145,16 @@ public class Data extends Item {
         builder.append(this.payload);
     }
 
+    @Override
+    protected void customHashing(HashContext context) throws InvalidFormatException, CryptographyException {
+        // Hash each segment separately, avoids building the complete encoded string for large payloads
+        Item.updateHash(context, getHeader());
+        Item.updateHash(context, Dime.COMPONENT_DELIMITER);
+        Item.updateHash(context, encodedClaims());
+        Item.updateHash(context, Dime.COMPONENT_DELIMITER);
+        Item.updateHash(context, String.valueOf(this.payload));
+    }
+
     @Override
     protected int getMinNbrOfComponents() {
         return Data.MINIMUM_NBR_COMPONENTS;
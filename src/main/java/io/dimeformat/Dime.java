@@ -11,7 +11,10 @@ package io.dimeformat;
 
 import io.dimeformat.crypto.Crypto;
 import io.dimeformat.keyring.KeyRing;
+import io.dimeformat.keyring.RevocationList;
+import java.time.Clock;
 import java.time.Instant;
+import java.time.ZoneOffset;
 
 /**
  * Central class that handles a few important settings and constants.
@@ -20,11 +23,12 @@ public final class Dime {
 
     /**
      * Manager of cryptographic suites and operations. May be used to add additional cryptographic suits in run-time.
+     * This is the crypto of the default context.
      */
     public static final Crypto crypto = new Crypto();
 
     /**
-     * A set of keys and identities that are set to be trusted.
+     * A set of keys and identities that are set to be trusted. This is the key ring of the default context.
      */
     public static final KeyRing keyRing = new KeyRing();
 
@@ -68,8 +72,8 @@ public final class Dime {
      * 4 seconds.
      * @return The set grace period in seconds.
      */
-    public static synchronized long getGracePeriod() {
-        return Dime._gracePeriod;
+    public static long getGracePeriod() {
+        return Dime._defaultContext.getGracePeriod();
     }
 
     /**
@@ -78,16 +82,15 @@ public final class Dime {
      * seconds.
      * @param period The grace period to set, in seconds.
      */
-    public static synchronized void setGracePeriod(long period) {
-        if (period < 0) { throw new IllegalArgumentException("Unable to set grace period, must be a value of 0 or above."); }
-        Dime._gracePeriod = Math.abs(period);
+    public static void setGracePeriod(long period) {
+        Dime._defaultContext.setGracePeriod(period);
     }
 
     /**
      * Get the global time modifier. The modifier is in seconds. If none is set this will return 0.
      * @return The time modifier in use.
      */
-    public static synchronized long getTimeModifier() { return Dime._timeModifier; }
+    public static long getTimeModifier() { return Dime._defaultContext.getTimeModifier(); }
 
     /**
      * Sets the global modifier, in seconds, for all captured timestamps. This may be used in clients with a calculated
@@ -96,8 +99,8 @@ public final class Dime {
      * their local time with a common time-server. Servers, with multiple clients, should not use this.
      * @param modifier Number of seconds to modify timestamps with.
      */
-    public static synchronized void setTimeModifier(long modifier) {
-        Dime._timeModifier = modifier;
+    public static void setTimeModifier(long modifier) {
+        Dime._defaultContext.setTimeModifier(modifier);
     }
 
     /**
@@ -106,30 +109,63 @@ public final class Dime {
      * system time (default).
      * @param time The time to set, may be null.
      */
-    public static synchronized void setOverrideTime(Instant time) {
-        Dime._overrideTime = time;
+    public static void setOverrideTime(Instant time) {
+        Dime._defaultContext.setClock(time != null ? Clock.fixed(time, ZoneOffset.UTC) : null);
     }
 
-    /// PACKAGE-PRIVATE ///
+    /**
+     * Sets a cache of verification results, used by {@link Item#verify(Key, java.util.List)} (and all other verify
+     * methods) to avoid verifying the same item, with the same key, more than once. Set to null to turn caching of
+     * verification results off (default).
+     * @param cache The verification cache to use, may be null.
+     */
+    public static void setVerificationCache(VerificationCache cache) {
+        Dime._defaultContext.setVerificationCache(cache);
+    }
 
-    static final String COMPONENT_DELIMITER = ".";
-    static final String SECTION_DELIMITER = ":";
+    /**
+     * Returns the cache of verification results in use, if any.
+     * @return The verification cache, or null if none is set.
+     */
+    public static VerificationCache getVerificationCache() {
+        return Dime._defaultContext.getVerificationCache();
+    }
 
-    static Instant getTime() {
+    /**
+     * Sets a list of revoked items, this is consulted whenever an item is verified. Set to null to turn checking of
+     * revocations off (default).
+     * @param revocationList The revocation list to use, may be null.
+     */
+    public static void setRevocationList(RevocationList revocationList) {
+        Dime._defaultContext.setRevocationList(revocationList);
+    }
 
-        if (Dime._overrideTime != null) {
-            return _overrideTime;
-        }
-        return Instant.now();
+    /**
+     * Returns the list of revoked items in use, if any.
+     * @return The revocation list, or null if none is set.
+     */
+    public static RevocationList getRevocationList() {
+        return Dime._defaultContext.getRevocationList();
+    }
 
+    /**
+     * Returns the default context, this holds {@link #crypto}, {@link #keyRing} and all other settings changed through
+     * the static methods of this class. The default context is used unless another context is current.
+     * @return The default context.
+     */
+    public static DimeContext getDefaultContext() {
+        return Dime._defaultContext;
     }
 
+    /// PACKAGE-PRIVATE ///
+
+    static final String COMPONENT_DELIMITER = ".";
+    static final String SECTION_DELIMITER = ":";
+
     /// PRIVATE ///
 
     //private static Identity trustedIdentity;
-    private static long _gracePeriod = 0;
-    private static long _timeModifier = 0;
-    private static Instant _overrideTime = null;
+    private static final DimeContext _defaultContext = new DimeContext(Dime.crypto, Dime.keyRing);
 
     private Dime() {
         throw new IllegalStateException("Not intended to be instantiated.");
@@ -0,0 +1,224 @@
+//
+//  DimeContext.java
+//  DiME - Data Identity Message Envelope
+//  A powerful universal data format that is built for secure, and integrity protected communication between trusted
+//  entities in a network.
+//
+//  Released under the MIT licence, see LICENSE for more information.
+//  Copyright (c) 2024 Shift Everywhere AB. All rights reserved.
+//
+package io.dimeformat;
+
+import io.dimeformat.crypto.Crypto;
+import io.dimeformat.keyring.KeyRing;
+import io.dimeformat.keyring.RevocationList;
+import java.time.Clock;
+import java.time.Instant;
+
+/**
+ * A context holding the state used when items are created, imported, signed and verified: the cryptographic functions,
+ * the key ring, the clock, the grace period and any caches. All operations use the current context of the calling
+ * thread. This is the default context, returned by {@link Dime#getDefaultContext()}, unless another context has been
+ * entered through {@link #execute(Operation)}, or passed to one of the methods that take a context, like
+ * {@link Item#verify(DimeContext, Key, java.util.List)}. The static methods and fields of {@link Dime} operate on the
+ * default context.
+ * <p>
+ * Contexts are independent of each other. A multi-tenant application may create one context for each tenant, tenants
+ * will then share no key ring, caches or locks. Instances are thread-safe, and the same context may be used by any
+ * number of threads at the same time.
+ */
+public final class DimeContext {
+
+    /// PUBLIC ///
+
+    /**
+     * An operation executed within a context.
+     * @param <T> The type of the result of the operation.
+     * @param <E> The type of exception thrown by the operation.
+     */
+    @FunctionalInterface
+    public interface Operation<T, E extends Exception> {
+
+        /**
+         * Executes the operation.
+         * @return The result of the operation.
+         * @throws E If the operation fails.
+         */
+        T execute() throws E;
+
+    }
+
+    /**
+     * Creates a context with a new {@link Crypto} instance and a new, empty, {@link KeyRing}.
+     */
+    public DimeContext() {
+        this(new Crypto(), new KeyRing());
+    }
+
+    /**
+     * Creates a context with the provided cryptographic functions and key ring.
+     * @param crypto The cryptographic functions to use.
+     * @param keyRing The key ring to use, this may be any subclass of KeyRing, like a
+     *                {@link io.dimeformat.keyring.FileKeyRing}.
+     */
+    public DimeContext(Crypto crypto, KeyRing keyRing) {
+        if (crypto == null) { throw new IllegalArgumentException("Unable to create context, crypto must not be null."); }
+        if (keyRing == null) { throw new IllegalArgumentException("Unable to create context, key ring must not be null."); }
+        this._crypto = crypto;
+        this._keyRing = keyRing;
+    }
+
+    /**
+     * Returns the current context of the calling thread.
+     * @return The current context.
+     */
+    public static DimeContext current() {
+        DimeContext context = DimeContext.CURRENT.get();
+        return context != null ? context : Dime.getDefaultContext();
+    }
+
+    /**
+     * Executes an operation with this context as the current context of the calling thread. The previous context is
+     * restored when the operation returns, so calls may be nested.
+     * @param operation The operation to execute.
+     * @param <T> The type of the result of the operation.
+     * @param <E> The type of exception thrown by the operation.
+     * @return The result of the operation.
+     * @throws E If the operation fails.
+     */
+    public <T, E extends Exception> T execute(Operation<T, E> operation) throws E {
+        if (operation == null) { throw new IllegalArgumentException("Unable to execute, operation must not be null."); }
+        DimeContext previous = DimeContext.CURRENT.get();
+        DimeContext.CURRENT.set(this);
+        try {
+            return operation.execute();
+        } finally {
+            if (previous != null) {
+                DimeContext.CURRENT.set(previous);
+            } else {
+                DimeContext.CURRENT.remove();
+            }
+        }
+    }
+
+    /**
+     * Returns the cryptographic functions of the context.
+     * @return The cryptographic functions.
+     */
+    public Crypto getCrypto() {
+        return _crypto;
+    }
+
+    /**
+     * Returns the key ring of the context, this is used when items are verified without a key.
+     * @return The key ring.
+     */
+    public KeyRing getKeyRing() {
+        return _keyRing;
+    }
+
+    /**
+     * Returns the set grace period in seconds. This value is used to allow a grace period when comparing and validating
+     * dates (issued at and expires at).
+     * @return The set grace period in seconds.
+     */
+    public long getGracePeriod() {
+        return _gracePeriod;
+    }
+
+    /**
+     * Sets the grace period, in seconds, that is used to allow for a grace period when comparing and validating dates
+     * (issued at and expires at). A value of 2 will allow a grace margin of +/-2 seconds, given a total window of 4
+     * seconds.
+     * @param period The grace period to set, in seconds.
+     */
+    public void setGracePeriod(long period) {
+        if (period < 0) { throw new IllegalArgumentException("Unable to set grace period, must be a value of 0 or above."); }
+        this._gracePeriod = period;
+    }
+
+    /**
+     * Returns the time modifier, in seconds. If none is set this will return 0.
+     * @return The time modifier in use.
+     */
+    public long getTimeModifier() {
+        return _timeModifier;
+    }
+
+    /**
+     * Sets the modifier, in seconds, for all captured timestamps. This may be either a positive, or negative number,
+     * setting 0 will turn time modification off.
+     * @param modifier Number of seconds to modify timestamps with.
+     */
+    public void setTimeModifier(long modifier) {
+        this._timeModifier = modifier;
+    }
+
+    /**
+     * Returns the clock used to capture timestamps and to verify dates.
+     * @return The clock in use.
+     */
+    public Clock getClock() {
+        return _clock;
+    }
+
+    /**
+     * Sets the clock used to capture timestamps and to verify dates. Set to null to use the system clock (default).
+     * @param clock The clock to use, may be null.
+     */
+    public void setClock(Clock clock) {
+        this._clock = clock != null ? clock : Clock.systemUTC();
+    }
+
+    /**
+     * Returns the cache of verification results in use, if any.
+     * @return The verification cache, or null if none is set.
+     */
+    public VerificationCache getVerificationCache() {
+        return _verificationCache;
+    }
+
+    /**
+     * Sets a cache of verification results. Set to null to turn caching of verification results off (default).
+     * @param cache The verification cache to use, may be null.
+     */
+    public void setVerificationCache(VerificationCache cache) {
+        this._verificationCache = cache;
+    }
+
+    /**
+     * Returns the list of revoked items in use, if any.
+     * @return The revocation list, or null if none is set.
+     */
+    public RevocationList getRevocationList() {
+        return _revocationList;
+    }
+
+    /**
+     * Sets a list of revoked items, this is consulted whenever an item is verified. Set to null to turn checking of
+     * revocations off (default).
+     * @param revocationList The revocation list to use, may be null.
+     */
+    public void setRevocationList(RevocationList revocationList) {
+        this._revocationList = revocationList;
+    }
+
+    /// PACKAGE-PRIVATE ///
+
+    Instant getTime() {
+        return _clock.instant();
+    }
+
+    /// PRIVATE ///
+
+    private static final ThreadLocal<DimeContext> CURRENT = new ThreadLocal<>();
+
+    private final Crypto _crypto;
+    private final KeyRing _keyRing;
+    private volatile long _gracePeriod = 0;
+    private volatile long _timeModifier = 0;
+    private volatile Clock _clock = Clock.systemUTC();
+    private volatile VerificationCache _verificationCache = null;
+    private volatile RevocationList _revocationList = null;
+
+}
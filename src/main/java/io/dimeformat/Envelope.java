@@ -9,10 +9,13 @@
 //
 package io.dimeformat;
 
+import io.dimeformat.crypto.HashContext;
 import io.dimeformat.enums.Claim;
+import io.dimeformat.enums.KeyCapability;
 import io.dimeformat.exceptions.*;
 import io.dimeformat.keyring.IntegrityState;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 
 /**
@@ -38,6 +41,9 @@ public class Envelope extends Item {
     /** The standard envelope header. */
     public static final String HEADER = "Di";
 
+    /** The header of the encrypted items section of a sealed envelope. */
+    public static final String SEALED_HEADER = "SLD";
+
     @Override
     public String getHeader() {
         return Envelope.HEADER;
@@ -49,7 +55,16 @@ public class Envelope extends Item {
      * @return An array of Item instance
      */
     public List<Item> getItems() {
-        return this.items != null ? Collections.unmodifiableList(this.items) : null;
+        return items() != null ? Collections.unmodifiableList(items()) : null;
+    }
+
+    /**
+     * Indicates if the envelope is sealed, i.e. if all attached items are encrypted as one section, see
+     * {@link #seal(Key)}.
+     * @return true or false
+     */
+    public boolean isSealed() {
+        return this._sealed != null;
     }
 
     /**
@@ -103,6 +118,11 @@ public class Envelope extends Item {
         envelope.components = new ArrayList<>(Arrays.asList(array));
         ArrayList<Item> items = new ArrayList<>(sections.length);
         for (int index = 1; index < sections.length; index++) {
+            if (index == 1 && sections[index].startsWith(Envelope.SEALED_HEADER + Dime.COMPONENT_DELIMITER)) {
+                // Items are encrypted, they will be available once the envelope is opened
+                envelope._sealed = sections[index].substring(Envelope.SEALED_HEADER.length() + 1);
+                continue;
+            }
             Item item = Item.fromEncoded(sections[index]);
             if (item == null) {
                 if (index == sections.length - 1) { // This is most likely a signature
@@ -136,6 +156,7 @@ public class Envelope extends Item {
      */
     public void addItem(Item item) {
         if (isSigned()) { throw new IllegalStateException("Unable to add item, envelope is already signed."); }
+        if (isSealed()) { throw new IllegalStateException("Unable to add item, envelope is sealed."); }
         if (item instanceof Envelope) { throw new IllegalArgumentException("Not allowed to add an envelope to another envelope."); }
         if (this.items == null) {
             this.items = new ArrayList<>();
@@ -157,6 +178,7 @@ public class Envelope extends Item {
      */
     public void setItems(List<Item> items) {
         if (isSigned()) { throw new IllegalStateException("Unable to set items, envelope is already signed."); }
+        if (isSealed()) { throw new IllegalStateException("Unable to set items, envelope is sealed."); }
         this.items = new ArrayList<>();
         for (Item item: items) {
             addItem(item);
@@ -173,7 +195,7 @@ public class Envelope extends Item {
      */
     public <T> Item getItem(Claim claim, T value) {
         if (value == null) { throw new IllegalArgumentException("Unable to find item, provided claim value must not be null."); }
-        for (Item item : items) {
+        for (Item item : items()) {
             T compareValue = item.getClaim(claim);
             if (compareValue != null && value.equals(compareValue)) {
                 return item;
@@ -193,7 +215,7 @@ public class Envelope extends Item {
     public <T> List<Item> getItems(Claim claim, T value) {
         if (value == null) { throw new IllegalArgumentException("Unable to find item, provided claim value must not be null."); }
         List<Item> items = new ArrayList<>();
-        for (Item item : this.items) {
+        for (Item item : items()) {
             T compareValue = item.getClaim(claim);
             if (compareValue != null && value.equals(compareValue)) {
                 items.add(item);
@@ -226,6 +248,64 @@ public class Envelope extends Item {
         return getItem(Claim.UID, uniqueId);
     }
 
+    /**
+     * Seals the envelope for an audience. All attached items are encrypted together, as one section, using a shared
+     * key generated from the provided key and a generated EXCHANGE key. The public key of the generated key is set in
+     * the "pub" claim. The envelope must then be signed, the signature will cover the encrypted section. This avoids
+     * encrypting each item separately, i.e. when many small items are sent to the same audience. The audience opens
+     * the envelope using {@link #open(Key)}, after which the items are available as usual. Anonymous envelopes
+     * cannot be sealed and no items may be added once sealed.
+     * @param audienceKey The key of the audience, must have capability EXCHANGE and must not contain a secret (or
+     *                    private) key.
+     * @return The generated EXCHANGE key.
+     * @throws CryptographyException If something goes wrong.
+     */
+    public Key seal(Key audienceKey) throws CryptographyException {
+        throwIfSigned();
+        if (isAnonymous()) { throw new IllegalStateException("Unable to seal, envelope is anonymous."); }
+        if (isSealed()) { throw new IllegalStateException("Unable to seal, envelope is already sealed."); }
+        if (this.items == null || this.items.isEmpty()) { throw new IllegalStateException("Unable to seal, at least one item must be attached before sealing an envelope."); }
+        if (audienceKey == null || !audienceKey.hasCapability(KeyCapability.EXCHANGE)) { throw new IllegalArgumentException("Unable to seal, audience key must have capability EXCHANGE."); }
+        if (audienceKey.hasSecret()) { throw new IllegalArgumentException("Unable to seal, audience key should not contain a secret (or private) key."); }
+        StringBuilder builder = new StringBuilder();
+        try {
+            for (Item item : this.items) {
+                if (builder.length() > 0) {
+                    builder.append(Dime.SECTION_DELIMITER);
+                }
+                builder.append(item.forExport());
+            }
+        } catch (InvalidFormatException e) {
+            throw new CryptographyException("Unable to seal, invalid items: " + e.getMessage());
+        }
+        Key exchangeKey = Message.ephemeralKey(audienceKey);
+        Key sharedKey = DimeContext.current().getCrypto().generateSharedSecret(exchangeKey, audienceKey, List.of(KeyCapability.ENCRYPT));
+        byte[] cipherText = DimeContext.current().getCrypto().encrypt(builder.toString().getBytes(StandardCharsets.UTF_8), sharedKey);
+        setClaimValue(Claim.PUB, exchangeKey.getPublic());
+        this._sealed = Utility.toBase64(cipherText);
+        this.encoded = null;
+        return exchangeKey;
+    }
+
+    /**
+     * Opens a sealed envelope, decrypting the attached items with a single operation. Items are then decoded when
+     * first accessed. The envelope should be verified before it is opened, the signature covers the encrypted items.
+     * @param audienceKey The key of the audience, must have capability EXCHANGE and contain a secret (or private) key.
+     * @throws CryptographyException If something goes wrong, i.e. if the envelope is not sealed for the provided key.
+     */
+    public synchronized void open(Key audienceKey) throws CryptographyException {
+        if (!isSealed()) { throw new IllegalStateException("Unable to open, envelope is not sealed."); }
+        if (audienceKey == null || !audienceKey.hasCapability(KeyCapability.EXCHANGE)) { throw new IllegalArgumentException("Unable to open, audience key must have capability EXCHANGE."); }
+        if (!audienceKey.hasSecret()) { throw new IllegalArgumentException("Unable to open, audience key must contain a secret (or private) key."); }
+        if (this._openedSections != null || (this.items != null && !this.items.isEmpty())) { return; } // Already open
+        String pub = getClaim(Claim.PUB);
+        if (pub == null) { throw new CryptographyException("Unable to open, no public key attached to envelope."); }
+        Key exchangeKey = new Key(List.of(KeyCapability.EXCHANGE), pub, Claim.PUB);
+        Key sharedKey = DimeContext.current().getCrypto().generateSharedSecret(exchangeKey, audienceKey, List.of(KeyCapability.ENCRYPT));
+        byte[] plainText = DimeContext.current().getCrypto().decrypt(Utility.fromBase64(this._sealed), sharedKey);
+        this._openedSections = new String(plainText, StandardCharsets.UTF_8).split(Dime.SECTION_DELIMITER);
+    }
+
     /**
      * Signs the envelope using the provided key. The key must be of type IDENTITY. It is not possible to sign an
      * anonymous envelope. It is also not possible to sign an envelope if it already has been signed or does not
@@ -274,11 +354,7 @@ public class Envelope extends Item {
      */
     @Override
     public String generateThumbprint() throws CryptographyException {
-        try {
-            return Envelope.thumbprint(encoded(!isAnonymous()));
-        } catch (InvalidFormatException e) {
-            throw new CryptographyException("Unable to generate thumbprint for item, data invalid.");
-        }
+        return generateThumbprint(!isAnonymous(), DimeContext.current().getCrypto().getDefaultSuiteName());
     }
 
     /// PROTECTED ///
@@ -301,9 +377,16 @@ public class Envelope extends Item {
                     throw new InvalidFormatException("Unexpected exception while encoding item: " + e);
                 }
             }
-            for (Item item : this.items) {
+            if (isSealed()) {
                 builder.append(Dime.SECTION_DELIMITER);
-                builder.append(item.forExport());
+                builder.append(Envelope.SEALED_HEADER);
+                builder.append(Dime.COMPONENT_DELIMITER);
+                builder.append(this._sealed);
+            } else {
+                for (Item item : this.items) {
+                    builder.append(Dime.SECTION_DELIMITER);
+                    builder.append(item.forExport());
+                }
             }
             this.encoded = builder.toString();
         }
@@ -313,6 +396,15 @@ public class Envelope extends Item {
         return this.encoded;
     }
 
+    @Override
+    protected void hashEncoded(HashContext context, boolean withSignature) throws InvalidFormatException, CryptographyException {
+        Item.updateHash(context, encoded(false));
+        if (withSignature && isSigned()) {
+            Item.updateHash(context, Dime.SECTION_DELIMITER);
+            Item.updateHash(context, Signature.toEncoded(extractSignatures()));
+        }
+    }
+
     @Override
     protected void customDecoding(List<String> components) {
         /* ignored */
@@ -322,5 +414,31 @@ public class Envelope extends Item {
 
     private static final List<Claim> allowedClaims = List.of(Claim.AMB, Claim.AUD, Claim.CMN, Claim.CTX, Claim.EXP, Claim.IAT, Claim.ISS, Claim.ISU, Claim.KID, Claim.MTD, Claim.SUB, Claim.SYS, Claim.UID);
     private ArrayList<Item> items;
+    private String _sealed;
+    private volatile String[] _openedSections;
+
+    /**
+     * Returns the attached items, items of an opened sealed envelope are decoded on first access.
+     */
+    private ArrayList<Item> items() {
+        String[] sections = this._openedSections;
+        if (sections != null) {
+            synchronized (this) {
+                if (this._openedSections != null) {
+                    ArrayList<Item> items = new ArrayList<>(sections.length);
+                    try {
+                        for (String section : sections) {
+                            items.add(Item.fromEncoded(section));
+                        }
+                    } catch (InvalidFormatException e) {
+                        throw new IllegalStateException("Unable to decode items of sealed envelope: " + e);
+                    }
+                    this.items = items;
+                    this._openedSections = null;
+                }
+            }
+        }
+        return this.items;
+    }
 
 }
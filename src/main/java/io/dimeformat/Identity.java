@@ -14,6 +14,7 @@ import io.dimeformat.exceptions.*;
 import io.dimeformat.enums.IdentityCapability;
 import io.dimeformat.enums.KeyCapability;
 import io.dimeformat.keyring.IntegrityState;
+import io.dimeformat.keyring.RevocationList;
 import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.util.Collections;
@@ -120,7 +121,7 @@ public class Identity extends Item {
             state = super.verify(trustChain, null);
             if (state.isValid()) {
                 if (!trustChain.getClaim(Claim.SUB).equals(trustedIdentity.getClaim(Claim.SUB))) {
-                    state = trustChain.verify(trustedIdentity, null);
+                    state = Identity.verifyChainLink(trustChain, trustedIdentity);
                 } else {
                     if (trustedIdentity.isSelfIssued()) {
                         // If this is the end of the trust chain, then verify the final identity
@@ -179,6 +180,14 @@ public class Identity extends Item {
 
     /// PACKAGE-PRIVATE ///
 
+    /**
+     * Checks if the identity has been revoked, by its unique ID or its subject ID, or if it was signed by a revoked key.
+     */
+    @Override
+    boolean isRevoked(RevocationList revocationList) {
+        return revocationList.isRevoked((UUID) getClaim(Claim.SUB)) || super.isRevoked(revocationList);
+    }
+
     /**
      * This is used to runtime instantiate new objects when parsing Di:ME envelopes.
      */
@@ -186,7 +195,7 @@ public class Identity extends Item {
 
     Identity(String systemName, UUID subjectId, Key subjectKey, Instant issuedAt, Instant expiresAt, UUID issuerId, List<String> capabilities, Map<String, Object> principles, List<String> ambitList, List<String> methods) {
         if (systemName == null || systemName.length() == 0) { throw new IllegalArgumentException("System name must not be null or empty."); }
-        setClaimValue(Claim.UID, UUID.randomUUID());
+        setClaimValue(Claim.UID, DimeContext.current().getCrypto().randomUUID());
         setClaimValue(Claim.SYS, systemName);
         setClaimValue(Claim.SUB, subjectId);
         setClaimValue(Claim.ISS, issuerId);
@@ -242,6 +251,32 @@ public class Identity extends Item {
     private static final int COMPONENTS_CHAIN_INDEX = 2;
     private Identity trustChain;
 
+    /**
+     * Verifies an identity in a trust chain against a trusted identity. Identities in trust chains are usually shared by
+     * many issued identities, so the result is memoized in the verification cache, if one is set.
+     */
+    private static IntegrityState verifyChainLink(Identity identity, Identity trustedIdentity) {
+        DimeContext context = DimeContext.current();
+        VerificationCache cache = context.getVerificationCache();
+        if (cache == null) {
+            return identity.verify(trustedIdentity, null);
+        }
+        RevocationList revocationList = context.getRevocationList();
+        if (revocationList != null) {
+            // A memoized result must not hide a later revocation anywhere in the chain
+            for (Identity link = identity; link != null; link = link.getTrustChain()) {
+                if (link.isRevoked(revocationList)) { return IntegrityState.FAILED_REVOKED; }
+            }
+        }
+        String id = VerificationCache.chainIdentifier(identity, trustedIdentity);
+        IntegrityState state = cache.get(id);
+        if (state == null) {
+            state = identity.verify(trustedIdentity, null);
+            cache.putChain(id, identity, trustedIdentity, state);
+        }
+        return state;
+    }
+
     private static Identity fromEncodedIdentity(String encoded) throws InvalidFormatException {
         Identity identity = new Identity();
         identity.decode(encoded);
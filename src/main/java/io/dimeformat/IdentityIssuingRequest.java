@@ -117,10 +117,10 @@ public class IdentityIssuingRequest extends Item {
      */
     public static IdentityIssuingRequest generateIIR(Key key, IdentityCapability[] capabilities, Map<String, Object> principles) throws CryptographyException {
         if (!key.getCapability().contains(KeyCapability.SIGN)) { throw new IllegalArgumentException("Key must have SIGN capability set."); }
-        if (key.getSecret() == null) { throw new IllegalArgumentException("Private key must not be null"); }
+        if (!key.hasSecret()) { throw new IllegalArgumentException("Private key must not be null"); }
         if (key.getPublic() == null) { throw new IllegalArgumentException("Public key must not be null"); }
         IdentityIssuingRequest iir = new IdentityIssuingRequest();
-        iir.setClaimValue(Claim.UID, UUID.randomUUID());
+        iir.setClaimValue(Claim.UID, DimeContext.current().getCrypto().randomUUID());
         iir.setClaimValue(Claim.IAT, Utility.createTimestamp());
         iir.setClaimValue(Claim.PUB, key.getPublic());
         if (capabilities == null || capabilities.length == 0) {
@@ -336,7 +336,7 @@ public class IdentityIssuingRequest extends Item {
                 if (!state.isValid()) {
                     throw new IntegrityStateException(state, "Unable to verify valid dates of issuer identity.");
                 }
-                if (includeChain && !Dime.keyRing.containsItem(issuerIdentity)) {
+                if (includeChain && !DimeContext.current().getKeyRing().containsItem(issuerIdentity)) {
                     // The chain will only be set if the issuer identity is not a trusted identity in the key ring
                     identity.setTrustChain(issuerIdentity);
                 }
@@ -9,10 +9,17 @@
 //
 package io.dimeformat;
 
+import io.dimeformat.crypto.HashContext;
 import io.dimeformat.enums.Claim;
 import io.dimeformat.exceptions.*;
 import io.dimeformat.keyring.IntegrityState;
+import io.dimeformat.keyring.RevocationList;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
 import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.util.*;
@@ -44,7 +51,7 @@ public abstract class Item {
      */
     public List<Signature> getSignatures() {
         if (isSigned()) {
-            return Collections.unmodifiableList(this._signatureList);
+            return Collections.unmodifiableList(extractSignatures());
         }
         return null;
     }
@@ -107,6 +114,19 @@ public abstract class Item {
         }
     }
 
+    /**
+     * Will import an item from a DiME encoded string, using the provided context.
+     * @param context The context to use.
+     * @param encoded The DiME encoded string to import an item from.
+     * @param <T> The subclass of item of the imported DiME item.
+     * @return The imported Di:ME item.
+     * @throws InvalidFormatException If the encoded string is of a DiME envelope.
+     */
+    public static <T extends Item> T importFromEncoded(DimeContext context, String encoded) throws InvalidFormatException {
+        if (context == null) { throw new IllegalArgumentException("Unable to import item, context must not be null."); }
+        return context.execute(() -> Item.importFromEncoded(encoded));
+    }
+
     /**
      * Exports the item to a DiME encoded string.
      * @return The Di:ME encoded representation of the item.
@@ -139,6 +159,21 @@ public abstract class Item {
         }
     }
 
+    /**
+     * Returns the length, in bytes, of the encoded item, as returned from {@link #rawEncoded(boolean)}, without creating
+     * a copy of it. The encoded item only contains ASCII characters, so its length in characters and in bytes is the
+     * same.
+     * @param withSignatures Indicates if any attached signatures should be counted.
+     * @return The length of the encoded item, or 0 if it could not be encoded.
+     */
+    public int encodedLength(boolean withSignatures) {
+        try {
+            return encoded(withSignatures).length();
+        } catch (InvalidFormatException e) {
+            return 0;
+        }
+    }
+
     /**
      * Will check if an item is within a particular ambit.
      * @param ambit The ambit to check for.
@@ -159,10 +194,10 @@ public abstract class Item {
      */
     public void sign(Key signingKey) throws CryptographyException {
         if (isLegacy() && isSigned()) { throw new IllegalStateException("Unable to sign, legacy item is already signed."); }
-        if (signingKey == null || signingKey.getSecret() == null) { throw new IllegalArgumentException("Unable to sign, key for signing must not be null. (I1004)"); }
-        if (isSigned() && Signature.find(Dime.crypto.generateKeyName(signingKey), extractSignatures()) != null) { throw new IllegalStateException("Item already signed with provided key."); }
+        if (signingKey == null || !signingKey.hasSecret()) { throw new IllegalArgumentException("Unable to sign, key for signing must not be null. (I1004)"); }
+        if (isSigned() && Signature.find(DimeContext.current().getCrypto().generateKeyName(signingKey), extractSignatures()) != null) { throw new IllegalStateException("Item already signed with provided key."); }
         try {
-            Signature signature = Dime.crypto.generateSignature(this, signingKey);
+            Signature signature = DimeContext.current().getCrypto().generateSignature(this, signingKey);
             extractSignatures().add(signature);
             this.isSigned = true;
         } catch (Exception e) {
@@ -170,6 +205,20 @@ public abstract class Item {
         }
     }
 
+    /**
+     * Will sign an item with the proved key, using the provided context.
+     * @param context The context to use.
+     * @param signingKey The key to sign the item with, must be of type IDENTITY.
+     * @throws CryptographyException If something goes wrong.
+     */
+    public void sign(DimeContext context, Key signingKey) throws CryptographyException {
+        if (context == null) { throw new IllegalArgumentException("Unable to sign, context must not be null."); }
+        context.execute(() -> {
+            sign(signingKey);
+            return null;
+        });
+    }
+
     /**
      * Will remove all signatures from an item.
      * @return True if the item was stripped of signatures, false otherwise.
@@ -189,7 +238,7 @@ public abstract class Item {
      */
     public boolean strip(Key key) {
         if (isLegacy() || !isSigned()) { return false; }
-       String identifier = Dime.crypto.generateKeyName(key);
+       String identifier = DimeContext.current().getCrypto().generateKeyName(key);
         Signature signature = Signature.find(identifier, extractSignatures());
         if (signature != null) {
             return extractSignatures().remove(signature);
@@ -206,7 +255,7 @@ public abstract class Item {
      * @throws CryptographyException If something goes wrong.
      */
     public String generateThumbprint() throws CryptographyException {
-        return generateThumbprint(true, Dime.crypto.getDefaultSuiteName());
+        return generateThumbprint(true, DimeContext.current().getCrypto().getDefaultSuiteName());
     }
 
     /**
@@ -218,7 +267,7 @@ public abstract class Item {
      * @throws CryptographyException If something goes wrong.
      */
     public String generateThumbprint(boolean includeSignatures) throws CryptographyException {
-        return generateThumbprint(includeSignatures, Dime.crypto.getDefaultSuiteName());
+        return generateThumbprint(includeSignatures, DimeContext.current().getCrypto().getDefaultSuiteName());
     }
 
     /**
@@ -232,7 +281,9 @@ public abstract class Item {
      */
     public String generateThumbprint(boolean includeSignatures, String suiteName) throws CryptographyException {
         try {
-            return Item.thumbprint(encoded(includeSignatures), suiteName);
+            HashContext context = DimeContext.current().getCrypto().newHash(suiteName);
+            hashEncoded(context, includeSignatures);
+            return context.finish();
         } catch (InvalidFormatException e) {
             throw new CryptographyException("Unable to generate thumbprint for item, data invalid.");
         }
@@ -248,7 +299,7 @@ public abstract class Item {
      * @throws CryptographyException If something goes wrong.
      */
     public static String thumbprint(String encoded) throws CryptographyException {
-        return Item.thumbprint(encoded, Dime.crypto.getDefaultSuiteName());
+        return Item.thumbprint(encoded, DimeContext.current().getCrypto().getDefaultSuiteName());
     }
 
     /**
@@ -263,7 +314,7 @@ public abstract class Item {
      * @throws CryptographyException If something goes wrong.
      */
     public static String thumbprint(String encoded, String suiteName) throws CryptographyException {
-        return Dime.crypto.generateHash(encoded.getBytes(StandardCharsets.UTF_8), suiteName);
+        return DimeContext.current().getCrypto().generateHash(encoded.getBytes(StandardCharsets.UTF_8), suiteName);
     }
 
     /**
@@ -297,6 +348,33 @@ public abstract class Item {
         return verify(trustedIdentity.getPublicKey(), linkedItems);
     }
 
+    /**
+     * Verifies the integrity and over all validity and trust of the item, using the provided context. The verification
+     * will be made using the public key in the provided identity, see {@link #verify(Identity, List)}.
+     * @param context The context to use.
+     * @param trustedIdentity A trusted identity to verify with.
+     * @param linkedItems A list of item where item links should be verified, may be null.
+     * @return The integrity state of the verification.
+     */
+    public IntegrityState verify(DimeContext context, Identity trustedIdentity, List<Item> linkedItems) {
+        if (context == null) { throw new IllegalArgumentException("Unable to verify, context must not be null."); }
+        return context.execute(() -> verify(trustedIdentity, linkedItems));
+    }
+
+    /**
+     * Verifies the integrity and over all validity and trust of the item, using the provided context. If a key is
+     * provided, then verification will use that key. If verifyKey is omitted, then the key ring of the context will be
+     * used to verify signatures of the item.
+     * @param context The context to use.
+     * @param verifyKey Key used to verify the item, may be null.
+     * @param linkedItems A list of item where item links should be verified, may be null.
+     * @return The integrity state of the verification.
+     */
+    public IntegrityState verify(DimeContext context, Key verifyKey, List<Item> linkedItems) {
+        if (context == null) { throw new IllegalArgumentException("Unable to verify, context must not be null."); }
+        return context.execute(() -> verify(verifyKey, linkedItems));
+    }
+
     /**
      * Verifies the integrity and over all validity and trust of the item. Keys used for verification will be fetched from
      * the local key ring.
@@ -319,26 +397,30 @@ public abstract class Item {
     /**
      * Verifies the integrity and over all validity and trust of the item. If a key is provided, then verification will
      * use that key. If verifyKey is omitted, then the local key ring will be used to verify signatures of the item.
+     * If a {@link VerificationCache} is set, then a cached result is returned if the same item has been successfully
+     * verified before, with the same key and linked items. If a {@link RevocationList} is set, then the verification
+     * fails if the item, or the key that signed it, has been revoked.
      * @param verifyKey Key used to verify the item, may be null.
      * @param linkedItems A list of item where item links should be verified, may be null.
      * @return The integrity state of the verification.
      */
     public IntegrityState verify(Key verifyKey, List<Item> linkedItems) {
-        IntegrityState state = verifyDates();
-        if (!state.isValid()) {
-            return state;
+        DimeContext context = DimeContext.current();
+        RevocationList revocationList = context.getRevocationList();
+        if (revocationList != null && isRevoked(revocationList)) {
+            return IntegrityState.FAILED_REVOKED;
         }
-        boolean partiallyIntact = false;
-        if (linkedItems != null) {
-            state = verifyLinkedItems(linkedItems);
-            if (!state.isValid()) {
-                return state;
-            }
-            partiallyIntact = state == IntegrityState.PARTIALLY_VALID_ITEM_LINKS;
+        VerificationCache cache = context.getVerificationCache();
+        if (cache == null) {
+            return verifyItem(verifyKey, linkedItems);
         }
-        state = verifySignature(verifyKey);
-        return !state.isValid() ? state : partiallyIntact ? IntegrityState.INTACT :
-                linkedItems == null && getClaim(Claim.LNK) != null ? IntegrityState.PARTIALLY_COMPLETE : IntegrityState.COMPLETE;
+        String id = VerificationCache.identifier(this, verifyKey, linkedItems);
+        IntegrityState state = cache.get(id);
+        if (state == null) {
+            state = verifyItem(verifyKey, linkedItems);
+            cache.put(id, this, state);
+        }
+        return state;
     }
 
     /**
@@ -371,14 +453,14 @@ public abstract class Item {
             return IntegrityState.FAILED_NO_SIGNATURE;
         }
         if (verifyKey == null) {
-            return Dime.keyRing.verify(this);
+            return DimeContext.current().getKeyRing().verify(this);
         }
-        Signature signature = isLegacy() ? extractSignatures().get(0) : Signature.find(Dime.crypto.generateKeyName(verifyKey), extractSignatures());
+        Signature signature = isLegacy() ? extractSignatures().get(0) : Signature.find(DimeContext.current().getCrypto().generateKeyName(verifyKey), extractSignatures());
         if (signature == null) {
             return IntegrityState.FAILED_KEY_MISMATCH;
         }
         try {
-            return Dime.crypto.verifySignature(this, signature, verifyKey) ? IntegrityState.VALID_SIGNATURE : IntegrityState.FAILED_NOT_TRUSTED;
+            return DimeContext.current().getCrypto().verifySignature(this, signature, verifyKey) ? IntegrityState.VALID_SIGNATURE : IntegrityState.FAILED_NOT_TRUSTED;
         } catch (Exception e) {
             return IntegrityState.FAILED_INTERNAL_FAULT;
         }
@@ -411,7 +493,7 @@ public abstract class Item {
         if (this.itemLinks == null) {
             this.itemLinks = new ArrayList<>();
         }
-        String cryptoSuite = !isLegacy() ? Dime.crypto.getDefaultSuiteName() : null;
+        String cryptoSuite = !isLegacy() ? DimeContext.current().getCrypto().getDefaultSuiteName() : null;
         this.itemLinks.add(new ItemLink(item, cryptoSuite));
     }
 
@@ -423,7 +505,7 @@ public abstract class Item {
         throwIfSigned();
         if (items == null) { throw new IllegalArgumentException("Items to link with must not be null."); }
         this.itemLinks = new ArrayList<>();
-        String cryptoSuite = !isLegacy() ? Dime.crypto.getDefaultSuiteName() : null;
+        String cryptoSuite = !isLegacy() ? DimeContext.current().getCrypto().getDefaultSuiteName() : null;
         for (Item item: items) {
             this.itemLinks.add(new ItemLink(item, cryptoSuite));
         }
@@ -474,9 +556,25 @@ public abstract class Item {
 
     /// PACKAGE-PRIVATE ///
 
+    /**
+     * Checks if the item has been revoked, by its unique ID, or if any of its signatures were made by a revoked key.
+     * Legacy signatures carry no key name and are not checked. This does not allocate memory.
+     */
+    boolean isRevoked(RevocationList revocationList) {
+        if (revocationList.isRevoked((UUID) getClaim(Claim.UID))) { return true; }
+        if (isSigned()) {
+            List<Signature> signatures = extractSignatures();
+            for (int i = 0; i < signatures.size(); i++) {
+                if (revocationList.isRevoked(signatures.get(i).getName())) { return true; }
+            }
+        }
+        return false;
+    }
+
     static final int MINIMUM_NBR_COMPONENTS = 2;
     static final int COMPONENTS_IDENTIFIER_INDEX = 0;
     static final int COMPONENTS_CLAIMS_INDEX = 1;
+    static final int HASH_SEGMENT_SIZE = 8192;
 
     @Deprecated
     void markAsLegacy() {
@@ -500,6 +598,26 @@ public abstract class Item {
         return encoded(true);
     }
 
+    static void updateHash(HashContext context, String segment) throws CryptographyException {
+        if (segment.length() <= Item.HASH_SEGMENT_SIZE) {
+            context.update(segment.getBytes(StandardCharsets.UTF_8));
+            return;
+        }
+        // Encode larger segments piece by piece, instead of converting the whole string at once
+        CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        CharBuffer chars = CharBuffer.wrap(segment);
+        ByteBuffer bytes = ByteBuffer.allocate(Item.HASH_SEGMENT_SIZE);
+        CoderResult result;
+        do {
+            result = encoder.encode(chars, bytes, true);
+            bytes.flip();
+            context.update(bytes);
+            bytes.clear();
+        } while (result.isOverflow());
+    }
+
     /// PROTECTED ///
 
     protected String encoded;
@@ -511,6 +629,10 @@ public abstract class Item {
         getClaimMap().put(claim, value);
     }
 
+    protected void removeClaimValue(Claim claim) {
+        getClaimMap().remove(claim);
+    }
+
     protected abstract boolean allowedToSetClaimDirectly(Claim claim);
 
     protected String exportClaims() throws IOException{
@@ -549,15 +671,38 @@ public abstract class Item {
     protected void customEncoding(StringBuilder builder) throws InvalidFormatException {
         builder.append(this.getHeader());
         builder.append(Dime.COMPONENT_DELIMITER);
+        builder.append(encodedClaims());
+    }
+
+    protected String encodedClaims() throws InvalidFormatException {
         if (itemLinks != null && !itemLinks.isEmpty()) {
             getClaimMap().put(Claim.LNK, ItemLink.toEncoded(itemLinks));
         }
         try {
-            builder.append(Utility.toBase64(this._claims.toJSON()));
+            return Utility.toBase64(getClaimMap().toJSON());
         } catch (IOException e) {
             throw new InvalidFormatException("Unexpected exception while encoding item: " + e);
         }
+    }
 
+    /**
+     * Feeds the encoded item into a hash context. This must produce the same hash as hashing the string returned from
+     * {@link #encoded(boolean)}, subclasses may override this to avoid building the complete encoded string.
+     * @param context The hash context to update.
+     * @param withSignature If attached signatures should be included.
+     * @throws InvalidFormatException If the item could not be encoded.
+     * @throws CryptographyException If the hash operation fails.
+     */
+    protected void hashEncoded(HashContext context, boolean withSignature) throws InvalidFormatException, CryptographyException {
+        if (this.encoded != null) {
+            Item.updateHash(context, this.encoded);
+        } else {
+            customHashing(context);
+        }
+        if (withSignature && isSigned()) {
+            Item.updateHash(context, Dime.COMPONENT_DELIMITER);
+            Item.updateHash(context, Signature.toEncoded(extractSignatures()));
+        }
     }
 
     protected final void decode(String encoded) throws InvalidFormatException {
@@ -573,6 +718,10 @@ public abstract class Item {
         }
     }
 
+    protected void customHashing(HashContext context) throws InvalidFormatException, CryptographyException {
+        Item.updateHash(context, encoded(false));
+    }
+
     protected abstract void customDecoding(List<String> components) throws InvalidFormatException;
 
     protected int getMinNbrOfComponents() {
@@ -599,6 +748,24 @@ public abstract class Item {
         return array;
     }
 
+    private IntegrityState verifyItem(Key verifyKey, List<Item> linkedItems) {
+        IntegrityState state = verifyDates();
+        if (!state.isValid()) {
+            return state;
+        }
+        boolean partiallyIntact = false;
+        if (linkedItems != null) {
+            state = verifyLinkedItems(linkedItems);
+            if (!state.isValid()) {
+                return state;
+            }
+            partiallyIntact = state == IntegrityState.PARTIALLY_VALID_ITEM_LINKS;
+        }
+        state = verifySignature(verifyKey);
+        return !state.isValid() ? state : partiallyIntact ? IntegrityState.INTACT :
+                linkedItems == null && getClaim(Claim.LNK) != null ? IntegrityState.PARTIALLY_COMPLETE : IntegrityState.COMPLETE;
+    }
+
     private ClaimsMap getClaimMap() {
         if (this._claims != null) { return this._claims; }
         if (this.components != null && this.components.size() > Item.COMPONENTS_CLAIMS_INDEX) {
@@ -66,7 +66,7 @@ public final class ItemLink {
             throw new IllegalArgumentException("Unable to create item link, exception caught: " + e);
         }
         this.uniqueId = item.getClaim(Claim.UID);
-        this.cryptoSuiteName = cryptoSuiteName != null ? cryptoSuiteName : Dime.crypto.getDefaultSuiteName();
+        this.cryptoSuiteName = cryptoSuiteName != null ? cryptoSuiteName : DimeContext.current().getCrypto().getDefaultSuiteName();
     }
 
     /**
@@ -9,10 +9,12 @@
 //
 package io.dimeformat;
 
+import io.dimeformat.crypto.GuardedSecret;
 import io.dimeformat.enums.*;
 import io.dimeformat.exceptions.CryptographyException;
 import io.dimeformat.exceptions.InvalidFormatException;
 import java.time.Instant;
+import java.util.Arrays;
 import java.util.List;
 import java.util.UUID;
 import static java.util.stream.Collectors.toList;
@@ -37,7 +39,7 @@ public class Key extends Item {
      * @param suiteName The name of the cryptographic suite that was used to create the key.
      */
     public Key(List<KeyCapability> capabilities, byte[] rawKey, byte[] rawPub, String suiteName) {
-        this(UUID.randomUUID(), capabilities, rawKey, rawPub, suiteName);
+        this(DimeContext.current().getCrypto().randomUUID(), capabilities, rawKey, rawPub, suiteName);
     }
 
     @Override
@@ -51,7 +53,7 @@ public class Key extends Item {
      */
     public String getCryptoSuiteName() {
         if (_suiteName == null) {
-            if (getKeyBytes(Claim.KEY) == null) {
+            if (this._guardedSecret != null || getKeyBytes(Claim.KEY) == null) {
                 // It is ok to ignore return value here as we are looking to force the generation of _suite
                 getKeyBytes(Claim.PUB);
             }
@@ -60,11 +62,24 @@ public class Key extends Item {
     }
 
     /**
-     * The secret part of the key. This part should never be stored or transmitted in plain text.
+     * The secret part of the key. This part should never be stored or transmitted in plain text. If the secret key is
+     * guarded, then it is encoded from the guarded memory on each call (null if it has been destroyed), use
+     * {@link #hasSecret()} to only check if the key has a secret key.
      * @return A base 58 encoded string.
      */
     public String getSecret() {
-        return getClaim(Claim.KEY);
+        String secret = getClaim(Claim.KEY);
+        GuardedSecret guarded = this._guardedSecret;
+        if (secret != null || guarded == null) { return secret; }
+        return encodeSecret(guarded);
+    }
+
+    /**
+     * Indicates if the key contains a secret (private) key, this includes a guarded secret key, even if destroyed.
+     * @return True if the key contains a secret key, false otherwise.
+     */
+    public boolean hasSecret() {
+        return this._guardedSecret != null || getClaim(Claim.KEY) != null;
     }
 
     /**
@@ -77,13 +92,18 @@ public class Key extends Item {
 
     /**
      * Returns the raw byte array of the requested key. Valid claims to request are {@link Claim#KEY} and
-     * {@link Claim#PUB}.
+     * {@link Claim#PUB}. If the secret key is guarded, then a new copy of it is returned each time (null if it has been
+     * destroyed).
      * @param claim The key, expressed as a claim, to request bytes of.
      * @return The raw byte array of the key, null if none exists.
      */
     public byte[] getKeyBytes(Claim claim) {
         try {
             if (claim == Claim.KEY) {
+                GuardedSecret guarded = this._guardedSecret;
+                if (guarded != null) {
+                    return guarded.copyBytes();
+                }
                 if (this._secretBytes == null) {
                     decodeKey(getClaim(Claim.KEY), Claim.KEY);
                 }
@@ -106,7 +126,7 @@ public class Key extends Item {
      * @return The name of the key.
      */
     public String getName() {
-        return Dime.crypto.generateKeyName(this);
+        return DimeContext.current().getCrypto().generateKeyName(this);
     }
 
     /**
@@ -121,7 +141,9 @@ public class Key extends Item {
             } else {
                 // This may be legacy
                 getKeyBytes(Claim.PUB);
-                getKeyBytes(Claim.KEY);
+                if (this._guardedSecret == null) {
+                    getKeyBytes(Claim.KEY);
+                }
             }
         }
         return _capabilities;
@@ -143,7 +165,7 @@ public class Key extends Item {
      * @return A newly generated key.
      */
     public static Key generateKey(KeyCapability capability) {
-        return Key.generateKey(List.of(capability), Dime.NO_EXPIRATION, null, null, Dime.crypto.getDefaultSuiteName());
+        return Key.generateKey(List.of(capability), Dime.NO_EXPIRATION, null, null, DimeContext.current().getCrypto().getDefaultSuiteName());
     }
 
     /**
@@ -152,7 +174,7 @@ public class Key extends Item {
      * @return A newly generated key.
      */
     public static Key generateKey(List<KeyCapability> capabilities) {
-        return Key.generateKey(capabilities, Dime.NO_EXPIRATION, null, null, Dime.crypto.getDefaultSuiteName());
+        return Key.generateKey(capabilities, Dime.NO_EXPIRATION, null, null, DimeContext.current().getCrypto().getDefaultSuiteName());
     }
 
     /**
@@ -162,7 +184,7 @@ public class Key extends Item {
      * @return A newly generated key.
      */
     public static Key generateKey(List<KeyCapability> capabilities, String context) {
-        return Key.generateKey(capabilities, Dime.NO_EXPIRATION, null, context, Dime.crypto.getDefaultSuiteName());
+        return Key.generateKey(capabilities, Dime.NO_EXPIRATION, null, context, DimeContext.current().getCrypto().getDefaultSuiteName());
     }
 
     /**
@@ -177,7 +199,7 @@ public class Key extends Item {
      * @return A newly generated key.
      */
     public static Key generateKey(List<KeyCapability> capabilities, long validFor, UUID issuerId, String context) {
-        return Key.generateKey(capabilities, validFor, issuerId, context, Dime.crypto.getDefaultSuiteName());
+        return Key.generateKey(capabilities, validFor, issuerId, context, DimeContext.current().getCrypto().getDefaultSuiteName());
     }
 
     /**
@@ -195,7 +217,7 @@ public class Key extends Item {
     public static Key generateKey(List<KeyCapability> capabilities, long validFor, UUID issuerId, String context, String suiteName) {
         try {
             if (context != null && context.length() > Dime.MAX_CONTEXT_LENGTH) { throw new IllegalArgumentException("Context must not be longer than " + Dime.MAX_CONTEXT_LENGTH + "."); }
-            Key key = Dime.crypto.generateKey(capabilities, suiteName);
+            Key key = DimeContext.current().getCrypto().generateKey(capabilities, suiteName);
             if (validFor != Dime.NO_EXPIRATION) {
                 key.setClaimValue(Claim.EXP, ((Instant) key.getClaim(Claim.IAT)).plusSeconds(validFor));
             }
@@ -232,12 +254,60 @@ public class Key extends Item {
      * @throws CryptographyException If anything goes wrong.
      */
     public Key generateSharedSecret(Key key, List<KeyCapability> capabilities) throws CryptographyException {
-        return Dime.crypto.generateSharedSecret(this, key, capabilities);
+        return DimeContext.current().getCrypto().generateSharedSecret(this, key, capabilities);
+    }
+
+    /**
+     * Moves the raw secret key material into guarded memory outside the Java heap, see {@link GuardedSecret}. The
+     * decoded secret key and the encoded secret key (claim) kept on the heap are dropped, cryptographic suites
+     * supporting guarded secrets (like NaCl) will use the guarded memory directly. The encoded secret key is created
+     * again from the guarded memory whenever the key is exported, or {@link #getSecret()} is called. Note that strings
+     * can not be wiped, so any encoded copy that existed before this call may remain on the heap until garbage
+     * collected, this also applies to legacy keys, which keep the encoded secret key. This is useful for long-lived
+     * keys, like signing keys, that are used frequently and by many threads. Calling this more than once returns the
+     * same guarded secret.
+     * @return The guarded secret, may be used to destroy the secret key material explicitly.
+     */
+    public synchronized GuardedSecret guardSecret() {
+        if (this._guardedSecret != null) { return this._guardedSecret; }
+        byte[] secret = getKeyBytes(Claim.KEY);
+        if (secret == null) { throw new IllegalStateException("Unable to guard secret, key does not contain a secret (private) key."); }
+        boolean legacy = isLegacy();
+        this._guardedSecret = GuardedSecret.allocate(secret);
+        Arrays.fill(secret, (byte) 0);
+        this._secretBytes = null;
+        if (!legacy) {
+            extractSignatures(); // Decoded before the encoded item is dropped
+            removeClaimValue(Claim.KEY);
+            this.encoded = null;
+            this.components = null;
+        }
+        return this._guardedSecret;
+    }
+
+    /**
+     * Returns the guarded secret of this key, if the secret key has been moved into guarded memory.
+     * @return The guarded secret, null if the secret key is not guarded.
+     */
+    public GuardedSecret getGuardedSecret() {
+        return this._guardedSecret;
+    }
+
+    /**
+     * Indicates if this key was generated for a single key exchange only, like the EXCHANGE keys generated when
+     * setting an encrypted payload in a {@link Message} (including keys taken from an
+     * {@link io.dimeformat.crypto.EphemeralKeyPool}). Shared secrets generated using an ephemeral key are never
+     * cached, see {@link io.dimeformat.crypto.SharedSecretCache}.
+     * @return True if the key is ephemeral, false otherwise.
+     */
+    public boolean isEphemeral() {
+        return this._ephemeral;
     }
 
     @Override
     public void convertToLegacy() {
         if (isLegacy()) { return; }
+        if (this._guardedSecret != null) { throw new IllegalStateException("Unable to convert to legacy, secret key is guarded."); }
         Key.convertKeyToLegacy(this, getCapability().get(0), Claim.KEY);
         Key.convertKeyToLegacy(this, getCapability().get(0), Claim.PUB);
         super.convertToLegacy();
@@ -245,9 +315,11 @@ public class Key extends Item {
 
     @Override
     public boolean isLegacy() {
-        // Get the keys (if needed) to check if this is legacy
+        // Get the keys (if needed) to check if this is legacy, a guarded secret key was decoded before it was guarded
         getKeyBytes(Claim.PUB);
-        getKeyBytes(Claim.KEY);
+        if (this._guardedSecret == null) {
+            getKeyBytes(Claim.KEY);
+        }
         return super.isLegacy();
     }
 
@@ -261,14 +333,14 @@ public class Key extends Item {
     Key(UUID id, List<KeyCapability> capabilities, byte[] rawKey, byte[] rawPub, String suiteName) {
         setClaimValue(Claim.UID, id);
         setClaimValue(Claim.IAT, Utility.createTimestamp());
-        this._suiteName = suiteName != null ? suiteName : Dime.crypto.getDefaultSuiteName();
+        this._suiteName = suiteName != null ? suiteName : DimeContext.current().getCrypto().getDefaultSuiteName();
         this._capabilities = capabilities;
         setClaimValue(Claim.CAP, capabilities.stream().map(aUse -> aUse.name().toLowerCase()).collect(toList()));
         if (rawKey != null) {
-            setClaimValue(Claim.KEY, Key.packageKey(suiteName, Dime.crypto.encodeKeyBytes(rawKey, Claim.KEY, this._suiteName)));
+            setClaimValue(Claim.KEY, Key.packageKey(suiteName, DimeContext.current().getCrypto().encodeKeyBytes(rawKey, Claim.KEY, this._suiteName)));
         }
         if (rawPub != null) {
-            setClaimValue(Claim.PUB, Key.packageKey(suiteName, Dime.crypto.encodeKeyBytes(rawPub, Claim.PUB, this._suiteName)));
+            setClaimValue(Claim.PUB, Key.packageKey(suiteName, DimeContext.current().getCrypto().encodeKeyBytes(rawPub, Claim.PUB, this._suiteName)));
         }
     }
 
@@ -288,6 +360,10 @@ public class Key extends Item {
         setClaimValue(claim, key);
     }
 
+    void markEphemeral() {
+        this._ephemeral = true;
+    }
+
     @Deprecated
     static void convertKeyToLegacy(Item item, KeyCapability capability, Claim claim) {
         String key = item.getClaim(claim);
@@ -295,7 +371,7 @@ public class Key extends Item {
         byte[] header = new byte[] { 0x01, 0x00, 0x00, 0x00, 0x00, 0x00 };
         String[] components = key.split("\\" + Dime.COMPONENT_DELIMITER);
         if (components.length == 1) { return; } // This is already a legacy key
-        byte[] rawKey = Dime.crypto.decodeKeyBytes(components[1], claim, components[0]);
+        byte[] rawKey = DimeContext.current().getCrypto().decodeKeyBytes(components[1], claim, components[0]);
         byte[] legacyKey = Utility.combine(header, rawKey);
         legacyKey[1] = capability == KeyCapability.ENCRYPT ? 0x10 : capability == KeyCapability.EXCHANGE ? (byte)0x40 : (byte)0x80;
         legacyKey[2] = capability == KeyCapability.EXCHANGE ? (byte)0x02 : (byte)0x01;
@@ -314,6 +390,29 @@ public class Key extends Item {
         return Key.allowedClaims.contains(claim);
     }
 
+    @Override
+    protected synchronized String encodedClaims() throws InvalidFormatException {
+        GuardedSecret guarded = this._guardedSecret;
+        String secret = guarded != null && getClaim(Claim.KEY) == null ? encodeSecret(guarded) : null;
+        if (secret == null) { return super.encodedClaims(); }
+        // The encoded secret key is only added while encoding, so that it is not kept on the heap
+        setClaimValue(Claim.KEY, secret);
+        try {
+            return super.encodedClaims();
+        } finally {
+            removeClaimValue(Claim.KEY);
+        }
+    }
+
+    @Override
+    protected String encoded(boolean withSignature) throws InvalidFormatException {
+        String encoded = super.encoded(withSignature);
+        if (this._guardedSecret != null) {
+            this.encoded = null; // May hold the encoded secret key, so it is not cached
+        }
+        return encoded;
+    }
+
     @Override
     protected void customDecoding(List<String> components) throws InvalidFormatException {
         if (components.size() > Item.MINIMUM_NBR_COMPONENTS + 1) { throw new InvalidFormatException("More components in item than expected, got " + components.size() + ", expected maximum " + (Item.MINIMUM_NBR_COMPONENTS + 1)); }
@@ -330,6 +429,8 @@ public class Key extends Item {
     private List<KeyCapability> _capabilities;
     private byte[] _secretBytes;
     private byte[] _publicBytes;
+    private volatile GuardedSecret _guardedSecret;
+    private boolean _ephemeral = false;
 
     @Deprecated
     private static KeyCapability getCapabilityFromLegacy(byte[] key) {
@@ -346,6 +447,17 @@ public class Key extends Item {
         return suiteName + Dime.COMPONENT_DELIMITER + encodedKey;
     }
 
+    private String encodeSecret(GuardedSecret guarded) {
+        byte[] secret = guarded.copyBytes();
+        if (secret == null) { return null; }
+        try {
+            String suiteName = getCryptoSuiteName();
+            return Key.packageKey(suiteName, DimeContext.current().getCrypto().encodeKeyBytes(secret, Claim.KEY, suiteName));
+        } finally {
+            Arrays.fill(secret, (byte) 0);
+        }
+    }
+
     private void decodeKey(String encoded, Claim claim) throws CryptographyException {
         if (encoded == null || encoded.isEmpty()) { return; } // Do a silent return, no key to decode
         String[] components = encoded.split("\\" + Dime.COMPONENT_DELIMITER);
@@ -369,10 +481,10 @@ public class Key extends Item {
         }
         byte[] rawKey;
         if (!legacyKey) {
-            rawKey = Dime.crypto.decodeKeyBytes(components[Key.ENCODED_KEY_INDEX], claim, suiteName);
+            rawKey = DimeContext.current().getCrypto().decodeKeyBytes(components[Key.ENCODED_KEY_INDEX], claim, suiteName);
         } else {
             // This is a legacy key
-            byte[] decoded = Dime.crypto.decodeKeyBytes(encoded, claim, suiteName);
+            byte[] decoded = DimeContext.current().getCrypto().decodeKeyBytes(encoded, claim, suiteName);
             rawKey = Utility.subArray(decoded, Key.LEGACY_KEY_HEADER_SIZE);
             KeyCapability cap = Key.getCapabilityFromLegacy(decoded);
             if (cap == null) { throw new IllegalStateException("Invalid key capability encountered."); }
@@ -9,11 +9,20 @@
 //
 package io.dimeformat;
 
+import io.dimeformat.crypto.EphemeralKeyPool;
+import io.dimeformat.crypto.SharedSecretCache;
 import io.dimeformat.enums.Claim;
 import io.dimeformat.enums.KeyCapability;
 import io.dimeformat.exceptions.*;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.time.Instant;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 /**
@@ -28,6 +37,9 @@ public class Message extends Data {
     /** The item header for DiME Message items. */
     public static final String HEADER = "MSG";
 
+    /** The payload encoding ("enc") of payloads set from a stream, encrypted in chunks (version 1). */
+    public static final String STREAM_ENCODING = "stream/1";
+
     @Override
     public String getHeader() {
         return Message.HEADER;
@@ -110,7 +122,7 @@ public class Message extends Data {
         if (context != null && context.length() > Dime.MAX_CONTEXT_LENGTH) { throw new IllegalArgumentException("Context must not be longer than " + Dime.MAX_CONTEXT_LENGTH + "."); }
         Instant iat = Utility.createTimestamp();
         Instant exp = (validFor != -1) ? iat.plusSeconds(validFor) : null;
-        setClaimValue(Claim.UID, UUID.randomUUID());
+        setClaimValue(Claim.UID, DimeContext.current().getCrypto().randomUUID());
         setClaimValue(Claim.AUD, audienceId);
         setClaimValue(Claim.ISS, issuerId);
         setClaimValue(Claim.IAT, iat);
@@ -118,6 +130,24 @@ public class Message extends Data {
         setClaimValue(Claim.CTX, context);
     }
 
+    @Override
+    public void setPayload(byte[] payload, String mimeType) {
+        super.setPayload(payload, mimeType);
+        removeClaim(Claim.ENC);
+    }
+
+    /**
+     * Returns the payload set in the message, as it is, without any decryption. Payloads set from a stream, using
+     * {@link #setPayload(InputStream, Key)} or equivalent, must be read using {@link #openPayload(Key)} instead.
+     * @return The message payload.
+     * @throws IllegalStateException If the payload was set from a stream.
+     */
+    @Override
+    public byte[] getPayload() {
+        if (getClaim(Claim.ENC) != null) { throw new IllegalStateException("Unable to get payload, payload was set from a stream, use openPayload instead."); }
+        return super.getPayload();
+    }
+
     /**
      * Will encrypt and attach a payload using a shared encryption key generated from the provided keys. The two keys
      * provided must not be null and only one must contain a secret (private) key, the order does not matter.
@@ -130,11 +160,11 @@ public class Message extends Data {
         throwIfSigned();
         if (payload == null || payload.length == 0) { throw new IllegalArgumentException("Unable to set payload, payload must not be null or empty."); }
         if (firstKey == null || secondKey == null) { throw new IllegalArgumentException("Unable to set payload, both keys must be of a non-null value."); }
-        if (firstKey.getSecret() != null && secondKey.getSecret() != null) { throw new IllegalArgumentException("Unable to set payload, both keys must not contain a secret (private) key."); }
-        Key primaryKey = firstKey.getSecret() != null ? firstKey : secondKey;
-        Key secondaryKey = secondKey.getSecret() == null ? secondKey : firstKey;
+        if (firstKey.hasSecret() && secondKey.hasSecret()) { throw new IllegalArgumentException("Unable to set payload, both keys must not contain a secret (private) key."); }
+        Key primaryKey = firstKey.hasSecret() ? firstKey : secondKey;
+        Key secondaryKey = secondKey.hasSecret() ? firstKey : secondKey;
         Key sharedKey = primaryKey.generateSharedSecret(secondaryKey, List.of(KeyCapability.ENCRYPT));
-        setPayload(Dime.crypto.encrypt(payload, sharedKey));
+        setPayload(DimeContext.current().getCrypto().encrypt(payload, sharedKey));
     }
 
     /**
@@ -152,19 +182,71 @@ public class Message extends Data {
     public Key setPayload(byte[] payload, Key key) throws CryptographyException {
         if (key == null) { throw new NullPointerException("Unable to set payload, key must not be null"); }
         if (key.hasCapability(KeyCapability.EXCHANGE)) {
-            if (key.getSecret() != null) { throw new IllegalArgumentException("Unable to set payload, key should not contain a secret (or private) key."); }
-            Key firstKey = Key.generateKey(KeyCapability.EXCHANGE);
+            if (key.hasSecret()) { throw new IllegalArgumentException("Unable to set payload, key should not contain a secret (or private) key."); }
+            Key firstKey = Message.ephemeralKey(key);
             setPayload(payload, firstKey, key);
             setPublicKey(firstKey.publicCopy());
             return firstKey;
         } else if (key.hasCapability(KeyCapability.ENCRYPT)) {
-            setPayload(Dime.crypto.encrypt(payload, key));
+            setPayload(DimeContext.current().getCrypto().encrypt(payload, key));
             putClaim(Claim.KID, key.getClaim(Claim.UID));
             return key;
         }
         throw new CryptographyException("Key capability mismatch.");
     }
 
+    /**
+     * Will encrypt and attach a payload for multiple recipients. The payload is encrypted once only, using a randomly
+     * generated payload key. The payload key is then wrapped (encrypted) for each recipient, using a shared key
+     * generated from the recipient's key and a generated EXCHANGE key. The wrapped payload keys are set in the
+     * "rcp" claim and the public key of the generated EXCHANGE key is set in the "pub" claim
+     * ({@link #getPublicKey()}), but also returned. Each recipient may then read the payload using
+     * {@link #getPayload(Key)}, with its own key. The cost of adding a recipient is one key exchange and the encryption
+     * of the payload key, regardless of the size of the payload.
+     * @param payload The payload to encrypt and attach to the message, must not be null and of length 1 or longer.
+     * @param recipientKeys The keys of the recipients, must have capability EXCHANGE and must not contain a secret (or
+     *                      private) key, must not be null or empty.
+     * @return The generated EXCHANGE key.
+     * @throws CryptographyException If something goes wrong.
+     */
+    public Key setPayload(byte[] payload, List<Key> recipientKeys) throws CryptographyException {
+        throwIfSigned();
+        if (payload == null || payload.length == 0) { throw new IllegalArgumentException("Unable to set payload, payload must not be null or empty."); }
+        if (recipientKeys == null || recipientKeys.isEmpty()) { throw new IllegalArgumentException("Unable to set payload, recipient keys must not be null or empty."); }
+        for (Key recipientKey : recipientKeys) {
+            if (recipientKey == null || !recipientKey.hasCapability(KeyCapability.EXCHANGE)) { throw new IllegalArgumentException("Unable to set payload, recipient keys must have capability EXCHANGE."); }
+            if (recipientKey.hasSecret()) { throw new IllegalArgumentException("Unable to set payload, recipient keys should not contain a secret (or private) key."); }
+        }
+        Key exchangeKey = Message.ephemeralKey(recipientKeys.get(0));
+        Key payloadKey = DimeContext.current().getCrypto().generateKey(List.of(KeyCapability.ENCRYPT), exchangeKey.getCryptoSuiteName());
+        byte[] rawPayloadKey = payloadKey.getKeyBytes(Claim.KEY);
+        Map<String, String> recipients = new HashMap<>();
+        byte[] encryptedPayload;
+        try {
+            for (Key recipientKey : recipientKeys) {
+                Key sharedKey = DimeContext.current().getCrypto().generateSharedSecret(exchangeKey, recipientKey, List.of(KeyCapability.ENCRYPT));
+                String wrappedKey = Utility.toBase64(DimeContext.current().getCrypto().encrypt(rawPayloadKey, sharedKey));
+                if (recipients.put(recipientKey.getName(), wrappedKey) != null) { throw new IllegalArgumentException("Unable to set payload, duplicate recipient keys provided."); }
+            }
+            encryptedPayload = DimeContext.current().getCrypto().encrypt(payload, payloadKey);
+        } finally {
+            Arrays.fill(rawPayloadKey, (byte) 0);
+        }
+        setPayload(encryptedPayload);
+        setClaimValue(Claim.RCP, recipients);
+        setPublicKey(exchangeKey.publicCopy());
+        return exchangeKey;
+    }
+
+    /**
+     * Indicates if the payload of the message was set for multiple recipients, using
+     * {@link #setPayload(byte[], List)}.
+     * @return True if the payload has multiple recipients, false otherwise.
+     */
+    public boolean hasRecipients() {
+        return getClaim(Claim.RCP) != null;
+    }
+
     /**
      * Returns the decrypted message payload, if it is able to decrypt it. Two keys must be provided, where only one of
      * the keys may contain a secret (private), the order does not matter. The keys provided must be the same as when
@@ -177,15 +259,10 @@ public class Message extends Data {
      */
     public byte[] getPayload(Key firstKey, Key secondKey) throws CryptographyException {
         if (firstKey == null || secondKey == null) { throw new IllegalArgumentException("Unable to get payload, both keys must be of a non-null value."); }
-        if (firstKey.getSecret() != null && secondKey.getSecret() != null) { throw new IllegalArgumentException("Unable to get payload, both keys must not contain a secret (private) key."); }
-        Key primaryKey = firstKey.getSecret() != null ? firstKey : secondKey;
-        Key secondaryKey = secondKey.getSecret() == null ? secondKey : firstKey;
-        try {
-            Key sharedKey = secondaryKey.generateSharedSecret(primaryKey, List.of(KeyCapability.ENCRYPT));
-            return Dime.crypto.decrypt(getPayload(), sharedKey);
-        } catch (CryptographyException e) { /* ignored */ }
-        Key sharedKey = primaryKey.generateSharedSecret(secondaryKey, List.of(KeyCapability.ENCRYPT));
-        return Dime.crypto.decrypt(getPayload(), sharedKey);
+        if (firstKey.hasSecret() && secondKey.hasSecret()) { throw new IllegalArgumentException("Unable to get payload, both keys must not contain a secret (private) key."); }
+        Key primaryKey = firstKey.hasSecret() ? firstKey : secondKey;
+        Key secondaryKey = secondKey.hasSecret() ? firstKey : secondKey;
+        return exchangeAndDecrypt(primaryKey, secondaryKey, sharedKey -> DimeContext.current().getCrypto().decrypt(getPayload(), sharedKey));
     }
 
     /**
@@ -201,9 +278,99 @@ public class Message extends Data {
         if (key == null) { throw new NullPointerException("Unable to get payload, key must not be null"); }
         if (key.hasCapability(KeyCapability.EXCHANGE)) {
             if (getClaim(Claim.PUB) == null) { throw new IllegalStateException("Unable to get payload, no public key attached to message."); }
+            if (hasRecipients()) {
+                return DimeContext.current().getCrypto().decrypt(getPayload(), unwrapPayloadKey(key));
+            }
             return getPayload(getPublicKey(), key);
         } else if (key.hasCapability(KeyCapability.ENCRYPT)) {
-            return Dime.crypto.decrypt(getPayload(), key);
+            return DimeContext.current().getCrypto().decrypt(getPayload(), key);
+        }
+        throw new CryptographyException("Key capability mismatch.");
+    }
+
+    /**
+     * Will encrypt and attach a payload, read from an input stream, using a shared encryption key generated from the
+     * provided keys. The payload is encrypted in chunks as it is read, so it never has to be held in memory as a whole.
+     * The two keys provided must not be null and only one must contain a secret (private) key, the order does not
+     * matter. A payload set using this method must be read using {@link #openPayload(Key, Key)}, or equivalent.
+     * @param payload The payload to encrypt and attach to the message, must not be null. The stream is not closed.
+     * @param firstKey The first key to use, must have capability EXCHANGE, must not be null.
+     * @param secondKey The second key to use, must have capability EXCHANGE, must not be null.
+     * @throws CryptographyException If something goes wrong.
+     * @throws IOException If reading from the provided stream fails.
+     */
+    public void setPayload(InputStream payload, Key firstKey, Key secondKey) throws CryptographyException, IOException {
+        throwIfSigned();
+        if (payload == null) { throw new IllegalArgumentException("Unable to set payload, payload must not be null."); }
+        if (firstKey == null || secondKey == null) { throw new IllegalArgumentException("Unable to set payload, both keys must be of a non-null value."); }
+        if (firstKey.hasSecret() && secondKey.hasSecret()) { throw new IllegalArgumentException("Unable to set payload, both keys must not contain a secret (private) key."); }
+        Key primaryKey = firstKey.hasSecret() ? firstKey : secondKey;
+        Key secondaryKey = secondKey.hasSecret() ? firstKey : secondKey;
+        Key sharedKey = primaryKey.generateSharedSecret(secondaryKey, List.of(KeyCapability.ENCRYPT));
+        encryptPayload(payload, sharedKey);
+    }
+
+    /**
+     * Will encrypt and attach a payload, read from an input stream, using the provided key. The payload is encrypted
+     * in chunks as it is read, so it never has to be held in memory as a whole. Keys are handled in the same way as
+     * for {@link #setPayload(byte[], Key)}. A payload set using this method must be read using
+     * {@link #openPayload(Key)}, or equivalent.
+     * @param payload The payload to encrypt and attach to the message, must not be null. The stream is not closed.
+     * @param key A key to either use for generating a shared key (EXCHANGE) or encrypting the message directly (ENCRYPT).
+     * @return The generated EXCHANGE key, or the encryption key (if provided key had capability ENCRYPT).
+     * @throws CryptographyException If something goes wrong.
+     * @throws IOException If reading from the provided stream fails.
+     */
+    public Key setPayload(InputStream payload, Key key) throws CryptographyException, IOException {
+        if (key == null) { throw new NullPointerException("Unable to set payload, key must not be null"); }
+        if (key.hasCapability(KeyCapability.EXCHANGE)) {
+            if (key.hasSecret()) { throw new IllegalArgumentException("Unable to set payload, key should not contain a secret (or private) key."); }
+            Key firstKey = Message.ephemeralKey(key);
+            setPayload(payload, firstKey, key);
+            setPublicKey(firstKey.publicCopy());
+            return firstKey;
+        } else if (key.hasCapability(KeyCapability.ENCRYPT)) {
+            throwIfSigned();
+            if (payload == null) { throw new IllegalArgumentException("Unable to set payload, payload must not be null."); }
+            encryptPayload(payload, key);
+            putClaim(Claim.KID, key.getClaim(Claim.UID));
+            return key;
+        }
+        throw new CryptographyException("Key capability mismatch.");
+    }
+
+    /**
+     * Returns a stream of the decrypted message payload, for payloads set using
+     * {@link #setPayload(InputStream, Key, Key)}, or equivalent. The payload is decrypted in chunks as the returned
+     * stream is read. Keys are handled in the same way as for {@link #getPayload(Key, Key)}.
+     * @param firstKey The first key to use, must be of type EXCHANGE, must not be null.
+     * @param secondKey The second key to use, must be of type EXCHANGE, must not be null.
+     * @return A stream of the decrypted message payload.
+     * @throws CryptographyException If something goes wrong.
+     */
+    public InputStream openPayload(Key firstKey, Key secondKey) throws CryptographyException {
+        if (firstKey == null || secondKey == null) { throw new IllegalArgumentException("Unable to get payload, both keys must be of a non-null value."); }
+        if (firstKey.hasSecret() && secondKey.hasSecret()) { throw new IllegalArgumentException("Unable to get payload, both keys must not contain a secret (private) key."); }
+        Key primaryKey = firstKey.hasSecret() ? firstKey : secondKey;
+        Key secondaryKey = secondKey.hasSecret() ? firstKey : secondKey;
+        return exchangeAndDecrypt(primaryKey, secondaryKey, sharedKey -> DimeContext.current().getCrypto().decryptionStream(payloadStream(), sharedKey));
+    }
+
+    /**
+     * Returns a stream of the decrypted message payload, for payloads set using {@link #setPayload(InputStream, Key)},
+     * or equivalent. The payload is decrypted in chunks as the returned stream is read. Keys are handled in the same
+     * way as for {@link #getPayload(Key)}.
+     * @param key A key to either use for generating a shared key (EXCHANGE) or decrypting the message directly (ENCRYPT).
+     * @return A stream of the decrypted message payload.
+     * @throws CryptographyException If something goes wrong.
+     */
+    public InputStream openPayload(Key key) throws CryptographyException {
+        if (key == null) { throw new NullPointerException("Unable to get payload, key must not be null"); }
+        if (key.hasCapability(KeyCapability.EXCHANGE)) {
+            if (getClaim(Claim.PUB) == null) { throw new IllegalStateException("Unable to get payload, no public key attached to message."); }
+            return openPayload(getPublicKey(), key);
+        } else if (key.hasCapability(KeyCapability.ENCRYPT)) {
+            return DimeContext.current().getCrypto().decryptionStream(payloadStream(), key);
         }
         throw new CryptographyException("Key capability mismatch.");
     }
@@ -215,6 +382,17 @@ public class Message extends Data {
      */
     Message() { }
 
+    /**
+     * Returns a new ephemeral EXCHANGE key for an exchange with the provided key, taken from the ephemeral key pool
+     * if one is set and it generates keys of the same cryptographic suite.
+     */
+    static Key ephemeralKey(Key remoteKey) {
+        EphemeralKeyPool pool = DimeContext.current().getCrypto().getEphemeralKeyPool();
+        Key key = pool != null && pool.getCryptoSuiteName().equals(remoteKey.getCryptoSuiteName()) ? pool.take() : Key.generateKey(KeyCapability.EXCHANGE);
+        key.markEphemeral();
+        return key;
+    }
+
     /// PROTECTED ///
 
     @Override
@@ -244,4 +422,106 @@ public class Message extends Data {
     private static final List<Claim> allowedClaims = List.of(Claim.AMB, Claim.AUD, Claim.CMN, Claim.CTX, Claim.EXP, Claim.IAT, Claim.ISS, Claim.ISU, Claim.KID, Claim.MIM, Claim.MTD, Claim.SUB, Claim.SYS, Claim.UID);
     private static final int MINIMUM_NBR_COMPONENTS = 4;
 
+    private interface PayloadDecryption<T> {
+        T decrypt(Key sharedKey) throws CryptographyException;
+    }
+
+    private Key unwrapPayloadKey(Key recipientKey) throws CryptographyException {
+        if (!recipientKey.hasSecret()) { throw new IllegalArgumentException("Unable to get payload, key must contain a secret (or private) key."); }
+        Map<String, Object> recipients = getClaim(Claim.RCP);
+        Object wrappedKey = recipients.get(recipientKey.getName());
+        if (!(wrappedKey instanceof String)) { throw new CryptographyException("Unable to get payload, provided key is not a recipient of the message."); }
+        Key exchangeKey = getPublicKey();
+        Key sharedKey = DimeContext.current().getCrypto().generateSharedSecret(exchangeKey, recipientKey, List.of(KeyCapability.ENCRYPT));
+        byte[] rawPayloadKey = DimeContext.current().getCrypto().decrypt(Utility.fromBase64((String) wrappedKey), sharedKey);
+        try {
+            return new Key(List.of(KeyCapability.ENCRYPT), rawPayloadKey, null, exchangeKey.getCryptoSuiteName());
+        } finally {
+            Arrays.fill(rawPayloadKey, (byte) 0); // The key holds its own encoded copy
+        }
+    }
+
+    private <T> T exchangeAndDecrypt(Key primaryKey, Key secondaryKey, PayloadDecryption<T> decryption) throws CryptographyException {
+        // The receiver direction is tried first, unless the opposite direction was confirmed to work earlier
+        SharedSecretCache cache = DimeContext.current().getCrypto().getSharedSecretCache();
+        boolean reversed = cache != null && cache.isConfirmed(primaryKey, secondaryKey);
+        Key clientKey = reversed ? primaryKey : secondaryKey;
+        Key serverKey = reversed ? secondaryKey : primaryKey;
+        try {
+            T result = decryption.decrypt(clientKey.generateSharedSecret(serverKey, List.of(KeyCapability.ENCRYPT)));
+            if (cache != null) { cache.confirm(clientKey, serverKey); }
+            return result;
+        } catch (CryptographyException e) { /* ignored */ }
+        T result = decryption.decrypt(serverKey.generateSharedSecret(clientKey, List.of(KeyCapability.ENCRYPT)));
+        if (cache != null) { cache.confirm(serverKey, clientKey); }
+        return result;
+    }
+
+    private void encryptPayload(InputStream payload, Key key) throws CryptographyException, IOException {
+        PayloadWriter writer = new PayloadWriter();
+        try (OutputStream out = DimeContext.current().getCrypto().encryptionStream(Base64.getEncoder().withoutPadding().wrap(writer), key)) {
+            payload.transferTo(out);
+        }
+        this.payload = writer.toString();
+        setClaimValue(Claim.ENC, Message.STREAM_ENCODING);
+    }
+
+    private InputStream payloadStream() {
+        if (this.payload == null) { throw new IllegalStateException("Unable to get payload, no payload added."); }
+        if (!Message.STREAM_ENCODING.equals(getClaim(Claim.ENC))) { throw new IllegalStateException("Unable to get payload, payload was not set from a stream, or uses an unsupported encoding."); }
+        return Base64.getDecoder().wrap(new PayloadReader(this.payload));
+    }
+
+    /** Collects the base 64 encoded payload directly as characters, avoiding an intermediate byte array. */
+    private static final class PayloadWriter extends OutputStream {
+
+        private final StringBuilder _builder = new StringBuilder();
+
+        @Override
+        public void write(int b) {
+            _builder.append((char) (b & 0xFF));
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            for (int i = off; i < off + len; i++) {
+                _builder.append((char) (b[i] & 0xFF));
+            }
+        }
+
+        @Override
+        public String toString() {
+            return _builder.toString();
+        }
+
+    }
+
+    /** Reads the base 64 encoded payload directly from the string, avoiding an intermediate byte array. */
+    private static final class PayloadReader extends InputStream {
+
+        private final String _payload;
+        private int _position = 0;
+
+        PayloadReader(String payload) {
+            this._payload = payload;
+        }
+
+        @Override
+        public int read() {
+            return _position < _payload.length() ? _payload.charAt(_position++) & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) { return 0; }
+            if (_position >= _payload.length()) { return -1; }
+            int count = Math.min(len, _payload.length() - _position);
+            for (int i = 0; i < count; i++) {
+                b[off + i] = (byte) _payload.charAt(_position++);
+            }
+            return count;
+        }
+
+    }
+
 }
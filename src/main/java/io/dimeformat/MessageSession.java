@@ -0,0 +1,178 @@
+//
+//  MessageSession.java
+//  DiME - Data Identity Message Envelope
+//  A powerful universal data format that is built for secure, and integrity protected communication between trusted
+//  entities in a network.
+//
+//  Released under the MIT licence, see LICENSE for more information.
+//  Copyright (c) 2024 Shift Everywhere AB. All rights reserved.
+//
+package io.dimeformat;
+
+import io.dimeformat.crypto.HashContext;
+import io.dimeformat.enums.Claim;
+import io.dimeformat.enums.KeyCapability;
+import io.dimeformat.exceptions.CryptographyException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A session for exchanging a sequence of messages between two parties. The key exchange is done once, when the
+ * session is created, each message payload is then encrypted using the session key and a counter based nonce. Both
+ * parties must create a session using their own key (holding the secret) and the other party's public key.
+ * <p>
+ * Each session has a random session id, which must be passed to the other party, for instance in a signed message,
+ * before the session is started using {@link #start(byte[])}. The session key is derived from the shared secret of the
+ * key exchange and the session ids of both parties, so every session uses a fresh key, even if the same keys are used
+ * again. The nonce of each payload holds the session id of the sender, followed by a counter, so both parties may send
+ * messages within the same session.
+ * <p>
+ * Payloads must be opened in the order they were sealed, any payload with a counter that is equal to, or lower than,
+ * the last opened payload is rejected. This protects against messages being replayed, both within a session and from
+ * other sessions, messages that are lost may however be skipped. Instances are thread-safe.
+ */
+public final class MessageSession {
+
+    /// PUBLIC ///
+
+    /** The length, in bytes, of a session id. */
+    public static final int SESSION_ID_LENGTH = 16;
+
+    /**
+     * Creates a session between a local and a remote key. The keys must have capability EXCHANGE and be generated
+     * using the same cryptographic suite. The session must be started, using the session id of the other party, before
+     * any payloads are sealed or opened.
+     * @param localKey The local key, must contain a secret (private) key.
+     * @param remoteKey The key of the other party, only the public key is used.
+     * @throws CryptographyException If the key exchange fails.
+     */
+    public MessageSession(Key localKey, Key remoteKey) throws CryptographyException {
+        if (localKey == null || remoteKey == null) { throw new IllegalArgumentException("Unable to create session, both keys must be of a non-null value."); }
+        if (!localKey.hasSecret()) { throw new IllegalArgumentException("Unable to create session, local key must contain a secret (private) key."); }
+        if (!localKey.hasCapability(KeyCapability.EXCHANGE) || !remoteKey.hasCapability(KeyCapability.EXCHANGE)) { throw new IllegalArgumentException("Unable to create session, keys must have capability EXCHANGE."); }
+        int order = Arrays.compare(localKey.getKeyBytes(Claim.PUB), remoteKey.getKeyBytes(Claim.PUB));
+        if (order == 0) { throw new IllegalArgumentException("Unable to create session, local and remote keys must not be the same."); }
+        // The party with the lowest public key acts as client in the key exchange, so both parties derive the same key
+        Key remotePublic = remoteKey.hasSecret() ? remoteKey.publicCopy() : remoteKey;
+        this._sharedKey = order < 0
+                ? DimeContext.current().getCrypto().generateSharedSecret(localKey, remotePublic, List.of(KeyCapability.ENCRYPT))
+                : DimeContext.current().getCrypto().generateSharedSecret(remotePublic, localKey, List.of(KeyCapability.ENCRYPT));
+        this._isClient = order < 0;
+        this._localId = DimeContext.current().getCrypto().randomBytes(MessageSession.SESSION_ID_LENGTH);
+    }
+
+    /**
+     * Returns the random session id of this party, which must be passed to the other party of the session.
+     * @return The session id.
+     */
+    public byte[] getSessionId() {
+        return _localId.clone();
+    }
+
+    /**
+     * Starts the session, deriving the session key from the shared secret and the session ids of both parties. This
+     * must be called once, before any payloads are sealed or opened.
+     * @param remoteSessionId The session id of the other party, as returned by its {@link #getSessionId()}.
+     * @throws CryptographyException If the session key could not be derived.
+     */
+    public synchronized void start(byte[] remoteSessionId) throws CryptographyException {
+        if (remoteSessionId == null || remoteSessionId.length != MessageSession.SESSION_ID_LENGTH) { throw new IllegalArgumentException("Unable to start session, remote session id must be " + MessageSession.SESSION_ID_LENGTH + " bytes."); }
+        if (Arrays.equals(remoteSessionId, _localId)) { throw new IllegalArgumentException("Unable to start session, remote session id must not be the same as the local session id."); }
+        if (_sessionKey != null) { throw new IllegalStateException("Unable to start session, session already started."); }
+        this._remoteId = remoteSessionId.clone();
+        // A guarded shared key hands out a copy that must be wiped, otherwise these are the bytes held by the key itself,
+        // which may also be cached (SharedSecretCache) and must be left as is
+        boolean isCopy = _sharedKey.getGuardedSecret() != null;
+        byte[] sharedSecret = _sharedKey.getKeyBytes(Claim.KEY);
+        byte[] sessionKey;
+        try {
+            HashContext context = DimeContext.current().getCrypto().newHash(_sharedKey.getCryptoSuiteName());
+            context.update(sharedSecret);
+            context.update(_isClient ? _localId : _remoteId);
+            context.update(_isClient ? _remoteId : _localId);
+            sessionKey = Utility.fromHex(context.finish());
+        } finally {
+            if (isCopy && sharedSecret != null) {
+                Arrays.fill(sharedSecret, (byte) 0);
+            }
+        }
+        this._sessionKey = new Key(List.of(KeyCapability.ENCRYPT), sessionKey, null, _sharedKey.getCryptoSuiteName());
+        Arrays.fill(sessionKey, (byte) 0);
+    }
+
+    /**
+     * Encrypts and attaches a payload to a message, using the session key and the next nonce of the session. The
+     * message may then be signed, as usual.
+     * @param message The message to attach the payload to, must not be signed.
+     * @param payload The payload to encrypt and attach, must not be null or empty.
+     * @throws CryptographyException If something goes wrong.
+     */
+    public void seal(Message message, byte[] payload) throws CryptographyException {
+        if (message == null) { throw new IllegalArgumentException("Unable to seal payload, message must not be null."); }
+        if (payload == null || payload.length == 0) { throw new IllegalArgumentException("Unable to seal payload, payload must not be null or empty."); }
+        Key sessionKey = _sessionKey;
+        if (sessionKey == null) { throw new IllegalStateException("Unable to seal payload, session not started."); }
+        long counter = _sendCounter.incrementAndGet();
+        if (counter < 0) { throw new IllegalStateException("Unable to seal payload, session exhausted."); }
+        message.setPayload(DimeContext.current().getCrypto().encrypt(payload, nonce(_localId, counter), sessionKey));
+    }
+
+    /**
+     * Decrypts the payload of a message sealed by the other party of the session. Payloads must be opened in the order
+     * they were sealed, a payload that is older than, or the same as, the last opened payload is rejected.
+     * @param message The message to open the payload of, must not be null.
+     * @return The decrypted payload.
+     * @throws CryptographyException If decryption fails or if the payload is replayed or out of order.
+     */
+    public synchronized byte[] open(Message message) throws CryptographyException {
+        if (message == null) { throw new IllegalArgumentException("Unable to open payload, message must not be null."); }
+        if (_sessionKey == null) { throw new IllegalStateException("Unable to open payload, session not started."); }
+        byte[] cipherText = message.getPayload();
+        if (cipherText == null || cipherText.length <= MessageSession.NONCE_LENGTH) { throw new CryptographyException("Unable to open payload, no sealed payload found."); }
+        if (Arrays.equals(cipherText, 0, MessageSession.SESSION_ID_LENGTH, _localId, 0, MessageSession.SESSION_ID_LENGTH)) { throw new CryptographyException("Unable to open payload, payload was sealed by this party."); }
+        if (!Arrays.equals(cipherText, 0, MessageSession.SESSION_ID_LENGTH, _remoteId, 0, MessageSession.SESSION_ID_LENGTH)) { throw new CryptographyException("Unable to open payload, payload was sealed in another session."); }
+        long counter = 0;
+        for (int i = MessageSession.SESSION_ID_LENGTH; i < MessageSession.NONCE_LENGTH; i++) {
+            counter = (counter << 8) | (cipherText[i] & 0xFF);
+        }
+        if (counter <= _receiveCounter) { throw new CryptographyException("Unable to open payload, payload is replayed or out of order."); }
+        byte[] payload = DimeContext.current().getCrypto().decrypt(cipherText, _sessionKey);
+        _receiveCounter = counter; // Only advanced once the payload is authenticated
+        return payload;
+    }
+
+    /**
+     * Returns the number of payloads sealed in this session.
+     * @return The number of sealed payloads.
+     */
+    public long getSealedCount() {
+        return _sendCounter.get();
+    }
+
+    /// PRIVATE ///
+
+    private static final int NONCE_LENGTH = 24;
+    private final Key _sharedKey;
+    private final boolean _isClient;
+    private final byte[] _localId;
+    private byte[] _remoteId;
+    private volatile Key _sessionKey;
+    private final AtomicLong _sendCounter = new AtomicLong();
+    private long _receiveCounter = 0;
+
+    /**
+     * Creates a nonce from the session id of the sender (first 16 bytes) and a counter (last 8 bytes, big-endian), this
+     * gives each party, and each session, its own range of nonces.
+     */
+    private static byte[] nonce(byte[] sessionId, long counter) {
+        byte[] nonce = new byte[MessageSession.NONCE_LENGTH];
+        System.arraycopy(sessionId, 0, nonce, 0, MessageSession.SESSION_ID_LENGTH);
+        for (int i = MessageSession.NONCE_LENGTH - 1; i >= MessageSession.SESSION_ID_LENGTH; i--) {
+            nonce[i] = (byte) counter;
+            counter >>>= 8;
+        }
+        return nonce;
+    }
+
+}
@@ -45,7 +45,7 @@ public class Tag extends Item {
      */
     public Tag(UUID issuerId, String context) {
         if (issuerId == null) { throw new IllegalArgumentException("Issuer identifier must not be null."); }
-        setClaimValue(Claim.UID, UUID.randomUUID());
+        setClaimValue(Claim.UID, DimeContext.current().getCrypto().randomUUID());
         setClaimValue(Claim.ISS, issuerId);
         setClaimValue(Claim.CTX, context);
     }
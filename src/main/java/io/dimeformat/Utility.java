@@ -10,7 +10,6 @@
 package io.dimeformat;
 
 import java.nio.charset.StandardCharsets;
-import java.security.SecureRandom;
 import java.time.Instant;
 import java.util.Base64;
 
@@ -20,16 +19,12 @@ public final class Utility {
     /// PUBLIC ///
 
     /**
-     * Generate secure random bytes.
+     * Generate secure random bytes, using the random source set in the crypto of the current context.
      * @param length The number of bytes to generate.
      * @return An array with secure random bytes.
      */
     public static byte[] randomBytes(final int length) {
-        if (length <= 0) { return new byte[0]; }
-        SecureRandom random = new SecureRandom();
-        byte[] bytes = new byte[length];
-        random.nextBytes(bytes);
-        return bytes;
+        return DimeContext.current().getCrypto().randomBytes(length);
     }
 
     /**
@@ -130,16 +125,17 @@ public final class Utility {
      * @return An Instant timestamp
      */
     public static Instant createTimestamp() {
-        Instant now = Dime.getTime();
-        long modifier = Dime.getTimeModifier();
+        DimeContext context = DimeContext.current();
+        Instant now = context.getTime();
+        long modifier = context.getTimeModifier();
         if (modifier == 0) { return now; }
         return now.plusSeconds(modifier);
     }
 
     /**
-     * Will, if {@link Dime#getGracePeriod()} returns a value different from 0, compare two Instant instances using a
-     * grace period. A lower and upper boundary will be calculated from the base time given, the size of this period
-     * will be based on the  grace period. The result given back will be equal to {@link Instant#compareTo(Instant)}.
+     * Will, if {@link DimeContext#getGracePeriod()} of the current context returns a value different from 0, compare two
+     * Instant instances using a grace period. A lower and upper boundary will be calculated from the base time given,
+     * the size of this period will be based on the  grace period. The result given back will be equal to {@link Instant#compareTo(Instant)}.
      * If no grace is set (0), then the two Instant objects will be compared directly.
      * @param baseTime The base time to compare a second Instant instance with.
      * @param otherTime The Instant instance to compare against the given base time.
@@ -147,7 +143,7 @@ public final class Utility {
      */
     public static int gracefulTimestampCompare(Instant baseTime, Instant otherTime) {
         if (baseTime == null || otherTime == null) { return 0; }
-        long gracePeriod = Dime.getGracePeriod();
+        long gracePeriod = DimeContext.current().getGracePeriod();
         if (gracePeriod == 0) {
             return baseTime.compareTo(otherTime);
         }
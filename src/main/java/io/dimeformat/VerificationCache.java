@@ -0,0 +1,249 @@
+//
+//  VerificationCache.java
+//  DiME - Data Identity Message Envelope
+//  A powerful universal data format that is built for secure, and integrity protected communication between trusted
+//  entities in a network.
+//
+//  Released under the MIT licence, see LICENSE for more information.
+//  Copyright (c) 2024 Shift Everywhere AB. All rights reserved.
+//
+package io.dimeformat;
+
+import io.dimeformat.crypto.HashContext;
+import io.dimeformat.enums.Claim;
+import io.dimeformat.exceptions.CryptographyException;
+import io.dimeformat.exceptions.InvalidFormatException;
+import io.dimeformat.keyring.IntegrityState;
+import io.dimeformat.keyring.KeyRing;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A bounded and expiring cache of successful verification results. Entries are keyed by the thumbprint of the
+ * verified item, including its signatures, the name of the key used for verification and a digest of any linked items
+ * provided. When the local key ring is used for verification, the identifier and version of the key ring take the
+ * place of the key name, so any change to the key ring invalidates earlier results, and results are not shared
+ * between contexts using different key rings. Once set using
+ * {@link Dime#setVerificationCache(VerificationCache)}, repeated verifications of the same item will return the cached
+ * integrity state, this then costs one hash of the item instead of a signature verification.
+ * <p>
+ * The cache also memoizes the verification of intermediate identities in trust chains against a trusted identity,
+ * keyed by the thumbprints of both. Intermediate identities are usually shared by many issued identities, verifying
+ * an identity with a trust chain then costs one signature verification, of the identity itself, instead of one for
+ * each link in the chain.
+ * <p>
+ * Only valid results are cached, failed verifications are always made again. A cached result is dropped once the
+ * item, or any identity in a memoized trust chain, expires (or is not yet valid), using the same grace period
+ * ({@link Dime#getGracePeriod()}) as when the dates of items are verified, or once the time to live of the cache has
+ * passed, whichever comes first. Trusted identities and keys in the key ring are not tracked by the cache, so a result
+ * may be used for at most the time to live after a trusted item in the key ring expires. Instances are thread-safe,
+ * and lookups never take a lock.
+ */
+public final class VerificationCache {
+
+    /// PUBLIC ///
+
+    /**
+     * The default maximum number of verification results held in a cache.
+     */
+    public static final int DEFAULT_MAX_ENTRIES = 4096;
+    /**
+     * The default time, in seconds, that a verification result is held in a cache.
+     */
+    public static final long DEFAULT_TIME_TO_LIVE = 60L;
+
+    /**
+     * Creates a cache with {@link #DEFAULT_MAX_ENTRIES} and {@link #DEFAULT_TIME_TO_LIVE}.
+     */
+    public VerificationCache() {
+        this(VerificationCache.DEFAULT_MAX_ENTRIES, VerificationCache.DEFAULT_TIME_TO_LIVE);
+    }
+
+    /**
+     * Creates a cache with the provided limits. When the cache is full the least recently used verification results
+     * will be evicted. Eviction is made in batches, so once it has been full, the cache holds somewhat fewer results
+     * than the maximum (from 1/16 fewer), and the maximum may briefly be exceeded while results are added
+     * concurrently.
+     * @param maxEntries The maximum number of verification results to hold, must be 1 or more.
+     * @param timeToLive The number of seconds that a verification result may be held in the cache, must be 1 or more.
+     */
+    public VerificationCache(int maxEntries, long timeToLive) {
+        if (maxEntries < 1) { throw new IllegalArgumentException("Unable to create cache, maximum number of entries must be 1 or more."); }
+        if (timeToLive < 1) { throw new IllegalArgumentException("Unable to create cache, time to live must be 1 second or more."); }
+        this._timeToLive = timeToLive * 1_000_000_000L;
+        this._maxEntries = maxEntries;
+        this._evictTo = maxEntries - maxEntries / VerificationCache.EVICTION_BATCH_DIVISOR;
+    }
+
+    /**
+     * Returns the number of verification results currently held in the cache, this may include expired entries that
+     * have not yet been evicted.
+     * @return The number of entries.
+     */
+    public int size() {
+        return _entries.size();
+    }
+
+    /**
+     * Removes all verification results from the cache.
+     */
+    public void clear() {
+        _entries.clear();
+    }
+
+    /// PACKAGE-PRIVATE ///
+
+    /**
+     * Returns the identifier of a verification, or null if the item could not be hashed.
+     */
+    static String identifier(Item item, Key verifyKey, List<Item> linkedItems) {
+        try {
+            HashContext context = DimeContext.current().getCrypto().newHash();
+            item.hashEncoded(context, true);
+            if (linkedItems != null) {
+                Item.updateHash(context, VerificationCache.LINKED);
+                for (Item linkedItem: linkedItems) {
+                    Item.updateHash(context, Dime.SECTION_DELIMITER);
+                    linkedItem.hashEncoded(context, true);
+                }
+            }
+            String verifier = verifyKey != null ? verifyKey.getName() : VerificationCache.keyRingVerifier(DimeContext.current().getKeyRing());
+            return context.finish() + VerificationCache.SEPARATOR + verifier;
+        } catch (InvalidFormatException | CryptographyException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the identifier of the verification of an identity in a trust chain against a trusted identity, or null
+     * if the identities could not be hashed.
+     */
+    static String chainIdentifier(Identity identity, Identity trustedIdentity) {
+        try {
+            HashContext context = DimeContext.current().getCrypto().newHash();
+            identity.hashEncoded(context, true);
+            Item.updateHash(context, VerificationCache.TRUST_CHAIN);
+            trustedIdentity.hashEncoded(context, true);
+            return context.finish();
+        } catch (InvalidFormatException | CryptographyException e) {
+            return null;
+        }
+    }
+
+    IntegrityState get(String id) {
+        if (id == null) { return null; }
+        Entry entry = _entries.get(id);
+        if (entry == null) { return null; }
+        long time = System.nanoTime();
+        if (time - entry.expires > 0) {
+            _entries.remove(id, entry);
+            return null;
+        }
+        if (entry.issuedAt != null || entry.expiresAt != null) {
+            Instant now = Utility.createTimestamp();
+            if (Utility.gracefulTimestampCompare(entry.issuedAt, now) > 0 || Utility.gracefulTimestampCompare(entry.expiresAt, now) < 0) {
+                _entries.remove(id, entry);
+                return null;
+            }
+        }
+        entry.accessed = time;
+        return entry.state;
+    }
+
+    void put(String id, Item item, IntegrityState state) {
+        if (id == null || !state.isValid()) { return; }
+        long now = System.nanoTime();
+        put(id, new Entry(state, item.getClaim(Claim.IAT), item.getClaim(Claim.EXP), now + _timeToLive, now));
+    }
+
+    /**
+     * Caches the verification of an identity in a trust chain. The result is valid while all identities from the
+     * identity up to, and including, the trusted identity are valid.
+     */
+    void putChain(String id, Identity identity, Identity trustedIdentity, IntegrityState state) {
+        if (id == null || !state.isValid()) { return; }
+        Instant issuedAt = trustedIdentity.getClaim(Claim.IAT);
+        Instant expiresAt = trustedIdentity.getClaim(Claim.EXP);
+        UUID trustedId = trustedIdentity.getClaim(Claim.SUB);
+        for (Identity link = identity; link != null && !trustedId.equals(link.getClaim(Claim.SUB)); link = link.getTrustChain()) {
+            Instant linkIssuedAt = link.getClaim(Claim.IAT);
+            Instant linkExpiresAt = link.getClaim(Claim.EXP);
+            if (linkIssuedAt != null && (issuedAt == null || linkIssuedAt.isAfter(issuedAt))) { issuedAt = linkIssuedAt; }
+            if (linkExpiresAt != null && (expiresAt == null || linkExpiresAt.isBefore(expiresAt))) { expiresAt = linkExpiresAt; }
+        }
+        long now = System.nanoTime();
+        put(id, new Entry(state, issuedAt, expiresAt, now + _timeToLive, now));
+    }
+
+    /// PRIVATE ///
+
+    private static final String SEPARATOR = "|";
+    private static final String LINKED = "+";
+    private static final String KEY_RING = "*";
+    private static final String TRUST_CHAIN = "#";
+    private static final int EVICTION_BATCH_DIVISOR = 16;
+
+    private final long _timeToLive;
+    private final int _maxEntries;
+    private final int _evictTo;
+    private final ConcurrentHashMap<String, Entry> _entries = new ConcurrentHashMap<>();
+    private final Object _evictionLock = new Object();
+
+    /**
+     * Identifies a key ring at its current version, the version alone is not enough as a cache may be shared by
+     * contexts that each use their own key ring.
+     */
+    private static String keyRingVerifier(KeyRing keyRing) {
+        return VerificationCache.KEY_RING + keyRing.getId() + VerificationCache.SEPARATOR + keyRing.getVersion();
+    }
+
+    private static final class Entry {
+        private final IntegrityState state;
+        private final Instant issuedAt;
+        private final Instant expiresAt;
+        private final long expires;
+        private volatile long accessed; // Time of the last lookup, used to find the least recently used entries
+
+        private Entry(IntegrityState state, Instant issuedAt, Instant expiresAt, long expires, long accessed) {
+            this.state = state;
+            this.issuedAt = issuedAt;
+            this.expiresAt = expiresAt;
+            this.expires = expires;
+            this.accessed = accessed;
+        }
+    }
+
+    private void put(String id, Entry entry) {
+        _entries.put(id, entry);
+        if (_entries.size() > _maxEntries) {
+            evict();
+        }
+    }
+
+    /**
+     * Removes all expired entries, and then the least recently used entries until no more than the eviction target
+     * remain. Only called when adding to a full cache, lookups are never blocked by this.
+     */
+    private void evict() {
+        synchronized (_evictionLock) {
+            if (_entries.size() <= _maxEntries) { return; } // Already evicted by another thread
+            long time = System.nanoTime();
+            _entries.values().removeIf(entry -> time - entry.expires > 0);
+            long[] accessed = new long[_entries.size()];
+            int count = 0;
+            for (Entry entry : _entries.values()) {
+                if (count == accessed.length) { break; } // Added concurrently
+                accessed[count++] = entry.accessed;
+            }
+            int excess = count - _evictTo;
+            if (excess <= 0) { return; }
+            Arrays.sort(accessed, 0, count);
+            long threshold = accessed[excess - 1];
+            _entries.values().removeIf(entry -> entry.accessed - threshold <= 0);
+        }
+    }
+
+}
@@ -13,9 +13,18 @@ import io.dimeformat.*;
 import io.dimeformat.enums.Claim;
 import io.dimeformat.exceptions.CryptographyException;
 import io.dimeformat.enums.KeyCapability;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.UUID;
+import java.util.function.Supplier;
 
 /**
  * Cryptographic helper methods, which also abstracts the rest of the implementation from any 
@@ -29,29 +38,34 @@ public final class Crypto {
      * Default constructor.
      */
     public Crypto() {
+        // Legacy suites are rarely used and only created when first needed
+        _lazySuiteMap = Map.of(LegacySuite.LEGACY_DSC_SUITE, () -> new LegacySuite(LegacySuite.LEGACY_DSC_SUITE),
+                LegacySuite.LEGACY_STN_SUITE, () -> new LegacySuite(LegacySuite.LEGACY_STN_SUITE));
         registerCryptoSuite(new NaClSuite(NaClSuite.SUITE_NAME));
-        registerCryptoSuite(new LegacySuite(LegacySuite.LEGACY_DSC_SUITE));
-        registerCryptoSuite(new LegacySuite(LegacySuite.LEGACY_STN_SUITE));
+        registerJdkSuite();
         _defaultSuiteName = NaClSuite.SUITE_NAME;
     }
 
     /**
      * Set the default cryptographic suite name. This will be used when no suite is specified for cryptographic
      * operations. It can be queried through {@link Crypto#getDefaultSuiteName()}. This will be set by default to
-     * Dime Standard Cryptographic Suite (STN).
+     * Dime Standard Cryptographic Suite (STN). On Java 15 or later the suite "JDK" is also available, which implements
+     * the same algorithms as "NaCl" using the providers built into the JDK, instead of a native library.
      * @param name The name of the suite to set as the default.
      */
-    public synchronized void setDefaultSuiteName(String name) {
-        if (_suiteMap == null) { throw new IllegalStateException("Unable to set default cryptographic suite name, no suites registered."); }
-        if (!_suiteMap.containsKey(name)) { throw new IllegalArgumentException("No cryptographic suite registered for name: " + name); }
-        _defaultSuiteName = name;
+    public void setDefaultSuiteName(String name) {
+        synchronized (_registrationLock) {
+            if (_suiteMap.isEmpty() && _lazySuiteMap.isEmpty()) { throw new IllegalStateException("Unable to set default cryptographic suite name, no suites registered."); }
+            if (!hasCryptoSuite(name)) { throw new IllegalArgumentException("No cryptographic suite registered for name: " + name); }
+            _defaultSuiteName = name;
+        }
     }
 
     /**
      * Returns the name of the cryptographic suite that is set as the default.
      * @return Name of default cryptographic suite.
      */
-    public synchronized String getDefaultSuiteName() {
+    public String getDefaultSuiteName() {
         return _defaultSuiteName;
     }
 
@@ -76,10 +90,13 @@ public final class Crypto {
      */
     public Signature generateSignature(Item item, Key key) throws CryptographyException {
         if (item == null) { throw new IllegalArgumentException("Unable to generate signature, item to sign must not be null."); }
-        if (key == null || key.getSecret() == null) { throw new IllegalArgumentException("Unable to generate signature, key or secret key must not be null."); }
+        if (key == null || !key.hasSecret()) { throw new IllegalArgumentException("Unable to generate signature, key or secret key must not be null."); }
         if (!key.hasCapability(KeyCapability.SIGN)) { throw new IllegalArgumentException("Unable to generate signature, provided key does not specify 'SIGN' capability."); }
         ICryptoSuite impl = getCryptoSuite(key.getCryptoSuiteName());
-        byte[] bytes = impl.generateSignature(item, key);
+        CryptoMetrics metrics = _metrics;
+        byte[] bytes = metrics == null
+                ? impl.generateSignature(item, key)
+                : measure(metrics, impl, CryptoOperation.SIGN, signedLength(item), () -> impl.generateSignature(item, key));
         String name = item.isLegacy() ? null : generateKeyName(key);
         return new Signature(bytes, name);
     }
@@ -98,9 +115,21 @@ public final class Crypto {
         if (key == null || key.getPublic() == null) { throw new IllegalArgumentException("Unable to verify signature, key or public key must not be null."); }
         if (!key.hasCapability(KeyCapability.SIGN)) { throw new IllegalArgumentException("Unable to verify signature, provided key does not specify 'SIGN' capability."); }
         ICryptoSuite impl = getCryptoSuite(key.getCryptoSuiteName());
-        return impl.verifySignature(item,
-                signature.getBytes(),
-                key);
+        CryptoMetrics metrics = _metrics;
+        if (metrics == null) {
+            return impl.verifySignature(item,
+                    signature.getBytes(),
+                    key);
+        }
+        long bytes = signedLength(item);
+        long start = System.nanoTime();
+        boolean verified = false;
+        try {
+            verified = impl.verifySignature(item, signature.getBytes(), key);
+            return verified;
+        } finally {
+            metrics.record(impl.getName(), CryptoOperation.VERIFY, bytes, verified, System.nanoTime() - start);
+        }
     }
 
     /**
@@ -124,7 +153,9 @@ public final class Crypto {
     public Key generateKey(List<KeyCapability> capabilities, String suiteName) throws CryptographyException {
         if (capabilities == null || capabilities.isEmpty()) { throw new CryptographyException("Key usage must not be null or empty."); }
         ICryptoSuite impl = getCryptoSuite(suiteName);
-        return impl.generateKey(capabilities);
+        CryptoMetrics metrics = _metrics;
+        if (metrics == null) { return impl.generateKey(capabilities); }
+        return measure(metrics, impl, CryptoOperation.GENERATE_KEY, 0, () -> impl.generateKey(capabilities));
     }
 
     /**
@@ -141,7 +172,77 @@ public final class Crypto {
         if (!clientKey.hasCapability(KeyCapability.EXCHANGE) || !serverKey.hasCapability(KeyCapability.EXCHANGE)) { throw new IllegalArgumentException("Provided keys do not specify EXCHANGE usage."); }
         if (!clientKey.getCryptoSuiteName().equals(serverKey.getCryptoSuiteName())) { throw  new IllegalArgumentException(("Client key and server key are not generated using the same cryptographic suite")); }
         ICryptoSuite impl = getCryptoSuite(clientKey.getCryptoSuiteName());
-        return impl.generateSharedSecret(clientKey, serverKey, capabilities);
+        SharedSecretCache cache = _sharedSecretCache;
+        if (cache == null) {
+            return exchange(impl, clientKey, serverKey, capabilities);
+        }
+        Key sharedKey = cache.get(clientKey, serverKey, capabilities);
+        if (sharedKey == null) {
+            sharedKey = exchange(impl, clientKey, serverKey, capabilities);
+            cache.put(clientKey, serverKey, capabilities, sharedKey);
+        }
+        return sharedKey;
+    }
+
+    /**
+     * Derives a key with capability ENCRYPT from a master key, a subkey identifier and a context. The same master key,
+     * subkey identifier and context will always derive the same key, so keys for many scopes (i.e. tenants or objects)
+     * may be recomputed when needed instead of being generated and stored. Different subkey identifiers, or contexts,
+     * derive independent keys. For NaCl, the context may be at most 8 bytes long (as UTF-8). The unique id (uid) of a
+     * derived key is computed from the unique id of the master key, the subkey identifier and the context, so it is the
+     * same each time the key is derived.
+     * @param masterKey The master key to derive from, must have capability ENCRYPT.
+     * @param subkeyId The identifier of the key to derive, treated as an unsigned value.
+     * @param context The context of the key to derive, must not be null or empty.
+     * @return The derived key.
+     * @throws CryptographyException If anything goes wrong.
+     */
+    public Key deriveKey(Key masterKey, long subkeyId, String context) throws CryptographyException {
+        if (masterKey == null || !masterKey.hasSecret()) { throw new IllegalArgumentException("Unable to derive key, master key or its secret key must not be null."); }
+        if (context == null || context.isEmpty()) { throw new IllegalArgumentException("Unable to derive key, context must not be null or empty."); }
+        if (!masterKey.hasCapability(KeyCapability.ENCRYPT)) { throw new CryptographyException("Provided key does not specify ENCRYPT usage."); }
+        ICryptoSuite impl = getCryptoSuite(masterKey.getCryptoSuiteName());
+        CryptoMetrics metrics = _metrics;
+        Key key = metrics == null ? impl.deriveKey(masterKey, subkeyId, context, List.of(KeyCapability.ENCRYPT))
+                : measure(metrics, impl, CryptoOperation.DERIVE_KEY, 0, () -> impl.deriveKey(masterKey, subkeyId, context, List.of(KeyCapability.ENCRYPT)));
+        key.putClaim(Claim.UID, Crypto.derivedKeyId(masterKey, subkeyId, context));
+        return key;
+    }
+
+    /**
+     * Sets a cache that will hold shared secrets generated through
+     * {@link #generateSharedSecret(Key, Key, List)}. This avoids repeating the key exchange when the same keys are used
+     * multiple times, i.e. when receiving many messages from the same peer. Set to null to turn caching off (default).
+     * @param cache The cache to use, may be null.
+     */
+    public void setSharedSecretCache(SharedSecretCache cache) {
+        _sharedSecretCache = cache;
+    }
+
+    /**
+     * Returns the cache used for shared secrets, if any is set.
+     * @return The cache in use, or null if none is set.
+     */
+    public SharedSecretCache getSharedSecretCache() {
+        return _sharedSecretCache;
+    }
+
+    /**
+     * Sets a pool of pre-generated ephemeral keys, used by {@link io.dimeformat.Message} when a payload is encrypted
+     * for a key with capability EXCHANGE. This moves key generation away from the sending path. The pool is used for
+     * keys of the same cryptographic suite as the pool only. Set to null to generate keys directly (default).
+     * @param pool The pool to use, may be null.
+     */
+    public void setEphemeralKeyPool(EphemeralKeyPool pool) {
+        _ephemeralKeyPool = pool;
+    }
+
+    /**
+     * Returns the pool of pre-generated ephemeral keys, if any is set.
+     * @return The pool in use, or null if none is set.
+     */
+    public EphemeralKeyPool getEphemeralKeyPool() {
+        return _ephemeralKeyPool;
     }
 
     /**
@@ -156,7 +257,31 @@ public final class Crypto {
         if (key == null) { throw new IllegalArgumentException("Key must not be null."); }
         if (!key.hasCapability(KeyCapability.ENCRYPT)) { throw new CryptographyException("Provided key does not specify ENCRYPT usage."); }
         ICryptoSuite impl = getCryptoSuite(key.getCryptoSuiteName());
-        return impl.encrypt(plainText, key);
+        CryptoMetrics metrics = _metrics;
+        if (metrics == null) { return impl.encrypt(plainText, key); }
+        return measure(metrics, impl, CryptoOperation.ENCRYPT, plainText.length, () -> impl.encrypt(plainText, key));
+    }
+
+    /**
+     * Encrypts a plain text byte array using the provided key and nonce, instead of a random nonce. This is intended
+     * for protocols that use counter based nonces, like {@link io.dimeformat.MessageSession}. A nonce must never be
+     * used more than once with the same key, doing so will break the confidentiality of the encrypted data. The
+     * cipher text is decrypted using {@link #decrypt(byte[], Key)}.
+     * @param plainText The byte array to encrypt.
+     * @param nonce The nonce to use, must be of the length required by the cryptographic suite (24 bytes for NaCl).
+     * @param key The key to use for the encryption.
+     * @return The encrypted cipher text.
+     * @throws CryptographyException If something goes wrong.
+     */
+    public byte[] encrypt(byte[] plainText, byte[] nonce, Key key) throws CryptographyException {
+        if (plainText == null || plainText.length == 0) { throw new IllegalArgumentException("Plain text to encrypt must not be null and not have a length of 0."); }
+        if (nonce == null) { throw new IllegalArgumentException("Nonce must not be null."); }
+        if (key == null) { throw new IllegalArgumentException("Key must not be null."); }
+        if (!key.hasCapability(KeyCapability.ENCRYPT)) { throw new CryptographyException("Provided key does not specify ENCRYPT usage."); }
+        ICryptoSuite impl = getCryptoSuite(key.getCryptoSuiteName());
+        CryptoMetrics metrics = _metrics;
+        if (metrics == null) { return impl.encrypt(plainText, nonce, key); }
+        return measure(metrics, impl, CryptoOperation.ENCRYPT, plainText.length, () -> impl.encrypt(plainText, nonce, key));
     }
 
     /**
@@ -171,7 +296,86 @@ public final class Crypto {
         if (key == null) { throw new IllegalArgumentException("Key must not be null."); }
         if (!key.hasCapability(KeyCapability.ENCRYPT)) { throw new CryptographyException("Provided key does not specify ENCRYPT usage."); }
         ICryptoSuite impl = getCryptoSuite(key.getCryptoSuiteName());
-        return impl.decrypt(cipherText, key);
+        CryptoMetrics metrics = _metrics;
+        if (metrics == null) { return impl.decrypt(cipherText, key); }
+        return measure(metrics, impl, CryptoOperation.DECRYPT, cipherText.length, () -> impl.decrypt(cipherText, key));
+    }
+
+    /**
+     * Encrypts the remaining bytes of a buffer using the provided key, writing the cipher text to the output buffer.
+     * The cipher text has the same format as from {@link #encrypt(byte[], Key)}, i.e. prefixed by the nonce. Heap and
+     * direct buffers are supported, suites may work directly on direct buffers without copying. The position of each
+     * buffer is advanced by the number of bytes consumed or written, on failure both positions are left unchanged.
+     * @param in The buffer holding the plain text to encrypt.
+     * @param out The buffer to write the cipher text to, must have space for the plain text and the overhead of the
+     *            cryptographic suite (40 bytes for NaCl).
+     * @param key The key to use for the encryption.
+     * @return The number of bytes written to the output buffer.
+     * @throws CryptographyException If something goes wrong.
+     */
+    public int encrypt(ByteBuffer in, ByteBuffer out, Key key) throws CryptographyException {
+        if (in == null || !in.hasRemaining()) { throw new IllegalArgumentException("Plain text to encrypt must not be null and not have a length of 0."); }
+        if (out == null) { throw new IllegalArgumentException("Output buffer must not be null."); }
+        if (key == null) { throw new IllegalArgumentException("Key must not be null."); }
+        if (!key.hasCapability(KeyCapability.ENCRYPT)) { throw new CryptographyException("Provided key does not specify ENCRYPT usage."); }
+        ICryptoSuite impl = getCryptoSuite(key.getCryptoSuiteName());
+        CryptoMetrics metrics = _metrics;
+        if (metrics == null) { return impl.encrypt(in, out, key); }
+        return measure(metrics, impl, CryptoOperation.ENCRYPT, in.remaining(), () -> impl.encrypt(in, out, key));
+    }
+
+    /**
+     * Decrypts the remaining bytes of a buffer, holding cipher text from {@link #encrypt(ByteBuffer, ByteBuffer, Key)}
+     * or {@link #encrypt(byte[], Key)}, using the provided key, writing the plain text to the output buffer. Heap and
+     * direct buffers are supported, suites may work directly on direct buffers without copying. The position of each
+     * buffer is advanced by the number of bytes consumed or written, on failure both positions are left unchanged.
+     * @param in The buffer holding the cipher text to decrypt.
+     * @param out The buffer to write the plain text to, must have enough space remaining.
+     * @param key The key to use for the decryption.
+     * @return The number of bytes written to the output buffer.
+     * @throws CryptographyException If something goes wrong.
+     */
+    public int decrypt(ByteBuffer in, ByteBuffer out, Key key) throws CryptographyException {
+        if (in == null || !in.hasRemaining()) { throw new IllegalArgumentException("Cipher text to decrypt must not be null and not have a length of 0."); }
+        if (out == null) { throw new IllegalArgumentException("Output buffer must not be null."); }
+        if (key == null) { throw new IllegalArgumentException("Key must not be null."); }
+        if (!key.hasCapability(KeyCapability.ENCRYPT)) { throw new CryptographyException("Provided key does not specify ENCRYPT usage."); }
+        ICryptoSuite impl = getCryptoSuite(key.getCryptoSuiteName());
+        CryptoMetrics metrics = _metrics;
+        if (metrics == null) { return impl.decrypt(in, out, key); }
+        return measure(metrics, impl, CryptoOperation.DECRYPT, in.remaining(), () -> impl.decrypt(in, out, key));
+    }
+
+    /**
+     * Wraps an output stream so that any data written to the returned stream is encrypted, in chunks, using the
+     * provided key. The returned stream must be closed to complete the encryption.
+     * @param out The output stream that should receive the cipher text.
+     * @param key The key to use for the encryption.
+     * @return An output stream accepting plain text.
+     * @throws CryptographyException If something goes wrong.
+     */
+    public OutputStream encryptionStream(OutputStream out, Key key) throws CryptographyException {
+        if (out == null) { throw new IllegalArgumentException("Output stream must not be null."); }
+        if (key == null) { throw new IllegalArgumentException("Key must not be null."); }
+        if (!key.hasCapability(KeyCapability.ENCRYPT)) { throw new CryptographyException("Provided key does not specify ENCRYPT usage."); }
+        ICryptoSuite impl = getCryptoSuite(key.getCryptoSuiteName());
+        return impl.newEncryptionStream(out, key);
+    }
+
+    /**
+     * Wraps an input stream, holding cipher text created by {@link #encryptionStream(OutputStream, Key)}, so that any
+     * data read from the returned stream is decrypted using the provided key.
+     * @param in The input stream that holds the cipher text.
+     * @param key The key to use for the decryption.
+     * @return An input stream returning the plain text.
+     * @throws CryptographyException If something goes wrong.
+     */
+    public InputStream decryptionStream(InputStream in, Key key) throws CryptographyException {
+        if (in == null) { throw new IllegalArgumentException("Input stream must not be null."); }
+        if (key == null) { throw new IllegalArgumentException("Key must not be null."); }
+        if (!key.hasCapability(KeyCapability.ENCRYPT)) { throw new CryptographyException("Provided key does not specify ENCRYPT usage."); }
+        ICryptoSuite impl = getCryptoSuite(key.getCryptoSuiteName());
+        return impl.newDecryptionStream(in, key);
     }
 
     /**
@@ -193,7 +397,92 @@ public final class Crypto {
      */
     public String generateHash(byte[] data, String suiteName) throws CryptographyException {
         ICryptoSuite crypto = getCryptoSuite(suiteName);
-        return crypto.generateHash(data);
+        CryptoMetrics metrics = _metrics;
+        if (metrics == null) { return crypto.generateHash(data); }
+        return measure(metrics, crypto, CryptoOperation.HASH, data != null ? data.length : 0, () -> crypto.generateHash(data));
+    }
+
+    /**
+     * Starts an incremental secure hash operation, where data may be provided in segments. This will use the
+     * cryptographic suite that is set as the default.
+     * @return A new hash context.
+     * @throws CryptographyException If something goes wrong.
+     */
+    public HashContext newHash() throws CryptographyException {
+        return newHash(getDefaultSuiteName());
+    }
+
+    /**
+     * Starts an incremental secure hash operation, where data may be provided in segments. The resulting hash will be
+     * the same as from {@link #generateHash(byte[], String)} for the same data.
+     * @param suiteName The cryptographic suite that should be used to generate the hash.
+     * @return A new hash context.
+     * @throws CryptographyException If something goes wrong.
+     */
+    public HashContext newHash(String suiteName) throws CryptographyException {
+        ICryptoSuite crypto = getCryptoSuite(suiteName);
+        CryptoMetrics metrics = _metrics;
+        HashContext context = crypto.newHash();
+        return metrics == null ? context : new MeasuredHashContext(context, metrics, crypto.getName());
+    }
+
+    /**
+     * Sets a listener that is notified after each cryptographic operation performed through a cryptographic suite,
+     * with the suite name, operation, number of bytes, outcome and duration. This covers signing, verification, key
+     * generation, key exchange, key derivation, encryption, decryption and hashing of byte arrays and buffers (streams
+     * and incremental hashing are not covered). Set to null to turn metrics off (default), operations are then not
+     * timed at all.
+     * @param metrics The listener to use, may be null.
+     */
+    public void setMetrics(CryptoMetrics metrics) {
+        _metrics = metrics;
+    }
+
+    /**
+     * Returns the listener notified of cryptographic operations, if any is set.
+     * @return The listener in use, or null if none is set.
+     */
+    public CryptoMetrics getMetrics() {
+        return _metrics;
+    }
+
+    /**
+     * Sets the source of secure random bytes, used for nonces, unique identifiers and key material. By default,
+     * {@link RandomSource#nativeSource()} is used, except by the JDK cryptographic suite, and when the JDK suite is set
+     * as the default suite, which use {@link RandomSource#threadLocalSecureRandom()} unless a source is set explicitly.
+     * @param source The random source to use, must not be null.
+     */
+    public void setRandomSource(RandomSource source) {
+        if (source == null) { throw new IllegalArgumentException("Unable to set random source, source must not be null."); }
+        _randomSource = source;
+    }
+
+    /**
+     * Returns the source of secure random bytes in use.
+     * @return The random source.
+     */
+    public RandomSource getRandomSource() {
+        RandomSource source = _randomSource;
+        if (source != null) { return source; }
+        // A JDK only deployment should never need to load the native library
+        return Crypto.JDK_SUITE_NAME.equals(_defaultSuiteName) ? Crypto.SECURE_RANDOM_SOURCE : Crypto.DEFAULT_RANDOM_SOURCE;
+    }
+
+    /**
+     * Generates secure random bytes using the random source set.
+     * @param length The number of bytes to generate.
+     * @return An array with secure random bytes.
+     */
+    public byte[] randomBytes(int length) {
+        return getRandomSource().randomBytes(length);
+    }
+
+    /**
+     * Generates a random UUID using the random source set.
+     * @return A random UUID.
+     */
+    public UUID randomUUID() {
+        return getRandomSource().randomUUID();
     }
 
     /**
@@ -224,17 +513,18 @@ public final class Crypto {
 
     /**
      * Registers a cryptographic suite. If a cryptographic suite is already register with the same name as the provided
-     * cryptographic suite then IllegalArgumentException will be thrown.
+     * cryptographic suite then IllegalArgumentException will be thrown. Registration may safely be done at run-time,
+     * while other threads are using already registered suites.
      * @param impl The implementation instance of ICryptoSuite.
      */
     public void registerCryptoSuite(ICryptoSuite impl) {
         if (impl == null) { throw new IllegalArgumentException("Instance of ICrypto implementation must not be null."); }
-        if (_suiteMap == null) {
-            _suiteMap = new HashMap<>();
-        } else if (_suiteMap.containsKey(impl.getName())) {
-            throw new IllegalArgumentException("Cryptographic suite already exists with name: " + impl.getName());
+        synchronized (_registrationLock) {
+            if (hasCryptoSuite(impl.getName())) { throw new IllegalArgumentException("Cryptographic suite already exists with name: " + impl.getName()); }
+            HashMap<String, ICryptoSuite> suiteMap = new HashMap<>(_suiteMap);
+            suiteMap.put(impl.getName(), impl);
+            _suiteMap = Collections.unmodifiableMap(suiteMap);
         }
-        _suiteMap.put(impl.getName(), impl);
     }
 
     /**
@@ -243,29 +533,196 @@ public final class Crypto {
      * @return True if supported, false if not.
      */
     public boolean hasCryptoSuite(String name) {
-        if (_suiteMap == null) { return false; }
-        return _suiteMap.containsKey(name);
+        if (name == null) { return false; }
+        return _suiteMap.containsKey(name) || _lazySuiteMap.containsKey(name);
     }
 
     /**
-     * Returns a set of the names of all registered cryptographic suites.
+     * Returns a set of the names of all registered cryptographic suites. The returned set is a snapshot and will not
+     * reflect suites registered later on.
      * @return Set of registered cryptographic suites, names only.
      */
     public Set<String> allCryptoSuites() {
-        if (_suiteMap == null) { return null; }
-        return _suiteMap.keySet();
+        Map<String, ICryptoSuite> suiteMap = _suiteMap;
+        if (suiteMap.isEmpty() && _lazySuiteMap.isEmpty()) { return null; }
+        Set<String> names = new HashSet<>(suiteMap.keySet());
+        names.addAll(_lazySuiteMap.keySet());
+        return Collections.unmodifiableSet(names);
+    }
+
+    /// PACKAGE-PRIVATE ///
+
+    /**
+     * Returns the random source set through {@link #setRandomSource(RandomSource)}, or null if the default source is
+     * used. Used by suites that have a default source of their own.
+     */
+    RandomSource getExplicitRandomSource() {
+        return _randomSource;
     }
 
     /// PRIVATE ///
 
-    private HashMap<String, ICryptoSuite> _suiteMap;
-    private String _defaultSuiteName;
+    // Copy-on-write, the map is replaced (never modified) on registration so that lookups need no locking
+    private volatile Map<String, ICryptoSuite> _suiteMap = Collections.emptyMap();
+    private volatile String _defaultSuiteName;
+    private final Map<String, Supplier<ICryptoSuite>> _lazySuiteMap;
+    private final Object _registrationLock = new Object();
+    private volatile SharedSecretCache _sharedSecretCache;
+    private volatile EphemeralKeyPool _ephemeralKeyPool;
+    private volatile RandomSource _randomSource; // Null until set explicitly
+    private volatile CryptoMetrics _metrics;
+
+    private static final RandomSource DEFAULT_RANDOM_SOURCE = RandomSource.nativeSource();
+    private static final RandomSource SECURE_RANDOM_SOURCE = RandomSource.threadLocalSecureRandom();
+    private static final String JDK_SUITE_NAME = "JDK";
+    private static final String JDK_SUITE_CLASS = "io.dimeformat.crypto.JdkSuite";
+    private static final int JDK_SUITE_MIN_VERSION = 15;
+
+    /**
+     * A call to a cryptographic suite, that is to be measured.
+     */
+    @FunctionalInterface
+    private interface SuiteCall<T> {
+        T call() throws CryptographyException;
+    }
+
+    private static <T> T measure(CryptoMetrics metrics, ICryptoSuite impl, CryptoOperation operation, long bytes, SuiteCall<T> call) throws CryptographyException {
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            T result = call.call();
+            success = true;
+            return result;
+        } finally {
+            metrics.record(impl.getName(), operation, bytes, success, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Returns the length of the data covered by a signature of an item, which is the item encoded without any attached
+     * signatures (this is what the thumbprint that gets signed is generated from).
+     */
+    private static long signedLength(Item item) {
+        return item.encodedLength(false);
+    }
+
+    /**
+     * Records a hash operation once it is finished, or has failed. The duration is the time spent within the hash
+     * context, not the time between its creation and completion.
+     */
+    private static final class MeasuredHashContext implements HashContext {
+
+        private final HashContext _context;
+        private final CryptoMetrics _metrics;
+        private final String _suiteName;
+        private long _bytes;
+        private long _duration;
+        private boolean _recorded;
+
+        private MeasuredHashContext(HashContext context, CryptoMetrics metrics, String suiteName) {
+            this._context = context;
+            this._metrics = metrics;
+            this._suiteName = suiteName;
+        }
+
+        @Override
+        public void update(ByteBuffer data) throws CryptographyException {
+            int length = data.remaining();
+            long start = System.nanoTime();
+            boolean success = false;
+            try {
+                _context.update(data);
+                success = true;
+            } finally {
+                measured(length, success, start);
+            }
+        }
+
+        @Override
+        public void update(byte[] data) throws CryptographyException {
+            long start = System.nanoTime();
+            boolean success = false;
+            try {
+                _context.update(data);
+                success = true;
+            } finally {
+                measured(data.length, success, start);
+            }
+        }
+
+        @Override
+        public String finish() throws CryptographyException {
+            long start = System.nanoTime();
+            boolean success = false;
+            try {
+                String hash = _context.finish();
+                success = true;
+                return hash;
+            } finally {
+                _duration += System.nanoTime() - start;
+                record(success);
+            }
+        }
+
+        private void measured(int length, boolean success, long start) {
+            _duration += System.nanoTime() - start;
+            if (success) {
+                _bytes += length;
+            } else {
+                record(false);
+            }
+        }
+
+        private void record(boolean success) {
+            if (_recorded) { return; }
+            _recorded = true;
+            _metrics.record(_suiteName, CryptoOperation.HASH, _bytes, success, _duration);
+        }
+
+    }
+
+    private Key exchange(ICryptoSuite impl, Key clientKey, Key serverKey, List<KeyCapability> capabilities) throws CryptographyException {
+        CryptoMetrics metrics = _metrics;
+        if (metrics == null) { return impl.generateSharedSecret(clientKey, serverKey, capabilities); }
+        return measure(metrics, impl, CryptoOperation.KEY_EXCHANGE, 0, () -> impl.generateSharedSecret(clientKey, serverKey, capabilities));
+    }
+
+    private void registerJdkSuite() {
+        // Only available on Java 15 or later, where the class is loaded from the versioned part of the jar
+        if (Runtime.version().feature() < Crypto.JDK_SUITE_MIN_VERSION) { return; }
+        try {
+            Class<?> suiteClass = Class.forName(Crypto.JDK_SUITE_CLASS);
+            registerCryptoSuite((ICryptoSuite) suiteClass.getDeclaredConstructor(String.class).newInstance(Crypto.JDK_SUITE_NAME));
+        } catch (ReflectiveOperationException | LinkageError e) { /* ignored, suite not available */ }
+    }
+
+    private static UUID derivedKeyId(Key masterKey, long subkeyId, String context) {
+        String name = masterKey.getClaim(Claim.UID) + "." + Long.toUnsignedString(subkeyId) + "." + context;
+        return UUID.nameUUIDFromBytes(name.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private ICryptoSuite registerLazyCryptoSuite(String name) {
+        synchronized (_registrationLock) {
+            ICryptoSuite impl = _suiteMap.get(name);
+            if (impl == null) {
+                impl = _lazySuiteMap.get(name).get();
+                HashMap<String, ICryptoSuite> suiteMap = new HashMap<>(_suiteMap);
+                suiteMap.put(name, impl);
+                _suiteMap = Collections.unmodifiableMap(suiteMap);
+            }
+            return impl;
+        }
+    }
 
     private ICryptoSuite getCryptoSuite(String name) {
-        if (_suiteMap == null || _suiteMap.isEmpty()) {
+        Map<String, ICryptoSuite> suiteMap = _suiteMap;
+        if (suiteMap.isEmpty() && _lazySuiteMap.isEmpty()) {
             throw new IllegalStateException("Unable to perform cryptographic operation, no suites registered.");
         }
-        ICryptoSuite impl = _suiteMap.get(name);
+        ICryptoSuite impl = suiteMap.get(name);
+        if (impl == null && name != null && _lazySuiteMap.containsKey(name)) {
+            impl = registerLazyCryptoSuite(name);
+        }
         if (impl == null) {
             throw new IllegalArgumentException("Unable to find cryptographic suite with name: " + name);
         }
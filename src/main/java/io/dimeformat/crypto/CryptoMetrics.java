@@ -0,0 +1,37 @@
+//
+//  CryptoMetrics.java
+//  DiME - Data Identity Message Envelope
+//  A powerful universal data format that is built for secure, and integrity protected communication between trusted
+//  entities in a network.
+//
+//  Released under the MIT licence, see LICENSE for more information.
+//  Copyright (c) 2024 Shift Everywhere AB. All rights reserved.
+//
+package io.dimeformat.crypto;
+
+/**
+ * A listener that is notified after each cryptographic operation that {@link Crypto} performs through a cryptographic
+ * suite. This may be used to collect statistics, like number of operations and time spent, per suite and operation.
+ * The listener in use is set through {@link Crypto#setMetrics(CryptoMetrics)}, when no listener is set (default)
+ * operations are not timed at all. A ready-made implementation is provided by {@link HistogramMetrics}.
+ * <p>
+ * Listeners are called on the thread performing the operation, so implementations must be thread-safe and should
+ * return quickly. Any exception thrown by a listener is passed on to the caller of the operation.
+ */
+@FunctionalInterface
+public interface CryptoMetrics {
+
+    /**
+     * Records a completed cryptographic operation.
+     * @param suiteName The name of the cryptographic suite that performed the operation.
+     * @param operation The operation performed.
+     * @param bytes The number of bytes of input data, or 0 where not applicable (i.e. for key generation and key
+     *              exchange). For signatures, this is the length of the encoded item, without any attached signatures,
+     *              and for incremental hashing ({@link Crypto#newHash(String)}) all data provided up to completion.
+     * @param success True if the operation was successful, false if it failed (threw an exception, or, for
+     *                verification, the signature was not valid).
+     * @param duration The duration of the operation, in nanoseconds.
+     */
+    void record(String suiteName, CryptoOperation operation, long bytes, boolean success, long duration);
+
+}
@@ -0,0 +1,50 @@
+//
+//  CryptoOperation.java
+//  DiME - Data Identity Message Envelope
+//  A powerful universal data format that is built for secure, and integrity protected communication between trusted
+//  entities in a network.
+//
+//  Released under the MIT licence, see LICENSE for more information.
+//  Copyright (c) 2024 Shift Everywhere AB. All rights reserved.
+//
+package io.dimeformat.crypto;
+
+/**
+ * Defines the cryptographic operations reported to a {@link CryptoMetrics} listener.
+ */
+public enum CryptoOperation {
+
+    /**
+     * Generation of a signature for an item.
+     */
+    SIGN,
+    /**
+     * Verification of a signature of an item.
+     */
+    VERIFY,
+    /**
+     * Generation of a new key.
+     */
+    GENERATE_KEY,
+    /**
+     * Generation of a shared secret through key exchange (agreement).
+     */
+    KEY_EXCHANGE,
+    /**
+     * Derivation of a key from a master key.
+     */
+    DERIVE_KEY,
+    /**
+     * Encryption of data.
+     */
+    ENCRYPT,
+    /**
+     * Decryption of data.
+     */
+    DECRYPT,
+    /**
+     * Generation of a secure hash.
+     */
+    HASH
+
+}
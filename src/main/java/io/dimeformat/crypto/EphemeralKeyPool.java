@@ -0,0 +1,173 @@
+//
+//  EphemeralKeyPool.java
+//  DiME - Data Identity Message Envelope
+//  A powerful universal data format that is built for secure, and integrity protected communication between trusted
+//  entities in a network.
+//
+//  Released under the MIT licence, see LICENSE for more information.
+//  Copyright (c) 2024 Shift Everywhere AB. All rights reserved.
+//
+package io.dimeformat.crypto;
+
+import io.dimeformat.Dime;
+import io.dimeformat.DimeContext;
+import io.dimeformat.Key;
+import io.dimeformat.enums.KeyCapability;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A pool of pre-generated ephemeral key pairs with capability {@link KeyCapability#EXCHANGE}. Keys are generated on
+ * a background (daemon) thread, which fills the pool up to its high watermark and then sleeps until the number of
+ * keys available drops below its low watermark. This moves key generation away from the sending path, i.e. when
+ * {@link io.dimeformat.Message#setPayload(byte[], Key)} is called with an EXCHANGE key. Once set using
+ * {@link Crypto#setEphemeralKeyPool(EphemeralKeyPool)}, messages will take keys from the pool. Each key is handed out
+ * once only, if the pool is empty a key is generated directly instead. Keys are always generated within the context
+ * ({@link DimeContext}) that was current when the pool was created. Instances are thread-safe.
+ */
+public final class EphemeralKeyPool implements AutoCloseable {
+
+    /// PUBLIC ///
+
+    /**
+     * The default number of keys below which the pool will be refilled.
+     */
+    public static final int DEFAULT_LOW_WATERMARK = 16;
+    /**
+     * The default number of keys the pool will be filled up to.
+     */
+    public static final int DEFAULT_HIGH_WATERMARK = 64;
+
+    /**
+     * Creates a pool with {@link #DEFAULT_LOW_WATERMARK} and {@link #DEFAULT_HIGH_WATERMARK}, generating keys using
+     * the default cryptographic suite.
+     */
+    public EphemeralKeyPool() {
+        this(EphemeralKeyPool.DEFAULT_LOW_WATERMARK, EphemeralKeyPool.DEFAULT_HIGH_WATERMARK, DimeContext.current().getCrypto().getDefaultSuiteName());
+    }
+
+    /**
+     * Creates a pool with the provided watermarks, generating keys using the provided cryptographic suite, as
+     * registered with the cryptographic functions of the current context. The pool starts filling up directly.
+     * @param lowWatermark The number of keys below which the pool will be refilled, must be 1 or more.
+     * @param highWatermark The number of keys the pool will be filled up to, must be larger than lowWatermark.
+     * @param suiteName The name of the cryptographic suite to use, must not be null.
+     */
+    public EphemeralKeyPool(int lowWatermark, int highWatermark, String suiteName) {
+        if (lowWatermark < 1) { throw new IllegalArgumentException("Unable to create pool, low watermark must be 1 or more."); }
+        if (highWatermark <= lowWatermark) { throw new IllegalArgumentException("Unable to create pool, high watermark must be larger than low watermark."); }
+        if (suiteName == null) { throw new IllegalArgumentException("Unable to create pool, cryptographic suite name must not be null."); }
+        DimeContext context = DimeContext.current();
+        if (!context.getCrypto().hasCryptoSuite(suiteName)) { throw new IllegalArgumentException("Unable to create pool, unknown cryptographic suite: " + suiteName); }
+        this._context = context;
+        this._lowWatermark = lowWatermark;
+        this._highWatermark = highWatermark;
+        this._suiteName = suiteName;
+        this._worker = new Thread(this::refill, "dime-ephemeral-key-pool");
+        this._worker.setDaemon(true);
+        this._worker.start();
+    }
+
+    /**
+     * Returns the name of the cryptographic suite used to generate keys in the pool.
+     * @return The name of the cryptographic suite.
+     */
+    public String getCryptoSuiteName() {
+        return _suiteName;
+    }
+
+    /**
+     * Takes a key from the pool. The key is removed from the pool and will never be handed out again. If the pool is
+     * empty, or has been closed, a new key is generated directly.
+     * @return A key with capability EXCHANGE.
+     */
+    public Key take() {
+        Key key = _keys.poll();
+        if (key != null) {
+            if (_size.decrementAndGet() < _lowWatermark) {
+                LockSupport.unpark(_worker);
+            }
+            return key;
+        }
+        _misses.incrementAndGet();
+        LockSupport.unpark(_worker);
+        return generate();
+    }
+
+    /**
+     * Returns the number of keys currently available in the pool.
+     * @return The number of keys available.
+     */
+    public int size() {
+        return _size.get();
+    }
+
+    /**
+     * Returns the number of times a key was requested while the pool was empty, so that it had to be generated
+     * directly. May be used to tune the watermarks.
+     * @return The number of misses.
+     */
+    public long getMisses() {
+        return _misses.get();
+    }
+
+    /**
+     * Stops the background generation of keys and discards all keys in the pool. Keys may still be taken from a
+     * closed pool, they will then be generated directly.
+     */
+    @Override
+    public void close() {
+        _closed = true;
+        LockSupport.unpark(_worker);
+        drain();
+    }
+
+    /// PRIVATE ///
+
+    private static final long FAILURE_BACK_OFF = 1_000_000_000L;
+    private final int _lowWatermark;
+    private final int _highWatermark;
+    private final String _suiteName;
+    private final DimeContext _context;
+    private final Thread _worker;
+    private final ConcurrentLinkedQueue<Key> _keys = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger _size = new AtomicInteger();
+    private final AtomicLong _misses = new AtomicLong();
+    private volatile boolean _closed = false;
+
+    private Key generate() {
+        // Also called from the worker thread, where the current context would be the default context
+        return _context.execute(() -> Key.generateKey(List.of(KeyCapability.EXCHANGE), Dime.NO_EXPIRATION, null, null, _suiteName));
+    }
+
+    private void drain() {
+        while (_keys.poll() != null) {
+            _size.decrementAndGet();
+        }
+    }
+
+    private void refill() {
+        while (!_closed) {
+            try {
+                while (!_closed && _size.get() < _highWatermark) {
+                    Key key = generate();
+                    _size.incrementAndGet(); // Counted before it is added, so the size never goes negative
+                    _keys.offer(key);
+                }
+            } catch (RuntimeException e) {
+                // Key generation failed, back off for a while, keys will be generated directly until then
+                LockSupport.parkNanos(this, EphemeralKeyPool.FAILURE_BACK_OFF);
+                continue;
+            }
+            // Sleep until the number of keys drops below the low watermark (spurious wake-ups are re-checked)
+            while (!_closed && _size.get() >= _lowWatermark) {
+                LockSupport.park(this);
+            }
+        }
+        drain(); // A key may have been added after the pool was closed
+    }
+
+}
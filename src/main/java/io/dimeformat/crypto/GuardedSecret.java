@@ -0,0 +1,186 @@
+//
+//  GuardedSecret.java
+//  DiME - Data Identity Message Envelope
+//  A powerful universal data format that is built for secure, and integrity protected communication between trusted
+//  entities in a network.
+//
+//  Released under the MIT licence, see LICENSE for more information.
+//  Copyright (c) 2024 Shift Everywhere AB. All rights reserved.
+//
+package io.dimeformat.crypto;
+
+import com.sun.jna.Native;
+import com.sun.jna.Pointer;
+import io.dimeformat.exceptions.CryptographyException;
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Holds raw secret key material outside the Java heap, so that it is never moved or copied by the garbage collector
+ * and may be wiped explicitly. Memory is allocated using sodium_malloc, which places the secret between guard pages
+ * and locks it into memory (preventing it from being swapped to disk). Should that fail, a direct byte buffer is used
+ * instead, which is locked into memory if possible. Cryptographic suites that support guarded secrets (like NaCl) pass
+ * the memory directly to native calls, without copying it back to the heap.
+ * <p>
+ * A guarded secret is thread-safe and may be used concurrently by any number of threads. Once {@link #destroy()} has
+ * been called the memory is wiped and released, and any further use will fail. Memory of secrets that are never
+ * destroyed is wiped and released when the instance is garbage collected.
+ */
+public final class GuardedSecret {
+
+    /// PUBLIC ///
+
+    /**
+     * Copies raw secret key material into guarded memory. It is up to the caller to wipe the provided byte array
+     * afterwards, if needed.
+     * @param secret The raw secret key material to guard.
+     * @return A new guarded secret.
+     */
+    public static GuardedSecret allocate(byte[] secret) {
+        if (secret == null || secret.length == 0) { throw new IllegalArgumentException("Secret to guard must not be null or empty."); }
+        return new GuardedSecret(secret);
+    }
+
+    /**
+     * Returns the length, in bytes, of the secret key material.
+     * @return The length of the secret.
+     */
+    public int length() {
+        return _length;
+    }
+
+    /**
+     * Indicates if the secret is locked into memory, i.e. if it is prevented from being swapped to disk.
+     * @return True if locked into memory, false otherwise.
+     */
+    public boolean isLocked() {
+        return _state.locked;
+    }
+
+    /**
+     * Indicates if the secret has been destroyed.
+     * @return True if destroyed, false otherwise.
+     */
+    public boolean isDestroyed() {
+        _lock.readLock().lock();
+        try {
+            return _state.destroyed;
+        } finally {
+            _lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns a copy of the secret key material on the heap. This is used by cryptographic operations that do not
+     * support guarded secrets, it is up to the caller to wipe the returned copy.
+     * @return A copy of the secret key material, null if the secret has been destroyed.
+     */
+    public byte[] copyBytes() {
+        _lock.readLock().lock();
+        try {
+            if (_state.destroyed) { return null; }
+            return _state.pointer.getByteArray(0, _length);
+        } finally {
+            _lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Wipes and releases the memory holding the secret. Waits for any ongoing cryptographic operations using the
+     * secret to finish first. Calling this more than once has no effect.
+     */
+    public void destroy() {
+        _lock.writeLock().lock();
+        try {
+            _cleanable.clean();
+        } finally {
+            _lock.writeLock().unlock();
+        }
+    }
+
+    /// PACKAGE-PRIVATE ///
+
+    /**
+     * An operation performed on the raw secret key material.
+     */
+    interface Operation {
+        int apply(Pointer secret);
+    }
+
+    /**
+     * Performs an operation with a pointer to the secret key material. The secret will not be destroyed while the
+     * operation is ongoing. The pointer must not be kept after the operation returns.
+     */
+    int apply(Operation operation) throws CryptographyException {
+        _lock.readLock().lock();
+        try {
+            if (_state.destroyed) { throw new CryptographyException("Unable to use secret key, it has been destroyed."); }
+            return operation.apply(_state.pointer);
+        } finally {
+            _lock.readLock().unlock();
+        }
+    }
+
+    /// PRIVATE ///
+
+    private static final Cleaner CLEANER = Cleaner.create();
+    private final int _length;
+    private final State _state;
+    private final Cleaner.Cleanable _cleanable;
+    private final ReadWriteLock _lock = new ReentrantReadWriteLock();
+
+    private GuardedSecret(byte[] secret) {
+        this._length = secret.length;
+        this._state = new State(secret);
+        this._cleanable = GuardedSecret.CLEANER.register(this, this._state);
+    }
+
+    /**
+     * The native memory, kept separate from the guarded secret so that it can be released by the cleaner.
+     */
+    private static final class State implements Runnable {
+
+        private final Pointer pointer;
+        private final long length;
+        private final boolean sodium;
+        private final boolean locked;
+        @SuppressWarnings({"unused", "FieldCanBeLocal"})
+        private final ByteBuffer buffer; // Keeps the direct buffer, if used, reachable
+        private volatile boolean destroyed = false;
+
+        private State(byte[] secret) {
+            this.length = secret.length;
+            Pointer memory = SodiumPointers.sodium_malloc(this.length);
+            if (memory != null) {
+                this.pointer = memory;
+                this.buffer = null;
+                this.sodium = true;
+                this.locked = true; // sodium_malloc locks allocated memory
+            } else {
+                this.buffer = ByteBuffer.allocateDirect(secret.length);
+                this.pointer = Native.getDirectBufferPointer(this.buffer);
+                this.sodium = false;
+                this.locked = SodiumPointers.sodium_mlock(this.pointer, this.length) == 0;
+            }
+            this.pointer.write(0, secret, 0, secret.length);
+        }
+
+        @Override
+        public void run() {
+            if (destroyed) { return; }
+            destroyed = true;
+            if (sodium) {
+                SodiumPointers.sodium_free(pointer); // Wipes memory before releasing it
+            } else {
+                SodiumPointers.sodium_memzero(pointer, length);
+                if (locked) {
+                    SodiumPointers.sodium_munlock(pointer, length);
+                }
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,48 @@
+//
+//  HashContext.java
+//  DiME - Data Identity Message Envelope
+//  A powerful universal data format that is built for secure, and integrity protected communication between trusted
+//  entities in a network.
+//
+//  Released under the MIT licence, see LICENSE for more information.
+//  Copyright (c) 2024 Shift Everywhere AB. All rights reserved.
+//
+package io.dimeformat.crypto;
+
+import io.dimeformat.exceptions.CryptographyException;
+import java.nio.ByteBuffer;
+
+/**
+ * An incremental (init/update/final) secure hash operation. Instances are created through
+ * {@link ICryptoSuite#newHash()}, or {@link Crypto#newHash(String)}, and allow data to be hashed in segments without
+ * first concatenating it into one array. The final digest is identical to the one returned from
+ * {@link ICryptoSuite#generateHash(byte[])} for the same data. An instance is not thread-safe and may only be finished
+ * once.
+ */
+public interface HashContext {
+
+    /**
+     * Feeds the remaining bytes of the provided buffer into the hash operation. The position of the buffer will be
+     * advanced to its limit.
+     * @param data The data to add to the hash operation.
+     * @throws CryptographyException If any cryptographic operations goes wrong.
+     */
+    void update(ByteBuffer data) throws CryptographyException;
+
+    /**
+     * Feeds a byte array into the hash operation.
+     * @param data The data to add to the hash operation.
+     * @throws CryptographyException If any cryptographic operations goes wrong.
+     */
+    default void update(byte[] data) throws CryptographyException {
+        update(ByteBuffer.wrap(data));
+    }
+
+    /**
+     * Completes the hash operation and returns the hash digest of all data provided.
+     * @return The hash digest, encoded as a string.
+     * @throws CryptographyException If any cryptographic operations goes wrong.
+     */
+    String finish() throws CryptographyException;
+
+}
@@ -0,0 +1,176 @@
+//
+//  HistogramMetrics.java
+//  DiME - Data Identity Message Envelope
+//  A powerful universal data format that is built for secure, and integrity protected communication between trusted
+//  entities in a network.
+//
+//  Released under the MIT licence, see LICENSE for more information.
+//  Copyright (c) 2024 Shift Everywhere AB. All rights reserved.
+//
+package io.dimeformat.crypto;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A {@link CryptoMetrics} listener that keeps counters and a latency histogram for each cryptographic suite and
+ * operation. Recording is lock-free, so the listener may be shared by any number of threads without contention. The
+ * histogram uses buckets with power-of-two boundaries (in nanoseconds), so percentiles are reported as the upper
+ * boundary of the bucket they fall into, i.e. with a precision within a factor of two.
+ * <p>
+ * Values may be read (scraped) at any time while operations are being recorded, each value is then accurate at the
+ * time it was read, but values read one by one are not a consistent snapshot of each other.
+ */
+public final class HistogramMetrics implements CryptoMetrics {
+
+    /// PUBLIC ///
+
+    /**
+     * The number of buckets in each latency histogram.
+     */
+    public static final int NBR_BUCKETS = 64;
+
+    /**
+     * The collected statistics for one cryptographic suite and operation.
+     */
+    public static final class Histogram {
+
+        /**
+         * Returns the number of operations recorded, including failed operations.
+         * @return The number of operations.
+         */
+        public long getCount() {
+            return _count.sum();
+        }
+
+        /**
+         * Returns the number of failed operations recorded.
+         * @return The number of failed operations.
+         */
+        public long getFailures() {
+            return _failures.sum();
+        }
+
+        /**
+         * Returns the total number of bytes of input data processed.
+         * @return The number of bytes.
+         */
+        public long getBytes() {
+            return _bytes.sum();
+        }
+
+        /**
+         * Returns the total time spent in the operation, in nanoseconds.
+         * @return The total time.
+         */
+        public long getTotalTime() {
+            return _totalTime.sum();
+        }
+
+        /**
+         * Returns the number of operations recorded in a bucket of the histogram. Bucket 0 holds operations that took
+         * less than 1 nanosecond, bucket n holds operations that took at least 2^(n-1) and less than 2^n nanoseconds.
+         * The last bucket also holds all operations that took longer.
+         * @param bucket The index of the bucket, from 0 to {@link #NBR_BUCKETS} - 1.
+         * @return The number of operations in the bucket.
+         */
+        public long getBucketCount(int bucket) {
+            if (bucket < 0 || bucket >= HistogramMetrics.NBR_BUCKETS) { throw new IllegalArgumentException("Bucket index out of range: " + bucket); }
+            return _buckets.get(bucket);
+        }
+
+        /**
+         * Returns an estimate of the duration, in nanoseconds, that the provided share of the operations did not
+         * exceed. This is the upper boundary of the bucket in which the percentile falls.
+         * @param percentile The percentile, from 0.0 to 100.0, i.e. 99.0 for the 99th percentile.
+         * @return The estimated duration, or 0 if no operations have been recorded.
+         */
+        public long getPercentile(double percentile) {
+            if (percentile < 0.0 || percentile > 100.0) { throw new IllegalArgumentException("Percentile must be between 0.0 and 100.0."); }
+            long[] counts = new long[HistogramMetrics.NBR_BUCKETS];
+            long total = 0;
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = _buckets.get(i);
+                total += counts[i];
+            }
+            if (total == 0) { return 0; }
+            long rank = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return i == counts.length - 1 ? Long.MAX_VALUE : 1L << i;
+                }
+            }
+            return Long.MAX_VALUE;
+        }
+
+        /// PRIVATE ///
+
+        private final LongAdder _count = new LongAdder();
+        private final LongAdder _failures = new LongAdder();
+        private final LongAdder _bytes = new LongAdder();
+        private final LongAdder _totalTime = new LongAdder();
+        private final AtomicLongArray _buckets = new AtomicLongArray(HistogramMetrics.NBR_BUCKETS);
+
+        private Histogram() { }
+
+        private void record(long bytes, boolean success, long duration) {
+            _count.increment();
+            if (!success) {
+                _failures.increment();
+            }
+            _bytes.add(bytes);
+            _totalTime.add(duration);
+            int bucket = duration <= 0 ? 0 : Math.min(64 - Long.numberOfLeadingZeros(duration), HistogramMetrics.NBR_BUCKETS - 1);
+            _buckets.incrementAndGet(bucket);
+        }
+
+    }
+
+    @Override
+    public void record(String suiteName, CryptoOperation operation, long bytes, boolean success, long duration) {
+        Histogram[] histograms = _suites.get(suiteName);
+        if (histograms == null) {
+            histograms = _suites.computeIfAbsent(suiteName, name -> newHistograms());
+        }
+        histograms[operation.ordinal()].record(bytes, success, duration);
+    }
+
+    /**
+     * Returns the names of all cryptographic suites for which operations have been recorded.
+     * @return A set of cryptographic suite names.
+     */
+    public Set<String> getSuiteNames() {
+        return Collections.unmodifiableSet(_suites.keySet());
+    }
+
+    /**
+     * Returns the collected statistics for a cryptographic suite and operation.
+     * @param suiteName The name of the cryptographic suite.
+     * @param operation The operation.
+     * @return The collected statistics, or null if no operations have been recorded for the suite.
+     */
+    public Histogram getHistogram(String suiteName, CryptoOperation operation) {
+        if (operation == null) { throw new IllegalArgumentException("Operation must not be null."); }
+        Histogram[] histograms = suiteName != null ? _suites.get(suiteName) : null;
+        return histograms != null ? histograms[operation.ordinal()] : null;
+    }
+
+    /// PRIVATE ///
+
+    private final ConcurrentMap<String, Histogram[]> _suites = new ConcurrentHashMap<>();
+
+    private static Histogram[] newHistograms() {
+        Histogram[] histograms = new Histogram[CryptoOperation.values().length];
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new Histogram();
+        }
+        return histograms;
+    }
+
+}
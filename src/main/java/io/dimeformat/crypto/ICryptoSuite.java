@@ -14,6 +14,10 @@ import io.dimeformat.Key;
 import io.dimeformat.enums.Claim;
 import io.dimeformat.exceptions.CryptographyException;
 import io.dimeformat.enums.KeyCapability;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.util.List;
 
 /**
@@ -75,6 +79,21 @@ public interface ICryptoSuite {
      */
     Key generateSharedSecret(Key clientKey, Key serverKey, List<KeyCapability> capabilities) throws CryptographyException;
 
+    /**
+     * Derives a key from a master key, a subkey identifier and a context. The same master key, subkey identifier and
+     * context will always derive the same key, so derived keys may be recomputed when needed instead of being stored.
+     * The default implementation does not support key derivation and throws an exception.
+     * @param masterKey The master key to derive from.
+     * @param subkeyId The identifier of the key to derive.
+     * @param context The context of the key to derive, i.e. what the key is used for.
+     * @param capabilities The intended capabilities of the derived key, i.e. {#{@link KeyCapability#ENCRYPT}}.
+     * @return The derived key.
+     * @throws CryptographyException If any cryptographic operations goes wrong or if derivation is not supported.
+     */
+    default Key deriveKey(Key masterKey, long subkeyId, String context, List<KeyCapability> capabilities) throws CryptographyException {
+        throw new CryptographyException("Key derivation not supported by cryptographic suite: " + getName());
+    }
+
     /**
      * Encrypts a plain text byte array using the provided key.
      * @param data The byte array to encrypt.
@@ -84,6 +103,21 @@ public interface ICryptoSuite {
      */
     byte[] encrypt(byte[] data, Key key) throws CryptographyException;
 
+    /**
+     * Encrypts a plain text byte array using the provided key and nonce, instead of a random nonce. The output has the
+     * same format as {@link #encrypt(byte[], Key)} and is decrypted using {@link #decrypt(byte[], Key)}. A nonce must
+     * never be used more than once with the same key. The default implementation does not support explicit nonces and
+     * throws an exception.
+     * @param data The byte array to encrypt.
+     * @param nonce The nonce to use, must be of the length required by the cryptographic suite.
+     * @param key The key to use for the encryption.
+     * @return The encrypted cipher text.
+     * @throws CryptographyException If any cryptographic operations goes wrong or if explicit nonces are not supported.
+     */
+    default byte[] encrypt(byte[] data, byte[] nonce, Key key) throws CryptographyException {
+        throw new CryptographyException("Explicit nonces not supported by cryptographic suite: " + getName());
+    }
+
     /**
      * Decrypts a cipher text byte array using the provided key.
      * @param data The byte array to decrypt.
@@ -93,6 +127,75 @@ public interface ICryptoSuite {
      */
     byte[] decrypt(byte[] data, Key key) throws CryptographyException;
 
+    /**
+     * Encrypts the remaining bytes of a buffer, writing the cipher text, in the same format as
+     * {@link #encrypt(byte[], Key)}, to the output buffer. Both buffers may be heap or direct buffers and the position
+     * of each is advanced by the number of bytes consumed or written, on failure both positions are left unchanged. The
+     * default implementation copies the data through {@link #encrypt(byte[], Key)}, suites should override this if
+     * buffers can be handled more efficiently.
+     * @param in The buffer holding the plain text to encrypt.
+     * @param out The buffer to write the cipher text to, must have enough space remaining.
+     * @param key The key to use for the encryption.
+     * @return The number of bytes written to the output buffer.
+     * @throws CryptographyException If any cryptographic operations goes wrong.
+     */
+    default int encrypt(ByteBuffer in, ByteBuffer out, Key key) throws CryptographyException {
+        byte[] data = new byte[in.remaining()];
+        in.duplicate().get(data); // Consumed only once the operation succeeds
+        byte[] cipherText = encrypt(data, key);
+        out.put(cipherText);
+        in.position(in.limit());
+        return cipherText.length;
+    }
+
+    /**
+     * Decrypts the remaining bytes of a buffer, holding cipher text in the format produced by
+     * {@link #encrypt(byte[], Key)}, writing the plain text to the output buffer. Both buffers may be heap or direct
+     * buffers and the position of each is advanced by the number of bytes consumed or written, on failure both
+     * positions are left unchanged. The default implementation copies the data through {@link #decrypt(byte[], Key)},
+     * suites should override this if buffers can be handled more efficiently.
+     * @param in The buffer holding the cipher text to decrypt.
+     * @param out The buffer to write the plain text to, must have enough space remaining.
+     * @param key The key to use for the decryption.
+     * @return The number of bytes written to the output buffer.
+     * @throws CryptographyException If any cryptographic operations goes wrong.
+     */
+    default int decrypt(ByteBuffer in, ByteBuffer out, Key key) throws CryptographyException {
+        byte[] data = new byte[in.remaining()];
+        in.duplicate().get(data); // Consumed only once the operation succeeds
+        byte[] plainText = decrypt(data, key);
+        out.put(plainText);
+        in.position(in.limit());
+        return plainText.length;
+    }
+
+    /**
+     * Wraps an output stream so that any data written to the returned stream is encrypted, in chunks, using the
+     * provided key before it is passed on to the wrapped stream. The encryption is completed once the returned stream
+     * is closed, which also closes the wrapped stream. The default implementation does not support streaming
+     * encryption.
+     * @param out The output stream that should receive the cipher text.
+     * @param key The key to use for the encryption.
+     * @return An output stream accepting plain text.
+     * @throws CryptographyException If any cryptographic operations goes wrong or if streaming is not supported.
+     */
+    default OutputStream newEncryptionStream(OutputStream out, Key key) throws CryptographyException {
+        throw new CryptographyException("Streaming encryption not supported by cryptographic suite: " + getName());
+    }
+
+    /**
+     * Wraps an input stream, holding cipher text created by {@link #newEncryptionStream(OutputStream, Key)}, so that
+     * any data read from the returned stream is decrypted using the provided key. The default implementation does not
+     * support streaming decryption.
+     * @param in The input stream that holds the cipher text.
+     * @param key The key to use for the decryption.
+     * @return An input stream returning the plain text.
+     * @throws CryptographyException If any cryptographic operations goes wrong or if streaming is not supported.
+     */
+    default InputStream newDecryptionStream(InputStream in, Key key) throws CryptographyException {
+        throw new CryptographyException("Streaming decryption not supported by cryptographic suite: " + getName());
+    }
+
     /**
      * Generates a secure hash digest of the provided data.
      * @param data The data that should be hashed.
@@ -101,6 +204,34 @@ public interface ICryptoSuite {
      */
     String generateHash(byte[] data) throws CryptographyException;
 
+    /**
+     * Starts an incremental secure hash operation, where data may be provided in segments. The resulting hash digest
+     * must be equal to {@link #generateHash(byte[])} of the same data. The default implementation collects all data and
+     * then calls {@link #generateHash(byte[])}, suites should override this if incremental hashing is supported.
+     * @return A new hash context.
+     * @throws CryptographyException If any cryptographic operations goes wrong.
+     */
+    default HashContext newHash() throws CryptographyException {
+        return new HashContext() {
+            private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            @Override
+            public void update(ByteBuffer data) {
+                if (data.hasArray()) {
+                    buffer.write(data.array(), data.arrayOffset() + data.position(), data.remaining());
+                    data.position(data.limit());
+                } else {
+                    byte[] bytes = new byte[data.remaining()];
+                    data.get(bytes);
+                    buffer.write(bytes, 0, bytes.length);
+                }
+            }
+            @Override
+            public String finish() throws CryptographyException {
+                return generateHash(buffer.toByteArray());
+            }
+        };
+    }
+
     /**
      * Encodes a key from a byte-array to a string.
      * @param rawKey The raw key byte-array to encode.
@@ -31,7 +31,10 @@ class LegacySuite extends NaClSuite {
     public byte[] generateSignature(Item item, Key key) throws CryptographyException {
         byte[] signature = new byte[NaClSuite.NBR_SIGNATURE_BYTES];
         byte[] data = item.rawEncoded(false);
-        int result = this._sodium.crypto_sign_detached(signature,
+        GuardedSecret guarded = key.getGuardedSecret();
+        int result = guarded != null
+                ? guarded.apply(secret -> SodiumPointers.crypto_sign_detached(signature, null, data, data.length, secret))
+                : NaClSuite.sodium().crypto_sign_detached(signature,
                 null,
                 data,
                 data.length,
@@ -48,7 +51,7 @@ class LegacySuite extends NaClSuite {
         byte[] keyBytes = key.getKeyBytes(Claim.PUB);
         if (keyBytes == null || keyBytes.length == 0) { throw new IllegalArgumentException("Unable to verify signature, missing public key."); }
         byte[] data = item.rawEncoded(false);
-        return (this._sodium.crypto_sign_verify_detached(signature,
+        return (NaClSuite.sodium().crypto_sign_verify_detached(signature,
                 data,
                 data.length,
                 key.getKeyBytes(Claim.PUB)) == 0);
@@ -10,13 +10,20 @@
 package io.dimeformat.crypto;
 
 import com.goterl.lazysodium.SodiumJava;
+import com.goterl.lazysodium.interfaces.SecretStream;
+import com.sun.jna.Pointer;
 import io.dimeformat.Item;
 import io.dimeformat.Key;
 import io.dimeformat.enums.Claim;
 import io.dimeformat.enums.KeyCapability;
 import io.dimeformat.Utility;
 import io.dimeformat.exceptions.CryptographyException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -31,7 +38,6 @@ class NaClSuite implements ICryptoSuite {
     }
 
     public NaClSuite(String name) {
-        this._sodium = new SodiumJava();
         this._suiteName = name;
     }
 
@@ -53,7 +59,10 @@ class NaClSuite implements ICryptoSuite {
                 .getBytes(StandardCharsets.UTF_8);
         if (data.length > 0) {
             byte[] signature = new byte[NaClSuite.NBR_SIGNATURE_BYTES];
-            int result = this._sodium.crypto_sign_detached(signature,
+            GuardedSecret guarded = key.getGuardedSecret();
+            int result = guarded != null
+                    ? guarded.apply(secret -> SodiumPointers.crypto_sign_detached(signature, null, data, data.length, secret))
+                    : NaClSuite.sodium().crypto_sign_detached(signature,
                     null,
                     data,
                     data.length,
@@ -70,7 +79,7 @@ class NaClSuite implements ICryptoSuite {
         byte[] data = item.generateThumbprint(false, this._suiteName)
                 .getBytes(StandardCharsets.UTF_8);
             if (data.length > 0) {
-            return (this._sodium.crypto_sign_verify_detached(signature,
+            return (NaClSuite.sodium().crypto_sign_verify_detached(signature,
                     data,
                     data.length,
                     key.getKeyBytes(Claim.PUB)) == 0);
@@ -81,21 +90,25 @@ class NaClSuite implements ICryptoSuite {
     public Key generateKey(List<KeyCapability> capabilities) throws CryptographyException {
         if (capabilities == null || capabilities.size() != 1) { throw new IllegalArgumentException("Unable to generate, invalid key capabilities requested."); }
         KeyCapability firstUse = capabilities.get(0);
+        // Key material is taken from the random source set in Crypto, so it is used for all randomness
         if (firstUse == KeyCapability.ENCRYPT) {
-            byte[] secretKey = new byte[NaClSuite.NBR_S_KEY_BYTES];
-            this._sodium.crypto_secretbox_keygen(secretKey);
+            byte[] secretKey = Utility.randomBytes(NaClSuite.NBR_S_KEY_BYTES);
             return new Key(capabilities, secretKey, null, this._suiteName);
         } else {
             byte[] publicKey = new byte[NaClSuite.NBR_A_KEY_BYTES];
             byte[] secretKey;
             switch (firstUse) {
                 case SIGN:
+                    byte[] seed = Utility.randomBytes(NaClSuite.NBR_A_KEY_BYTES);
                     secretKey = new byte[NaClSuite.NBR_A_KEY_BYTES * 2];
-                    this._sodium.crypto_sign_keypair(publicKey, secretKey);
+                    int result = NaClSuite.sodium().crypto_sign_seed_keypair(publicKey, secretKey, seed);
+                    Arrays.fill(seed, (byte) 0);
+                    if (result != 0) { throw new CryptographyException("Unable to generate keypair, cryptographic operation failed."); }
                     break;
                 case EXCHANGE:
-                    secretKey = new byte[NaClSuite.NBR_A_KEY_BYTES];
-                    this._sodium.crypto_kx_keypair(publicKey, secretKey);
+                    // Same as crypto_kx_keypair, a random secret key and its public key
+                    secretKey = Utility.randomBytes(NaClSuite.NBR_A_KEY_BYTES);
+                    if (NaClSuite.sodium().crypto_scalarmult_base(publicKey, secretKey) != 0) { throw new CryptographyException("Unable to generate keypair, cryptographic operation failed."); }
                     break;
                 default:
                     throw new CryptographyException("Unable to generate keypair for key type " + capabilities + ".");
@@ -107,52 +120,165 @@ class NaClSuite implements ICryptoSuite {
     public Key generateSharedSecret(Key clientKey, Key serverKey, List<KeyCapability> capabilities) throws CryptographyException {
         if (!capabilities.contains(KeyCapability.ENCRYPT)) { throw new IllegalArgumentException("Unable to generate, key capability for shared secret must be ENCRYPT."); }
         if (capabilities.size() > 1) { throw new IllegalArgumentException("Unable to generate, key capability for shared secret may only be ENCRYPT."); }
-        byte[][] rawClientKeys = new byte[][] { clientKey.getKeyBytes(Claim.KEY), clientKey.getKeyBytes(Claim.PUB) };
-        byte[][] rawServerKeys = new byte[][] { serverKey.getKeyBytes(Claim.KEY), serverKey.getKeyBytes(Claim.PUB) };
+        byte[] clientPublic = clientKey.getKeyBytes(Claim.PUB);
+        byte[] serverPublic = serverKey.getKeyBytes(Claim.PUB);
+        if (clientPublic == null || serverPublic == null) { throw new CryptographyException("Unable to generate, invalid keys provided."); }
         byte[] shared = new byte[NaClSuite.NBR_X_KEY_BYTES];
-        if (rawClientKeys[0] != null && rawClientKeys.length == 2) { // has both private and public key
-            byte[] secret = Utility.combine(rawClientKeys[0], rawClientKeys[1]);
-            if (this._sodium.crypto_kx_client_session_keys(shared, null, rawClientKeys[1], secret, rawServerKeys[1]) != 0) {
-                throw new CryptographyException("Unable to generate, cryptographic operation failed.");
-            }
-        } else if (rawServerKeys[0] != null && rawServerKeys.length == 2) { // has both private and public key
-            if (this._sodium.crypto_kx_server_session_keys(null, shared, rawServerKeys[1], rawServerKeys[0], rawClientKeys[1]) != 0) {
-                throw new CryptographyException("Unable to generate, cryptographic operation failed.");
-            }
+        int result;
+        if (clientKey.hasSecret()) {
+            GuardedSecret guarded = clientKey.getGuardedSecret();
+            result = guarded != null
+                    ? guarded.apply(secret -> SodiumPointers.crypto_kx_client_session_keys(shared, null, clientPublic, secret, serverPublic))
+                    : NaClSuite.sodium().crypto_kx_client_session_keys(shared, null, clientPublic, clientKey.getKeyBytes(Claim.KEY), serverPublic);
+        } else if (serverKey.hasSecret()) {
+            GuardedSecret guarded = serverKey.getGuardedSecret();
+            result = guarded != null
+                    ? guarded.apply(secret -> SodiumPointers.crypto_kx_server_session_keys(null, shared, serverPublic, secret, clientPublic))
+                    : NaClSuite.sodium().crypto_kx_server_session_keys(null, shared, serverPublic, serverKey.getKeyBytes(Claim.KEY), clientPublic);
         } else {
             throw new CryptographyException("Unable to generate, invalid keys provided.");
         }
-        return new Key(capabilities, shared, null, this._suiteName);
+        if (result != 0) {
+            throw new CryptographyException("Unable to generate, cryptographic operation failed.");
+        }
+        Key key = new Key(capabilities, shared, null, this._suiteName);
+        Arrays.fill(shared, (byte) 0);
+        return key;
+    }
+
+    public Key deriveKey(Key masterKey, long subkeyId, String context, List<KeyCapability> capabilities) throws CryptographyException {
+        byte[] kdfContext = NaClSuite.kdfContext(context);
+        byte[] subkey = new byte[NaClSuite.NBR_S_KEY_BYTES];
+        GuardedSecret guarded = masterKey.getGuardedSecret();
+        int result;
+        if (guarded != null) {
+            if (guarded.length() != NaClSuite.NBR_S_KEY_BYTES) { throw new CryptographyException("Unable to derive key, invalid master key provided."); }
+            result = guarded.apply(secret -> SodiumPointers.crypto_kdf_derive_from_key(subkey, subkey.length, subkeyId, kdfContext, secret));
+        } else {
+            byte[] master = masterKey.getKeyBytes(Claim.KEY);
+            if (master == null || master.length != NaClSuite.NBR_S_KEY_BYTES) { throw new CryptographyException("Unable to derive key, invalid master key provided."); }
+            result = NaClSuite.sodium().crypto_kdf_derive_from_key(subkey, subkey.length, subkeyId, kdfContext, master);
+        }
+        if (result != 0) {
+            throw new CryptographyException("Unable to derive key, cryptographic operation failed.");
+        }
+        Key key = new Key(capabilities, subkey, null, this._suiteName);
+        Arrays.fill(subkey, (byte) 0);
+        return key;
     }
 
     public byte[] encrypt(byte[] data, Key key) throws CryptographyException {
         byte[] nonce = Utility.randomBytes(NaClSuite.NBR_NONCE_BYTES);
         if (nonce.length > 0) {
-            byte[] cipherText = new byte[NaClSuite.NBR_MAC_BYTES + data.length];
-            if (this._sodium.crypto_secretbox_easy(cipherText, data, data.length, nonce, key.getKeyBytes(Claim.KEY)) != 0) {
-                throw new CryptographyException("Cryptographic operation failed.");
-            }
-            return Utility.combine(nonce, cipherText);
+            return encrypt(data, nonce, key);
         }
         throw new CryptographyException("Unable to generate sufficient nonce.");
 
     }
 
+    public byte[] encrypt(byte[] data, byte[] nonce, Key key) throws CryptographyException {
+        if (nonce == null || nonce.length != NaClSuite.NBR_NONCE_BYTES) { throw new IllegalArgumentException("Unable to encrypt, nonce must be " + NaClSuite.NBR_NONCE_BYTES + " bytes."); }
+        byte[] cipherText = new byte[NaClSuite.NBR_MAC_BYTES + data.length];
+        GuardedSecret guarded = key.getGuardedSecret();
+        int result = guarded != null
+                ? guarded.apply(secret -> SodiumPointers.crypto_secretbox_easy(cipherText, data, data.length, nonce, secret))
+                : NaClSuite.sodium().crypto_secretbox_easy(cipherText, data, data.length, nonce, key.getKeyBytes(Claim.KEY));
+        if (result != 0) {
+            throw new CryptographyException("Cryptographic operation failed.");
+        }
+        return Utility.combine(nonce, cipherText);
+    }
+
     public byte[] decrypt(byte[] data, Key key) throws CryptographyException {
         byte[] nonce = Utility.subArray(data, 0, NaClSuite.NBR_NONCE_BYTES);
         byte[] bytes = Utility.subArray(data, NaClSuite.NBR_NONCE_BYTES);
         byte[] plain = new byte[bytes.length - NaClSuite.NBR_MAC_BYTES];
-        int result = this._sodium.crypto_secretbox_open_easy(plain, bytes, bytes.length, nonce, key.getKeyBytes(Claim.KEY));
+        GuardedSecret guarded = key.getGuardedSecret();
+        int result = guarded != null
+                ? guarded.apply(secret -> SodiumPointers.crypto_secretbox_open_easy(plain, bytes, bytes.length, nonce, secret))
+                : NaClSuite.sodium().crypto_secretbox_open_easy(plain, bytes, bytes.length, nonce, key.getKeyBytes(Claim.KEY));
         if (result != 0) {
             throw new CryptographyException("Cryptographic operation failed (" + result + ").");
         }
         return plain;
     }
 
+    public int encrypt(ByteBuffer in, ByteBuffer out, Key key) throws CryptographyException {
+        int length = in.remaining();
+        int total = NaClSuite.NBR_NONCE_BYTES + NaClSuite.NBR_MAC_BYTES + length;
+        if (out.remaining() < total) { throw new IllegalArgumentException("Unable to encrypt, output buffer too small, " + total + " bytes needed."); }
+        byte[] nonce = Utility.randomBytes(NaClSuite.NBR_NONCE_BYTES);
+        int start = out.position();
+        out.put(nonce);
+        Pointer message = SodiumPointers.input(in, length);
+        Pointer cipherText = SodiumPointers.output(out, NaClSuite.NBR_MAC_BYTES + length);
+        boolean success = false;
+        try {
+            GuardedSecret guarded = key.getGuardedSecret();
+            int result = guarded != null
+                    ? guarded.apply(secret -> SodiumPointers.crypto_secretbox_easy(cipherText, message, length, nonce, secret))
+                    : SodiumPointers.crypto_secretbox_easy(cipherText, message, length, nonce, key.getKeyBytes(Claim.KEY));
+            if (result != 0) {
+                throw new CryptographyException("Cryptographic operation failed.");
+            }
+            SodiumPointers.complete(cipherText, out, NaClSuite.NBR_MAC_BYTES + length);
+            in.position(in.limit());
+            success = true;
+            return total;
+        } finally {
+            SodiumPointers.clear(message);
+            if (!success) {
+                out.position(start); // The nonce was already written
+            }
+        }
+    }
+
+    public int decrypt(ByteBuffer in, ByteBuffer out, Key key) throws CryptographyException {
+        int length = in.remaining() - NaClSuite.NBR_NONCE_BYTES - NaClSuite.NBR_MAC_BYTES;
+        if (length < 0) { throw new CryptographyException("Unable to decrypt, cipher text is truncated."); }
+        if (out.remaining() < length) { throw new IllegalArgumentException("Unable to decrypt, output buffer too small, " + length + " bytes needed."); }
+        byte[] nonce = new byte[NaClSuite.NBR_NONCE_BYTES];
+        int start = in.position();
+        in.get(nonce);
+        Pointer cipherText = SodiumPointers.input(in, NaClSuite.NBR_MAC_BYTES + length);
+        Pointer message = SodiumPointers.output(out, length);
+        boolean success = false;
+        try {
+            GuardedSecret guarded = key.getGuardedSecret();
+            int result = guarded != null
+                    ? guarded.apply(secret -> SodiumPointers.crypto_secretbox_open_easy(message, cipherText, NaClSuite.NBR_MAC_BYTES + length, nonce, secret))
+                    : SodiumPointers.crypto_secretbox_open_easy(message, cipherText, NaClSuite.NBR_MAC_BYTES + length, nonce, key.getKeyBytes(Claim.KEY));
+            if (result != 0) {
+                throw new CryptographyException("Cryptographic operation failed (" + result + ").");
+            }
+            SodiumPointers.complete(message, out, length);
+            in.position(in.limit());
+            success = true;
+            return length;
+        } finally {
+            SodiumPointers.clear(message);
+            if (!success) {
+                in.position(start); // The nonce was already read
+            }
+        }
+    }
+
+    public OutputStream newEncryptionStream(OutputStream out, Key key) throws CryptographyException {
+        return new NaClEncryptionStream(out, key);
+    }
+
+    public InputStream newDecryptionStream(InputStream in, Key key) throws CryptographyException {
+        return new NaClDecryptionStream(in, key);
+    }
+
     public String generateHash(byte[] data) throws CryptographyException {
         return Utility.toHex(hash(data));
     }
 
+    public HashContext newHash() throws CryptographyException {
+        return new NaClHashContext();
+    }
+
     public String encodeKeyBytes(byte[] rawKey, Claim claim) {
         return Utility.toBase64(rawKey);
     }
@@ -161,6 +287,30 @@ class NaClSuite implements ICryptoSuite {
         return Utility.fromBase64(encodedKey);
     }
 
+    /// PACKAGE-PRIVATE ///
+
+    /**
+     * Returns the shared binding to libsodium, the native library is loaded on the first call, never when a suite is
+     * only created.
+     */
+    static SodiumJava sodium() {
+        return SodiumHolder.SODIUM;
+    }
+
+    /**
+     * Returns a key derivation context as the 8 bytes required by crypto_kdf_derive_from_key, shorter contexts are
+     * padded with zeros.
+     */
+    static byte[] kdfContext(String context) {
+        byte[] bytes = context.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > NaClSuite.NBR_KDF_CONTEXT_BYTES) { throw new IllegalArgumentException("Unable to derive key, context must not be longer than " + NaClSuite.NBR_KDF_CONTEXT_BYTES + " bytes."); }
+        return Arrays.copyOf(bytes, NaClSuite.NBR_KDF_CONTEXT_BYTES);
+    }
+
+    static void randomBytes(byte[] bytes) {
+        NaClSuite.sodium().randombytes_buf(bytes, bytes.length);
+    }
+
     /// PROTECTED ///
 
     protected static final int NBR_SIGNATURE_BYTES = 64;
@@ -170,17 +320,243 @@ class NaClSuite implements ICryptoSuite {
     protected static final int NBR_NONCE_BYTES = 24;
     protected static final int NBR_MAC_BYTES = 16;
     protected static final int NBR_HASH_BYTES = 32;
+    protected static final int NBR_KDF_CONTEXT_BYTES = 8;
     protected static final int KEY_NAME_LENGTH = 8;
 
-    protected final SodiumJava _sodium;
     protected final String _suiteName;
 
     protected byte[] hash(byte[] data) throws CryptographyException {
         byte[] hash = new byte[NaClSuite.NBR_HASH_BYTES];
-        if (this._sodium.crypto_generichash(hash, hash.length, data, data.length, null, 0) != 0) {
+        if (NaClSuite.sodium().crypto_generichash(hash, hash.length, data, data.length, null, 0) != 0) {
             throw new CryptographyException("Cryptographic operation failed.");
         }
         return hash;
     }
 
+    /// PRIVATE ///
+
+    private static final int HASH_CHUNK_SIZE = 8192;
+    private static final int STREAM_CHUNK_SIZE = 65536;
+
+    /** Loads the native library once, on first use, and shares the binding between all suite instances. */
+    private static final class SodiumHolder {
+        private static final SodiumJava SODIUM = new SodiumJava();
+    }
+
+    private final class NaClHashContext implements HashContext {
+
+        private final byte[] _state = new byte[NaClSuite.sodium().crypto_generichash_statebytes()];
+        private byte[] _chunk;
+        private boolean _finished = false;
+
+        NaClHashContext() throws CryptographyException {
+            if (NaClSuite.sodium().crypto_generichash_init(_state, null, 0, NaClSuite.NBR_HASH_BYTES) != 0) {
+                throw new CryptographyException("Cryptographic operation failed.");
+            }
+        }
+
+        @Override
+        public void update(ByteBuffer data) throws CryptographyException {
+            if (_finished) { throw new IllegalStateException("Unable to update hash, hash operation already finished."); }
+            if (data.hasArray() && data.arrayOffset() == 0 && data.position() == 0) {
+                // Whole backing array from the start, no need to copy anything
+                update(data.array(), data.remaining());
+                data.position(data.limit());
+                return;
+            }
+            if (_chunk == null) {
+                _chunk = new byte[NaClSuite.HASH_CHUNK_SIZE];
+            }
+            while (data.hasRemaining()) {
+                int length = Math.min(data.remaining(), _chunk.length);
+                data.get(_chunk, 0, length);
+                update(_chunk, length);
+            }
+        }
+
+        @Override
+        public String finish() throws CryptographyException {
+            if (_finished) { throw new IllegalStateException("Unable to finish hash, hash operation already finished."); }
+            _finished = true;
+            byte[] hash = new byte[NaClSuite.NBR_HASH_BYTES];
+            if (NaClSuite.sodium().crypto_generichash_final(_state, hash, hash.length) != 0) {
+                throw new CryptographyException("Cryptographic operation failed.");
+            }
+            return Utility.toHex(hash);
+        }
+
+        private void update(byte[] bytes, int length) throws CryptographyException {
+            if (NaClSuite.sodium().crypto_generichash_update(_state, bytes, length) != 0) {
+                throw new CryptographyException("Cryptographic operation failed.");
+            }
+        }
+
+    }
+
+    private final class NaClEncryptionStream extends OutputStream {
+
+        private final OutputStream _out;
+        private final SecretStream.State _state = new SecretStream.State();
+        private final byte[] _buffer = new byte[NaClSuite.STREAM_CHUNK_SIZE];
+        private final byte[] _cipher = new byte[NaClSuite.STREAM_CHUNK_SIZE + SecretStream.ABYTES];
+        private byte[] _header = new byte[SecretStream.HEADERBYTES];
+        private int _length = 0;
+        private boolean _closed = false;
+
+        NaClEncryptionStream(OutputStream out, Key key) throws CryptographyException {
+            byte[] header = _header;
+            GuardedSecret guarded = key.getGuardedSecret();
+            int result = guarded != null
+                    ? guarded.apply(secret -> SodiumPointers.crypto_secretstream_xchacha20poly1305_init_push(_state, header, secret))
+                    : NaClSuite.sodium().crypto_secretstream_xchacha20poly1305_init_push(_state, header, key.getKeyBytes(Claim.KEY));
+            if (result != 0) {
+                throw new CryptographyException("Cryptographic operation failed.");
+            }
+            this._out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            throwIfClosed();
+            if (_length == _buffer.length) {
+                push(SecretStream.TAG_MESSAGE);
+            }
+            _buffer[_length++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            throwIfClosed();
+            while (len > 0) {
+                if (_length == _buffer.length) {
+                    push(SecretStream.TAG_MESSAGE);
+                }
+                int count = Math.min(len, _buffer.length - _length);
+                System.arraycopy(b, off, _buffer, _length, count);
+                _length += count;
+                off += count;
+                len -= count;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            _out.flush(); // Any partial chunk is kept until it is full or the stream is closed
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (_closed) { return; }
+            _closed = true;
+            try {
+                push(SecretStream.TAG_FINAL);
+            } finally {
+                _out.close();
+            }
+        }
+
+        private void push(byte tag) throws IOException {
+            if (_header != null) {
+                _out.write(_header);
+                _header = null;
+            }
+            long[] cipherLength = new long[1];
+            if (NaClSuite.sodium().crypto_secretstream_xchacha20poly1305_push(_state, _cipher, cipherLength, _buffer, _length, null, 0, tag) != 0) {
+                throw new IOException("Cryptographic operation failed.");
+            }
+            _out.write(_cipher, 0, (int) cipherLength[0]);
+            _length = 0;
+        }
+
+        private void throwIfClosed() throws IOException {
+            if (_closed) { throw new IOException("Unable to write, encryption stream is closed."); }
+        }
+
+    }
+
+    private final class NaClDecryptionStream extends InputStream {
+
+        private final InputStream _in;
+        private final SecretStream.State _state = new SecretStream.State();
+        private final byte[] _cipher = new byte[NaClSuite.STREAM_CHUNK_SIZE + SecretStream.ABYTES];
+        private final byte[] _plain = new byte[NaClSuite.STREAM_CHUNK_SIZE];
+        private int _position = 0;
+        private int _length = 0;
+        private boolean _final = false;
+
+        NaClDecryptionStream(InputStream in, Key key) throws CryptographyException {
+            this._in = in;
+            try {
+                byte[] header = in.readNBytes(SecretStream.HEADERBYTES);
+                if (header.length != SecretStream.HEADERBYTES) {
+                    throw new CryptographyException("Unable to decrypt, cipher text is too short.");
+                }
+                GuardedSecret guarded = key.getGuardedSecret();
+                int result = guarded != null
+                        ? guarded.apply(secret -> SodiumPointers.crypto_secretstream_xchacha20poly1305_init_pull(_state, header, secret))
+                        : NaClSuite.sodium().crypto_secretstream_xchacha20poly1305_init_pull(_state, header, key.getKeyBytes(Claim.KEY));
+                if (result != 0) {
+                    throw new CryptographyException("Cryptographic operation failed.");
+                }
+                // Decrypt the first chunk right away, so that a wrong key is detected before any data is read
+                pull();
+            } catch (IOException e) {
+                throw new CryptographyException(e.getMessage());
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!fill()) { return -1; }
+            return _plain[_position++] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) { return 0; }
+            if (!fill()) { return -1; }
+            int count = Math.min(len, _length - _position);
+            System.arraycopy(_plain, _position, b, off, count);
+            _position += count;
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return _length - _position;
+        }
+
+        @Override
+        public void close() throws IOException {
+            _in.close();
+        }
+
+        private boolean fill() throws IOException {
+            while (_position == _length) {
+                if (_final) { return false; }
+                pull();
+            }
+            return true;
+        }
+
+        private void pull() throws IOException {
+            int read = _in.readNBytes(_cipher, 0, _cipher.length);
+            if (read < SecretStream.ABYTES) { throw new IOException("Unable to decrypt, cipher text is truncated."); }
+            long[] plainLength = new long[1];
+            byte[] tag = new byte[1];
+            if (NaClSuite.sodium().crypto_secretstream_xchacha20poly1305_pull(_state, _plain, plainLength, tag, _cipher, read, null, 0) != 0) {
+                throw new IOException("Unable to decrypt, cryptographic operation failed.");
+            }
+            _position = 0;
+            _length = (int) plainLength[0];
+            if (tag[0] == SecretStream.TAG_FINAL) {
+                if (_in.read() != -1) { throw new IOException("Unable to decrypt, unexpected data after end of cipher text."); }
+                _final = true;
+            } else if (read < _cipher.length) {
+                throw new IOException("Unable to decrypt, cipher text is truncated.");
+            }
+        }
+
+    }
+
 }
@@ -0,0 +1,75 @@
+//
+//  RandomSource.java
+//  DiME - Data Identity Message Envelope
+//  A powerful universal data format that is built for secure, and integrity protected communication between trusted
+//  entities in a network.
+//
+//  Released under the MIT licence, see LICENSE for more information.
+//  Copyright (c) 2024 Shift Everywhere AB. All rights reserved.
+//
+package io.dimeformat.crypto;
+
+import java.security.SecureRandom;
+import java.util.UUID;
+
+/**
+ * A source of cryptographically secure random bytes. This is used for nonces, unique identifiers and key material.
+ * The source in use is set through {@link Crypto#setRandomSource(RandomSource)}. Implementations must be thread-safe.
+ */
+public interface RandomSource {
+
+    /**
+     * Fills the provided array with secure random bytes.
+     * @param bytes The array to fill.
+     */
+    void nextBytes(byte[] bytes);
+
+    /**
+     * Generates secure random bytes.
+     * @param length The number of bytes to generate.
+     * @return An array with secure random bytes.
+     */
+    default byte[] randomBytes(int length) {
+        if (length <= 0) { return new byte[0]; }
+        byte[] bytes = new byte[length];
+        nextBytes(bytes);
+        return bytes;
+    }
+
+    /**
+     * Generates a random (version 4) UUID, in the same way as {@link UUID#randomUUID()}, but using this source.
+     * @return A random UUID.
+     */
+    default UUID randomUUID() {
+        byte[] bytes = randomBytes(16);
+        bytes[6] = (byte) ((bytes[6] & 0x0f) | 0x40); // Version 4
+        bytes[8] = (byte) ((bytes[8] & 0x3f) | 0x80); // IETF variant
+        long msb = 0;
+        long lsb = 0;
+        for (int i = 0; i < 8; i++) {
+            msb = (msb << 8) | (bytes[i] & 0xff);
+            lsb = (lsb << 8) | (bytes[i + 8] & 0xff);
+        }
+        return new UUID(msb, lsb);
+    }
+
+    /**
+     * Returns a source that uses randombytes_buf from libsodium, the same native library used by the NaCl
+     * cryptographic suite. This is the default source.
+     * @return A native random source.
+     */
+    static RandomSource nativeSource() {
+        return NaClSuite::randomBytes;
+    }
+
+    /**
+     * Returns a source that uses one {@link SecureRandom} instance per thread, avoiding both the creation of new
+     * instances and contention between threads.
+     * @return A thread-local random source.
+     */
+    static RandomSource threadLocalSecureRandom() {
+        ThreadLocal<SecureRandom> random = ThreadLocal.withInitial(SecureRandom::new);
+        return bytes -> random.get().nextBytes(bytes);
+    }
+
+}
@@ -0,0 +1,219 @@
+//
+//  SharedSecretCache.java
+//  DiME - Data Identity Message Envelope
+//  A powerful universal data format that is built for secure, and integrity protected communication between trusted
+//  entities in a network.
+//
+//  Released under the MIT licence, see LICENSE for more information.
+//  Copyright (c) 2024 Shift Everywhere AB. All rights reserved.
+//
+package io.dimeformat.crypto;
+
+import io.dimeformat.Key;
+import io.dimeformat.enums.Claim;
+import io.dimeformat.enums.KeyCapability;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A bounded and expiring cache of shared secrets (session keys) generated through key exchange. Entries are keyed by
+ * the name of the local key (the key holding the secret), the public key of the remote party and the direction of the
+ * exchange, i.e. if the local key acted as client or server. Once set using
+ * {@link Crypto#setSharedSecretCache(SharedSecretCache)}, repeated calls to
+ * {@link Crypto#generateSharedSecret(Key, Key, List)} with the same keys will return the cached shared secret instead
+ * of performing the key exchange again. The cache also remembers which direction was last confirmed to work for a
+ * pair of keys, this is used by {@link io.dimeformat.Message} to avoid trying the wrong direction first.
+ * Shared secrets are never cached when the local key is ephemeral ({@link Key#isEphemeral()}). The secret of the local
+ * key is never held by the cache, entries only remember the {@link GuardedSecret} instance of a guarded key, or a
+ * salted hash of the secret of any other key.
+ * Instances are thread-safe.
+ */
+public final class SharedSecretCache {
+
+    /// PUBLIC ///
+
+    /**
+     * The default maximum number of shared secrets held in a cache.
+     */
+    public static final int DEFAULT_MAX_ENTRIES = 1024;
+    /**
+     * The default time, in seconds, that a shared secret is held in a cache.
+     */
+    public static final long DEFAULT_TIME_TO_LIVE = 300L;
+
+    /**
+     * Creates a cache with {@link #DEFAULT_MAX_ENTRIES} and {@link #DEFAULT_TIME_TO_LIVE}.
+     */
+    public SharedSecretCache() {
+        this(SharedSecretCache.DEFAULT_MAX_ENTRIES, SharedSecretCache.DEFAULT_TIME_TO_LIVE);
+    }
+
+    /**
+     * Creates a cache with the provided limits. When the cache is full the least recently used shared secret will be
+     * evicted.
+     * @param maxEntries The maximum number of shared secrets to hold, must be 1 or more.
+     * @param timeToLive The number of seconds that a shared secret may be held in the cache, must be 1 or more.
+     */
+    public SharedSecretCache(int maxEntries, long timeToLive) {
+        if (maxEntries < 1) { throw new IllegalArgumentException("Unable to create cache, maximum number of entries must be 1 or more."); }
+        if (timeToLive < 1) { throw new IllegalArgumentException("Unable to create cache, time to live must be 1 second or more."); }
+        this._timeToLive = timeToLive * 1_000_000_000L;
+        new SecureRandom().nextBytes(this._salt);
+        this._entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Returns the number of shared secrets currently held in the cache, this may include expired entries that have
+     * not yet been evicted.
+     * @return The number of entries.
+     */
+    public synchronized int size() {
+        return _entries.size();
+    }
+
+    /**
+     * Removes all shared secrets from the cache.
+     */
+    public synchronized void clear() {
+        _entries.clear();
+    }
+
+    /**
+     * Indicates if a shared secret generated from the provided keys, in the provided direction, has been confirmed to
+     * work through {@link #confirm(Key, Key)}.
+     * @param clientKey The client key of the exchange.
+     * @param serverKey The server key of the exchange.
+     * @return True if confirmed, false otherwise.
+     */
+    public boolean isConfirmed(Key clientKey, Key serverKey) {
+        Entry entry = find(clientKey, serverKey);
+        return entry != null && entry.confirmed;
+    }
+
+    /**
+     * Marks a cached shared secret, generated from the provided keys in the provided direction, as confirmed to work,
+     * i.e. it has successfully decrypted data. Any confirmation of the opposite direction is removed. Does nothing if no
+     * shared secret is cached for the keys.
+     * @param clientKey The client key of the exchange.
+     * @param serverKey The server key of the exchange.
+     */
+    public void confirm(Key clientKey, Key serverKey) {
+        Entry entry = find(clientKey, serverKey);
+        if (entry == null) { return; }
+        entry.confirmed = true;
+        Entry opposite = find(serverKey, clientKey);
+        if (opposite != null) {
+            opposite.confirmed = false;
+        }
+    }
+
+    /// PACKAGE-PRIVATE ///
+
+    Key get(Key clientKey, Key serverKey, List<KeyCapability> capabilities) {
+        Entry entry = find(clientKey, serverKey);
+        if (entry == null || !entry.capabilities.equals(capabilities)) { return null; }
+        return entry.sharedKey;
+    }
+
+    void put(Key clientKey, Key serverKey, List<KeyCapability> capabilities, Key sharedKey) {
+        String id = identifier(clientKey, serverKey);
+        if (id == null) { return; }
+        Key localKey = clientKey.hasSecret() ? clientKey : serverKey;
+        GuardedSecret guardedSecret = localKey.getGuardedSecret();
+        byte[] fingerprint = null;
+        if (guardedSecret == null) {
+            fingerprint = fingerprint(localKey);
+            if (fingerprint == null) { return; }
+        } else if (guardedSecret.isDestroyed()) {
+            return;
+        }
+        Entry entry = new Entry(guardedSecret, fingerprint, List.copyOf(capabilities), sharedKey, System.nanoTime() + _timeToLive);
+        synchronized (this) {
+            _entries.put(id, entry);
+        }
+    }
+
+    /// PRIVATE ///
+
+    private static final String SEPARATOR = "|";
+    private static final String CLIENT = "c";
+    private static final String SERVER = "s";
+    private static final String FINGERPRINT_ALGORITHM = "SHA-256";
+    private static final int SALT_LENGTH = 16;
+
+    private final long _timeToLive;
+    private final byte[] _salt = new byte[SharedSecretCache.SALT_LENGTH];
+    private final LinkedHashMap<String, Entry> _entries;
+
+    private static final class Entry {
+        private final GuardedSecret guardedSecret;
+        private final byte[] fingerprint;
+        private final List<KeyCapability> capabilities;
+        private final Key sharedKey;
+        private final long expires;
+        private volatile boolean confirmed;
+
+        private Entry(GuardedSecret guardedSecret, byte[] fingerprint, List<KeyCapability> capabilities, Key sharedKey, long expires) {
+            this.guardedSecret = guardedSecret;
+            this.fingerprint = fingerprint;
+            this.capabilities = capabilities;
+            this.sharedKey = sharedKey;
+            this.expires = expires;
+        }
+    }
+
+    private Entry find(Key clientKey, Key serverKey) {
+        String id = identifier(clientKey, serverKey);
+        if (id == null) { return null; }
+        Entry entry;
+        synchronized (this) {
+            entry = _entries.get(id);
+            if (entry != null && System.nanoTime() - entry.expires > 0) {
+                _entries.remove(id);
+                return null;
+            }
+        }
+        if (entry == null) { return null; }
+        // The local key name is derived from the public key only, so the secret must match as well
+        Key localKey = clientKey.hasSecret() ? clientKey : serverKey;
+        GuardedSecret guardedSecret = localKey.getGuardedSecret();
+        if (guardedSecret != null || entry.guardedSecret != null) {
+            return guardedSecret == entry.guardedSecret && !guardedSecret.isDestroyed() ? entry : null;
+        }
+        byte[] fingerprint = fingerprint(localKey);
+        return fingerprint != null && MessageDigest.isEqual(entry.fingerprint, fingerprint) ? entry : null;
+    }
+
+    private byte[] fingerprint(Key localKey) {
+        byte[] secret = localKey.getKeyBytes(Claim.KEY); // The key's own decoded secret, not a copy, must not be wiped
+        if (secret == null) { return null; }
+        if (localKey.getGuardedSecret() != null) { return null; } // Guarded concurrently, the bytes may be a copy
+        try {
+            MessageDigest digest = MessageDigest.getInstance(SharedSecretCache.FINGERPRINT_ALGORITHM);
+            digest.update(_salt);
+            return digest.digest(secret);
+        } catch (NoSuchAlgorithmException e) {
+            return null;
+        }
+    }
+
+    private static String identifier(Key clientKey, Key serverKey) {
+        if (clientKey == null || serverKey == null) { return null; }
+        boolean isClient = clientKey.hasSecret();
+        Key localKey = isClient ? clientKey : serverKey;
+        Key remoteKey = isClient ? serverKey : clientKey;
+        if (!localKey.hasSecret() || localKey.getPublic() == null || remoteKey.getPublic() == null) { return null; }
+        if (localKey.isEphemeral()) { return null; } // Used for a single exchange only, caching would evict useful entries
+        return localKey.getName() + SEPARATOR + remoteKey.getPublic() + SEPARATOR + (isClient ? CLIENT : SERVER);
+    }
+
+}
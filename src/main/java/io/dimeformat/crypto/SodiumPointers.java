@@ -0,0 +1,127 @@
+//
+//  SodiumPointers.java
+//  DiME - Data Identity Message Envelope
+//  A powerful universal data format that is built for secure, and integrity protected communication between trusted
+//  entities in a network.
+//
+//  Released under the MIT licence, see LICENSE for more information.
+//  Copyright (c) 2024 Shift Everywhere AB. All rights reserved.
+//
+package io.dimeformat.crypto;
+
+import com.goterl.lazysodium.interfaces.SecretStream;
+import com.goterl.lazysodium.utils.LibraryLoader;
+import com.sun.jna.Memory;
+import com.sun.jna.Native;
+import com.sun.jna.Pointer;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Pointer based bindings to libsodium, used where the byte array bindings of lazysodium would force extra copies,
+ * i.e. when working directly on (direct) byte buffers or on secrets kept in guarded memory ({@link GuardedSecret}).
+ * Registered against the same native library as the shared binding used by {@link NaClSuite}.
+ */
+final class SodiumPointers {
+
+    /// PACKAGE-PRIVATE ///
+
+    static native int crypto_secretbox_easy(Pointer c, Pointer m, long mlen, byte[] n, byte[] k);
+
+    static native int crypto_secretbox_open_easy(Pointer m, Pointer c, long clen, byte[] n, byte[] k);
+
+    static native int crypto_secretbox_easy(Pointer c, Pointer m, long mlen, byte[] n, Pointer k);
+
+    static native int crypto_secretbox_open_easy(Pointer m, Pointer c, long clen, byte[] n, Pointer k);
+
+    static native int crypto_secretbox_easy(byte[] c, byte[] m, long mlen, byte[] n, Pointer k);
+
+    static native int crypto_secretbox_open_easy(byte[] m, byte[] c, long clen, byte[] n, Pointer k);
+
+    static native int crypto_sign_detached(byte[] sig, Pointer siglen, byte[] m, long mlen, Pointer sk);
+
+    static native int crypto_kx_client_session_keys(byte[] rx, byte[] tx, byte[] client_pk, Pointer client_sk, byte[] server_pk);
+
+    static native int crypto_kx_server_session_keys(byte[] rx, byte[] tx, byte[] server_pk, Pointer server_sk, byte[] client_pk);
+
+    static native int crypto_kdf_derive_from_key(byte[] subkey, long subkey_len, long subkey_id, byte[] ctx, Pointer key);
+
+    static native int crypto_secretstream_xchacha20poly1305_init_push(SecretStream.State state, byte[] header, Pointer k);
+
+    static native int crypto_secretstream_xchacha20poly1305_init_pull(SecretStream.State state, byte[] header, Pointer k);
+
+    static native Pointer sodium_malloc(long size);
+
+    static native void sodium_free(Pointer ptr);
+
+    static native void sodium_memzero(Pointer pnt, long len);
+
+    static native int sodium_mlock(Pointer addr, long len);
+
+    static native int sodium_munlock(Pointer addr, long len);
+
+    /**
+     * Returns a pointer to the remaining bytes of a buffer. Direct buffers are used in place, for heap buffers the
+     * remaining bytes are copied to native memory.
+     */
+    static Pointer input(ByteBuffer buffer, int length) {
+        if (buffer.isDirect()) {
+            return Native.getDirectBufferPointer(buffer).share(buffer.position());
+        }
+        Memory memory = new Memory(Math.max(length, 1));
+        if (buffer.hasArray()) {
+            memory.write(0, buffer.array(), buffer.arrayOffset() + buffer.position(), length);
+        } else {
+            byte[] bytes = new byte[length];
+            buffer.duplicate().get(bytes);
+            memory.write(0, bytes, 0, length);
+        }
+        return memory;
+    }
+
+    /**
+     * Returns a pointer to write output to a buffer. Direct buffers are written in place, for heap buffers native
+     * memory is returned, which is to be copied back using {@link #complete(Pointer, ByteBuffer, int)}.
+     */
+    static Pointer output(ByteBuffer buffer, int length) {
+        if (buffer.isDirect()) {
+            return Native.getDirectBufferPointer(buffer).share(buffer.position());
+        }
+        return new Memory(Math.max(length, 1));
+    }
+
+    /**
+     * Completes an output buffer, copying from native memory if needed, and advances its position.
+     */
+    static void complete(Pointer pointer, ByteBuffer buffer, int length) {
+        if (buffer.isDirect()) {
+            buffer.position(buffer.position() + length);
+        } else if (buffer.hasArray()) {
+            pointer.read(0, buffer.array(), buffer.arrayOffset() + buffer.position(), length);
+            buffer.position(buffer.position() + length);
+        } else {
+            buffer.put(pointer.getByteArray(0, length));
+        }
+    }
+
+    /**
+     * Clears native memory that was allocated for a heap buffer, does nothing for direct buffers.
+     */
+    static void clear(Pointer pointer) {
+        if (pointer instanceof Memory) {
+            ((Memory) pointer).clear();
+        }
+    }
+
+    /// PRIVATE ///
+
+    static {
+        NaClSuite.sodium(); // Makes sure the library is loaded and initialized
+        new LibraryLoader(List.of(SodiumPointers.class)).loadLibrary(LibraryLoader.Mode.PREFER_SYSTEM, "sodium");
+    }
+
+    private SodiumPointers() {
+        throw new IllegalStateException("Not intended to be instantiated.");
+    }
+
+}
@@ -35,6 +35,11 @@ public enum Claim {
      * Context - The context for in which the item is to be used or valid (All).
      */
     CTX,
+    /**
+     * Payload encoding - The versioned format of a payload that is not encrypted as a single cipher text, such as a
+     * payload encrypted in chunks (Message).
+     */
+    ENC,
     /**
      * Expires at - The date and time when the item should be considered invalid and should no longer be used (All).
      */
@@ -81,6 +86,11 @@ public enum Claim {
      * (Identity, Identity Issuing Request).
      */
     PRI,
+    /**
+     * Recipients - The payload key wrapped for each recipient of a multi-recipient payload, keyed by the name of the
+     * recipient's key (Message).
+     */
+    RCP,
     /**
      * Subject ID - The identifier of the subject related to the item (All).
      */
@@ -96,7 +106,11 @@ public enum Claim {
 
     @Override
     public String toString() {
-        return super.toString().toLowerCase();
+        return _name;
     }
 
+    /// PRIVATE ///
+
+    private final String _name = name().toLowerCase(); // Claims are looked up by name, so this is only converted once
+
 }
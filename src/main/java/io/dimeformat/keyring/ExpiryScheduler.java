@@ -0,0 +1,202 @@
+//
+//  ExpiryScheduler.java
+//  DiME - Data Identity Message Envelope
+//  A powerful universal data format that is built for secure, and integrity protected communication between trusted
+//  entities in a network.
+//
+//  Released under the MIT licence, see LICENSE for more information.
+//  Copyright (c) 2024 Shift Everywhere AB. All rights reserved.
+//
+package io.dimeformat.keyring;
+
+import io.dimeformat.DimeContext;
+import io.dimeformat.Item;
+import io.dimeformat.Utility;
+import io.dimeformat.enums.Claim;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Removes keys and identities from a key ring when they expire. Expiry is handled on a background (daemon) thread,
+ * which sleeps until the earliest expiration date (exp) of the items in the key ring, removes the items that have
+ * expired, and notifies a listener of each removed item. The thread is woken up whenever the key ring changes, so that
+ * added items are tracked as well.
+ * <p>
+ * After each run the scheduler records the period during which all items in the key ring have valid dates. While
+ * inside this period, and the key ring is unchanged, {@link KeyRing#verify(Item)} skips checking the dates of the
+ * trusted item used, as the scheduler has already checked them. At most one scheduler may be attached to a key ring.
+ * The scheduler uses the clock, time modifier and grace period of the context that was current when it was created.
+ */
+public final class ExpiryScheduler implements AutoCloseable {
+
+    /// PUBLIC ///
+
+    /**
+     * A listener that is notified when an item has been removed from the key ring as it expired.
+     */
+    @FunctionalInterface
+    public interface Listener {
+
+        /**
+         * Called when an item has been removed as it expired. This is called on the thread of the scheduler, or the
+         * thread calling {@link #evictExpired()}, and should return quickly. Any exception thrown is ignored.
+         * @param name The name of the item in the key ring.
+         * @param item The item that was removed.
+         */
+        void expired(String name, Item item);
+
+    }
+
+    /**
+     * Creates a scheduler that removes expired items from the provided key ring, and starts it directly.
+     * @param keyRing The key ring to remove expired items from.
+     * @param listener A listener to notify of removed items, may be null.
+     * @throws IllegalStateException If the key ring already has a scheduler attached.
+     */
+    public ExpiryScheduler(KeyRing keyRing, Listener listener) {
+        if (keyRing == null) { throw new IllegalArgumentException("Unable to schedule expiry, key ring must not be null."); }
+        this._keyRing = keyRing;
+        this._listener = listener;
+        this._context = DimeContext.current();
+        keyRing.attach(this);
+        this._worker = new Thread(this::run, "dime-key-ring-expiry");
+        this._worker.setDaemon(true);
+        this._worker.start();
+    }
+
+    /**
+     * Returns the key ring from which expired items are removed.
+     * @return The key ring.
+     */
+    public KeyRing getKeyRing() {
+        return _keyRing;
+    }
+
+    /**
+     * Returns the earliest expiration date of the items in the key ring, as of the last run of the scheduler.
+     * @return The next expiration date, or null if no item in the key ring expires.
+     */
+    public Instant getNextExpiry() {
+        return _nextExpiry;
+    }
+
+    /**
+     * Removes all expired items from the key ring directly, without waiting for the scheduler to run.
+     * @return The number of items removed.
+     */
+    public int evictExpired() {
+        if (_closed) { throw new IllegalStateException("Unable to remove expired items, scheduler has been closed."); }
+        return _context.execute(this::evict);
+    }
+
+    /**
+     * Stops the scheduler and detaches it from the key ring. Verifications will again check the dates of trusted
+     * items one by one.
+     */
+    @Override
+    public void close() {
+        _closed = true;
+        _keyRing.detach(this);
+        LockSupport.unpark(_worker);
+    }
+
+    /// PACKAGE-PRIVATE ///
+
+    void changed() {
+        _changed = true;
+        LockSupport.unpark(_worker);
+    }
+
+    /// PRIVATE ///
+
+    private static final long FAILURE_BACK_OFF = 1_000_000_000L;
+    private static final long MAX_PARK = 3_600_000_000_000L; // Re-checks at least once an hour, should the clock jump
+    private final KeyRing _keyRing;
+    private final Listener _listener;
+    private final DimeContext _context;
+    private final Thread _worker;
+    private volatile Instant _nextExpiry;
+    private volatile boolean _changed = false;
+    private volatile boolean _closed = false;
+
+    private void run() {
+        while (!_closed) {
+            _changed = false;
+            try {
+                _context.execute(this::evict);
+            } catch (RuntimeException e) {
+                // Reading or changing the key ring failed, back off for a while, dates are checked one by one until then
+                LockSupport.parkNanos(this, ExpiryScheduler.FAILURE_BACK_OFF);
+                continue;
+            }
+            // Sleep until the next item expires, or until the key ring changes (spurious wake-ups are re-checked)
+            while (!_closed && !_changed) {
+                long nanos = parkNanos();
+                if (nanos <= 0) { break; }
+                LockSupport.parkNanos(this, nanos);
+            }
+        }
+    }
+
+    private long parkNanos() {
+        Instant nextExpiry = _nextExpiry;
+        if (nextExpiry == null) { return ExpiryScheduler.MAX_PARK; }
+        return _context.execute(() -> {
+            Duration remaining = Duration.between(Utility.createTimestamp(), nextExpiry.plusSeconds(_context.getGracePeriod()));
+            if (remaining.isNegative()) { return 0L; }
+            if (remaining.getSeconds() >= ExpiryScheduler.MAX_PARK / 1_000_000_000L) { return ExpiryScheduler.MAX_PARK; }
+            return remaining.toNanos() + 1_000_000L; // Wakes up just after the item has expired
+        });
+    }
+
+    /**
+     * Removes expired items and records the period during which all remaining items have valid dates. The key ring is
+     * scanned again if it changed during the scan, as the period must hold for all items in one version.
+     */
+    private synchronized int evict() {
+        int evicted = 0;
+        while (true) {
+            long version = _keyRing.getVersion();
+            Instant now = Utility.createTimestamp();
+            Instant notBefore = Instant.MIN;
+            Instant notAfter = Instant.MAX;
+            boolean datesValid = true;
+            int removed = 0;
+            for (String name: _keyRing.nameSet()) {
+                Item item = _keyRing.get(name);
+                if (item == null) { continue; }
+                Instant issuedAt = item.getClaim(Claim.IAT);
+                Instant expiresAt = item.getClaim(Claim.EXP);
+                if (expiresAt != null && Utility.gracefulTimestampCompare(expiresAt, now) < 0) {
+                    if (_keyRing.remove(name)) {
+                        removed++;
+                        notifyExpired(name, item);
+                    }
+                    continue;
+                }
+                if (issuedAt != null && issuedAt.isAfter(notBefore)) { notBefore = issuedAt; }
+                if (expiresAt != null && expiresAt.isBefore(notAfter)) { notAfter = expiresAt; }
+                if (issuedAt != null && expiresAt != null && issuedAt.isAfter(expiresAt)) { datesValid = false; }
+            }
+            evicted += removed;
+            if (removed == 0 && _keyRing.getVersion() == version) {
+                _nextExpiry = notAfter != Instant.MAX ? notAfter : null;
+                if (datesValid) {
+                    _keyRing.setValidDates(this, version, notBefore, notAfter);
+                }
+                return evicted;
+            }
+        }
+    }
+
+    private void notifyExpired(String name, Item item) {
+        if (_listener == null) { return; }
+        try {
+            _listener.expired(name, item);
+        } catch (RuntimeException e) {
+            // Ignored, a failing listener must not stop expired items from being removed
+        }
+    }
+
+}
@@ -0,0 +1,832 @@
+//
+//  FileKeyRing.java
+//  DiME - Data Identity Message Envelope
+//  A powerful universal data format that is built for secure, and integrity protected communication between trusted
+//  entities in a network.
+//
+//  Released under the MIT licence, see LICENSE for more information.
+//  Copyright (c) 2024 Shift Everywhere AB. All rights reserved.
+//
+package io.dimeformat.keyring;
+
+import io.dimeformat.Item;
+import io.dimeformat.Key;
+import io.dimeformat.exceptions.CryptographyException;
+import io.dimeformat.exceptions.InvalidFormatException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * A key ring that is stored on file, so that it survives restarts without being rebuilt. Changes are appended to a
+ * log file as put and remove records, each change writes only the changed record. A hashed index, kept in a separate
+ * file next to the log, maps item names, and the key names found in signatures, to records in the log. Both files are
+ * memory-mapped, so opening a key ring does not read or decode its items, items are decoded when first looked up.
+ * <p>
+ * Lookups and verifications never block, also while changes are written. Changes are serialized, and become visible
+ * to other threads item by item, except for {@link #reload(String, Key)}, which writes new files aside and swaps them
+ * in at once. After a crash, records appended after the last change that was indexed are recovered when the key ring
+ * is opened, and a missing or damaged index is rebuilt from the log. Each change is forced to the storage device
+ * before it is indexed, and records are checked against their checksum when first read. A damaged record fails
+ * verifications with {@link IntegrityState#FAILED_INVALID_KEY_RING_ITEM}, while looking it up by name throws
+ * {@link IllegalStateException}. Only public keys are stored, a key holding a secret is stored as its public copy.
+ * Removed and replaced records stay in the log until {@link #compact()} is called. The log may grow to at most 2 GiB.
+ */
+public final class FileKeyRing extends KeyRing implements AutoCloseable {
+
+    /// PUBLIC ///
+
+    /**
+     * The suffix added to the path of the log file to form the path of the index file.
+     */
+    public static final String INDEX_SUFFIX = ".idx";
+
+    /**
+     * Opens a key ring stored on file, or creates a new empty key ring if the file does not exist.
+     * @param path The path of the log file, the index file is stored next to it (with {@link #INDEX_SUFFIX}).
+     * @throws IOException If the files could not be opened or created, or if the file is not a key ring.
+     */
+    public FileKeyRing(Path path) throws IOException {
+        if (path == null) { throw new IllegalArgumentException("Unable to open key ring, path must not be null."); }
+        this._logPath = path.toAbsolutePath();
+        this._indexPath = this._logPath.resolveSibling(this._logPath.getFileName() + FileKeyRing.INDEX_SUFFIX);
+        synchronized (_writeLock) {
+            this._state = open();
+        }
+    }
+
+    /**
+     * Returns the path of the log file.
+     * @return The path of the log file.
+     */
+    public Path getPath() {
+        return _logPath;
+    }
+
+    @Override
+    public int size() {
+        return FileKeyRing.count(_state);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public boolean containsName(String name) {
+        return name != null && lookup(_state, name, false) != null;
+    }
+
+    @Override
+    public Item get(String name) {
+        Record record = name != null ? lookup(_state, name, false) : null;
+        return record != null ? record.item() : null;
+    }
+
+    @Override
+    public String put(Item item) {
+        if (item == null) { throw new IllegalArgumentException("Unable to add item to key ring, item to add must not be null."); }
+        Record record = FileKeyRing.record(item);
+        write(List.of(record), Collections.emptySet());
+        return record.name;
+    }
+
+    @Override
+    public boolean remove(String name) {
+        if (name == null || name.length() == 0) { return false; }
+        synchronized (_writeLock) {
+            ensureOpen();
+            if (!contains(name)) { return false; }
+            write(Collections.emptyList(), Set.of(name));
+        }
+        return true;
+    }
+
+    @Override
+    public long getVersion() {
+        return _version;
+    }
+
+    /**
+     * Removes all keys and identities in the key ring. The log and index files are replaced by empty files.
+     */
+    @Override
+    public void clear() {
+        synchronized (_writeLock) {
+            ensureOpen();
+            try {
+                _state = build(Collections.emptyList());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Returns the names contained in this key ring. The returned set is an unmodifiable copy, it is built by reading
+     * the name of each item in the key ring.
+     * @return An unmodifiable set of the names contained in this key ring.
+     */
+    @Override
+    public Set<String> nameSet() {
+        Set<String> names = new HashSet<>();
+        for (Record record: records(_state)) {
+            names.add(record.name);
+        }
+        return Collections.unmodifiableSet(names);
+    }
+
+    /**
+     * Returns the items (keys and identities) contained in this key ring. The returned collection is an unmodifiable
+     * copy, building it decodes all items in the key ring.
+     * @return An unmodifiable collection of the keys and identities contained in this key ring.
+     */
+    @Override
+    public Collection<Item> items() {
+        return FileKeyRing.items(records(_state));
+    }
+
+    @Override
+    public IntegrityState verify(Item item) {
+        long version = _version;
+        State state = _state;
+        if (FileKeyRing.count(state) == 0) {
+            return IntegrityState.FAILED_NO_KEY_RING;
+        }
+        if (!item.isSigned()) {
+            return IntegrityState.FAILED_NO_SIGNATURE;
+        }
+        try {
+            return KeyRing.verify(item, name -> {
+                Record record = lookup(state, name, true);
+                return record != null ? record.item() : null;
+            }, () -> FileKeyRing.items(records(state)), () -> _version == version && datesVerified(version));
+        } catch (IllegalStateException e) {
+            return IntegrityState.FAILED_INVALID_KEY_RING_ITEM; // A damaged record, or an item that could not be decoded
+        }
+    }
+
+    /**
+     * Returns a DiME encoded string with all items in the key ring, as changes are not tracked by version in the log
+     * a delta exported from a key ring on file always holds all items. See {@link KeyRing#exportDelta(long, Key)}.
+     * @param sinceVersion Ignored, the delta holds all items.
+     * @param signingKey A key to sign the generated DiME envelope, may be null.
+     * @return A DiME encoded string with the delta.
+     * @throws CryptographyException If something goes wrong while signing the generated envelope.
+     */
+    @Override
+    public String exportDelta(long sinceVersion, Key signingKey) throws CryptographyException {
+        long version = _version; // Read before the items, a later delta then repeats any change made in between
+        return KeyRing.encodeDelta(getId(), KeyRing.FULL_DELTA, version, items(), Collections.emptySet(), signingKey);
+    }
+
+    /**
+     * Rewrites the log file so that it only holds the records of items currently in the key ring, this releases the
+     * space held by removed and replaced items. The index is rebuilt at the same time.
+     * @throws IOException If the files could not be written.
+     */
+    public void compact() throws IOException {
+        synchronized (_writeLock) {
+            ensureOpen();
+            _state = build(records(_state));
+        }
+    }
+
+    /**
+     * Forces all changes to be written to the storage device.
+     */
+    public void sync() {
+        synchronized (_writeLock) {
+            State state = _state;
+            state.log.buffer.force();
+            state.index.force();
+        }
+    }
+
+    /**
+     * Writes all changes to the storage device and closes the key ring. Any further changes will fail, lookups and
+     * verifications may still be done.
+     */
+    @Override
+    public void close() {
+        synchronized (_writeLock) {
+            if (_closed) { return; }
+            sync();
+            _closed = true;
+        }
+    }
+
+    /// PACKAGE-PRIVATE ///
+
+    /**
+     * Changes are written as one change, but become visible to other threads item by item.
+     */
+    @Override
+    void applyChanges(List<Item> added, Set<String> removed) {
+        List<Record> records = new ArrayList<>();
+        for (Item item: added) {
+            records.add(FileKeyRing.record(item));
+        }
+        write(records, removed);
+    }
+
+    @Override
+    void replaceAll(List<Item> items) {
+        HashMap<String, Record> records = new HashMap<>();
+        for (Item item: items) {
+            Record record = FileKeyRing.record(item);
+            records.put(record.name, record);
+        }
+        synchronized (_writeLock) {
+            ensureOpen();
+            try {
+                _state = build(new ArrayList<>(records.values()));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /// PRIVATE ///
+
+    private static final int LOG_MAGIC = 0x444B524C; // DKRL
+    private static final int INDEX_MAGIC = 0x444B5249; // DKRI
+    private static final int VERSION = 1;
+    private static final int LOG_HEADER_SIZE = 16;
+    private static final int LOG_MIN_CAPACITY = 64 * 1024;
+    private static final int INDEX_HEADER_SIZE = 64;
+    private static final int INDEX_MIN_CAPACITY = 64;
+    private static final int SLOT_SIZE = 16;
+    private static final int MIN_RECORD_LENGTH = 1 + Short.BYTES + Short.BYTES + Integer.BYTES + Integer.BYTES;
+    private static final int HEADER_LOG_ID = 8;
+    private static final int HEADER_LOG_LENGTH = 16;
+    private static final int HEADER_CAPACITY = 24;
+    private static final int HEADER_COUNT = 28;
+    private static final int HEADER_USED = 32;
+    private static final byte RECORD_PUT = 1;
+    private static final byte RECORD_REMOVE = 2;
+    private static final long SIGNER = 1L << 63;
+    private static final long REMOVED = 1L << 62;
+    private static final long OFFSET_MASK = REMOVED - 1;
+    private static final VarHandle LONG = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle INT = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+
+    private final Path _logPath;
+    private final Path _indexPath;
+    private final Object _writeLock = new Object();
+    private volatile State _state;
+    private long _logLength; // Guarded by _writeLock
+    private boolean _closed = false; // Guarded by _writeLock
+    private volatile long _version = 0; // Written under _writeLock
+
+    /**
+     * A memory-mapped log file. The mapping is replaced when the log grows, records already decoded are kept for the
+     * lifetime of the log file (they are keyed by offset).
+     */
+    private static final class Log {
+
+        private final long id;
+        private final ConcurrentHashMap<Long, Record> records = new ConcurrentHashMap<>();
+        private volatile MappedByteBuffer buffer;
+        private Path path; // Guarded by _writeLock
+
+        private Log(long id, MappedByteBuffer buffer, Path path) {
+            this.id = id;
+            this.buffer = buffer;
+            this.path = path;
+        }
+
+    }
+
+    /**
+     * A log file together with a memory-mapped index. The index is an open addressing hash table of slots, each slot
+     * holds the hash of a name and a reference to a record in the log (flagged if it is for a signer name, or if the
+     * record has been removed).
+     */
+    private static final class State {
+
+        private final Log log;
+        private final MappedByteBuffer index;
+        private final int capacity;
+
+        private State(Log log, MappedByteBuffer index) {
+            this.log = log;
+            this.index = index;
+            this.capacity = (int) FileKeyRing.INT.getAcquire(index, FileKeyRing.HEADER_CAPACITY);
+        }
+
+    }
+
+    /**
+     * A put or remove record in the log. The item of a put record is decoded when first used.
+     */
+    private static final class Record {
+
+        private final String name;
+        private final String signer;
+        private final String encoded;
+        private volatile Item item;
+
+        private Record(String name, String signer, String encoded) {
+            this.name = name;
+            this.signer = signer;
+            this.encoded = encoded;
+        }
+
+        private Item item() {
+            Item decoded = this.item;
+            if (decoded == null) {
+                try {
+                    decoded = Item.importFromEncoded(encoded);
+                } catch (InvalidFormatException e) {
+                    throw new IllegalStateException("Unable to read key ring, invalid item stored for name: " + name);
+                }
+                this.item = decoded;
+            }
+            return decoded;
+        }
+
+    }
+
+    private static Record record(Item item) {
+        String name = KeyRing.itemName(item);
+        if (name == null || name.length() == 0) { throw new IllegalArgumentException("Unable to add item to key ring, invalid item."); }
+        Item stored = item instanceof Key && ((Key) item).hasSecret() ? ((Key) item).publicCopy() : item;
+        Record record = new Record(name, KeyRing.signerName(name, stored), stored.exportToEncoded());
+        record.item = stored;
+        return record;
+    }
+
+    private static Collection<Item> items(List<Record> records) {
+        List<Item> items = new ArrayList<>(records.size());
+        for (Record record: records) {
+            items.add(record.item());
+        }
+        return Collections.unmodifiableList(items);
+    }
+
+    private void ensureOpen() {
+        if (_closed) { throw new IllegalStateException("Unable to change key ring, it has been closed."); }
+    }
+
+    private boolean contains(String name) {
+        int slot = nameSlot(_state, name, FileKeyRing.hash(name));
+        return slot >= 0 && (FileKeyRing.ref(_state, slot) & FileKeyRing.REMOVED) == 0;
+    }
+
+    /**
+     * Writes a change, removing and then adding items, the version is increased once for the whole change. All records
+     * are appended, and the log forced to the storage device, before the index is updated, so that the index never
+     * refers to records that may be lost in a crash.
+     */
+    private void write(List<Record> records, Set<String> removed) {
+        synchronized (_writeLock) {
+            ensureOpen();
+            begin();
+            List<String> removedNames = new ArrayList<>();
+            for (String name: removed) {
+                if (!contains(name)) { continue; }
+                append(_state.log, FileKeyRing.RECORD_REMOVE, new Record(name, "", ""));
+                removedNames.add(name);
+            }
+            long[] offsets = new long[records.size()];
+            for (int i = 0; i < offsets.length; i++) {
+                offsets[i] = append(_state.log, FileKeyRing.RECORD_PUT, records.get(i));
+            }
+            _state.log.buffer.force();
+            for (String name: removedNames) {
+                indexRemove(_state, name);
+            }
+            for (int i = 0; i < offsets.length; i++) {
+                _state.log.records.put(offsets[i], records.get(i));
+                indexPut(ensureCapacity(), records.get(i), offsets[i]);
+            }
+            commit(_state);
+        }
+    }
+
+    /**
+     * Starts a change, the version is increased before the change becomes visible to readers, so that a reader which
+     * sees the same version before and after a lookup has not seen any part of a change.
+     */
+    private void begin() {
+        _version++;
+    }
+
+    private void commit(State state) {
+        FileKeyRing.LONG.setRelease(state.index, FileKeyRing.HEADER_LOG_LENGTH, _logLength);
+        _version++;
+        changed();
+    }
+
+    /// --- LOG --- ///
+
+    private State open() throws IOException {
+        Log log;
+        boolean exists = Files.exists(_logPath) && Files.size(_logPath) >= FileKeyRing.LOG_HEADER_SIZE;
+        if (exists) {
+            MappedByteBuffer buffer = FileKeyRing.map(_logPath, Math.max(Files.size(_logPath), FileKeyRing.LOG_MIN_CAPACITY));
+            if (buffer.getInt(0) != FileKeyRing.LOG_MAGIC || buffer.getInt(4) != FileKeyRing.VERSION) { throw new IOException("Unable to open key ring, not a key ring file: " + _logPath); }
+            log = new Log(buffer.getLong(8), buffer, _logPath);
+        } else {
+            log = createLog(_logPath);
+        }
+        MappedByteBuffer index = openIndex(log);
+        if (index != null) {
+            State state = new State(log, index);
+            _logLength = (long) FileKeyRing.LONG.getAcquire(index, FileKeyRing.HEADER_LOG_LENGTH);
+            _state = state;
+        } else {
+            _state = new State(log, createIndex(_indexPath, log.id, FileKeyRing.INDEX_MIN_CAPACITY));
+            _logLength = FileKeyRing.LOG_HEADER_SIZE;
+        }
+        replay(); // Recovers any records appended after the last committed change
+        _state.log.buffer.force();
+        commit(_state);
+        return _state;
+    }
+
+    private MappedByteBuffer openIndex(Log log) throws IOException {
+        if (!Files.exists(_indexPath)) { return null; }
+        long size = Files.size(_indexPath);
+        if (size < FileKeyRing.INDEX_HEADER_SIZE) { return null; }
+        MappedByteBuffer index = FileKeyRing.map(_indexPath, size);
+        int capacity = index.getInt(FileKeyRing.HEADER_CAPACITY);
+        long logLength = index.getLong(FileKeyRing.HEADER_LOG_LENGTH);
+        boolean valid = index.getInt(0) == FileKeyRing.INDEX_MAGIC
+                && index.getInt(4) == FileKeyRing.VERSION
+                && index.getLong(FileKeyRing.HEADER_LOG_ID) == log.id
+                && capacity >= FileKeyRing.INDEX_MIN_CAPACITY && Integer.bitCount(capacity) == 1
+                && size == FileKeyRing.INDEX_HEADER_SIZE + (long) capacity * FileKeyRing.SLOT_SIZE
+                && logLength >= FileKeyRing.LOG_HEADER_SIZE && logLength <= log.buffer.capacity();
+        if (!valid) { return null; } // An invalid index is rebuilt from the log
+        // The index must only refer to records before the committed length, records after it may not have been written
+        for (int slot = 0; slot < capacity; slot++) {
+            int position = FileKeyRing.position(slot);
+            if (index.getLong(position) == 0) { continue; }
+            long offset = index.getLong(position + Long.BYTES) & FileKeyRing.OFFSET_MASK;
+            if (offset < FileKeyRing.LOG_HEADER_SIZE || offset + Integer.BYTES + FileKeyRing.MIN_RECORD_LENGTH > logLength) { return null; }
+        }
+        return index;
+    }
+
+    private void replay() {
+        ByteBuffer buffer = _state.log.buffer.duplicate();
+        long position = _logLength;
+        while (position + Integer.BYTES <= buffer.capacity()) {
+            int length = buffer.getInt((int) position);
+            if (length == 0) { break; }
+            Record record = length > 0 && position + Integer.BYTES + length <= buffer.capacity() ? FileKeyRing.parse(buffer, position, true) : null;
+            if (record == null) {
+                // A record that was only partly written, wipe it so that it is not mistaken for a record later
+                for (int i = (int) position; i < buffer.capacity(); i++) { buffer.put(i, (byte) 0); }
+                break;
+            }
+            _logLength = position + Integer.BYTES + length;
+            if (record.encoded.isEmpty()) {
+                indexRemove(_state, record.name);
+            } else {
+                _state.log.records.put(position, record);
+                indexPut(ensureCapacity(), record, position);
+            }
+            position = _logLength;
+        }
+    }
+
+    private long append(Log log, byte type, Record record) {
+        byte[] name = record.name.getBytes(StandardCharsets.UTF_8);
+        byte[] signer = record.signer.getBytes(StandardCharsets.UTF_8);
+        byte[] encoded = record.encoded.getBytes(StandardCharsets.UTF_8);
+        if (name.length > Short.MAX_VALUE || signer.length > Short.MAX_VALUE) { throw new IllegalArgumentException("Unable to add item to key ring, name too long."); }
+        int length = 1 + Short.BYTES + name.length + Short.BYTES + signer.length + Integer.BYTES + encoded.length + Integer.BYTES;
+        ByteBuffer bytes = ByteBuffer.allocate(Integer.BYTES + length);
+        bytes.putInt(length).put(type);
+        bytes.putShort((short) name.length).put(name);
+        bytes.putShort((short) signer.length).put(signer);
+        bytes.putInt(encoded.length).put(encoded);
+        CRC32 crc = new CRC32();
+        crc.update(bytes.array(), Integer.BYTES, length - Integer.BYTES);
+        bytes.putInt((int) crc.getValue());
+        long offset = _logLength;
+        ByteBuffer buffer = FileKeyRing.ensureLog(log, offset + bytes.capacity()).duplicate();
+        buffer.position((int) offset);
+        buffer.put(bytes.array());
+        _logLength = offset + bytes.capacity();
+        return offset;
+    }
+
+    private static MappedByteBuffer ensureLog(Log log, long required) {
+        if (required <= log.buffer.capacity()) { return log.buffer; }
+        if (required > Integer.MAX_VALUE) { throw new IllegalStateException("Unable to add item to key ring, maximum size of key ring file reached."); }
+        try {
+            log.buffer = FileKeyRing.map(log.path, Math.min(Math.max(required, 2L * log.buffer.capacity()), Integer.MAX_VALUE));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return log.buffer;
+    }
+
+    /**
+     * Reads a record referred to by the index. The checksum of a record is verified when it is first read, after that
+     * the decoded record is kept with the log.
+     */
+    private Record read(State state, long offset) {
+        Record record = state.log.records.get(offset);
+        if (record == null) {
+            record = FileKeyRing.parse(state.log.buffer, offset, true);
+            if (record == null) { throw new IllegalStateException("Unable to read key ring, damaged record at offset: " + offset); }
+            Record existing = state.log.records.putIfAbsent(offset, record);
+            if (existing != null) {
+                record = existing;
+            }
+        }
+        return record;
+    }
+
+    private static Record parse(ByteBuffer log, long offset, boolean check) {
+        ByteBuffer buffer = log.duplicate();
+        buffer.position((int) offset);
+        int length = buffer.getInt();
+        if (check) {
+            if (length < FileKeyRing.MIN_RECORD_LENGTH || offset + Integer.BYTES + length > log.capacity()) { return null; }
+            CRC32 crc = new CRC32();
+            ByteBuffer content = buffer.duplicate();
+            content.limit(buffer.position() + length - Integer.BYTES);
+            crc.update(content);
+            if (buffer.getInt(buffer.position() + length - Integer.BYTES) != (int) crc.getValue()) { return null; }
+        }
+        byte type = buffer.get();
+        String name = FileKeyRing.string(buffer, buffer.getShort());
+        String signer = FileKeyRing.string(buffer, buffer.getShort());
+        String encoded = FileKeyRing.string(buffer, buffer.getInt());
+        if (type != FileKeyRing.RECORD_PUT && type != FileKeyRing.RECORD_REMOVE) { return null; }
+        return new Record(name, signer, type == FileKeyRing.RECORD_PUT ? encoded : "");
+    }
+
+    private static String string(ByteBuffer buffer, int length) {
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private List<Record> records(State state) {
+        List<Record> records = new ArrayList<>();
+        for (int slot = 0; slot < state.capacity; slot++) {
+            if (FileKeyRing.hash(state, slot) == 0) { continue; }
+            long ref = FileKeyRing.ref(state, slot);
+            if ((ref & (FileKeyRing.SIGNER | FileKeyRing.REMOVED)) == 0) {
+                records.add(read(state, ref));
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Writes a new log and index holding the provided records only, and replaces the current files with them.
+     */
+    private State build(List<Record> records) throws IOException {
+        Path logTemp = _logPath.resolveSibling(_logPath.getFileName() + ".tmp");
+        Path indexTemp = _indexPath.resolveSibling(_indexPath.getFileName() + ".tmp");
+        State previous = _state;
+        long previousLength = _logLength;
+        try {
+            Log log = createLog(logTemp);
+            // The new state is filled in aside, readers keep using the previous state until it is complete
+            State state = new State(log, createIndex(indexTemp, log.id, FileKeyRing.capacityFor(records.size())));
+            _logLength = FileKeyRing.LOG_HEADER_SIZE;
+            for (Record record: records) {
+                long offset = append(log, FileKeyRing.RECORD_PUT, record);
+                log.records.put(offset, record);
+                indexPut(state, record, offset);
+            }
+            log.buffer.force();
+            begin();
+            _state = state;
+            commit(state);
+            state.index.force();
+            // The log is moved first, should the index not follow it is rebuilt as it refers to the previous log
+            Files.move(logTemp, _logPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.path = _logPath;
+            Files.move(indexTemp, _indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return _state;
+        } catch (IOException | RuntimeException e) {
+            _state = previous;
+            _logLength = previousLength;
+            throw e;
+        }
+    }
+
+    private static Log createLog(Path path) throws IOException {
+        Files.deleteIfExists(path);
+        MappedByteBuffer buffer = FileKeyRing.map(path, FileKeyRing.LOG_MIN_CAPACITY);
+        long id = UUID.randomUUID().getMostSignificantBits();
+        buffer.putInt(0, FileKeyRing.LOG_MAGIC);
+        buffer.putInt(4, FileKeyRing.VERSION);
+        buffer.putLong(8, id);
+        return new Log(id, buffer, path);
+    }
+
+    private static MappedByteBuffer map(Path path, long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+
+    /// --- INDEX --- ///
+
+    private static MappedByteBuffer createIndex(Path path, long logId, int capacity) throws IOException {
+        Files.deleteIfExists(path);
+        MappedByteBuffer index = FileKeyRing.map(path, FileKeyRing.INDEX_HEADER_SIZE + (long) capacity * FileKeyRing.SLOT_SIZE);
+        index.putInt(0, FileKeyRing.INDEX_MAGIC);
+        index.putInt(4, FileKeyRing.VERSION);
+        index.putLong(FileKeyRing.HEADER_LOG_ID, logId);
+        index.putLong(FileKeyRing.HEADER_LOG_LENGTH, FileKeyRing.LOG_HEADER_SIZE);
+        index.putInt(FileKeyRing.HEADER_CAPACITY, capacity);
+        return index;
+    }
+
+    private static int capacityFor(int count) {
+        // Each item uses two slots (name and signer), the table is kept at most half full
+        long required = Math.max(FileKeyRing.INDEX_MIN_CAPACITY, 8L * (count + 1));
+        if (required > (1 << 30)) { throw new IllegalStateException("Unable to add item to key ring, maximum number of items reached."); }
+        return Integer.highestOneBit((int) required - 1) << 1;
+    }
+
+    /**
+     * Makes sure there is room for one more item in the index, rebuilding it with a larger capacity if needed.
+     */
+    private State ensureCapacity() {
+        State state = _state;
+        if (FileKeyRing.used(state) + 2 <= state.capacity / 2) { return state; }
+        int capacity = FileKeyRing.capacityFor(FileKeyRing.count(state) + 1);
+        Path indexTemp = _indexPath.resolveSibling(_indexPath.getFileName() + ".tmp");
+        try {
+            MappedByteBuffer index = FileKeyRing.createIndex(indexTemp, state.log.id, capacity);
+            State grown = new State(state.log, index);
+            for (int slot = 0; slot < state.capacity; slot++) {
+                long hash = FileKeyRing.hash(state, slot);
+                long ref = FileKeyRing.ref(state, slot);
+                if (hash != 0 && (ref & FileKeyRing.REMOVED) == 0) {
+                    FileKeyRing.insert(grown, hash, ref);
+                }
+            }
+            FileKeyRing.INT.setRelease(index, FileKeyRing.HEADER_COUNT, FileKeyRing.count(state));
+            FileKeyRing.LONG.setRelease(index, FileKeyRing.HEADER_LOG_LENGTH, (long) FileKeyRing.LONG.getAcquire(state.index, FileKeyRing.HEADER_LOG_LENGTH));
+            index.force();
+            Files.move(indexTemp, _indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            _state = grown;
+            return grown;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Record lookup(State state, String name, boolean signer) {
+        long hash = FileKeyRing.hash(name);
+        int mask = state.capacity - 1;
+        for (int slot = FileKeyRing.home(hash, mask); ; slot = (slot + 1) & mask) {
+            long slotHash = FileKeyRing.hash(state, slot);
+            if (slotHash == 0) { return null; }
+            if (slotHash != hash) { continue; }
+            long ref = FileKeyRing.ref(state, slot);
+            if (((ref & FileKeyRing.SIGNER) != 0) != signer || (ref & FileKeyRing.REMOVED) != 0) { continue; }
+            Record record = read(state, ref & FileKeyRing.OFFSET_MASK);
+            if (name.equals(signer ? record.signer : record.name)) {
+                return record;
+            }
+        }
+    }
+
+    /**
+     * Returns the slot holding a name, both if it refers to an item in the key ring or to a removed item, or -1 if the
+     * name was never added.
+     */
+    private int nameSlot(State state, String name, long hash) {
+        int mask = state.capacity - 1;
+        for (int slot = FileKeyRing.home(hash, mask); ; slot = (slot + 1) & mask) {
+            long slotHash = FileKeyRing.hash(state, slot);
+            if (slotHash == 0) { return -1; }
+            long ref = FileKeyRing.ref(state, slot);
+            if (slotHash == hash && (ref & FileKeyRing.SIGNER) == 0 && name.equals(read(state, ref & FileKeyRing.OFFSET_MASK).name)) {
+                return slot;
+            }
+        }
+    }
+
+    private int signerSlot(State state, String signer, long offset) {
+        long hash = FileKeyRing.hash(signer);
+        int mask = state.capacity - 1;
+        for (int slot = FileKeyRing.home(hash, mask); ; slot = (slot + 1) & mask) {
+            long slotHash = FileKeyRing.hash(state, slot);
+            if (slotHash == 0) { return -1; }
+            if (slotHash == hash && (FileKeyRing.ref(state, slot) & ~FileKeyRing.REMOVED) == (offset | FileKeyRing.SIGNER)) {
+                return slot;
+            }
+        }
+    }
+
+    private void indexPut(State state, Record record, long offset) {
+        long hash = FileKeyRing.hash(record.name);
+        int slot = nameSlot(state, record.name, hash);
+        if (slot < 0) {
+            FileKeyRing.insert(state, hash, offset);
+            FileKeyRing.INT.setRelease(state.index, FileKeyRing.HEADER_COUNT, FileKeyRing.count(state) + 1);
+        } else {
+            long ref = FileKeyRing.ref(state, slot);
+            if (ref == offset) { return; } // Already indexed
+            if ((ref & FileKeyRing.REMOVED) == 0) {
+                removeSigner(state, read(state, ref).signer, ref);
+            } else {
+                FileKeyRing.INT.setRelease(state.index, FileKeyRing.HEADER_COUNT, FileKeyRing.count(state) + 1);
+            }
+            FileKeyRing.LONG.setRelease(state.index, FileKeyRing.position(slot) + Long.BYTES, offset);
+        }
+        if (signerSlot(state, record.signer, offset) < 0) {
+            FileKeyRing.insert(state, FileKeyRing.hash(record.signer), offset | FileKeyRing.SIGNER);
+        }
+    }
+
+    private void indexRemove(State state, String name) {
+        int slot = nameSlot(state, name, FileKeyRing.hash(name));
+        if (slot < 0) { return; }
+        long ref = FileKeyRing.ref(state, slot);
+        if ((ref & FileKeyRing.REMOVED) != 0) { return; } // Already removed
+        removeSigner(state, read(state, ref).signer, ref);
+        FileKeyRing.LONG.setRelease(state.index, FileKeyRing.position(slot) + Long.BYTES, ref | FileKeyRing.REMOVED);
+        FileKeyRing.INT.setRelease(state.index, FileKeyRing.HEADER_COUNT, FileKeyRing.count(state) - 1);
+    }
+
+    private void removeSigner(State state, String signer, long offset) {
+        int slot = signerSlot(state, signer, offset);
+        if (slot >= 0) {
+            FileKeyRing.LONG.setRelease(state.index, FileKeyRing.position(slot) + Long.BYTES, offset | FileKeyRing.SIGNER | FileKeyRing.REMOVED);
+        }
+    }
+
+    private static void insert(State state, long hash, long ref) {
+        int mask = state.capacity - 1;
+        int slot = FileKeyRing.home(hash, mask);
+        while (FileKeyRing.hash(state, slot) != 0) {
+            slot = (slot + 1) & mask;
+        }
+        // The reference is written before the hash, so that a slot is never seen with a hash but no reference
+        FileKeyRing.LONG.setRelease(state.index, FileKeyRing.position(slot) + Long.BYTES, ref);
+        FileKeyRing.LONG.setRelease(state.index, FileKeyRing.position(slot), hash);
+        FileKeyRing.INT.setRelease(state.index, FileKeyRing.HEADER_USED, FileKeyRing.used(state) + 1);
+    }
+
+    private static long hash(String name) {
+        long hash = 0xcbf29ce484222325L; // FNV-1a
+        for (int i = 0; i < name.length(); i++) {
+            hash ^= name.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash != 0 ? hash : 1; // 0 marks an empty slot
+    }
+
+    private static int home(long hash, int mask) {
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    private static int position(int slot) {
+        return FileKeyRing.INDEX_HEADER_SIZE + slot * FileKeyRing.SLOT_SIZE;
+    }
+
+    private static long hash(State state, int slot) {
+        return (long) FileKeyRing.LONG.getAcquire(state.index, FileKeyRing.position(slot));
+    }
+
+    private static long ref(State state, int slot) {
+        return (long) FileKeyRing.LONG.getAcquire(state.index, FileKeyRing.position(slot) + Long.BYTES);
+    }
+
+    private static int count(State state) {
+        return (int) FileKeyRing.INT.getAcquire(state.index, FileKeyRing.HEADER_COUNT);
+    }
+
+    private static int used(State state) {
+        return (int) FileKeyRing.INT.getAcquire(state.index, FileKeyRing.HEADER_USED);
+    }
+
+}
@@ -101,7 +101,12 @@ public enum IntegrityState {
     /**
      * Verification encountered an unexpected internal error which could not be recovered from.
      */
-    FAILED_INTERNAL_FAULT;
+    FAILED_INTERNAL_FAULT,
+    /**
+     * The DiME item, the key used to sign it, or an identity in its trust chain, has been revoked and the item must
+     * not be trusted.
+     */
+    FAILED_REVOKED;
 
     /**
      * Returns if the IntegrityState may be considered successfully validated and may be considered trusted.
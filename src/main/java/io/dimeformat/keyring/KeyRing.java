@@ -15,23 +15,54 @@ import io.dimeformat.exceptions.CryptographyException;
 import io.dimeformat.exceptions.InvalidFormatException;
 import io.dimeformat.exceptions.IntegrityStateException;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * DiME uses a key ring to verify trust. This is done by storing trusted keys and identities in the key ring and then
  * calling {@link Item#verify()} to verify the trust against those keys and identities.
+ * <p>
+ * A key ring is safe for concurrent use. Items are held in an immutable snapshot that is replaced, as a whole, on each
+ * change. Reads and verifications never block, and always work on one consistent snapshot, while changes are
+ * serialized. This favours the common case of many verifications and few changes.
  */
 public class KeyRing {
 
+    /**
+     * The context of the data item that describes a key ring delta, see {@link #exportDelta(long, Key)}.
+     */
+    public static final String DELTA_CONTEXT = "keyring-delta";
+    /**
+     * The version to pass to {@link #exportDelta(long, Key)} to get a delta holding all items.
+     */
+    public static final long FULL_DELTA = -1L;
+    /**
+     * The number of seconds that an exported delta is valid, after that it is no longer accepted by
+     * {@link #applyDelta(String, Key)}.
+     */
+    public static final long DELTA_VALID_FOR = Dime.VALID_FOR_1_HOUR;
+
     /**
      * Returns the number of name-item mappings in this key ring.
      * @return The number of name-item mappings in this key ring.
      */
     public int size() {
-       return _keyRing != null ? _keyRing.size() : 0;
+       return _snapshot.items.size();
     }
 
     /**
@@ -39,7 +70,7 @@ public class KeyRing {
      * @return True if it is empty, false otherwise.
      */
     public boolean isEmpty() {
-        return _keyRing == null || _keyRing.isEmpty();
+        return _snapshot.items.isEmpty();
     }
 
     /**
@@ -48,7 +79,7 @@ public class KeyRing {
      * @return True if the item is part of the key ring, false otherwise
      */
     public boolean containsName(String name) {
-        return _keyRing != null && _keyRing.containsKey(name);
+        return _snapshot.items.containsKey(name);
     }
 
     /**
@@ -57,17 +88,16 @@ public class KeyRing {
      * @return True if item is part of the key ring, false otherwise.
      */
     public boolean containsItem(Item item) {
-        if (_keyRing == null) return false;
         if (item instanceof Key) {
-            String name = Dime.crypto.generateKeyName(((Key) item));
-            if (_keyRing.containsKey(name)) {
-                Key ringKey = (Key) _keyRing.get(name);
+            Item ringItem = get(DimeContext.current().getCrypto().generateKeyName(((Key) item)));
+            if (ringItem instanceof Key) {
+                Key ringKey = (Key) ringItem;
                 return ringKey.getPublic().equals(((Key) item).getPublic());
             }
         } else if (item instanceof Identity) {
-            String name = (item.getClaim(Claim.SUB).toString().toLowerCase());
-            if (_keyRing.containsKey(name)) {
-                Identity ringIdentity = (Identity) _keyRing.get(name);
+            Item ringItem = get(item.getClaim(Claim.SUB).toString().toLowerCase());
+            if (ringItem instanceof Identity) {
+                Identity ringIdentity = (Identity) ringItem;
                 return ((UUID) ringIdentity.getClaim(Claim.SUB)).compareTo(item.getClaim(Claim.SUB)) == 0 &&
                         ringIdentity.getPublicKey().getPublic().equals(((Identity) item).getPublicKey().getPublic());
             }
@@ -81,7 +111,7 @@ public class KeyRing {
      * @return The found item, null if none were found.
      */
     public Item get(String name) {
-        return _keyRing != null ? _keyRing.get(name) : null;
+        return name != null ? _snapshot.items.get(name) : null;
     }
 
 
@@ -94,10 +124,7 @@ public class KeyRing {
         if (item == null) { throw new IllegalArgumentException("Unable to add item to key ring, item to add must not be null."); }
         String name = KeyRing.itemName(item);
         if (name == null || name.length() == 0) { throw new IllegalArgumentException("Unable to add item to key ring, invalid item."); }
-        if (_keyRing == null) {
-            _keyRing = new HashMap<>();
-        }
-        _keyRing.put(name, item);
+        update(Map.of(name, item), Collections.emptySet());
         return name;
     }
 
@@ -116,71 +143,89 @@ public class KeyRing {
      * @return True if item was removed, false is it could not be found.
      */
     public boolean remove(String name) {
-        if (_keyRing != null && name != null && name.length() > 0) {
-            return _keyRing.remove(name) != null;
+        if (name == null || name.length() == 0) { return false; }
+        synchronized (_writeLock) {
+            if (!_snapshot.items.containsKey(name)) { return false; }
+            update(Collections.emptyMap(), Set.of(name));
         }
-        return false;
+        return true;
     }
 
     /**
      * Removes all keys and identities in the key ring. The key ring will be empty after this call returns.
      */
     public void clear() {
-        if (_keyRing != null) {
-            _keyRing.clear();
+        synchronized (_writeLock) {
+            _snapshot = Snapshot.reset(Collections.emptyMap(), Collections.emptyMap(), Collections.emptyMap(), _snapshot.version + 1);
         }
+        changed();
+    }
+
+    /**
+     * Returns the version of the key ring. This is a number that is increased every time the key ring is changed, it
+     * may be used to detect changes, for example to invalidate results of verifications made against the key ring.
+     * The version is not persisted, it starts from 0 each time a key ring is created or opened.
+     * @return The version of the key ring.
+     */
+    public long getVersion() {
+        return _snapshot.version;
     }
 
     /**
-     * Returns a Set view of the names contained in this key ring. The set is backed by the map, so changes to the map
-     * are reflected in the set, and vice-versa. If the map is modified while an iteration over the set is in progress
-     * (except through the iterator's own remove operation), the results of the iteration are undefined. The set
-     * supports element removal, which removes the corresponding mapping from the map, via the Iterator.remove,
-     * Set.remove, removeAll, retainAll, and clear operations. It does not support the add or addAll operations.
-     * @return A set view of the names contained in this key ring.
+     * Returns the identifier of this key ring instance. It is set as the issuer of deltas exported from the key ring,
+     * and, together with the version, identifies the contents of the key ring at a given time.
+     * @return The identifier of the key ring.
+     */
+    public UUID getId() {
+        return _id;
+    }
+
+    /**
+     * Returns the names contained in this key ring. The returned set is an unmodifiable snapshot, taken when this
+     * method is called, so it may safely be iterated while the key ring is changed by other threads. Changes made
+     * after this call are not reflected in the set.
+     * @return An unmodifiable set of the names contained in this key ring.
      */
     public Set<String> nameSet() {
-       return _keyRing != null ? _keyRing.keySet() : null;
+       return _snapshot.items.keySet();
     }
 
     /**
-     * Returns a Collection view of the items (keys and identities) contained in this key ring. The collection is backed
-     * by the map, so changes to the map are reflected in the collection, and vice-versa. If the map is modified while an
-     * iteration over the collection is in progress (except through the iterator's own remove operation), the results of
-     * the iteration are undefined. The collection supports element removal, which removes the corresponding mapping from
-     * the map, via the Iterator.remove, Collection.remove, removeAll, retainAll and clear operations. It does not
-     * support the add or addAll operations.
-     * @return A view of the key and identities contained in this key ring.
+     * Returns the items (keys and identities) contained in this key ring. The returned collection is an unmodifiable
+     * snapshot, taken when this method is called, so it may safely be iterated while the key ring is changed by other
+     * threads. Changes made after this call are not reflected in the collection.
+     * @return An unmodifiable collection of the keys and identities contained in this key ring.
      */
     public Collection<Item> items() {
-        return _keyRing != null ? _keyRing.values() : null;
+        return _snapshot.items.values();
     }
 
     /**
      *  Imports all items in a DiME encoded envelope string to the key ring. If a verification key is provided then the
-     *  signature of the envelope is first verified before any items are imported.
+     *  signature of the envelope is first verified before any items are imported. All items are added at once, so
+     *  other threads will see either none or all of them.
      * @param encoded The DiME encoded string with items that should be imported.
      * @param verifyKey A key to verify the signature of the DiME encoded string, may be null to skip the verification.
      * @throws InvalidFormatException If something is wrong with the encoded string.
      * @throws IntegrityStateException If the verification of the signature fails.
      */
     public void importFromEncoded(String encoded, Key verifyKey) throws InvalidFormatException, IntegrityStateException {
-        Envelope envelope = Envelope.importFromEncoded(encoded);
-        if (verifyKey != null) {
-            IntegrityState state = envelope.verify(verifyKey);
-            if (!state.isValid()) {
-                throw new IntegrityStateException(state, "Unable to import key ring, unable to verify integrity.");
-            }
-        }
-        for (Item item: envelope.getItems()) {
-            if (item instanceof Key) {
-                put((Key) item);
-            } else if (item instanceof Identity) {
-                put((Identity) item);
-            } else {
-                throw new IllegalArgumentException("Unable to import key ring, encoded envelope must only contain keys and identities.");
-            }
-        }
+        putAll(KeyRing.decodeItems(encoded, verifyKey));
+    }
+
+    /**
+     * Replaces all items in the key ring with the items in a DiME encoded envelope string, this is used to rotate the
+     * trusted keys and identities. If a verification key is provided then the signature of the envelope is first
+     * verified. The new set of items is built and indexed aside, and then swapped in at once, other threads will see
+     * either all the old items or all the new items, never an empty or partly loaded key ring. Verifications already
+     * in progress complete against the old items. If decoding or verification fails the key ring is left unchanged.
+     * @param encoded The DiME encoded string with items that should replace the items in the key ring.
+     * @param verifyKey A key to verify the signature of the DiME encoded string, may be null to skip the verification.
+     * @throws InvalidFormatException If something is wrong with the encoded string.
+     * @throws IntegrityStateException If the verification of the signature fails.
+     */
+    public void reload(String encoded, Key verifyKey) throws InvalidFormatException, IntegrityStateException {
+        replaceAll(KeyRing.decodeItems(encoded, verifyKey));
     }
 
 
@@ -192,10 +237,11 @@ public class KeyRing {
      * @throws CryptographyException If something goes wrong while signing the generated envelope.
      */
     public String exportToEncoded(Key signingKey) throws CryptographyException {
-        if (isEmpty()) { return null; }
+        Collection<Item> items = items();
+        if (items.isEmpty()) { return null; }
         Envelope envelope = new Envelope();
-        for (String name: nameSet()) {
-            envelope.addItem(get(name));
+        for (Item item: items) {
+            envelope.addItem(item);
         }
         if (signingKey != null) {
             envelope.sign(signingKey);
@@ -203,42 +249,465 @@ public class KeyRing {
         return envelope.exportToEncoded();
     }
 
+    /**
+     * Returns a DiME encoded string with the changes made to the key ring after the provided version: the items that
+     * were added or replaced, and the names of the items that were removed. This is used to keep other key rings in
+     * sync, see {@link #applyDelta(String, Key)}, without sending all items on each change. If the changes since the
+     * provided version are not known, as the key ring has been cleared or reloaded since, or if the version is
+     * {@link #FULL_DELTA}, then the delta holds all items and replaces all items when applied. The delta expires
+     * after {@link #DELTA_VALID_FOR}. If a signing key is included then the returned DiME envelope will be signed by
+     * this key.
+     * @param sinceVersion The version of this key ring the delta should start from, as returned by applyDelta.
+     * @param signingKey A key to sign the generated DiME envelope, may be null.
+     * @return A DiME encoded string with the delta.
+     * @throws CryptographyException If something goes wrong while signing the generated envelope.
+     */
+    public String exportDelta(long sinceVersion, Key signingKey) throws CryptographyException {
+        Snapshot snapshot = _snapshot;
+        if (sinceVersion < snapshot.baseVersion || sinceVersion > snapshot.version) {
+            return KeyRing.encodeDelta(_id, KeyRing.FULL_DELTA, snapshot.version, snapshot.items.values(), Collections.emptySet(), signingKey);
+        }
+        List<Item> added = new ArrayList<>();
+        for (Map.Entry<String, Long> entry: snapshot.changes.entrySet()) {
+            if (entry.getValue() > sinceVersion) {
+                added.add(snapshot.items.get(entry.getKey()));
+            }
+        }
+        List<String> removed = new ArrayList<>();
+        for (Map.Entry<String, Long> entry: snapshot.removals.entrySet()) {
+            if (entry.getValue() > sinceVersion) {
+                removed.add(entry.getKey());
+            }
+        }
+        return KeyRing.encodeDelta(_id, sinceVersion, snapshot.version, added, removed, signingKey);
+    }
+
+    /**
+     * Applies a delta, exported from another key ring using {@link #exportDelta(long, Key)}, to this key ring. If a
+     * verification key is provided then the signature of the delta is first verified. All changes in the delta are
+     * applied at once. Unless the delta holds all items, it must start from the version returned when the previous
+     * delta from the same key ring was applied, otherwise the key ring is left unchanged. A delta holding all items
+     * must be of a later version than the last delta applied from the same key ring, so that an earlier delta may not
+     * be replayed. Expired deltas are not applied.
+     * @param encoded The DiME encoded string with the delta.
+     * @param verifyKey A key to verify the signature of the DiME encoded string, may be null to skip the verification.
+     * @return The version of the exporting key ring that this key ring is now in sync with, this is passed to
+     *         exportDelta to get the next delta.
+     * @throws InvalidFormatException If something is wrong with the encoded string, or if it is not a delta.
+     * @throws IntegrityStateException If the verification of the signature, or of the dates of the delta, fails.
+     * @throws IllegalStateException If the delta does not follow the last delta applied, a delta holding all items
+     *         should then be requested, using {@link #FULL_DELTA}, or if the delta is not later than the last delta
+     *         applied.
+     */
+    public long applyDelta(String encoded, Key verifyKey) throws InvalidFormatException, IntegrityStateException {
+        List<Item> envelopeItems = KeyRing.decodeEnvelope(encoded, verifyKey).getItems();
+        Item manifest = envelopeItems.isEmpty() ? null : envelopeItems.get(0);
+        if (!(manifest instanceof Data) || !KeyRing.DELTA_CONTEXT.equals(manifest.getClaim(Claim.CTX))) { throw new InvalidFormatException("Unable to apply delta, encoded envelope is not a key ring delta."); }
+        UUID source = manifest.getClaim(Claim.ISS);
+        String[] lines = new String(((Data) manifest).getPayload(), StandardCharsets.UTF_8).split("\n");
+        long fromVersion;
+        long toVersion;
+        try {
+            fromVersion = Long.parseLong(lines[0]);
+            toVersion = lines.length > 1 ? Long.parseLong(lines[1]) : -1L;
+        } catch (NumberFormatException e) {
+            throw new InvalidFormatException("Unable to apply delta, invalid versions.", e);
+        }
+        if (source == null || toVersion < 0 || toVersion < fromVersion) { throw new InvalidFormatException("Unable to apply delta, invalid versions."); }
+        IntegrityState datesState = manifest.verifyDates();
+        if (!datesState.isValid()) { throw new IntegrityStateException(datesState, "Unable to apply delta, delta has expired or is not yet valid."); }
+        Set<String> removed = new HashSet<>(Arrays.asList(lines).subList(2, lines.length));
+        List<Item> added = KeyRing.keysAndIdentities(envelopeItems.subList(1, envelopeItems.size()));
+        synchronized (_syncLock) {
+            if (fromVersion != KeyRing.FULL_DELTA && (!source.equals(_syncSource) || fromVersion != _syncVersion)) {
+                throw new IllegalStateException("Unable to apply delta, it does not follow the last delta applied.");
+            }
+            if (fromVersion == KeyRing.FULL_DELTA && source.equals(_syncSource) && toVersion <= _syncVersion) {
+                throw new IllegalStateException("Unable to apply delta, it is not later than the last delta applied.");
+            }
+            if (fromVersion == KeyRing.FULL_DELTA) {
+                replaceAll(added);
+            } else {
+                applyChanges(added, removed);
+            }
+            _syncSource = source;
+            _syncVersion = toVersion;
+        }
+        return toVersion;
+    }
+
+    /**
+     * Verifies the signature of an item against the keys and identities in the key ring. Trusted keys and identities
+     * are indexed by the name of their public key, so the trusted item matching a signature is looked up directly
+     * from the key name attached to the signature. Legacy items, whose signatures carry no key name, are verified
+     * against each trusted item in turn.
+     * @param item The item to verify.
+     * @return The integrity state of the verification.
+     */
     public IntegrityState verify(Item item) {
-        if (size() == 0) {
+        Snapshot snapshot = _snapshot;
+        if (snapshot.items.isEmpty()) {
             return IntegrityState.FAILED_NO_KEY_RING;
         }
-        IntegrityState state = IntegrityState.FAILED_NOT_TRUSTED;
-        for (Item trustedItem: items()) {
-            state = trustedItem.verifyDates();
-            if (!state.isValid()) {
-                return state;
-            }
-            Key trustedKey = getKey(trustedItem);
-            if (trustedKey == null) {
-                return IntegrityState.FAILED_INTERNAL_FAULT;
+        if (!item.isSigned()) {
+            return IntegrityState.FAILED_NO_SIGNATURE;
+        }
+        return KeyRing.verify(item, snapshot.signers::get, () -> snapshot.items.values(), () -> datesVerified(snapshot.version));
+    }
+
+    /// PACKAGE-PRIVATE ///
+
+    /**
+     * Verifies the signature of an item, looking up trusted items by the key name of each signature. Legacy items are
+     * verified against all trusted items in turn. The dates of the trusted item are not checked if datesVerified
+     * returns true, after the trusted item has been looked up.
+     */
+    static IntegrityState verify(Item item, Function<String, Item> signers, Supplier<Collection<Item>> trustedItems, BooleanSupplier datesVerified) {
+        if (item.isLegacy()) {
+            return KeyRing.verifyAll(trustedItems.get(), item, datesVerified);
+        }
+        for (Signature signature: item.getSignatures()) {
+            if (signature.getName() == null) {
+                return KeyRing.verifyAll(trustedItems.get(), item, datesVerified);
             }
-            state = item.verifySignature(trustedKey);
-            if (state != IntegrityState.FAILED_KEY_MISMATCH) {
-                return state;
+            Item trustedItem = signers.apply(signature.getName());
+            if (trustedItem != null) {
+                IntegrityState state = KeyRing.verify(trustedItem, item, datesVerified);
+                if (state != IntegrityState.FAILED_KEY_MISMATCH) {
+                    return state;
+                }
             }
         }
-        return state;
+        return IntegrityState.FAILED_KEY_MISMATCH;
     }
 
-    /// PRIVATE ///
+    /**
+     * Adds all provided items at once.
+     */
+    void putAll(List<Item> items) {
+        applyChanges(items, Collections.emptySet());
+    }
+
+    /**
+     * Removes and adds items at once.
+     */
+    void applyChanges(List<Item> added, Set<String> removed) {
+        HashMap<String, Item> named = new HashMap<>();
+        for (Item item: added) {
+            String name = KeyRing.itemName(item);
+            if (name == null || name.length() == 0) { throw new IllegalArgumentException("Unable to add item to key ring, invalid item."); }
+            named.put(name, item);
+        }
+        update(named, removed);
+    }
 
-    private HashMap<String, Item> _keyRing;
+    /**
+     * Encodes a delta as an envelope, holding a data item with the versions and the names of removed items, followed
+     * by the added items.
+     */
+    static String encodeDelta(UUID source, long fromVersion, long toVersion, Collection<Item> added, Collection<String> removed, Key signingKey) throws CryptographyException {
+        StringBuilder payload = new StringBuilder().append(fromVersion).append('\n').append(toVersion);
+        for (String name: removed) {
+            payload.append('\n').append(name);
+        }
+        Data manifest = new Data(source, KeyRing.DELTA_VALID_FOR, KeyRing.DELTA_CONTEXT);
+        manifest.setPayload(payload.toString().getBytes(StandardCharsets.UTF_8));
+        Envelope envelope = new Envelope();
+        envelope.addItem(manifest);
+        for (Item item: added) {
+            envelope.addItem(item);
+        }
+        if (signingKey != null) {
+            envelope.sign(signingKey);
+        }
+        return envelope.exportToEncoded();
+    }
 
-    private static String itemName(Item item) {
+    /**
+     * Replaces all items at once, the new snapshot is fully built before it is published.
+     */
+    void replaceAll(List<Item> items) {
+        HashMap<String, Item> named = new HashMap<>();
+        HashMap<String, Item> signers = new HashMap<>();
+        HashMap<String, String> signerNames = new HashMap<>();
+        for (Item item: items) {
+            String name = KeyRing.itemName(item);
+            if (name == null || name.length() == 0) { throw new IllegalArgumentException("Unable to add item to key ring, invalid item."); }
+            named.put(name, item);
+        }
+        for (Map.Entry<String, Item> entry: named.entrySet()) {
+            String signerName = KeyRing.signerName(entry.getKey(), entry.getValue());
+            signerNames.put(entry.getKey(), signerName);
+            signers.putIfAbsent(signerName, entry.getValue());
+        }
+        synchronized (_writeLock) {
+            _snapshot = Snapshot.reset(named, signers, signerNames, _snapshot.version + 1);
+        }
+        changed();
+    }
+
+    /**
+     * Attaches an expiry scheduler, only one scheduler may be attached to a key ring at any time.
+     */
+    void attach(ExpiryScheduler scheduler) {
+        synchronized (_writeLock) {
+            if (_expiryScheduler != null) { throw new IllegalStateException("Unable to schedule expiry, key ring already has an expiry scheduler."); }
+            _expiryScheduler = scheduler;
+        }
+    }
+
+    void detach(ExpiryScheduler scheduler) {
+        synchronized (_writeLock) {
+            if (_expiryScheduler != scheduler) { return; }
+            _expiryScheduler = null;
+            _validDates = null;
+        }
+    }
+
+    /**
+     * Notifies any attached expiry scheduler that the key ring has changed, called after each change is published.
+     */
+    void changed() {
+        ExpiryScheduler scheduler = _expiryScheduler;
+        if (scheduler != null) {
+            scheduler.changed();
+        }
+    }
+
+    /**
+     * Records that the dates of all items in the provided version of the key ring are valid between notBefore and
+     * notAfter, this is set by the expiry scheduler after it has scanned the key ring.
+     */
+    void setValidDates(ExpiryScheduler scheduler, long version, Instant notBefore, Instant notAfter) {
+        synchronized (_writeLock) {
+            if (_expiryScheduler != scheduler) { return; }
+            _validDates = new ValidDates(version, notBefore, notAfter);
+        }
+    }
+
+    /**
+     * Returns true if the dates of all items in the provided version of the key ring are known to be valid now, the
+     * dates of trusted items then need not be checked one by one.
+     */
+    boolean datesVerified(long version) {
+        ValidDates validDates = _validDates;
+        if (validDates == null || validDates.version != version) { return false; }
+        Instant now = Utility.createTimestamp();
+        return !now.isBefore(validDates.notBefore) && now.isBefore(validDates.notAfter);
+    }
+
+    static String itemName(Item item) {
         String name = null;
         if (item instanceof Key) {
-            name = Dime.crypto.generateKeyName((Key) item);
+            name = DimeContext.current().getCrypto().generateKeyName((Key) item);
         } else if (item instanceof Identity) {
             name = item.getClaim(Claim.SUB).toString().toLowerCase();
         }
         return name;
     }
 
+    /**
+     * Returns the name of the public key of a trusted item, this is the key name found in signatures made by it.
+     */
+    static String signerName(String name, Item item) {
+        return item instanceof Key ? name : DimeContext.current().getCrypto().generateKeyName(KeyRing.getKey(item));
+    }
+
+    /// PRIVATE ///
+
+    private static final int MAX_REMOVALS = 4096;
+    private volatile Snapshot _snapshot = Snapshot.EMPTY;
+    private final Object _writeLock = new Object();
+    private final UUID _id = UUID.randomUUID();
+    private final Object _syncLock = new Object();
+    private UUID _syncSource = null; // Guarded by _syncLock
+    private long _syncVersion = KeyRing.FULL_DELTA; // Guarded by _syncLock
+    private volatile ExpiryScheduler _expiryScheduler = null;
+    private volatile ValidDates _validDates = null;
+
+    /**
+     * A period during which the dates of all items in a version of the key ring are valid.
+     */
+    private static final class ValidDates {
+
+        private final long version;
+        private final Instant notBefore;
+        private final Instant notAfter;
+
+        private ValidDates(long version, Instant notBefore, Instant notAfter) {
+            this.version = version;
+            this.notBefore = notBefore;
+            this.notAfter = notAfter;
+        }
+
+    }
+
+    /**
+     * An immutable state of the key ring. Besides the items, keyed by item name, it holds an index of the items keyed
+     * by the name of their public key (the key name found in signatures). Changes made after the base version are
+     * tracked, for deltas, as the version each item was put, and the version each removed item was removed.
+     */
+    private static final class Snapshot {
+
+        private static final Snapshot EMPTY = Snapshot.reset(Collections.emptyMap(), Collections.emptyMap(), Collections.emptyMap(), 0L);
+
+        private final Map<String, Item> items;
+        private final Map<String, Item> signers;
+        private final Map<String, String> signerNames;
+        private final Map<String, Long> changes;
+        private final LinkedHashMap<String, Long> removals; // In the order removed
+        private final long baseVersion;
+        private final long version;
+
+        private Snapshot(Map<String, Item> items, Map<String, Item> signers, Map<String, String> signerNames, Map<String, Long> changes, LinkedHashMap<String, Long> removals, long baseVersion, long version) {
+            this.items = Collections.unmodifiableMap(items);
+            this.signers = signers;
+            this.signerNames = signerNames;
+            this.changes = changes;
+            this.removals = removals;
+            this.baseVersion = baseVersion;
+            this.version = version;
+        }
+
+        /**
+         * Creates a snapshot where all items are part of the base version, a delta from any earlier version will hold
+         * all items.
+         */
+        private static Snapshot reset(Map<String, Item> items, Map<String, Item> signers, Map<String, String> signerNames, long version) {
+            return new Snapshot(items, signers, signerNames, Collections.emptyMap(), new LinkedHashMap<>(), version, version);
+        }
+
+    }
+
+    /**
+     * Replaces the current snapshot with a copy where items are added and removed. Signer names are only generated
+     * for added items, names of items already in the key ring are reused from the current snapshot.
+     */
+    private void update(Map<String, Item> added, Set<String> removed) {
+        HashMap<String, String> addedSigners = new HashMap<>();
+        for (Map.Entry<String, Item> entry: added.entrySet()) {
+            Item item = entry.getValue();
+            addedSigners.put(entry.getKey(), KeyRing.signerName(entry.getKey(), item));
+        }
+        synchronized (_writeLock) {
+            Snapshot current = _snapshot;
+            HashMap<String, Item> items = new HashMap<>(current.items);
+            HashMap<String, Item> signers = new HashMap<>(current.signers);
+            HashMap<String, String> signerNames = new HashMap<>(current.signerNames);
+            HashMap<String, Long> changes = new HashMap<>(current.changes);
+            LinkedHashMap<String, Long> removals = new LinkedHashMap<>(current.removals);
+            long version = current.version + 1;
+            long baseVersion = current.baseVersion;
+            List<String> orphaned = new ArrayList<>();
+            for (String name: removed) {
+                Item item = items.remove(name);
+                String signerName = signerNames.remove(name);
+                if (item != null) {
+                    changes.remove(name);
+                    removals.put(name, version);
+                }
+                if (item != null && signers.remove(signerName, item)) {
+                    orphaned.add(signerName);
+                }
+            }
+            for (Map.Entry<String, Item> entry: added.entrySet()) {
+                String name = entry.getKey();
+                changes.put(name, version);
+                removals.remove(name);
+                Item previous = items.put(name, entry.getValue());
+                String previousSigner = signerNames.put(name, addedSigners.get(name));
+                if (previous != null && signers.remove(previousSigner, previous)) {
+                    orphaned.add(previousSigner);
+                }
+                signers.put(addedSigners.get(name), entry.getValue());
+            }
+            for (String signerName: orphaned) {
+                // Another item may share the same public key, it then takes over the removed item's index entry
+                if (signers.containsKey(signerName)) { continue; }
+                for (Map.Entry<String, String> entry: signerNames.entrySet()) {
+                    if (entry.getValue().equals(signerName)) {
+                        signers.put(signerName, items.get(entry.getKey()));
+                        break;
+                    }
+                }
+            }
+            // Only the latest removals are kept, deltas from before the oldest one dropped will hold all items
+            Iterator<Map.Entry<String, Long>> oldest = removals.entrySet().iterator();
+            while (removals.size() > KeyRing.MAX_REMOVALS) {
+                baseVersion = Math.max(baseVersion, oldest.next().getValue());
+                oldest.remove();
+            }
+            _snapshot = new Snapshot(items, signers, signerNames, changes, removals, baseVersion, version);
+        }
+        changed();
+    }
+
+    private static List<Item> decodeItems(String encoded, Key verifyKey) throws InvalidFormatException, IntegrityStateException {
+        return KeyRing.keysAndIdentities(KeyRing.decodeEnvelope(encoded, verifyKey).getItems());
+    }
+
+    private static Envelope decodeEnvelope(String encoded, Key verifyKey) throws InvalidFormatException, IntegrityStateException {
+        Envelope envelope = Envelope.importFromEncoded(encoded);
+        if (verifyKey != null) {
+            IntegrityState state = envelope.verify(verifyKey);
+            if (!state.isValid()) {
+                throw new IntegrityStateException(state, "Unable to import key ring, unable to verify integrity.");
+            }
+        }
+        return envelope;
+    }
+
+    private static List<Item> keysAndIdentities(List<Item> envelopeItems) {
+        List<Item> items = new ArrayList<>();
+        for (Item item: envelopeItems) {
+            if (!(item instanceof Key) && !(item instanceof Identity)) {
+                throw new IllegalArgumentException("Unable to import key ring, encoded envelope must only contain keys and identities.");
+            }
+            items.add(item);
+        }
+        return items;
+    }
+
+    private static IntegrityState verify(Item trustedItem, Item item, BooleanSupplier datesVerified) {
+        if (!datesVerified.getAsBoolean()) {
+            IntegrityState state = trustedItem.verifyDates();
+            if (!state.isValid()) {
+                return state;
+            }
+        }
+        Key trustedKey = getKey(trustedItem);
+        if (trustedKey == null) {
+            return IntegrityState.FAILED_INTERNAL_FAULT;
+        }
+        return item.verifySignature(trustedKey);
+    }
+
+    /**
+     * Verifies an item against each trusted item in turn. The dates of a trusted item are only checked once its key
+     * matches the signature, so an expired item in the key ring does not fail verifications made with other items.
+     */
+    private static IntegrityState verifyAll(Collection<Item> trustedItems, Item item, BooleanSupplier datesVerified) {
+        IntegrityState state = IntegrityState.FAILED_NOT_TRUSTED;
+        for (Item trustedItem: trustedItems) {
+            Key trustedKey = getKey(trustedItem);
+            if (trustedKey == null) {
+                return IntegrityState.FAILED_INTERNAL_FAULT;
+            }
+            state = item.verifySignature(trustedKey);
+            if (state == IntegrityState.FAILED_KEY_MISMATCH) {
+                continue;
+            }
+            if (state.isValid() && !datesVerified.getAsBoolean()) {
+                IntegrityState datesState = trustedItem.verifyDates();
+                if (!datesState.isValid()) {
+                    return datesState;
+                }
+            }
+            return state;
+        }
+        return state;
+    }
+
     private static Key getKey(Item item) {
         if (item instanceof Key) {
             return (Key) item;
@@ -0,0 +1,367 @@
+//
+//  RevocationList.java
+//  DiME - Data Identity Message Envelope
+//  A powerful universal data format that is built for secure, and integrity protected communication between trusted
+//  entities in a network.
+//
+//  Released under the MIT licence, see LICENSE for more information.
+//  Copyright (c) 2024 Shift Everywhere AB. All rights reserved.
+//
+package io.dimeformat.keyring;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * A list of revoked items, stored on file. Items are revoked by their unique ID ("uid"), identities also by their
+ * subject ID ("sub"), and keys by their name, which revokes all items signed by the key. Once set using
+ * {@link io.dimeformat.Dime#setRevocationList(RevocationList)}, verification of a revoked item, or of an identity with
+ * a revoked identity in its trust chain, fails with {@link IntegrityState#FAILED_REVOKED}. Keys and identities in the
+ * key ring are trusted as they are, these are revoked by removing them from the key ring.
+ * <p>
+ * Revoked entries are kept as a sorted set in a file, which is memory-mapped and searched in place, so the list may
+ * hold millions of entries without being read into memory. New entries are appended to the end of the file, and merged
+ * into the sorted set once enough entries have been appended. A Bloom filter, built when the list is opened, is held
+ * in front of the file, most checks for items that are not revoked are answered by the filter alone. Checks never
+ * block and never allocate memory. Revocations are serialized.
+ */
+public final class RevocationList implements AutoCloseable {
+
+    /// PUBLIC ///
+
+    /**
+     * Opens a revocation list stored on file, or creates a new empty list if the file does not exist.
+     * @param path The path of the file.
+     * @throws IOException If the file could not be opened or created, or if the file is not a revocation list.
+     */
+    public RevocationList(Path path) throws IOException {
+        if (path == null) { throw new IllegalArgumentException("Unable to open revocation list, path must not be null."); }
+        this._path = path.toAbsolutePath();
+        synchronized (_writeLock) {
+            open();
+        }
+    }
+
+    /**
+     * Returns the path of the file.
+     * @return The path of the file.
+     */
+    public Path getPath() {
+        return _path;
+    }
+
+    /**
+     * Returns the number of revoked entries, IDs and key names, in the list.
+     * @return The number of revoked entries.
+     */
+    public int size() {
+        State state = _state;
+        return state.sortedCount + state.tailCount;
+    }
+
+    /**
+     * Revokes an item, either by its unique ID ("uid"), or, for identities, by the subject ID ("sub").
+     * @param id The ID to revoke.
+     * @return True if the ID was revoked, false if it was already revoked.
+     * @throws IOException If the revocation could not be written to file.
+     */
+    public boolean revoke(UUID id) throws IOException {
+        if (id == null) { throw new IllegalArgumentException("Unable to revoke, ID must not be null."); }
+        return add(id.getMostSignificantBits(), id.getLeastSignificantBits());
+    }
+
+    /**
+     * Revokes a key by its name, all items signed by the key will then be considered revoked.
+     * @param keyName The name of the key to revoke.
+     * @return True if the key name was revoked, false if it was already revoked.
+     * @throws IOException If the revocation could not be written to file.
+     */
+    public boolean revoke(String keyName) throws IOException {
+        if (keyName == null || keyName.length() == 0) { throw new IllegalArgumentException("Unable to revoke, key name must not be null or empty."); }
+        return add(RevocationList.hash(keyName, RevocationList.NAME_SEED_HIGH), RevocationList.hash(keyName, RevocationList.NAME_SEED_LOW));
+    }
+
+    /**
+     * Checks if an ID, unique ID ("uid") or subject ID ("sub"), has been revoked.
+     * @param id The ID to check, may be null.
+     * @return True if revoked, false otherwise.
+     */
+    public boolean isRevoked(UUID id) {
+        return id != null && contains(_state, id.getMostSignificantBits(), id.getLeastSignificantBits());
+    }
+
+    /**
+     * Checks if a key name has been revoked.
+     * @param keyName The key name to check, may be null.
+     * @return True if revoked, false otherwise.
+     */
+    public boolean isRevoked(String keyName) {
+        return keyName != null && contains(_state, RevocationList.hash(keyName, RevocationList.NAME_SEED_HIGH), RevocationList.hash(keyName, RevocationList.NAME_SEED_LOW));
+    }
+
+    /**
+     * Forces all revocations to be written to the storage device.
+     * @throws IOException If the file could not be written.
+     */
+    public void sync() throws IOException {
+        synchronized (_writeLock) {
+            if (_closed) { return; }
+            _channel.force(true);
+        }
+    }
+
+    /**
+     * Writes all revocations to the storage device and closes the file. Any further revocations will fail, checks
+     * may still be done.
+     * @throws IOException If the file could not be written.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (_writeLock) {
+            if (_closed) { return; }
+            _channel.force(true);
+            _channel.close();
+            _closed = true;
+        }
+    }
+
+    /// PRIVATE ///
+
+    private static final int MAGIC = 0x4452564C; // DRVL
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int HEADER_SORTED = 8;
+    private static final int HEADER_TAIL = 12;
+    private static final int ENTRY_SIZE = 16;
+    private static final int MERGE_THRESHOLD = 4096;
+    private static final int BITS_PER_ENTRY = 10;
+    private static final int PROBES = 7;
+    private static final int MIN_BLOOM_BITS = 1 << 16;
+    private static final long NAME_SEED_HIGH = 0xcbf29ce484222325L;
+    private static final long NAME_SEED_LOW = 0x84222325cbf29ce4L;
+
+    private final Path _path;
+    private final Object _writeLock = new Object();
+    private volatile State _state;
+    private FileChannel _channel; // Guarded by _writeLock
+    private boolean _closed = false; // Guarded by _writeLock
+
+    /**
+     * The entries of the list, a memory-mapped sorted set and a tail of entries appended after it. The tail and the
+     * Bloom filter are only added to, and a new state is published for each revocation.
+     */
+    private static final class State {
+        private final MappedByteBuffer sorted;
+        private final int sortedCount;
+        private final long[] tail;
+        private final int tailCount;
+        private final long[] bloom;
+
+        private State(MappedByteBuffer sorted, int sortedCount, long[] tail, int tailCount, long[] bloom) {
+            this.sorted = sorted;
+            this.sortedCount = sortedCount;
+            this.tail = tail;
+            this.tailCount = tailCount;
+            this.bloom = bloom;
+        }
+    }
+
+    private static boolean contains(State state, long high, long low) {
+        if (!RevocationList.mightContain(state.bloom, high, low)) { return false; }
+        for (int i = 0; i < state.tailCount; i++) {
+            if (state.tail[i * 2] == high && state.tail[i * 2 + 1] == low) { return true; }
+        }
+        int min = 0;
+        int max = state.sortedCount - 1;
+        while (min <= max) {
+            int middle = (min + max) >>> 1;
+            int position = RevocationList.HEADER_SIZE + middle * RevocationList.ENTRY_SIZE;
+            int order = RevocationList.compare(state.sorted.getLong(position), state.sorted.getLong(position + Long.BYTES), high, low);
+            if (order == 0) { return true; }
+            if (order < 0) {
+                min = middle + 1;
+            } else {
+                max = middle - 1;
+            }
+        }
+        return false;
+    }
+
+    private boolean add(long high, long low) throws IOException {
+        synchronized (_writeLock) {
+            if (_closed) { throw new IllegalStateException("Unable to revoke, revocation list has been closed."); }
+            State state = _state;
+            if (RevocationList.contains(state, high, low)) { return false; }
+            long position = RevocationList.HEADER_SIZE + (long) (state.sortedCount + state.tailCount) * RevocationList.ENTRY_SIZE;
+            write(ByteBuffer.allocate(RevocationList.ENTRY_SIZE).putLong(high).putLong(low).flip(), position);
+            write(ByteBuffer.allocate(Integer.BYTES).putInt(state.tailCount + 1).flip(), RevocationList.HEADER_TAIL);
+            RevocationList.addToBloom(state.bloom, high, low);
+            long[] tail = Arrays.copyOf(state.tail, (state.tailCount + 1) * 2);
+            tail[state.tailCount * 2] = high;
+            tail[state.tailCount * 2 + 1] = low;
+            _state = new State(state.sorted, state.sortedCount, tail, state.tailCount + 1, state.bloom);
+            if (state.tailCount + 1 >= RevocationList.MERGE_THRESHOLD) {
+                merge();
+            }
+        }
+        return true;
+    }
+
+    private void write(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += _channel.write(buffer, position);
+        }
+    }
+
+    private void open() throws IOException {
+        if (!Files.exists(_path)) {
+            try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(_path, StandardOpenOption.CREATE_NEW))) {
+                RevocationList.writeHeader(out, 0);
+            }
+        }
+        _channel = FileChannel.open(_path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        ByteBuffer header = ByteBuffer.allocate(RevocationList.HEADER_SIZE);
+        while (header.hasRemaining() && _channel.read(header, header.position()) > 0) { /* reading */ }
+        if (header.hasRemaining() || header.getInt(0) != RevocationList.MAGIC || header.getInt(4) != RevocationList.VERSION) {
+            _channel.close();
+            throw new IOException("Unable to open revocation list, file is not a revocation list: " + _path);
+        }
+        int sortedCount = header.getInt(RevocationList.HEADER_SORTED);
+        int tailCount = header.getInt(RevocationList.HEADER_TAIL);
+        long required = RevocationList.HEADER_SIZE + ((long) sortedCount + tailCount) * RevocationList.ENTRY_SIZE;
+        if (sortedCount < 0 || tailCount < 0 || _channel.size() < required) {
+            _channel.close();
+            throw new IOException("Unable to open revocation list, file is damaged: " + _path);
+        }
+        MappedByteBuffer sorted = _channel.map(FileChannel.MapMode.READ_ONLY, 0, RevocationList.HEADER_SIZE + (long) sortedCount * RevocationList.ENTRY_SIZE);
+        ByteBuffer tailBuffer = ByteBuffer.allocate(tailCount * RevocationList.ENTRY_SIZE);
+        long position = RevocationList.HEADER_SIZE + (long) sortedCount * RevocationList.ENTRY_SIZE;
+        while (tailBuffer.hasRemaining() && _channel.read(tailBuffer, position + tailBuffer.position()) > 0) { /* reading */ }
+        tailBuffer.flip();
+        long[] tail = new long[tailCount * 2];
+        tailBuffer.asLongBuffer().get(tail);
+        long[] bloom = RevocationList.newBloom(sortedCount + tailCount);
+        for (int i = 0; i < sortedCount; i++) {
+            int entry = RevocationList.HEADER_SIZE + i * RevocationList.ENTRY_SIZE;
+            RevocationList.addToBloom(bloom, sorted.getLong(entry), sorted.getLong(entry + Long.BYTES));
+        }
+        for (int i = 0; i < tailCount; i++) {
+            RevocationList.addToBloom(bloom, tail[i * 2], tail[i * 2 + 1]);
+        }
+        _state = new State(sorted, sortedCount, tail, tailCount, bloom);
+    }
+
+    /**
+     * Merges the appended entries into the sorted set. A new file is written and then moved in place of the current
+     * file, checks in progress continue to use the previous mapping.
+     */
+    private void merge() throws IOException {
+        State state = _state;
+        Integer[] order = new Integer[state.tailCount];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> RevocationList.compare(state.tail[a * 2], state.tail[a * 2 + 1], state.tail[b * 2], state.tail[b * 2 + 1]));
+        Path temp = _path.resolveSibling(_path.getFileName() + ".tmp");
+        int count = state.sortedCount + state.tailCount;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            RevocationList.writeHeader(out, count);
+            int sortedIndex = 0;
+            int tailIndex = 0;
+            while (sortedIndex < state.sortedCount || tailIndex < order.length) {
+                int entry = RevocationList.HEADER_SIZE + sortedIndex * RevocationList.ENTRY_SIZE;
+                int next = tailIndex < order.length ? order[tailIndex] : -1;
+                boolean fromSorted = next < 0 || (sortedIndex < state.sortedCount && RevocationList.compare(state.sorted.getLong(entry),
+                        state.sorted.getLong(entry + Long.BYTES), state.tail[next * 2], state.tail[next * 2 + 1]) < 0);
+                if (fromSorted) {
+                    out.writeLong(state.sorted.getLong(entry));
+                    out.writeLong(state.sorted.getLong(entry + Long.BYTES));
+                    sortedIndex++;
+                } else {
+                    out.writeLong(state.tail[next * 2]);
+                    out.writeLong(state.tail[next * 2 + 1]);
+                    tailIndex++;
+                }
+            }
+        }
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        _channel.close();
+        Files.move(temp, _path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        open();
+    }
+
+    private static void writeHeader(DataOutputStream out, int sortedCount) throws IOException {
+        out.writeInt(RevocationList.MAGIC);
+        out.writeInt(RevocationList.VERSION);
+        out.writeInt(sortedCount);
+        out.writeInt(0);
+    }
+
+    private static int compare(long high1, long low1, long high2, long low2) {
+        int order = Long.compare(high1, high2);
+        return order != 0 ? order : Long.compare(low1, low2);
+    }
+
+    /// --- BLOOM FILTER --- ///
+
+    /**
+     * Creates a Bloom filter with room for twice the number of entries, so that it stays effective until the list is
+     * opened again, or the appended entries are merged.
+     */
+    private static long[] newBloom(int count) {
+        long bits = Long.highestOneBit(Math.max((long) count * 2 * RevocationList.BITS_PER_ENTRY, RevocationList.MIN_BLOOM_BITS) - 1) << 1;
+        return new long[(int) Math.min(bits / Long.SIZE, 1 << 30)];
+    }
+
+    private static void addToBloom(long[] bloom, long high, long low) {
+        long hash1 = RevocationList.mix(high ^ RevocationList.mix(low));
+        long hash2 = RevocationList.mix(low + 0x9e3779b97f4a7c15L) | 1;
+        long mask = (long) bloom.length * Long.SIZE - 1;
+        for (int i = 0; i < RevocationList.PROBES; i++) {
+            long bit = (hash1 + i * hash2) & mask;
+            bloom[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    private static boolean mightContain(long[] bloom, long high, long low) {
+        long hash1 = RevocationList.mix(high ^ RevocationList.mix(low));
+        long hash2 = RevocationList.mix(low + 0x9e3779b97f4a7c15L) | 1;
+        long mask = (long) bloom.length * Long.SIZE - 1;
+        for (int i = 0; i < RevocationList.PROBES; i++) {
+            long bit = (hash1 + i * hash2) & mask;
+            if ((bloom[(int) (bit >>> 6)] & (1L << bit)) == 0) { return false; }
+        }
+        return true;
+    }
+
+    private static long mix(long value) {
+        value ^= value >>> 33; // MurmurHash3 finalizer
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+
+    private static long hash(String name, long seed) {
+        long hash = seed; // FNV-1a
+        for (int i = 0; i < name.length(); i++) {
+            hash ^= name.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return RevocationList.mix(hash);
+    }
+
+}
@@ -0,0 +1,169 @@
+//
+//  Blake2b.java
+//  DiME - Data Identity Message Envelope
+//  A powerful universal data format that is built for secure, and integrity protected communication between trusted
+//  entities in a network.
+//
+//  Released under the MIT licence, see LICENSE for more information.
+//  Copyright (c) 2024 Shift Everywhere AB. All rights reserved.
+//
+package io.dimeformat.crypto;
+
+/**
+ * A plain Java implementation of the BLAKE2b hash function (RFC 7693), optionally keyed and with salt and
+ * personalization. Produces the same digests as crypto_generichash in libsodium, which is used by the NaCl suite. Instances are not thread-safe.
+ */
+final class Blake2b {
+
+    /// PACKAGE-PRIVATE ///
+
+    Blake2b(int digestLength) {
+        this(digestLength, null, null, null);
+    }
+
+    /**
+     * Creates a keyed hash with salt and personalization, as crypto_generichash_blake2b_salt_personal in libsodium.
+     * Any of key, salt and personal may be null, salt and personal must otherwise be 16 bytes.
+     */
+    Blake2b(int digestLength, byte[] key, byte[] salt, byte[] personal) {
+        if (digestLength < 1 || digestLength > Blake2b.MAX_DIGEST_LENGTH) { throw new IllegalArgumentException("Invalid digest length: " + digestLength); }
+        int keyLength = key != null ? key.length : 0;
+        if (keyLength > Blake2b.MAX_KEY_LENGTH) { throw new IllegalArgumentException("Invalid key length: " + keyLength); }
+        if (salt != null && salt.length != Blake2b.SALT_LENGTH) { throw new IllegalArgumentException("Invalid salt length: " + salt.length); }
+        if (personal != null && personal.length != Blake2b.PERSONAL_LENGTH) { throw new IllegalArgumentException("Invalid personalization length: " + personal.length); }
+        this._digestLength = digestLength;
+        System.arraycopy(Blake2b.IV, 0, _h, 0, 8);
+        _h[0] ^= 0x01010000L ^ ((long) keyLength << 8) ^ digestLength;
+        if (salt != null) {
+            _h[4] ^= littleEndian64(salt, 0);
+            _h[5] ^= littleEndian64(salt, 8);
+        }
+        if (personal != null) {
+            _h[6] ^= littleEndian64(personal, 0);
+            _h[7] ^= littleEndian64(personal, 8);
+        }
+        if (keyLength > 0) {
+            // The key is processed as a first block of its own, padded with zeros
+            byte[] block = new byte[Blake2b.BLOCK_LENGTH];
+            System.arraycopy(key, 0, block, 0, keyLength);
+            update(block, 0, Blake2b.BLOCK_LENGTH);
+        }
+    }
+
+    void update(byte[] data, int offset, int length) {
+        while (length > 0) {
+            if (_bufferLength == Blake2b.BLOCK_LENGTH) {
+                // Only compress when more data follows, the last block must be compressed with the final flag set
+                _counter += Blake2b.BLOCK_LENGTH;
+                compress(_buffer, 0, false);
+                _bufferLength = 0;
+            }
+            int count = Math.min(length, Blake2b.BLOCK_LENGTH - _bufferLength);
+            System.arraycopy(data, offset, _buffer, _bufferLength, count);
+            _bufferLength += count;
+            offset += count;
+            length -= count;
+        }
+    }
+
+    byte[] digest() {
+        _counter += _bufferLength;
+        for (int i = _bufferLength; i < Blake2b.BLOCK_LENGTH; i++) {
+            _buffer[i] = 0;
+        }
+        compress(_buffer, 0, true);
+        byte[] out = new byte[_digestLength];
+        for (int i = 0; i < _digestLength; i++) {
+            out[i] = (byte) (_h[i >>> 3] >>> (8 * (i & 7)));
+        }
+        return out;
+    }
+
+    static byte[] hash(byte[] data, int digestLength) {
+        Blake2b blake2b = new Blake2b(digestLength);
+        blake2b.update(data, 0, data.length);
+        return blake2b.digest();
+    }
+
+    /// PRIVATE ///
+
+    private static final int MAX_DIGEST_LENGTH = 64;
+    private static final int MAX_KEY_LENGTH = 64;
+    private static final int SALT_LENGTH = 16;
+    private static final int PERSONAL_LENGTH = 16;
+    private static final int BLOCK_LENGTH = 128;
+    private static final long[] IV = {
+            0x6a09e667f3bcc908L, 0xbb67ae8584caa73bL, 0x3c6ef372fe94f82bL, 0xa54ff53a5f1d36f1L,
+            0x510e527fade682d1L, 0x9b05688c2b3e6c1fL, 0x1f83d9abfb41bd6bL, 0x5be0cd19137e2179L
+    };
+    private static final byte[][] SIGMA = {
+            { 0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15 },
+            { 14, 10, 4, 8, 9, 15, 13, 6, 1, 12, 0, 2, 11, 7, 5, 3 },
+            { 11, 8, 12, 0, 5, 2, 15, 13, 10, 14, 3, 6, 7, 1, 9, 4 },
+            { 7, 9, 3, 1, 13, 12, 11, 14, 2, 6, 5, 10, 4, 0, 15, 8 },
+            { 9, 0, 5, 7, 2, 4, 10, 15, 14, 1, 11, 12, 6, 8, 3, 13 },
+            { 2, 12, 6, 10, 0, 11, 8, 3, 4, 13, 7, 5, 15, 14, 1, 9 },
+            { 12, 5, 1, 15, 14, 13, 4, 10, 0, 7, 6, 3, 9, 2, 8, 11 },
+            { 13, 11, 7, 14, 12, 1, 3, 9, 5, 0, 15, 4, 8, 6, 2, 10 },
+            { 6, 15, 14, 9, 11, 3, 0, 8, 12, 2, 13, 7, 1, 4, 10, 5 },
+            { 10, 2, 8, 4, 7, 6, 1, 5, 15, 11, 9, 14, 3, 12, 13, 0 }
+    };
+
+    private final int _digestLength;
+    private final long[] _h = new long[8];
+    private final long[] _v = new long[16];
+    private final long[] _m = new long[16];
+    private final byte[] _buffer = new byte[Blake2b.BLOCK_LENGTH];
+    private int _bufferLength = 0;
+    private long _counter = 0;
+
+    private void compress(byte[] block, int offset, boolean last) {
+        for (int i = 0; i < 16; i++) {
+            _m[i] = littleEndian64(block, offset + i * 8);
+        }
+        System.arraycopy(_h, 0, _v, 0, 8);
+        System.arraycopy(Blake2b.IV, 0, _v, 8, 8);
+        _v[12] ^= _counter;
+        if (last) {
+            _v[14] = ~_v[14];
+        }
+        for (int round = 0; round < 12; round++) {
+            byte[] s = Blake2b.SIGMA[round % 10];
+            mix(0, 4, 8, 12, _m[s[0]], _m[s[1]]);
+            mix(1, 5, 9, 13, _m[s[2]], _m[s[3]]);
+            mix(2, 6, 10, 14, _m[s[4]], _m[s[5]]);
+            mix(3, 7, 11, 15, _m[s[6]], _m[s[7]]);
+            mix(0, 5, 10, 15, _m[s[8]], _m[s[9]]);
+            mix(1, 6, 11, 12, _m[s[10]], _m[s[11]]);
+            mix(2, 7, 8, 13, _m[s[12]], _m[s[13]]);
+            mix(3, 4, 9, 14, _m[s[14]], _m[s[15]]);
+        }
+        for (int i = 0; i < 8; i++) {
+            _h[i] ^= _v[i] ^ _v[i + 8];
+        }
+    }
+
+    private void mix(int a, int b, int c, int d, long x, long y) {
+        long[] v = _v;
+        v[a] = v[a] + v[b] + x;
+        v[d] = Long.rotateRight(v[d] ^ v[a], 32);
+        v[c] = v[c] + v[d];
+        v[b] = Long.rotateRight(v[b] ^ v[c], 24);
+        v[a] = v[a] + v[b] + y;
+        v[d] = Long.rotateRight(v[d] ^ v[a], 16);
+        v[c] = v[c] + v[d];
+        v[b] = Long.rotateRight(v[b] ^ v[c], 63);
+    }
+
+    private static long littleEndian64(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFFL)
+                | (bytes[offset + 1] & 0xFFL) << 8
+                | (bytes[offset + 2] & 0xFFL) << 16
+                | (bytes[offset + 3] & 0xFFL) << 24
+                | (bytes[offset + 4] & 0xFFL) << 32
+                | (bytes[offset + 5] & 0xFFL) << 40
+                | (bytes[offset + 6] & 0xFFL) << 48
+                | (bytes[offset + 7] & 0xFFL) << 56;
+    }
+
+}
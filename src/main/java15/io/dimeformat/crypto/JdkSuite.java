@@ -0,0 +1,380 @@
+//
+//  JdkSuite.java
+//  DiME - Data Identity Message Envelope
+//  A powerful universal data format that is built for secure, and integrity protected communication between trusted
+//  entities in a network.
+//
+//  Released under the MIT licence, see LICENSE for more information.
+//  Copyright (c) 2024 Shift Everywhere AB. All rights reserved.
+//
+package io.dimeformat.crypto;
+
+import io.dimeformat.DimeContext;
+import io.dimeformat.Item;
+import io.dimeformat.Key;
+import io.dimeformat.Utility;
+import io.dimeformat.enums.Claim;
+import io.dimeformat.enums.KeyCapability;
+import io.dimeformat.exceptions.CryptographyException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.SecureRandom;
+import java.security.Signature;
+import java.security.interfaces.EdECPrivateKey;
+import java.security.interfaces.EdECPublicKey;
+import java.security.interfaces.XECPrivateKey;
+import java.security.interfaces.XECPublicKey;
+import java.security.spec.EdECPoint;
+import java.security.spec.EdECPrivateKeySpec;
+import java.security.spec.EdECPublicKeySpec;
+import java.security.spec.NamedParameterSpec;
+import java.security.spec.XECPrivateKeySpec;
+import java.security.spec.XECPublicKeySpec;
+import java.util.Arrays;
+import java.util.List;
+import javax.crypto.KeyAgreement;
+
+/**
+ * Implements the algorithms of the NaCl cryptographic suite using the EdDSA (Ed25519) and XDH (X25519) providers
+ * built into the JDK (Java 15 or later), without any native library. Hashing (BLAKE2b) and symmetric encryption
+ * (XSalsa20-Poly1305) are done in plain Java. Raw keys, key names, signatures, shared secrets and cipher texts are
+ * identical to, and may be used interchangeably with, those of the NaCl suite.
+ */
+class JdkSuite implements ICryptoSuite {
+
+    static final String SUITE_NAME = "JDK";
+
+    public String getName() {
+        return _suiteName;
+    }
+
+    public JdkSuite(String name) {
+        this._suiteName = name;
+    }
+
+    public String generateKeyName(Key key) {
+        // This only supports key names for public keys, may be different for other crypto suites
+        byte[] bytes = key.getKeyBytes(Claim.PUB);
+        if (bytes != null && bytes.length > 0) {
+            byte[] hash = Blake2b.hash(bytes, JdkSuite.NBR_HASH_BYTES);
+            byte[] name = Utility.subArray(hash, 0, JdkSuite.KEY_NAME_LENGTH); // First 8 bytes are used as an identifier
+            return Utility.toHex(name);
+        }
+        return null;
+    }
+
+    public byte[] generateSignature(Item item, Key key) throws CryptographyException {
+        byte[] data = item.generateThumbprint(false, this._suiteName)
+                .getBytes(StandardCharsets.UTF_8);
+        if (data.length > 0) {
+            byte[] secretKey = key.getKeyBytes(Claim.KEY);
+            if (secretKey == null || secretKey.length < JdkSuite.NBR_SEED_BYTES) { throw new CryptographyException("Failed to generate signature, invalid key provided."); }
+            byte[] seed = Utility.subArray(secretKey, 0, JdkSuite.NBR_SEED_BYTES);
+            try {
+                // The secret key is stored as seed and public key, as in libsodium, only the seed is needed
+                PrivateKey privateKey = KeyFactory.getInstance(JdkSuite.SIGN_ALGORITHM)
+                        .generatePrivate(new EdECPrivateKeySpec(NamedParameterSpec.ED25519, seed));
+                Signature signer = Signature.getInstance(JdkSuite.SIGN_ALGORITHM);
+                signer.initSign(privateKey);
+                signer.update(data);
+                return signer.sign();
+            } catch (GeneralSecurityException e) {
+                throw new CryptographyException("Failed to generate signature: " + e.getMessage());
+            } finally {
+                Arrays.fill(seed, (byte) 0);
+                JdkSuite.release(key, secretKey);
+            }
+        }
+        throw new IllegalArgumentException("Failed to generate signature, item thumbprint was null or empty.");
+    }
+
+    public boolean verifySignature(Item item, byte[] signature, Key key) throws CryptographyException {
+        byte[] data = item.generateThumbprint(false, this._suiteName)
+                .getBytes(StandardCharsets.UTF_8);
+        if (data.length > 0) {
+            try {
+                PublicKey publicKey = KeyFactory.getInstance(JdkSuite.SIGN_ALGORITHM)
+                        .generatePublic(new EdECPublicKeySpec(NamedParameterSpec.ED25519, decodePoint(key.getKeyBytes(Claim.PUB))));
+                Signature verifier = Signature.getInstance(JdkSuite.SIGN_ALGORITHM);
+                verifier.initVerify(publicKey);
+                verifier.update(data);
+                return verifier.verify(signature);
+            } catch (GeneralSecurityException e) {
+                return false;
+            }
+        }
+        throw new IllegalArgumentException("Failed to generate signature, item thumbprint was null or empty.");
+    }
+
+    public Key generateKey(List<KeyCapability> capabilities) throws CryptographyException {
+        if (capabilities == null || capabilities.size() != 1) { throw new IllegalArgumentException("Unable to generate, invalid key capabilities requested."); }
+        KeyCapability firstUse = capabilities.get(0);
+        try {
+            switch (firstUse) {
+                case ENCRYPT:
+                    byte[] secretKey = JdkSuite.randomBytes(XSalsa20Poly1305.KEY_BYTES);
+                    return new Key(capabilities, secretKey, null, this._suiteName);
+                case SIGN:
+                    KeyPairGenerator signGenerator = KeyPairGenerator.getInstance(JdkSuite.SIGN_ALGORITHM);
+                    signGenerator.initialize(NamedParameterSpec.ED25519, JdkSuite.random);
+                    KeyPair signPair = signGenerator.generateKeyPair();
+                    byte[] seed = ((EdECPrivateKey) signPair.getPrivate()).getBytes()
+                            .orElseThrow(() -> new CryptographyException("Unable to generate keypair, no private key available."));
+                    byte[] signPublic = encodePoint(((EdECPublicKey) signPair.getPublic()).getPoint());
+                    return new Key(capabilities, Utility.combine(seed, signPublic), signPublic, this._suiteName);
+                case EXCHANGE:
+                    KeyPairGenerator exchangeGenerator = KeyPairGenerator.getInstance(JdkSuite.EXCHANGE_ALGORITHM);
+                    exchangeGenerator.initialize(NamedParameterSpec.X25519, JdkSuite.random);
+                    KeyPair exchangePair = exchangeGenerator.generateKeyPair();
+                    byte[] scalar = ((XECPrivateKey) exchangePair.getPrivate()).getScalar()
+                            .orElseThrow(() -> new CryptographyException("Unable to generate keypair, no private key available."));
+                    byte[] exchangePublic = encodeCoordinate(((XECPublicKey) exchangePair.getPublic()).getU());
+                    return new Key(capabilities, scalar, exchangePublic, this._suiteName);
+                default:
+                    throw new CryptographyException("Unable to generate keypair for key type " + capabilities + ".");
+            }
+        } catch (GeneralSecurityException e) {
+            throw new CryptographyException("Unable to generate keypair: " + e.getMessage());
+        }
+    }
+
+    public Key generateSharedSecret(Key clientKey, Key serverKey, List<KeyCapability> capabilities) throws CryptographyException {
+        if (!capabilities.contains(KeyCapability.ENCRYPT)) { throw new IllegalArgumentException("Unable to generate, key capability for shared secret must be ENCRYPT."); }
+        if (capabilities.size() > 1) { throw new IllegalArgumentException("Unable to generate, key capability for shared secret may only be ENCRYPT."); }
+        byte[] clientPublic = clientKey.getKeyBytes(Claim.PUB);
+        byte[] serverPublic = serverKey.getKeyBytes(Claim.PUB);
+        if (clientPublic == null || serverPublic == null) { throw new CryptographyException("Unable to generate, invalid keys provided."); }
+        Key localKey;
+        byte[] remotePublic;
+        if (clientKey.hasSecret()) {
+            localKey = clientKey;
+            remotePublic = serverPublic;
+        } else if (serverKey.hasSecret()) {
+            localKey = serverKey;
+            remotePublic = clientPublic;
+        } else {
+            throw new CryptographyException("Unable to generate, invalid keys provided.");
+        }
+        byte[] secret = localKey.getKeyBytes(Claim.KEY);
+        if (secret == null) { throw new CryptographyException("Unable to generate, invalid keys provided."); }
+        byte[] point;
+        try {
+            KeyFactory factory = KeyFactory.getInstance(JdkSuite.EXCHANGE_ALGORITHM);
+            PrivateKey privateKey = factory.generatePrivate(new XECPrivateKeySpec(NamedParameterSpec.X25519, secret));
+            PublicKey publicKey = factory.generatePublic(new XECPublicKeySpec(NamedParameterSpec.X25519, decodeCoordinate(remotePublic)));
+            KeyAgreement agreement = KeyAgreement.getInstance(JdkSuite.EXCHANGE_ALGORITHM);
+            agreement.init(privateKey);
+            agreement.doPhase(publicKey, true);
+            point = agreement.generateSecret();
+        } catch (GeneralSecurityException e) {
+            throw new CryptographyException("Unable to generate, cryptographic operation failed.");
+        } finally {
+            JdkSuite.release(localKey, secret);
+        }
+        // Same derivation as crypto_kx in libsodium: BLAKE2b-512(q || client_pk || server_pk). As the NaCl suite only
+        // requests one session key, libsodium writes both halves to the same buffer, leaving the second half
+        Blake2b blake2b = new Blake2b(JdkSuite.NBR_X_KEY_BYTES * 2);
+        blake2b.update(point, 0, point.length);
+        blake2b.update(clientPublic, 0, clientPublic.length);
+        blake2b.update(serverPublic, 0, serverPublic.length);
+        byte[] digest = blake2b.digest();
+        byte[] shared = Utility.subArray(digest, JdkSuite.NBR_X_KEY_BYTES);
+        Arrays.fill(point, (byte) 0);
+        Arrays.fill(digest, (byte) 0);
+        Key key = new Key(capabilities, shared, null, this._suiteName);
+        Arrays.fill(shared, (byte) 0);
+        return key;
+    }
+
+    public Key deriveKey(Key masterKey, long subkeyId, String context, List<KeyCapability> capabilities) throws CryptographyException {
+        byte[] master = secretKey(masterKey);
+        // Same construction as crypto_kdf_derive_from_key, the subkey id is used as salt and the context as personal
+        byte[] salt = new byte[16];
+        for (int i = 0; i < 8; i++) {
+            salt[i] = (byte) (subkeyId >>> (8 * i));
+        }
+        byte[] personal = Arrays.copyOf(NaClSuite.kdfContext(context), 16);
+        byte[] subkey;
+        try {
+            subkey = new Blake2b(XSalsa20Poly1305.KEY_BYTES, master, salt, personal).digest();
+        } finally {
+            JdkSuite.release(masterKey, master);
+        }
+        Key key = new Key(capabilities, subkey, null, this._suiteName);
+        Arrays.fill(subkey, (byte) 0);
+        return key;
+    }
+
+    public byte[] encrypt(byte[] data, Key key) throws CryptographyException {
+        return encrypt(data, JdkSuite.randomBytes(XSalsa20Poly1305.NONCE_BYTES), key);
+    }
+
+    public byte[] encrypt(byte[] data, byte[] nonce, Key key) throws CryptographyException {
+        if (nonce == null || nonce.length != XSalsa20Poly1305.NONCE_BYTES) { throw new IllegalArgumentException("Unable to encrypt, nonce must be " + XSalsa20Poly1305.NONCE_BYTES + " bytes."); }
+        byte[] secretKey = secretKey(key);
+        try {
+            return Utility.combine(nonce, XSalsa20Poly1305.seal(data, nonce, secretKey));
+        } finally {
+            JdkSuite.release(key, secretKey);
+        }
+    }
+
+    public byte[] decrypt(byte[] data, Key key) throws CryptographyException {
+        if (data.length < XSalsa20Poly1305.NONCE_BYTES + XSalsa20Poly1305.MAC_BYTES) { throw new CryptographyException("Cryptographic operation failed, cipher text too short."); }
+        byte[] nonce = Utility.subArray(data, 0, XSalsa20Poly1305.NONCE_BYTES);
+        byte[] bytes = Utility.subArray(data, XSalsa20Poly1305.NONCE_BYTES);
+        byte[] secretKey = secretKey(key);
+        byte[] plain;
+        try {
+            plain = XSalsa20Poly1305.open(bytes, nonce, secretKey);
+        } finally {
+            JdkSuite.release(key, secretKey);
+        }
+        if (plain == null) {
+            throw new CryptographyException("Cryptographic operation failed.");
+        }
+        return plain;
+    }
+
+    public String generateHash(byte[] data) throws CryptographyException {
+        return Utility.toHex(Blake2b.hash(data, JdkSuite.NBR_HASH_BYTES));
+    }
+
+    public HashContext newHash() throws CryptographyException {
+        Blake2b blake2b = new Blake2b(JdkSuite.NBR_HASH_BYTES);
+        return new HashContext() {
+            private byte[] _chunk;
+            @Override
+            public void update(ByteBuffer data) {
+                if (data.hasArray()) {
+                    blake2b.update(data.array(), data.arrayOffset() + data.position(), data.remaining());
+                    data.position(data.limit());
+                    return;
+                }
+                if (_chunk == null) {
+                    _chunk = new byte[JdkSuite.HASH_CHUNK_SIZE];
+                }
+                while (data.hasRemaining()) {
+                    int length = Math.min(data.remaining(), _chunk.length);
+                    data.get(_chunk, 0, length);
+                    blake2b.update(_chunk, 0, length);
+                }
+            }
+            @Override
+            public String finish() {
+                return Utility.toHex(blake2b.digest());
+            }
+        };
+    }
+
+    public String encodeKeyBytes(byte[] rawKey, Claim claim) {
+        return Utility.toBase64(rawKey);
+    }
+
+    public byte[] decodeKeyBytes(String encodedKey, Claim claim) {
+        return Utility.fromBase64(encodedKey);
+    }
+
+    /// PRIVATE ///
+
+    private static final String SIGN_ALGORITHM = "Ed25519";
+    private static final String EXCHANGE_ALGORITHM = "X25519";
+    private static final int NBR_SEED_BYTES = 32;
+    private static final int NBR_X_KEY_BYTES = 32;
+    private static final int NBR_HASH_BYTES = 32;
+    private static final int KEY_NAME_LENGTH = 8;
+    private static final int HASH_CHUNK_SIZE = 8192;
+    private static final RandomSource DEFAULT_RANDOM_SOURCE = RandomSource.threadLocalSecureRandom();
+    private static final SecureRandom random = new RandomSourceAdapter();
+
+    private final String _suiteName;
+
+    /** Lets the JDK key pair generators use the random source set in Crypto, if one is set explicitly. */
+    private static final class RandomSourceAdapter extends SecureRandom {
+
+        @Override
+        public void nextBytes(byte[] bytes) {
+            JdkSuite.randomSource().nextBytes(bytes);
+        }
+
+    }
+
+    /** Uses SecureRandom by default, so that the native library is never loaded for the JDK suite. */
+    private static RandomSource randomSource() {
+        RandomSource source = DimeContext.current().getCrypto().getExplicitRandomSource();
+        return source != null ? source : JdkSuite.DEFAULT_RANDOM_SOURCE;
+    }
+
+    private static byte[] randomBytes(int length) {
+        return JdkSuite.randomSource().randomBytes(length);
+    }
+
+    private static byte[] secretKey(Key key) throws CryptographyException {
+        byte[] secretKey = key.getKeyBytes(Claim.KEY);
+        if (secretKey == null || secretKey.length != XSalsa20Poly1305.KEY_BYTES) {
+            JdkSuite.release(key, secretKey);
+            throw new CryptographyException("Cryptographic operation failed, invalid key provided.");
+        }
+        return secretKey;
+    }
+
+    /**
+     * Wipes the raw secret key of a key once used. The JDK providers need the secret key on the heap, so for a guarded
+     * secret a copy is made for each operation, which is wiped here. Raw secret keys of keys that are not guarded are
+     * kept by the key, and left as they are.
+     */
+    private static void release(Key key, byte[] secretKey) {
+        if (secretKey != null && key.getGuardedSecret() != null) {
+            Arrays.fill(secretKey, (byte) 0);
+        }
+    }
+
+    /** Decodes a little-endian Ed25519 public key, where the highest bit holds the parity of x. */
+    private static EdECPoint decodePoint(byte[] encoded) throws CryptographyException {
+        if (encoded == null || encoded.length != 32) { throw new CryptographyException("Invalid public key provided."); }
+        byte[] bytes = reverse(encoded);
+        boolean xOdd = (bytes[0] & 0x80) != 0;
+        bytes[0] &= 0x7F;
+        return new EdECPoint(xOdd, new BigInteger(1, bytes));
+    }
+
+    private static byte[] encodePoint(EdECPoint point) {
+        byte[] encoded = encodeCoordinate(point.getY());
+        if (point.isXOdd()) {
+            encoded[31] |= (byte) 0x80;
+        }
+        return encoded;
+    }
+
+    private static BigInteger decodeCoordinate(byte[] encoded) throws CryptographyException {
+        if (encoded == null || encoded.length != 32) { throw new CryptographyException("Invalid public key provided."); }
+        byte[] bytes = reverse(encoded);
+        bytes[0] &= 0x7F; // Masked as specified by RFC 7748
+        return new BigInteger(1, bytes);
+    }
+
+    private static byte[] encodeCoordinate(BigInteger value) {
+        byte[] bigEndian = value.toByteArray();
+        byte[] encoded = new byte[32];
+        for (int i = 0; i < Math.min(bigEndian.length, 32); i++) {
+            encoded[i] = bigEndian[bigEndian.length - 1 - i];
+        }
+        return encoded;
+    }
+
+    private static byte[] reverse(byte[] bytes) {
+        byte[] reversed = new byte[bytes.length];
+        for (int i = 0; i < bytes.length; i++) {
+            reversed[i] = bytes[bytes.length - 1 - i];
+        }
+        return reversed;
+    }
+
+}
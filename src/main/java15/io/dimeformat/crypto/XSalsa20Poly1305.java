@@ -0,0 +1,243 @@
+//
+//  XSalsa20Poly1305.java
+//  DiME - Data Identity Message Envelope
+//  A powerful universal data format that is built for secure, and integrity protected communication between trusted
+//  entities in a network.
+//
+//  Released under the MIT licence, see LICENSE for more information.
+//  Copyright (c) 2024 Shift Everywhere AB. All rights reserved.
+//
+package io.dimeformat.crypto;
+
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+/**
+ * A plain Java implementation of XSalsa20-Poly1305 authenticated encryption, producing the same output as
+ * crypto_secretbox_easy in libsodium (MAC followed by cipher text), which is used by the NaCl suite.
+ */
+final class XSalsa20Poly1305 {
+
+    /// PACKAGE-PRIVATE ///
+
+    static final int KEY_BYTES = 32;
+    static final int NONCE_BYTES = 24;
+    static final int MAC_BYTES = 16;
+
+    static byte[] seal(byte[] message, byte[] nonce, byte[] key) {
+        byte[] out = new byte[XSalsa20Poly1305.MAC_BYTES + message.length];
+        byte[] polyKey = xor(message, 0, out, XSalsa20Poly1305.MAC_BYTES, message.length, nonce, key);
+        byte[] mac = poly1305(out, XSalsa20Poly1305.MAC_BYTES, message.length, polyKey);
+        System.arraycopy(mac, 0, out, 0, XSalsa20Poly1305.MAC_BYTES);
+        return out;
+    }
+
+    static byte[] open(byte[] box, byte[] nonce, byte[] key) {
+        if (box.length < XSalsa20Poly1305.MAC_BYTES) { return null; }
+        int length = box.length - XSalsa20Poly1305.MAC_BYTES;
+        byte[] polyKey = xor(new byte[0], 0, new byte[0], 0, 0, nonce, key);
+        byte[] mac = poly1305(box, XSalsa20Poly1305.MAC_BYTES, length, polyKey);
+        byte[] expected = new byte[XSalsa20Poly1305.MAC_BYTES];
+        System.arraycopy(box, 0, expected, 0, XSalsa20Poly1305.MAC_BYTES);
+        if (!MessageDigest.isEqual(mac, expected)) { return null; }
+        byte[] out = new byte[length];
+        xor(box, XSalsa20Poly1305.MAC_BYTES, out, 0, length, nonce, key);
+        return out;
+    }
+
+    /// PRIVATE ///
+
+    private static final int[] SIGMA = { 0x61707865, 0x3320646e, 0x79622d32, 0x6b206574 }; // "expand 32-byte k"
+    private static final int BLOCK_BYTES = 64;
+
+    private XSalsa20Poly1305() {
+        throw new IllegalStateException("Not intended to be instantiated.");
+    }
+
+    /**
+     * XORs the input with the XSalsa20 key stream, skipping the first 32 bytes of the stream, which are returned to be
+     * used as the Poly1305 key.
+     */
+    private static byte[] xor(byte[] in, int inOffset, byte[] out, int outOffset, int length, byte[] nonce, byte[] key) {
+        int[] subKey = hSalsa20(key, nonce);
+        int[] state = new int[16];
+        state[0] = SIGMA[0];
+        state[5] = SIGMA[1];
+        state[10] = SIGMA[2];
+        state[15] = SIGMA[3];
+        for (int i = 0; i < 4; i++) {
+            state[1 + i] = subKey[i];
+            state[11 + i] = subKey[4 + i];
+        }
+        state[6] = littleEndian32(nonce, 16);
+        state[7] = littleEndian32(nonce, 20);
+        byte[] block = new byte[XSalsa20Poly1305.BLOCK_BYTES];
+        int[] x = new int[16];
+        long counter = 0;
+        salsa20(state, counter++, x, block);
+        byte[] polyKey = new byte[32];
+        System.arraycopy(block, 0, polyKey, 0, 32);
+        int blockOffset = 32;
+        for (int i = 0; i < length; i++) {
+            if (blockOffset == XSalsa20Poly1305.BLOCK_BYTES) {
+                salsa20(state, counter++, x, block);
+                blockOffset = 0;
+            }
+            out[outOffset + i] = (byte) (in[inOffset + i] ^ block[blockOffset++]);
+        }
+        return polyKey;
+    }
+
+    private static void salsa20(int[] state, long counter, int[] x, byte[] block) {
+        state[8] = (int) counter;
+        state[9] = (int) (counter >>> 32);
+        System.arraycopy(state, 0, x, 0, 16);
+        rounds(x);
+        for (int i = 0; i < 16; i++) {
+            int word = x[i] + state[i];
+            block[i * 4] = (byte) word;
+            block[i * 4 + 1] = (byte) (word >>> 8);
+            block[i * 4 + 2] = (byte) (word >>> 16);
+            block[i * 4 + 3] = (byte) (word >>> 24);
+        }
+    }
+
+    private static int[] hSalsa20(byte[] key, byte[] nonce) {
+        int[] x = new int[16];
+        x[0] = SIGMA[0];
+        x[5] = SIGMA[1];
+        x[10] = SIGMA[2];
+        x[15] = SIGMA[3];
+        for (int i = 0; i < 4; i++) {
+            x[1 + i] = littleEndian32(key, i * 4);
+            x[11 + i] = littleEndian32(key, 16 + i * 4);
+            x[6 + i] = littleEndian32(nonce, i * 4);
+        }
+        rounds(x);
+        return new int[] { x[0], x[5], x[10], x[15], x[6], x[7], x[8], x[9] };
+    }
+
+    private static void rounds(int[] x) {
+        for (int i = 0; i < 10; i++) {
+            // Column round
+            quarterRound(x, 0, 4, 8, 12);
+            quarterRound(x, 5, 9, 13, 1);
+            quarterRound(x, 10, 14, 2, 6);
+            quarterRound(x, 15, 3, 7, 11);
+            // Row round
+            quarterRound(x, 0, 1, 2, 3);
+            quarterRound(x, 5, 6, 7, 4);
+            quarterRound(x, 10, 11, 8, 9);
+            quarterRound(x, 15, 12, 13, 14);
+        }
+    }
+
+    private static void quarterRound(int[] x, int a, int b, int c, int d) {
+        x[b] ^= Integer.rotateLeft(x[a] + x[d], 7);
+        x[c] ^= Integer.rotateLeft(x[b] + x[a], 9);
+        x[d] ^= Integer.rotateLeft(x[c] + x[b], 13);
+        x[a] ^= Integer.rotateLeft(x[d] + x[c], 18);
+    }
+
+    private static byte[] poly1305(byte[] message, int offset, int length, byte[] key) {
+        final long mask = 0x3ffffff;
+        long r0 = littleEndian32(key, 0) & 0x3ffffffL;
+        long r1 = (littleEndian32(key, 3) >>> 2) & 0x3ffff03L;
+        long r2 = (littleEndian32(key, 6) >>> 4) & 0x3ffc0ffL;
+        long r3 = (littleEndian32(key, 9) >>> 6) & 0x3f03fffL;
+        long r4 = (littleEndian32(key, 12) >>> 8) & 0x00fffffL;
+        long s1 = r1 * 5;
+        long s2 = r2 * 5;
+        long s3 = r3 * 5;
+        long s4 = r4 * 5;
+        long h0 = 0, h1 = 0, h2 = 0, h3 = 0, h4 = 0;
+        byte[] block = new byte[17];
+        int position = offset;
+        int end = offset + length;
+        while (position < end) {
+            int count = Math.min(16, end - position);
+            long hibit;
+            byte[] source;
+            int sourceOffset;
+            if (count == 16) {
+                source = message;
+                sourceOffset = position;
+                hibit = 1L << 24;
+            } else {
+                // Last partial block is padded with a single one bit instead
+                Arrays.fill(block, (byte) 0);
+                System.arraycopy(message, position, block, 0, count);
+                block[count] = 1;
+                source = block;
+                sourceOffset = 0;
+                hibit = 0;
+            }
+            h0 += littleEndian32(source, sourceOffset) & mask;
+            h1 += (littleEndian32(source, sourceOffset + 3) >>> 2) & mask;
+            h2 += (littleEndian32(source, sourceOffset + 6) >>> 4) & mask;
+            h3 += (littleEndian32(source, sourceOffset + 9) >>> 6) & mask;
+            h4 += (littleEndian32(source, sourceOffset + 12) >>> 8) | hibit;
+
+            long d0 = h0 * r0 + h1 * s4 + h2 * s3 + h3 * s2 + h4 * s1;
+            long d1 = h0 * r1 + h1 * r0 + h2 * s4 + h3 * s3 + h4 * s2;
+            long d2 = h0 * r2 + h1 * r1 + h2 * r0 + h3 * s4 + h4 * s3;
+            long d3 = h0 * r3 + h1 * r2 + h2 * r1 + h3 * r0 + h4 * s4;
+            long d4 = h0 * r4 + h1 * r3 + h2 * r2 + h3 * r1 + h4 * r0;
+
+            long c = d0 >>> 26; h0 = d0 & mask;
+            d1 += c; c = d1 >>> 26; h1 = d1 & mask;
+            d2 += c; c = d2 >>> 26; h2 = d2 & mask;
+            d3 += c; c = d3 >>> 26; h3 = d3 & mask;
+            d4 += c; c = d4 >>> 26; h4 = d4 & mask;
+            h0 += c * 5; c = h0 >>> 26; h0 &= mask;
+            h1 += c;
+            position += count;
+        }
+        // Fully carry h
+        long c = h1 >>> 26; h1 &= mask;
+        h2 += c; c = h2 >>> 26; h2 &= mask;
+        h3 += c; c = h3 >>> 26; h3 &= mask;
+        h4 += c; c = h4 >>> 26; h4 &= mask;
+        h0 += c * 5; c = h0 >>> 26; h0 &= mask;
+        h1 += c;
+        // Compute h + -p
+        long g0 = h0 + 5; c = g0 >>> 26; g0 &= mask;
+        long g1 = h1 + c; c = g1 >>> 26; g1 &= mask;
+        long g2 = h2 + c; c = g2 >>> 26; g2 &= mask;
+        long g3 = h3 + c; c = g3 >>> 26; g3 &= mask;
+        long g4 = h4 + c - (1L << 26);
+        // Select h if h < p, or h + -p if h >= p
+        long select = g4 >> 63; // All ones if g4 is negative, i.e. h < p
+        h0 = (h0 & select) | (g0 & ~select);
+        h1 = (h1 & select) | (g1 & ~select);
+        h2 = (h2 & select) | (g2 & ~select);
+        h3 = (h3 & select) | (g3 & ~select);
+        h4 = (h4 & select) | (g4 & ~select);
+        // h = h % (2^128) + pad
+        h0 = (h0 | (h1 << 26)) & 0xffffffffL;
+        h1 = ((h1 >>> 6) | (h2 << 20)) & 0xffffffffL;
+        h2 = ((h2 >>> 12) | (h3 << 14)) & 0xffffffffL;
+        h3 = ((h3 >>> 18) | (h4 << 8)) & 0xffffffffL;
+        long f = h0 + (littleEndian32(key, 16) & 0xffffffffL); h0 = f & 0xffffffffL;
+        f = h1 + (littleEndian32(key, 20) & 0xffffffffL) + (f >>> 32); h1 = f & 0xffffffffL;
+        f = h2 + (littleEndian32(key, 24) & 0xffffffffL) + (f >>> 32); h2 = f & 0xffffffffL;
+        f = h3 + (littleEndian32(key, 28) & 0xffffffffL) + (f >>> 32); h3 = f & 0xffffffffL;
+        byte[] mac = new byte[XSalsa20Poly1305.MAC_BYTES];
+        long[] words = { h0, h1, h2, h3 };
+        for (int i = 0; i < 4; i++) {
+            mac[i * 4] = (byte) words[i];
+            mac[i * 4 + 1] = (byte) (words[i] >>> 8);
+            mac[i * 4 + 2] = (byte) (words[i] >>> 16);
+            mac[i * 4 + 3] = (byte) (words[i] >>> 24);
+        }
+        return mac;
+    }
+
+    private static int littleEndian32(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFF)
+                | (bytes[offset + 1] & 0xFF) << 8
+                | (bytes[offset + 2] & 0xFF) << 16
+                | (bytes[offset + 3] & 0xFF) << 24;
+    }
+
+}
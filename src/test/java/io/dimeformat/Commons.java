@@ -9,9 +9,11 @@
 //
 package io.dimeformat;
 
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.UUID;
 
+import io.dimeformat.enums.Claim;
 import io.dimeformat.enums.IdentityCapability;
 import io.dimeformat.enums.KeyCapability;
 import org.junit.jupiter.api.Test;
@@ -145,6 +147,17 @@ class Commons {
         return null;
     }
 
+    static Message signedMessage(Key key) throws Exception {
+        return Commons.signedMessage(key, Dime.NO_EXPIRATION);
+    }
+
+    static Message signedMessage(Key key, long validFor) throws Exception {
+        Message message = new Message(Commons.getIssuerIdentity().getClaim(Claim.SUB), validFor);
+        message.setPayload(Commons.PAYLOAD.getBytes(StandardCharsets.UTF_8));
+        message.sign(key);
+        return message;
+    }
+
     /// PRIVATE ///
 
     // -- TRUSTED IDENTITY ---
@@ -9,14 +9,43 @@
 //
 package io.dimeformat;
 
+import io.dimeformat.crypto.Crypto;
+import io.dimeformat.crypto.CryptoOperation;
+import io.dimeformat.crypto.EphemeralKeyPool;
+import io.dimeformat.crypto.GuardedSecret;
+import io.dimeformat.crypto.HashContext;
+import io.dimeformat.crypto.HistogramMetrics;
+import io.dimeformat.crypto.ICryptoSuite;
+import io.dimeformat.crypto.RandomSource;
+import io.dimeformat.crypto.SharedSecretCache;
 import io.dimeformat.enums.Claim;
+import io.dimeformat.keyring.KeyRing;
+import io.dimeformat.exceptions.CryptographyException;
 import org.json.JSONObject;
 import org.junit.jupiter.api.Test;
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Random;
 import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import io.dimeformat.enums.KeyCapability;
 import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
 class CryptoTest {
 
@@ -26,16 +55,19 @@ class CryptoTest {
         assertTrue(Dime.crypto.hasCryptoSuite("DSC"));  // legacy base64
         assertTrue(Dime.crypto.hasCryptoSuite("STN"));  // legacy base58
         assertFalse(Dime.crypto.hasCryptoSuite("NSA")); // non-existing
+        assertFalse(Dime.crypto.hasCryptoSuite(null));
     }
 
     @Test
     void allCryptoSuitesTest1() {
         Set<String> suiteNames = Dime.crypto.allCryptoSuites();
         assertNotNull(suiteNames);
-        assertEquals(3, suiteNames.size());
+        boolean jdkSupported = Runtime.version().feature() >= 15;
+        assertEquals(jdkSupported ? 4 : 3, suiteNames.size());
         assertTrue(suiteNames.contains("NaCl"));
         assertTrue(suiteNames.contains("DSC"));
         assertTrue(suiteNames.contains("STN"));
+        assertEquals(jdkSupported, suiteNames.contains("JDK"));
     }
 
     @Test
@@ -154,6 +186,87 @@ class CryptoTest {
         }
     }
 
+    @Test
+    void generateSharedSecretTest4() {
+        try {
+            Dime.crypto.setSharedSecretCache(new SharedSecretCache(10, Dime.VALID_FOR_1_MINUTE));
+            Key clientKey = Key.generateKey(KeyCapability.EXCHANGE);
+            Key serverKey = Key.generateKey(KeyCapability.EXCHANGE);
+            Key shared1 = clientKey.generateSharedSecret(serverKey.publicCopy(), List.of(KeyCapability.ENCRYPT));
+            Key shared2 = clientKey.generateSharedSecret(serverKey.publicCopy(), List.of(KeyCapability.ENCRYPT));
+            assertSame(shared1, shared2);
+            Key shared3 = clientKey.publicCopy().generateSharedSecret(serverKey, List.of(KeyCapability.ENCRYPT));
+            assertNotSame(shared1, shared3);
+            assertEquals(shared1.getSecret(), shared3.getSecret());
+            Key otherKey = Key.generateKey(KeyCapability.EXCHANGE);
+            Key forgedKey = new Key(List.of(KeyCapability.EXCHANGE), otherKey.getKeyBytes(Claim.KEY), clientKey.getKeyBytes(Claim.PUB), clientKey.getCryptoSuiteName());
+            Key shared4 = forgedKey.generateSharedSecret(serverKey.publicCopy(), List.of(KeyCapability.ENCRYPT));
+            assertNotEquals(shared1.getSecret(), shared4.getSecret());
+            Message message = new Message(Commons.getAudienceIdentity().getClaim(Claim.SUB), Commons.getIssuerIdentity().getClaim(Claim.SUB), Dime.VALID_FOR_1_MINUTE);
+            message.setPayload(Commons.PAYLOAD.getBytes(StandardCharsets.UTF_8), clientKey, serverKey.publicCopy());
+            assertEquals(Commons.PAYLOAD, new String(message.getPayload(clientKey.publicCopy(), serverKey), StandardCharsets.UTF_8));
+            assertTrue(Dime.crypto.getSharedSecretCache().isConfirmed(clientKey.publicCopy(), serverKey));
+            assertEquals(Commons.PAYLOAD, new String(message.getPayload(clientKey, serverKey.publicCopy()), StandardCharsets.UTF_8));
+            assertTrue(Dime.crypto.getSharedSecretCache().isConfirmed(clientKey, serverKey.publicCopy()));
+        } catch (Exception e) {
+            fail("Unexpected exception thrown: " + e);
+        } finally {
+            Dime.crypto.setSharedSecretCache(null);
+        }
+    }
+
+    @Test
+    void generateSharedSecretTest5() {
+        try {
+            SharedSecretCache cache = new SharedSecretCache(10, Dime.VALID_FOR_1_MINUTE);
+            Dime.crypto.setSharedSecretCache(cache);
+            Key audienceKey = Key.generateKey(KeyCapability.EXCHANGE);
+            Message message = new Message(Commons.getAudienceIdentity().getClaim(Claim.SUB), Commons.getIssuerIdentity().getClaim(Claim.SUB), Dime.VALID_FOR_1_MINUTE);
+            Key issuerKey = message.setPayload(Commons.PAYLOAD.getBytes(StandardCharsets.UTF_8), audienceKey.publicCopy());
+            assertTrue(issuerKey.isEphemeral());
+            assertFalse(audienceKey.isEphemeral());
+            assertEquals(0, cache.size());
+            assertEquals(Commons.PAYLOAD, new String(message.getPayload(issuerKey, audienceKey.publicCopy()), StandardCharsets.UTF_8));
+            assertEquals(0, cache.size());
+            assertEquals(Commons.PAYLOAD, new String(message.getPayload(audienceKey), StandardCharsets.UTF_8));
+            assertEquals(1, cache.size());
+        } catch (Exception e) {
+            fail("Unexpected exception thrown: " + e);
+        } finally {
+            Dime.crypto.setSharedSecretCache(null);
+        }
+    }
+
+    @Test
+    void generateSharedSecretTest6() {
+        try {
+            SharedSecretCache cache = new SharedSecretCache(10, Dime.VALID_FOR_1_MINUTE);
+            Dime.crypto.setSharedSecretCache(cache);
+            Key clientKey = Key.generateKey(KeyCapability.EXCHANGE);
+            Key serverKey = Key.generateKey(KeyCapability.EXCHANGE);
+            GuardedSecret guarded = clientKey.guardSecret();
+            Key shared1 = clientKey.generateSharedSecret(serverKey.publicCopy(), List.of(KeyCapability.ENCRYPT));
+            Key shared2 = clientKey.generateSharedSecret(serverKey.publicCopy(), List.of(KeyCapability.ENCRYPT));
+            assertSame(shared1, shared2);
+            Key unguardedKey = new Key(List.of(KeyCapability.EXCHANGE), guarded.copyBytes(), clientKey.getKeyBytes(Claim.PUB), clientKey.getCryptoSuiteName());
+            Key shared3 = unguardedKey.generateSharedSecret(serverKey.publicCopy(), List.of(KeyCapability.ENCRYPT));
+            assertNotSame(shared1, shared3);
+            assertEquals(shared1.getSecret(), shared3.getSecret());
+            Key shared4 = clientKey.generateSharedSecret(serverKey.publicCopy(), List.of(KeyCapability.ENCRYPT));
+            assertNotSame(shared1, shared4);
+            Message message = new Message(Commons.getAudienceIdentity().getClaim(Claim.SUB), Commons.getIssuerIdentity().getClaim(Claim.SUB), Dime.VALID_FOR_1_MINUTE);
+            message.setPayload(Commons.PAYLOAD.getBytes(StandardCharsets.UTF_8), clientKey, serverKey.publicCopy());
+            assertEquals(Commons.PAYLOAD, new String(message.getPayload(clientKey, serverKey.publicCopy()), StandardCharsets.UTF_8));
+            assertTrue(cache.isConfirmed(clientKey, serverKey.publicCopy()));
+            guarded.destroy();
+            assertFalse(cache.isConfirmed(clientKey, serverKey.publicCopy()));
+        } catch (Exception e) {
+            fail("Unexpected exception thrown: " + e);
+        } finally {
+            Dime.crypto.setSharedSecretCache(null);
+        }
+    }
+
     @Test
     void encryptTest1() {
         try {
@@ -199,6 +312,88 @@ class CryptoTest {
         }
     }
 
+    @Test
+    void bufferEncryptTest1() {
+        try {
+            byte[] data = Commons.PAYLOAD.getBytes(StandardCharsets.UTF_8);
+            Key key = Key.generateKey(KeyCapability.ENCRYPT);
+            ByteBuffer[][] pairs = {
+                    { ByteBuffer.allocate(data.length + 5), ByteBuffer.allocate(data.length + 50) },
+                    { ByteBuffer.allocateDirect(data.length + 5), ByteBuffer.allocateDirect(data.length + 50) },
+                    { ByteBuffer.allocate(data.length + 5), ByteBuffer.allocateDirect(data.length + 50) },
+                    { ByteBuffer.allocateDirect(data.length + 5), ByteBuffer.allocate(data.length + 50) }
+            };
+            for (ByteBuffer[] pair : pairs) {
+                ByteBuffer in = pair[0].position(3);
+                in.put(data).flip().position(3);
+                ByteBuffer out = pair[1].position(7);
+                int written = Dime.crypto.encrypt(in, out, key);
+                assertEquals(data.length + 40, written);
+                assertFalse(in.hasRemaining());
+                assertEquals(7 + written, out.position());
+                byte[] cipherText = new byte[written];
+                out.flip().position(7);
+                out.duplicate().get(cipherText);
+                assertArrayEquals(data, Dime.crypto.decrypt(cipherText, key));
+                ByteBuffer plain = ByteBuffer.allocateDirect(data.length + 2).position(2);
+                assertEquals(data.length, Dime.crypto.decrypt(out, plain, key));
+                assertFalse(out.hasRemaining());
+                byte[] plainText = new byte[data.length];
+                plain.flip().position(2);
+                plain.get(plainText);
+                assertArrayEquals(data, plainText);
+            }
+        } catch (Exception e) {
+            fail("Unexpected exception thrown: " + e);
+        }
+    }
+
+    @Test
+    void bufferEncryptTest2() {
+        try {
+            byte[] data = Commons.PAYLOAD.getBytes(StandardCharsets.UTF_8);
+            Key key = Key.generateKey(KeyCapability.ENCRYPT);
+            byte[] cipherText = Dime.crypto.encrypt(data, key);
+            ByteBuffer in = ByteBuffer.allocateDirect(cipherText.length).put(cipherText).flip();
+            ByteBuffer out = ByteBuffer.allocate(data.length);
+            assertEquals(data.length, Dime.crypto.decrypt(in, out, key));
+            assertArrayEquals(data, out.array());
+            ByteBuffer small = ByteBuffer.allocate(data.length + 39);
+            assertThrows(IllegalArgumentException.class, () -> Dime.crypto.encrypt(ByteBuffer.wrap(data), small, key));
+            in.rewind();
+            Key wrongKey = Key.generateKey(KeyCapability.ENCRYPT);
+            assertThrows(CryptographyException.class, () -> Dime.crypto.decrypt(in, ByteBuffer.allocate(data.length), wrongKey));
+            assertEquals(0, in.position());
+            Key signKey = Key.generateKey(KeyCapability.SIGN);
+            assertThrows(CryptographyException.class, () -> Dime.crypto.encrypt(ByteBuffer.wrap(data), ByteBuffer.allocate(data.length + 40), signKey));
+        } catch (Exception e) {
+            fail("Unexpected exception thrown: " + e);
+        }
+    }
+
+    @Test
+    void bufferEncryptTest3() {
+        try {
+            byte[] data = Commons.PAYLOAD.getBytes(StandardCharsets.UTF_8);
+            for (String suiteName : Dime.crypto.allCryptoSuites()) {
+                if (suiteName.equals("DSC") || suiteName.equals("STN")) { continue; } // Legacy suites, no encryption
+                Key key = Key.generateKey(List.of(KeyCapability.ENCRYPT), Dime.NO_EXPIRATION, null, null, suiteName);
+                byte[] cipherText = Dime.crypto.encrypt(data, key);
+                key.guardSecret().destroy();
+                ByteBuffer in = ByteBuffer.allocateDirect(data.length).put(data).flip();
+                ByteBuffer out = ByteBuffer.allocateDirect(data.length + 40);
+                assertThrows(CryptographyException.class, () -> Dime.crypto.encrypt(in, out, key));
+                assertEquals(0, in.position());
+                assertEquals(0, out.position()); // The nonce is not left behind
+                ByteBuffer cipher = ByteBuffer.wrap(cipherText);
+                assertThrows(CryptographyException.class, () -> Dime.crypto.decrypt(cipher, ByteBuffer.allocate(data.length), key));
+                assertEquals(0, cipher.position());
+            }
+        } catch (Exception e) {
+            fail("Unexpected exception thrown: " + e);
+        }
+    }
+
     @Test
     void generateHashTest1() {
         try {
@@ -212,6 +407,519 @@ class CryptoTest {
         }
     }
 
+    @Test
+    void generateHashTest2() {
+        try {
+            String ref = "b9f050dd8bfbf027ea9fc729e9e764fda64c2bca20030a5d25264c35c486d892";
+            byte[] data = Commons.PAYLOAD.getBytes(StandardCharsets.UTF_8);
+            HashContext context = Dime.crypto.newHash();
+            context.update(Utility.subArray(data, 0, 7));
+            context.update(ByteBuffer.wrap(data, 7, data.length - 7));
+            assertEquals(ref, context.finish());
+        } catch (Exception e) {
+            fail("Unexpected exception thrown: " + e);
+        }
+    }
+
+    @Test
+    void generateHashTest3() {
+        try {
+            String ref = "b9f050dd8bfbf027ea9fc729e9e764fda64c2bca20030a5d25264c35c486d892";
+            byte[] data = Commons.PAYLOAD.getBytes(StandardCharsets.UTF_8);
+            List<String> suiteNames = Runtime.version().feature() >= 15 ? List.of("NaCl", "JDK") : List.of("NaCl");
+            for (String suiteName : suiteNames) {
+                HashContext context = Dime.crypto.newHash(suiteName);
+                context.update(ByteBuffer.allocateDirect(0));
+                ByteBuffer direct = ByteBuffer.allocateDirect(data.length);
+                direct.put(data).flip();
+                context.update(direct);
+                assertEquals(ref, context.finish());
+                context = Dime.crypto.newHash(suiteName);
+                context.update(ByteBuffer.wrap(data, 3, 0).slice());
+                context.update(ByteBuffer.wrap(data));
+                assertEquals(ref, context.finish());
+            }
+        } catch (Exception e) {
+            fail("Unexpected exception thrown: " + e);
+        }
+    }
+
+    @Test
+    void registerCryptoSuiteTest1() {
+        try {
+            Crypto crypto = new Crypto();
+            Set<String> before = crypto.allCryptoSuites();
+            int nbrThreads = 8;
+            ExecutorService executor = Executors.newFixedThreadPool(nbrThreads);
+            List<Future<String>> futures = new ArrayList<>();
+            for (int i = 0; i < nbrThreads; i++) {
+                String suiteName = "TEST" + i;
+                futures.add(executor.submit(() -> {
+                    crypto.registerCryptoSuite(namedSuite(suiteName));
+                    return crypto.generateHash(Commons.PAYLOAD.getBytes(StandardCharsets.UTF_8), crypto.getDefaultSuiteName());
+                }));
+            }
+            for (Future<String> future : futures) {
+                assertEquals(Dime.crypto.generateHash(Commons.PAYLOAD.getBytes(StandardCharsets.UTF_8)), future.get());
+            }
+            executor.shutdown();
+            assertEquals(before.size() + nbrThreads, crypto.allCryptoSuites().size());
+            for (int i = 0; i < nbrThreads; i++) {
+                assertTrue(crypto.hasCryptoSuite("TEST" + i));
+            }
+            crypto.setDefaultSuiteName("TEST0");
+            assertEquals("TEST0", crypto.getDefaultSuiteName());
+            assertThrows(IllegalArgumentException.class, () -> crypto.registerCryptoSuite(namedSuite("TEST0")));
+        } catch (Exception e) {
+            fail("Unexpected exception thrown: " + e);
+        }
+    }
+
+    @Test
+    void jdkSuiteTest1() {
+        assumeTrue(Runtime.version().feature() >= 15);
+        try {
+            Message message = new Message(Commons.getAudienceIdentity().getClaim(Claim.SUB), Commons.getIssuerIdentity().getClaim(Claim.SUB), Dime.VALID_FOR_1_MINUTE);
+            message.setPayload(Commons.PAYLOAD.getBytes(StandardCharsets.UTF_8));
+            Key naclKey = Key.generateKey(List.of(KeyCapability.SIGN), Dime.NO_EXPIRATION, null, null, "NaCl");
+            Key jdkKey = Key.generateKey(List.of(KeyCapability.SIGN), Dime.NO_EXPIRATION, null, null, "JDK");
+            assertEquals("JDK", jdkKey.getCryptoSuiteName());
+            for (Key key : List.of(naclKey, jdkKey)) {
+                Key naclCopy = new Key(List.of(KeyCapability.SIGN), key.getKeyBytes(Claim.KEY), key.getKeyBytes(Claim.PUB), "NaCl");
+                Key jdkCopy = new Key(List.of(KeyCapability.SIGN), key.getKeyBytes(Claim.KEY), key.getKeyBytes(Claim.PUB), "JDK");
+                assertEquals(naclCopy.getName(), jdkCopy.getName());
+                byte[] naclSignature = Dime.crypto.generateSignature(message, naclCopy).getBytes();
+                byte[] jdkSignature = Dime.crypto.generateSignature(message, jdkCopy).getBytes();
+                assertArrayEquals(naclSignature, jdkSignature);
+                message.sign(jdkCopy);
+                assertTrue(message.verify(naclCopy.publicCopy()).isValid());
+                assertTrue(message.verify(jdkCopy.publicCopy()).isValid());
+                message.strip();
+            }
+        } catch (Exception e) {
+            fail("Unexpected exception thrown: " + e);
+        }
+    }
+
+    @Test
+    void jdkSuiteTest2() {
+        assumeTrue(Runtime.version().feature() >= 15);
+        try {
+            byte[] data = new byte[1000];
+            new Random(42).nextBytes(data);
+            for (int length : new int[] { 0, 1, 127, 128, 129, 256, 1000 }) {
+                byte[] segment = Utility.subArray(data, 0, length);
+                assertEquals(Dime.crypto.generateHash(segment, "NaCl"), Dime.crypto.generateHash(segment, "JDK"));
+                HashContext context = Dime.crypto.newHash("JDK");
+                context.update(Utility.subArray(segment, 0, length / 3));
+                context.update(ByteBuffer.wrap(segment, length / 3, length - length / 3));
+                assertEquals(Dime.crypto.generateHash(segment, "NaCl"), context.finish());
+            }
+        } catch (Exception e) {
+            fail("Unexpected exception thrown: " + e);
+        }
+    }
+
+    @Test
+    void jdkSuiteTest3() {
+        try {
+            assumeTrue(Runtime.version().feature() >= 15);
+            Key clientKey = Key.generateKey(List.of(KeyCapability.EXCHANGE), Dime.NO_EXPIRATION, null, null, "NaCl");
+            Key serverKey = Key.generateKey(List.of(KeyCapability.EXCHANGE), Dime.NO_EXPIRATION, null, null, "JDK");
+            Key naclClient = new Key(List.of(KeyCapability.EXCHANGE), clientKey.getKeyBytes(Claim.KEY), clientKey.getKeyBytes(Claim.PUB), "NaCl");
+            Key naclServer = new Key(List.of(KeyCapability.EXCHANGE), null, serverKey.getKeyBytes(Claim.PUB), "NaCl");
+            Key jdkClient = new Key(List.of(KeyCapability.EXCHANGE), null, clientKey.getKeyBytes(Claim.PUB), "JDK");
+            Key jdkServer = new Key(List.of(KeyCapability.EXCHANGE), serverKey.getKeyBytes(Claim.KEY), serverKey.getKeyBytes(Claim.PUB), "JDK");
+            Key naclShared = naclClient.generateSharedSecret(naclServer, List.of(KeyCapability.ENCRYPT));
+            Key jdkShared = jdkClient.generateSharedSecret(jdkServer, List.of(KeyCapability.ENCRYPT));
+            assertArrayEquals(naclShared.getKeyBytes(Claim.KEY), jdkShared.getKeyBytes(Claim.KEY));
+            Key naclEncrypt = new Key(List.of(KeyCapability.ENCRYPT), naclShared.getKeyBytes(Claim.KEY), null, "NaCl");
+            byte[] data = new byte[1000];
+            new Random(42).nextBytes(data);
+            for (int length : new int[] { 1, 15, 16, 17, 32, 63, 64, 65, 1000 }) {
+                byte[] plainText = Utility.subArray(data, 0, length);
+                assertArrayEquals(plainText, Dime.crypto.decrypt(Dime.crypto.encrypt(plainText, jdkShared), naclEncrypt));
+                assertArrayEquals(plainText, Dime.crypto.decrypt(Dime.crypto.encrypt(plainText, naclEncrypt), jdkShared));
+            }
+            byte[] cipherText = Dime.crypto.encrypt(data, naclEncrypt);
+            cipherText[cipherText.length - 1] ^= 1;
+            byte[] tampered = cipherText;
+            assertThrows(CryptographyException.class, () -> Dime.crypto.decrypt(tampered, jdkShared));
+        } catch (Exception e) {
+            fail("Unexpected exception thrown: " + e);
+        }
+    }
+
+    @Test
+    void jdkSuiteTest4() {
+        assumeTrue(Runtime.version().feature() >= 15);
+        try {
+            Dime.crypto.setDefaultSuiteName("JDK");
+            Key key = Key.generateKey(KeyCapability.SIGN);
+            assertEquals("JDK", key.getCryptoSuiteName());
+            assertTrue(key.getSecret().startsWith("JDK."));
+            Data data = new Data(UUID.randomUUID());
+            data.setPayload(Commons.PAYLOAD.getBytes(StandardCharsets.UTF_8));
+            data.sign(key);
+            Data data2 = Item.importFromEncoded(data.exportToEncoded());
+            assertNotNull(data2);
+            assertTrue(data2.verify(key.publicCopy()).isValid());
+        } catch (Exception e) {
+            fail("Unexpected exception thrown: " + e);
+        } finally {
+            Dime.crypto.setDefaultSuiteName("NaCl");
+        }
+    }
+
+    @Test
+    void jdkSuiteTest5() {
+        assumeTrue(Runtime.version().feature() >= 15);
+        try {
+            Key naclMaster = Key.generateKey(KeyCapability.ENCRYPT);
+            Key jdkMaster = new Key(List.of(KeyCapability.ENCRYPT), naclMaster.getKeyBytes(Claim.KEY), null, "JDK");
+            for (long subkeyId : new long[] { 0L, 1L, 4711L, -1L }) {
+                Key naclKey = Dime.crypto.deriveKey(naclMaster, subkeyId, "tenant");
+                Key jdkKey = Dime.crypto.deriveKey(jdkMaster, subkeyId, "tenant");
+                assertEquals("JDK", jdkKey.getCryptoSuiteName());
+                assertArrayEquals(naclKey.getKeyBytes(Claim.KEY), jdkKey.getKeyBytes(Claim.KEY));
+            }
+        } catch (Exception e) {
+            fail("Unexpected exception thrown: " + e);
+        }
+    }
+
+    @Test
+    void jdkSuiteTest6() {
+        assumeTrue(Runtime.version().feature() >= 15);
+        try {
+            // RFC 7693, Appendix A, and the keyed known-answer test of the BLAKE2 reference implementation
+            assertEquals("ba80a53f981c4d0d6a2797b69f12f6e94c212f14685ac4b74b12bb6fdbffa2d17d87c5392aab792dc252d5de4533cc9518d38aa8dbf1925ab92386edd4009923",
+                    Utility.toHex(blake2b("abc".getBytes(StandardCharsets.UTF_8), 64, null, null, null)));
+            assertEquals("10ebb67700b1868efb4417987acf4690ae9d972fb7a590c2f02871799aaa4786b5e996e8f0f4eb981fc214b005f42d2ff4233499391653df7aefcbc13fc51568",
+                    Utility.toHex(blake2b(new byte[0], 64, sequence(64), null, null)));
+            // Block boundaries, and salt with personalization
+            assertEquals("c3582f71ebb2be66fa5dd750f80baae97554f3b015663c8be377cfcb2488c1d1", Utility.toHex(blake2b(sequence(128), 32, null, null, null)));
+            assertEquals("f7f3c46ba2564ff4c4c162da1f5b605f9f1c4aa6a20652a9f9a337c1a2f5b9c9", Utility.toHex(blake2b(sequence(129), 32, null, null, null)));
+            assertEquals("98cce4529d7b832d7e048b46639d3adc30a340b75399e15c60040d1f4b99b641",
+                    Utility.toHex(blake2b("abc".getBytes(StandardCharsets.UTF_8), 32, sequence(32), sequence(16), "dime-test-person".getBytes(StandardCharsets.UTF_8))));
+        } catch (Exception e) {
+            fail("Unexpected exception thrown: " + e);
+        }
+    }
+
+    @Test
+    void jdkSuiteTest7() {
+        assumeTrue(Runtime.version().feature() >= 15);
+        try {
+            // The crypto_secretbox_xsalsa20poly1305 test vector of NaCl and libsodium
+            byte[] key = Utility.fromHex("1b27556473e985d462cd51197a9a46c76009549eac6474f206c4ee0844f68389");
+            byte[] nonce = Utility.fromHex("69696ee955b62b73cd62bda875fc73d68219e0036b7a0b37");
+            byte[] message = Utility.fromHex("be075fc53c81f2d5cf141316ebeb0c7b5228c52a4c62cbd44b66849b64244ffce5ecbaaf33bd751a1ac728d45e6c61296cdc3c01233561f41db66cce314adb310e3be8250c46f06dceea3a7fa1348057e2f6556ad6b1318a024a838f21af1fde048977eb48f59ffd4924ca1c60902e52f0a089bc76897040e082f937763848645e0705");
+            String box = "f3ffc7703f9400e52a7dfb4b3d3305d98e993b9f48681273c29650ba32fc76ce48332ea7164d96a4476fb8c531a1186ac0dfc17c98dce87b4da7f011ec48c97271d2c20f9b928fe2270d6fb863d51738b48eeee314a7cc8ab932164548e526ae90224368517acfeabd6bb3732bc0e9da99832b61ca01b6de56244a9e88d5f9b37973f622a43d14a6599b1f654cb45a74e355a5";
+            Class<?> secretBox = Class.forName("io.dimeformat.crypto.XSalsa20Poly1305");
+            byte[] sealed = (byte[]) invokeStatic(secretBox, "seal", new Class<?>[] { byte[].class, byte[].class, byte[].class }, message, nonce, key);
+            assertEquals(box, Utility.toHex(sealed));
+            byte[] opened = (byte[]) invokeStatic(secretBox, "open", new Class<?>[] { byte[].class, byte[].class, byte[].class }, sealed, nonce, key);
+            assertArrayEquals(message, opened);
+            sealed[sealed.length - 1] ^= 0x01;
+            assertNull(invokeStatic(secretBox, "open", new Class<?>[] { byte[].class, byte[].class, byte[].class }, sealed, nonce, key));
+        } catch (Exception e) {
+            fail("Unexpected exception thrown: " + e);
+        }
+    }
+
+    @Test
+    void jdkSuiteTest8() {
+        assumeTrue(Runtime.version().feature() >= 15);
+        try {
+            // RFC 8439, section 2.5.2 and appendix A.3 (test vectors 5 to 11, testing the arithmetic near 2^130 - 5)
+            String zero = "00000000000000000000000000000000";
+            String[][] vectors = {
+                    { "85d6be7857556d337f4452fe42d506a80103808afb0db2fd4abff6af4149f51b", Utility.toHex("Cryptographic Forum Research Group".getBytes(StandardCharsets.UTF_8)), "a8061dc1305136c6c22b8baf0c0127a9" },
+                    { "02000000000000000000000000000000" + zero, "ffffffffffffffffffffffffffffffff", "03000000000000000000000000000000" },
+                    { "02000000000000000000000000000000ffffffffffffffffffffffffffffffff", "02000000000000000000000000000000", "03000000000000000000000000000000" },
+                    { "01000000000000000000000000000000" + zero, "fffffffffffffffffffffffffffffffff0ffffffffffffffffffffffffffffff11000000000000000000000000000000", "05000000000000000000000000000000" },
+                    { "01000000000000000000000000000000" + zero, "fffffffffffffffffffffffffffffffffbfefefefefefefefefefefefefefefe01010101010101010101010101010101", zero },
+                    { "02000000000000000000000000000000" + zero, "fdffffffffffffffffffffffffffffff", "faffffffffffffffffffffffffffffff" },
+                    { "01000000000000000400000000000000" + zero, "e33594d7505e43b900000000000000003394d7505e4379cd01000000000000000000000000000000000000000000000001000000000000000000000000000000", "14000000000000005500000000000000" },
+                    { "01000000000000000400000000000000" + zero, "e33594d7505e43b900000000000000003394d7505e4379cd010000000000000000000000000000000000000000000000", "13000000000000000000000000000000" }
+            };
+            Class<?> secretBox = Class.forName("io.dimeformat.crypto.XSalsa20Poly1305");
+            for (String[] vector : vectors) {
+                byte[] message = Utility.fromHex(vector[1]);
+                byte[] tag = (byte[]) invokeStatic(secretBox, "poly1305", new Class<?>[] { byte[].class, int.class, int.class, byte[].class }, message, 0, message.length, Utility.fromHex(vector[0]));
+                assertEquals(vector[2], Utility.toHex(tag));
+            }
+        } catch (Exception e) {
+            fail("Unexpected exception thrown: " + e);
+        }
+    }
+
+    @Test
+    void jdkSuiteTest9() {
+        assumeTrue(Runtime.version().feature() >= 15);
+        try {
+            Crypto crypto = new Crypto();
+            DimeContext context = new DimeContext(crypto, new KeyRing());
+            AtomicInteger count = new AtomicInteger();
+            RandomSource countingSource = bytes -> {
+                count.incrementAndGet();
+                RandomSource.threadLocalSecureRandom().nextBytes(bytes);
+            };
+            // Uses SecureRandom by default, the random source set is used once set explicitly
+            assertNotNull(crypto.getRandomSource());
+            Key encryptionKey = context.execute(() -> Key.generateKey(List.of(KeyCapability.ENCRYPT), Dime.NO_EXPIRATION, null, null, "JDK"));
+            crypto.setRandomSource(countingSource);
+            context.execute(() -> crypto.encrypt(Commons.PAYLOAD.getBytes(StandardCharsets.UTF_8), encryptionKey));
+            context.execute(() -> Key.generateKey(List.of(KeyCapability.SIGN), Dime.NO_EXPIRATION, null, null, "JDK"));
+            assertTrue(count.get() >= 2); // 1 nonce and 1 key pair
+        } catch (Exception e) {
+            fail("Unexpected exception thrown: " + e);
+        }
+    }
+
+    @Test
+    void jdkSuiteTest10() {
+        assumeTrue(Runtime.version().feature() >= 15);
+        try {
+            // A fresh class loader, so that classes already loaded by other tests do not count
+            IsolatedClassLoader loader = new IsolatedClassLoader();
+            Runnable operation = (Runnable) loader.loadClass(JdkOnlyOperation.class.getName()).getDeclaredConstructor().newInstance();
+            operation.run();
+            assertTrue(loader.loaded.contains(Crypto.class.getName()));
+            assertTrue(loader.loaded.stream().noneMatch(name -> name.startsWith("com.sun.jna.")));
+        } catch (Exception e) {
+            fail("Unexpected exception thrown: " + e);
+        }
+    }
+
+    @Test
+    void deriveKeyTest1() {
+        try {
+            Key master = Key.generateKey(KeyCapability.ENCRYPT);
+            Key key1 = Dime.crypto.deriveKey(master, 1, "tenant");
+            assertNotNull(key1);
+            assertTrue(key1.hasCapability(KeyCapability.ENCRYPT));
+            assertEquals(master.getCryptoSuiteName(), key1.getCryptoSuiteName());
+            assertArrayEquals(key1.getKeyBytes(Claim.KEY), Dime.crypto.deriveKey(master, 1, "tenant").getKeyBytes(Claim.KEY));
+            assertFalse(Arrays.equals(key1.getKeyBytes(Claim.KEY), Dime.crypto.deriveKey(master, 2, "tenant").getKeyBytes(Claim.KEY)));
+            assertFalse(Arrays.equals(key1.getKeyBytes(Claim.KEY), Dime.crypto.deriveKey(master, 1, "object").getKeyBytes(Claim.KEY)));
+            assertFalse(Arrays.equals(key1.getKeyBytes(Claim.KEY), master.getKeyBytes(Claim.KEY)));
+            byte[] cipherText = Dime.crypto.encrypt(Commons.PAYLOAD.getBytes(StandardCharsets.UTF_8), key1);
+            Key recomputed = Dime.crypto.deriveKey(master, 1, "tenant");
+            assertEquals(Commons.PAYLOAD, new String(Dime.crypto.decrypt(cipherText, recomputed), StandardCharsets.UTF_8));
+            assertEquals((UUID) key1.getClaim(Claim.UID), recomputed.getClaim(Claim.UID));
+            assertNotEquals((UUID) key1.getClaim(Claim.UID), Dime.crypto.deriveKey(master, 2, "tenant").getClaim(Claim.UID));
+            assertNotEquals((UUID) key1.getClaim(Claim.UID), Dime.crypto.deriveKey(master, 1, "object").getClaim(Claim.UID));
+            assertNotEquals((UUID) key1.getClaim(Claim.UID), Dime.crypto.deriveKey(Key.generateKey(KeyCapability.ENCRYPT), 1, "tenant").getClaim(Claim.UID));
+        } catch (Exception e) {
+            fail("Unexpected exception thrown: " + e);
+        }
+    }
+
+    @Test
+    void deriveKeyTest2() {
+        Key master = Key.generateKey(KeyCapability.ENCRYPT);
+        assertThrows(IllegalArgumentException.class, () -> Dime.crypto.deriveKey(null, 1, "tenant"));
+        assertThrows(IllegalArgumentException.class, () -> Dime.crypto.deriveKey(master, 1, null));
+        assertThrows(IllegalArgumentException.class, () -> Dime.crypto.deriveKey(master, 1, ""));
+        assertThrows(IllegalArgumentException.class, () -> Dime.crypto.deriveKey(master, 1, "too long context"));
+        assertThrows(CryptographyException.class, () -> Dime.crypto.deriveKey(Key.generateKey(KeyCapability.SIGN), 1, "tenant"));
+    }
+
+    @Test
+    void ephemeralKeyPoolTest1() {
+        try (EphemeralKeyPool pool = new EphemeralKeyPool(8, 32, Dime.crypto.getDefaultSuiteName())) {
+            long deadline = System.currentTimeMillis() + 10000;
+            while (pool.size() < 32 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(32, pool.size());
+            ExecutorService executor = Executors.newFixedThreadPool(4);
+            List<Future<Key>> futures = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                futures.add(executor.submit(pool::take));
+            }
+            Set<String> names = new HashSet<>();
+            for (Future<Key> future : futures) {
+                Key key = future.get();
+                assertTrue(key.hasCapability(KeyCapability.EXCHANGE));
+                assertNotNull(key.getSecret());
+                assertTrue(names.add(key.getName())); // Single-use
+            }
+            executor.shutdown();
+            assertTrue(pool.getMisses() <= 100);
+            pool.close();
+            assertEquals(0, pool.size());
+            assertNotNull(pool.take());
+        } catch (Exception e) {
+            fail("Unexpected exception thrown: " + e);
+        }
+    }
+
+    @Test
+    void ephemeralKeyPoolTest2() {
+        assertThrows(IllegalArgumentException.class, () -> new EphemeralKeyPool(0, 10, Dime.crypto.getDefaultSuiteName()));
+        assertThrows(IllegalArgumentException.class, () -> new EphemeralKeyPool(10, 10, Dime.crypto.getDefaultSuiteName()));
+        assertThrows(IllegalArgumentException.class, () -> new EphemeralKeyPool(1, 10, "NOPE"));
+    }
+
+    @Test
+    void ephemeralKeyPoolTest3() {
+        try {
+            HistogramMetrics metrics = new HistogramMetrics();
+            Crypto crypto = new Crypto();
+            crypto.setMetrics(metrics);
+            EphemeralKeyPool pool = new DimeContext(crypto, new KeyRing()).execute(() -> new EphemeralKeyPool(2, 4, crypto.getDefaultSuiteName()));
+            try (pool) {
+                long deadline = System.currentTimeMillis() + 10000;
+                while (pool.size() < 4 && System.currentTimeMillis() < deadline) {
+                    Thread.sleep(10);
+                }
+                assertEquals(4, pool.size());
+                // Generated on the worker thread, within the context the pool was created in
+                assertEquals(4, metrics.getHistogram(crypto.getDefaultSuiteName(), CryptoOperation.GENERATE_KEY).getCount());
+            }
+        } catch (Exception e) {
+            fail("Unexpected exception thrown: " + e);
+        }
+    }
+
+    @Test
+    void randomSourceTest1() {
+        RandomSource defaultSource = Dime.crypto.getRandomSource();
+        try {
+            AtomicInteger count = new AtomicInteger();
+            Dime.crypto.setRandomSource(bytes -> {
+                count.incrementAndGet();
+                defaultSource.nextBytes(bytes);
+            });
+            Key encryptionKey = Key.generateKey(KeyCapability.ENCRYPT);
+            Key signingKey = Key.generateKey(KeyCapability.SIGN);
+            Key exchangeKey = Key.generateKey(KeyCapability.EXCHANGE);
+            byte[] cipherText = Dime.crypto.encrypt(Commons.PAYLOAD.getBytes(StandardCharsets.UTF_8), encryptionKey);
+            assertTrue(count.get() >= 7); // 3 keys, 3 key UUIDs and 1 nonce
+            assertEquals(Commons.PAYLOAD, new String(Dime.crypto.decrypt(cipherText, encryptionKey), StandardCharsets.UTF_8));
+            Message message = new Message(Commons.getIssuerIdentity().getClaim(Claim.SUB));
+            message.setPayload(Commons.PAYLOAD.getBytes(StandardCharsets.UTF_8));
+            message.sign(signingKey);
+            assertTrue(message.verify(signingKey.publicCopy()).isValid());
+            assertNotNull(exchangeKey.generateSharedSecret(Key.generateKey(KeyCapability.EXCHANGE).publicCopy(), List.of(KeyCapability.ENCRYPT)));
+        } catch (Exception e) {
+            fail("Unexpected exception thrown: " + e);
+        } finally {
+            Dime.crypto.setRandomSource(defaultSource);
+        }
+    }
+
+    @Test
+    void randomSourceTest2() {
+        for (RandomSource source : List.of(RandomSource.nativeSource(), RandomSource.threadLocalSecureRandom())) {
+            byte[] bytes1 = source.randomBytes(32);
+            byte[] bytes2 = source.randomBytes(32);
+            assertEquals(32, bytes1.length);
+            assertFalse(Arrays.equals(bytes1, bytes2));
+            assertEquals(0, source.randomBytes(0).length);
+            UUID uuid = source.randomUUID();
+            assertEquals(4, uuid.version());
+            assertEquals(2, uuid.variant());
+            assertEquals(uuid, UUID.fromString(uuid.toString()));
+            assertNotEquals(uuid, source.randomUUID());
+        }
+        assertThrows(IllegalArgumentException.class, () -> Dime.crypto.setRandomSource(null));
+    }
+
+    @Test
+    void metricsTest1() {
+        HistogramMetrics metrics = new HistogramMetrics();
+        try {
+            Dime.crypto.setMetrics(metrics);
+            Key signingKey = Key.generateKey(KeyCapability.SIGN);
+            Key encryptionKey = Key.generateKey(KeyCapability.ENCRYPT);
+            Message message = new Message(Commons.getIssuerIdentity().getClaim(Claim.SUB));
+            message.setPayload(Commons.PAYLOAD.getBytes(StandardCharsets.UTF_8));
+            message.sign(signingKey);
+            assertTrue(message.verify(signingKey.publicCopy()).isValid());
+            byte[] plainText = Commons.PAYLOAD.getBytes(StandardCharsets.UTF_8);
+            byte[] cipherText = Dime.crypto.encrypt(plainText, encryptionKey);
+            assertThrows(CryptographyException.class, () -> Dime.crypto.decrypt(cipherText, Key.generateKey(KeyCapability.ENCRYPT)));
+            Dime.crypto.setMetrics(null);
+            Dime.crypto.decrypt(cipherText, encryptionKey); // Not recorded
+            String suiteName = Dime.crypto.getDefaultSuiteName();
+            assertTrue(metrics.getSuiteNames().contains(suiteName));
+            assertTrue(metrics.getHistogram(suiteName, CryptoOperation.GENERATE_KEY).getCount() >= 3);
+            HistogramMetrics.Histogram sign = metrics.getHistogram(suiteName, CryptoOperation.SIGN);
+            assertEquals(1, sign.getCount());
+            assertEquals(message.rawEncoded(false).length, sign.getBytes());
+            HistogramMetrics.Histogram verify = metrics.getHistogram(suiteName, CryptoOperation.VERIFY);
+            assertTrue(verify.getCount() >= 1);
+            assertEquals(0, verify.getFailures());
+            assertEquals(0, verify.getBytes() % message.rawEncoded(false).length);
+            HistogramMetrics.Histogram encrypt = metrics.getHistogram(suiteName, CryptoOperation.ENCRYPT);
+            assertEquals(1, encrypt.getCount());
+            assertEquals(plainText.length, encrypt.getBytes());
+            assertTrue(encrypt.getTotalTime() > 0);
+            assertTrue(encrypt.getPercentile(50.0) > 0);
+            HistogramMetrics.Histogram decrypt = metrics.getHistogram(suiteName, CryptoOperation.DECRYPT);
+            assertEquals(1, decrypt.getCount());
+            assertEquals(1, decrypt.getFailures());
+            assertEquals(0, metrics.getHistogram(suiteName, CryptoOperation.DERIVE_KEY).getCount());
+            assertNull(metrics.getHistogram("NOPE", CryptoOperation.SIGN));
+        } catch (Exception e) {
+            fail("Unexpected exception thrown: " + e);
+        } finally {
+            Dime.crypto.setMetrics(null);
+        }
+    }
+
+    @Test
+    void metricsTest2() {
+        HistogramMetrics metrics = new HistogramMetrics();
+        metrics.record("TEST", CryptoOperation.HASH, 10, true, 0L);
+        metrics.record("TEST", CryptoOperation.HASH, 10, true, 100L);
+        metrics.record("TEST", CryptoOperation.HASH, 10, true, 1_000L);
+        metrics.record("TEST", CryptoOperation.HASH, 10, false, 1_000_000L);
+        HistogramMetrics.Histogram histogram = metrics.getHistogram("TEST", CryptoOperation.HASH);
+        assertEquals(4, histogram.getCount());
+        assertEquals(1, histogram.getFailures());
+        assertEquals(40, histogram.getBytes());
+        assertEquals(1_001_100L, histogram.getTotalTime());
+        assertEquals(1, histogram.getBucketCount(0));
+        assertEquals(1, histogram.getBucketCount(7)); // 64 - 127 ns
+        assertEquals(1L, histogram.getPercentile(0.0));
+        assertEquals(128L, histogram.getPercentile(50.0));
+        assertEquals(1024L, histogram.getPercentile(75.0));
+        assertEquals(1L << 20, histogram.getPercentile(100.0));
+        assertThrows(IllegalArgumentException.class, () -> histogram.getPercentile(101.0));
+        assertThrows(IllegalArgumentException.class, () -> histogram.getBucketCount(HistogramMetrics.NBR_BUCKETS));
+    }
+
+    @Test
+    void metricsTest3() {
+        HistogramMetrics metrics = new HistogramMetrics();
+        try {
+            byte[] data = Commons.PAYLOAD.getBytes(StandardCharsets.UTF_8);
+            String expected = Dime.crypto.generateHash(data);
+            Dime.crypto.setMetrics(metrics);
+            HashContext context = Dime.crypto.newHash();
+            context.update(Arrays.copyOfRange(data, 0, 10));
+            context.update(ByteBuffer.wrap(data, 10, data.length - 10));
+            String suiteName = Dime.crypto.getDefaultSuiteName();
+            assertNull(metrics.getHistogram(suiteName, CryptoOperation.HASH)); // Recorded when finished
+            assertEquals(expected, context.finish());
+            HistogramMetrics.Histogram hash = metrics.getHistogram(suiteName, CryptoOperation.HASH);
+            assertEquals(1, hash.getCount());
+            assertEquals(0, hash.getFailures());
+            assertEquals(data.length, hash.getBytes());
+            assertThrows(IllegalStateException.class, () -> context.update(data));
+            assertEquals(1, hash.getCount());
+        } catch (Exception e) {
+            fail("Unexpected exception thrown: " + e);
+        } finally {
+            Dime.crypto.setMetrics(null);
+        }
+    }
+
     @Test
     void suiteTest1() {
         try {
@@ -258,4 +966,86 @@ class CryptoTest {
         }
     }
 
+    private static byte[] sequence(int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) i;
+        }
+        return bytes;
+    }
+
+    private static Object invokeStatic(Class<?> type, String name, Class<?>[] parameterTypes, Object... args) throws Exception {
+        Method method = type.getDeclaredMethod(name, parameterTypes);
+        method.setAccessible(true); // The pure Java primitives of the JDK suite are package-private
+        return method.invoke(null, args);
+    }
+
+    private static byte[] blake2b(byte[] data, int digestLength, byte[] key, byte[] salt, byte[] personal) throws Exception {
+        Class<?> type = Class.forName("io.dimeformat.crypto.Blake2b");
+        Constructor<?> constructor = type.getDeclaredConstructor(int.class, byte[].class, byte[].class, byte[].class);
+        constructor.setAccessible(true);
+        Object blake2b = constructor.newInstance(digestLength, key, salt, personal);
+        Method update = type.getDeclaredMethod("update", byte[].class, int.class, int.class);
+        update.setAccessible(true);
+        update.invoke(blake2b, data, 0, data.length);
+        Method digest = type.getDeclaredMethod("digest");
+        digest.setAccessible(true);
+        return (byte[]) digest.invoke(blake2b);
+    }
+
+    private static ICryptoSuite namedSuite(String name) {
+        return (ICryptoSuite) Proxy.newProxyInstance(ICryptoSuite.class.getClassLoader(), new Class<?>[] { ICryptoSuite.class },
+                (proxy, method, args) -> {
+                    if (method.getName().equals("getName")) { return name; }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    public static final class JdkOnlyOperation implements Runnable {
+        @Override
+        public void run() {
+            Crypto crypto = new Crypto();
+            crypto.setDefaultSuiteName("JDK");
+            try {
+                new DimeContext(crypto, new KeyRing()).execute(() -> {
+                    Key signKey = Key.generateKey(KeyCapability.SIGN);
+                    Data data = new Data(UUID.randomUUID());
+                    data.setPayload(Commons.PAYLOAD.getBytes(StandardCharsets.UTF_8));
+                    data.sign(signKey);
+                    if (!data.verify(signKey.publicCopy()).isValid()) { throw new IllegalStateException("Verification failed."); }
+                    Key encryptKey = Key.generateKey(KeyCapability.ENCRYPT);
+                    byte[] cipherText = crypto.encrypt(Utility.randomBytes(64), encryptKey);
+                    crypto.decrypt(cipherText, encryptKey);
+                    crypto.generateHash(cipherText);
+                    return null;
+                });
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private static final class IsolatedClassLoader extends URLClassLoader {
+        private final Set<String> loaded = ConcurrentHashMap.newKeySet();
+
+        private IsolatedClassLoader() throws Exception {
+            super(IsolatedClassLoader.classPath(), ClassLoader.getPlatformClassLoader());
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            loaded.add(name);
+            return super.loadClass(name, resolve);
+        }
+
+        private static URL[] classPath() throws Exception {
+            String[] paths = System.getProperty("java.class.path").split(File.pathSeparator);
+            URL[] urls = new URL[paths.length];
+            for (int i = 0; i < paths.length; i++) {
+                urls[i] = new File(paths[i]).toURI().toURL();
+            }
+            return urls;
+        }
+    }
+
 }
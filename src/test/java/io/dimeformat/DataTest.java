@@ -257,6 +257,36 @@ class DataTest {
         }
     }
 
+    @Test
+    void thumbprintTest1() {
+        try {
+            Data data = new Data(Commons.getIssuerIdentity().getClaim(Claim.SUB));
+            data.setPayload(Utility.randomBytes(100_000));
+            data.sign(Commons.getIssuerKey());
+            String thumbprint = data.generateThumbprint();
+            assertEquals(Dime.crypto.generateHash(data.rawEncoded(true)), thumbprint);
+            assertEquals(thumbprint, data.generateThumbprint());
+        } catch (Exception e) {
+            fail("Unexpected exception thrown: " + e);
+        }
+    }
+
+    @Test
+    void thumbprintTest2() {
+        try {
+            Data data = new Data(Commons.getIssuerIdentity().getClaim(Claim.SUB), Dime.VALID_FOR_1_MINUTE, Commons.CONTEXT);
+            data.setPayload(Utility.randomBytes(100_000), Commons.MIMETYPE);
+            String thumbprint = data.generateThumbprint(); // Not yet encoded, hashes each part separately
+            String encoded = data.exportToEncoded();
+            assertEquals(Dime.crypto.generateHash(data.rawEncoded(true)), thumbprint);
+            Data imported = Item.importFromEncoded(encoded);
+            assertNotNull(imported);
+            assertEquals(thumbprint, imported.generateThumbprint());
+        } catch (Exception e) {
+            fail("Unexpected exception thrown: " + e);
+        }
+    }
+
     @Test
     void contextTest1() {
         String context = "123456789012345678901234567890123456789012345678901234567890123456789012345678901234";
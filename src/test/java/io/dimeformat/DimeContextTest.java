@@ -0,0 +1,114 @@
+//
+//  DimeContextTest.java
+//  DiME - Data Identity Message Envelope
+//  A powerful universal data format that is built for secure, and integrity protected communication between trusted
+//  entities in a network.
+//
+//  Released under the MIT licence, see LICENSE for more information.
+//  Copyright (c) 2024 Shift Everywhere AB. All rights reserved.
+//
+package io.dimeformat;
+
+import io.dimeformat.crypto.Crypto;
+import io.dimeformat.crypto.CryptoOperation;
+import io.dimeformat.crypto.HistogramMetrics;
+import io.dimeformat.enums.Claim;
+import io.dimeformat.enums.KeyCapability;
+import io.dimeformat.keyring.IntegrityState;
+import io.dimeformat.keyring.KeyRing;
+import org.junit.jupiter.api.Test;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import static org.junit.jupiter.api.Assertions.*;
+
+class DimeContextTest {
+
+    @Test
+    void contextTest1() {
+        try {
+            DimeContext tenant1 = new DimeContext();
+            DimeContext tenant2 = new DimeContext();
+            Key key = Key.generateKey(KeyCapability.SIGN);
+            tenant1.getKeyRing().put(key.publicCopy());
+            Message message = Commons.signedMessage(key, Dime.VALID_FOR_1_MINUTE);
+            assertEquals(IntegrityState.COMPLETE, message.verify(tenant1, (Key) null, null));
+            assertEquals(IntegrityState.FAILED_NO_KEY_RING, message.verify(tenant2, (Key) null, null));
+            assertFalse(Dime.keyRing.containsItem(key));
+            assertNotEquals(IntegrityState.COMPLETE, message.verify());
+            Message imported = Item.importFromEncoded(tenant1, message.exportToEncoded());
+            assertNotNull(imported);
+            assertEquals(IntegrityState.COMPLETE, imported.verify(tenant1, key, null));
+        } catch (Exception e) {
+            fail("Unexpected exception thrown: " + e);
+        }
+    }
+
+    @Test
+    void contextTest2() {
+        try {
+            DimeContext context = new DimeContext();
+            Key key = Key.generateKey(KeyCapability.SIGN);
+            Message message = Commons.signedMessage(key, Dime.VALID_FOR_1_MINUTE);
+            context.setClock(Clock.fixed(Instant.now().plusSeconds(Dime.VALID_FOR_1_MINUTE * 2), ZoneOffset.UTC));
+            assertEquals(IntegrityState.FAILED_USED_AFTER_EXPIRED, message.verify(context, key, null));
+            assertEquals(IntegrityState.COMPLETE, message.verify(key));
+            context.setGracePeriod(Dime.VALID_FOR_1_MINUTE * 2);
+            assertEquals(IntegrityState.COMPLETE, message.verify(context, key, null));
+            assertEquals(0, Dime.getGracePeriod());
+            context.setClock(null);
+            context.setTimeModifier(-Dime.VALID_FOR_1_HOUR);
+            Message early = context.execute(() -> Commons.signedMessage(key, Dime.VALID_FOR_1_MINUTE));
+            assertTrue(((Instant) early.getClaim(Claim.IAT)).isBefore(Instant.now().minusSeconds(Dime.VALID_FOR_1_MINUTE)));
+            assertThrows(IllegalArgumentException.class, () -> context.setGracePeriod(-1));
+        } catch (Exception e) {
+            fail("Unexpected exception thrown: " + e);
+        }
+    }
+
+    @Test
+    void contextTest3() {
+        try {
+            HistogramMetrics metrics = new HistogramMetrics();
+            Crypto crypto = new Crypto();
+            crypto.setMetrics(metrics);
+            DimeContext context = new DimeContext(crypto, new KeyRing());
+            Key key = Key.generateKey(KeyCapability.SIGN);
+            Message message = new Message(Commons.getIssuerIdentity().getClaim(Claim.SUB), Dime.VALID_FOR_1_MINUTE);
+            message.setPayload(Commons.PAYLOAD.getBytes(StandardCharsets.UTF_8));
+            message.sign(context, key);
+            assertEquals(1, metrics.getHistogram(crypto.getDefaultSuiteName(), CryptoOperation.SIGN).getCount());
+            message.verify(key);
+            assertEquals(0, metrics.getHistogram(crypto.getDefaultSuiteName(), CryptoOperation.VERIFY).getCount());
+        } catch (Exception e) {
+            fail("Unexpected exception thrown: " + e);
+        }
+    }
+
+    @Test
+    void contextTest4() {
+        DimeContext context1 = new DimeContext();
+        DimeContext context2 = new DimeContext();
+        assertSame(Dime.getDefaultContext(), DimeContext.current());
+        assertSame(Dime.crypto, Dime.getDefaultContext().getCrypto());
+        assertSame(Dime.keyRing, Dime.getDefaultContext().getKeyRing());
+        context1.execute(() -> {
+            assertSame(context1, DimeContext.current());
+            context2.execute(() -> {
+                assertSame(context2, DimeContext.current());
+                return null;
+            });
+            assertSame(context1, DimeContext.current());
+            return null;
+        });
+        assertThrows(IllegalStateException.class, () -> context1.execute(() -> {
+            throw new IllegalStateException("Failed");
+        }));
+        assertSame(Dime.getDefaultContext(), DimeContext.current());
+        assertThrows(IllegalArgumentException.class, () -> new DimeContext(null, new KeyRing()));
+        assertThrows(IllegalArgumentException.class, () -> new DimeContext(new Crypto(), null));
+        assertThrows(IllegalArgumentException.class, () -> context1.execute(null));
+    }
+
+}
@@ -9,8 +9,13 @@
 //
 package io.dimeformat;
 
+import io.dimeformat.crypto.Crypto;
+import io.dimeformat.crypto.CryptoOperation;
+import io.dimeformat.crypto.HistogramMetrics;
 import io.dimeformat.enums.Claim;
 import io.dimeformat.enums.KeyCapability;
+import io.dimeformat.exceptions.CryptographyException;
+import io.dimeformat.keyring.KeyRing;
 import org.junit.jupiter.api.Test;
 import java.nio.charset.StandardCharsets;
 import java.time.Instant;
@@ -558,4 +563,103 @@ class EnvelopeTest {
         }
     }
 
+    @Test
+    void sealTest1() {
+        try {
+            Key audienceKey = Key.generateKey(KeyCapability.EXCHANGE);
+            Envelope envelope = new Envelope(Commons.getIssuerIdentity().getClaim(Claim.SUB), Commons.CONTEXT);
+            for (int i = 0; i < 10; i++) {
+                Data data = new Data(Commons.getIssuerIdentity().getClaim(Claim.SUB));
+                data.setPayload((Commons.PAYLOAD + i).getBytes(StandardCharsets.UTF_8));
+                data.sign(Commons.getIssuerKey());
+                envelope.addItem(data);
+            }
+            Key exchangeKey = envelope.seal(audienceKey.publicCopy());
+            assertNotNull(exchangeKey);
+            assertTrue(envelope.isSealed());
+            envelope.sign(Commons.getIssuerKey());
+            String exported = envelope.exportToEncoded();
+            assertFalse(exported.contains(":DAT."));
+            assertEquals(3, exported.split(":").length);
+            Envelope imported = Envelope.importFromEncoded(exported);
+            assertTrue(imported.isSealed());
+            assertTrue(imported.getItems().isEmpty());
+            assertTrue(imported.verify(Commons.getIssuerKey().publicCopy()).isValid());
+            imported.open(audienceKey);
+            List<Item> items = imported.getItems();
+            assertEquals(10, items.size());
+            for (int i = 0; i < 10; i++) {
+                Data data = (Data) items.get(i);
+                assertEquals(Commons.PAYLOAD + i, new String(data.getPayload(), StandardCharsets.UTF_8));
+                assertTrue(data.verify(Commons.getIssuerKey().publicCopy()).isValid());
+            }
+            assertNotNull(imported.getItem(Claim.UID, items.get(3).getClaim(Claim.UID)));
+            assertTrue(imported.verify(Commons.getIssuerKey().publicCopy()).isValid()); // Still covers the sealed section
+        } catch (Exception e) {
+            fail("Unexpected exception thrown: " + e);
+        }
+    }
+
+    @Test
+    void sealTest2() {
+        try {
+            Key audienceKey = Key.generateKey(KeyCapability.EXCHANGE);
+            Data data = new Data(Commons.getIssuerIdentity().getClaim(Claim.SUB));
+            data.setPayload(Commons.PAYLOAD.getBytes(StandardCharsets.UTF_8));
+            data.sign(Commons.getIssuerKey());
+            Envelope anonymous = new Envelope();
+            anonymous.addItem(data);
+            assertThrows(IllegalStateException.class, () -> anonymous.seal(audienceKey.publicCopy()));
+            Envelope envelope = new Envelope(Commons.getIssuerIdentity().getClaim(Claim.SUB));
+            assertThrows(IllegalStateException.class, () -> envelope.seal(audienceKey.publicCopy()));
+            envelope.addItem(data);
+            assertThrows(IllegalArgumentException.class, () -> envelope.seal(audienceKey));
+            envelope.seal(audienceKey.publicCopy());
+            assertThrows(IllegalStateException.class, () -> envelope.addItem(Key.generateKey(KeyCapability.SIGN)));
+            envelope.sign(Commons.getIssuerKey());
+            Envelope imported = Envelope.importFromEncoded(envelope.exportToEncoded());
+            assertThrows(CryptographyException.class, () -> imported.open(Key.generateKey(KeyCapability.EXCHANGE)));
+            Envelope tampered = Envelope.importFromEncoded(envelope.exportToEncoded().replace(":SLD.", ":SLD.AA"));
+            assertFalse(tampered.verify(Commons.getIssuerKey().publicCopy()).isValid());
+        } catch (Exception e) {
+            fail("Unexpected exception thrown: " + e);
+        }
+    }
+
+    @Test
+    void sealTest3() {
+        try {
+            HistogramMetrics metrics = new HistogramMetrics();
+            Crypto crypto = new Crypto();
+            crypto.setMetrics(metrics);
+            DimeContext context = new DimeContext(crypto, new KeyRing());
+            Key audienceKey = Key.generateKey(KeyCapability.EXCHANGE);
+            Envelope envelope = new Envelope(Commons.getIssuerIdentity().getClaim(Claim.SUB));
+            for (int i = 0; i < 3; i++) {
+                Data data = new Data(Commons.getIssuerIdentity().getClaim(Claim.SUB));
+                data.setPayload((Commons.PAYLOAD + i).getBytes(StandardCharsets.UTF_8));
+                data.sign(Commons.getIssuerKey());
+                envelope.addItem(data);
+            }
+            envelope.seal(audienceKey.publicCopy());
+            envelope.sign(Commons.getIssuerKey());
+            Envelope imported = Envelope.importFromEncoded(envelope.exportToEncoded());
+            context.execute(() -> {
+                imported.open(audienceKey);
+                imported.open(audienceKey); // Already open, items not yet decoded
+                return null;
+            });
+            assertEquals(1, metrics.getHistogram(crypto.getDefaultSuiteName(), CryptoOperation.DECRYPT).getCount());
+            assertEquals(3, imported.getItems().size());
+            context.execute(() -> {
+                imported.open(audienceKey); // Already open, items decoded
+                return null;
+            });
+            assertEquals(1, metrics.getHistogram(crypto.getDefaultSuiteName(), CryptoOperation.DECRYPT).getCount());
+            assertEquals(3, imported.getItems().size());
+        } catch (Exception e) {
+            fail("Unexpected exception thrown: " + e);
+        }
+    }
+
 }
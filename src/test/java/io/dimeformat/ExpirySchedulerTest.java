@@ -0,0 +1,129 @@
+//
+//  ExpirySchedulerTest.java
+//  DiME - Data Identity Message Envelope
+//  A powerful universal data format that is built for secure, and integrity protected communication between trusted
+//  entities in a network.
+//
+//  Released under the MIT licence, see LICENSE for more information.
+//  Copyright (c) 2024 Shift Everywhere AB. All rights reserved.
+//
+package io.dimeformat;
+
+import io.dimeformat.enums.Claim;
+import io.dimeformat.enums.KeyCapability;
+import io.dimeformat.keyring.ExpiryScheduler;
+import io.dimeformat.keyring.FileKeyRing;
+import io.dimeformat.keyring.IntegrityState;
+import io.dimeformat.keyring.KeyRing;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExpirySchedulerTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void expirySchedulerTest1() {
+        KeyRing keyRing = new KeyRing();
+        ConcurrentLinkedQueue<String> expired = new ConcurrentLinkedQueue<>();
+        try (ExpiryScheduler scheduler = new ExpiryScheduler(keyRing, (name, item) -> expired.add(name))) {
+            Key trustedKey = Key.generateKey(KeyCapability.SIGN);
+            Key shortLivedKey = Key.generateKey(List.of(KeyCapability.SIGN), 1, null, null);
+            keyRing.put(trustedKey.publicCopy());
+            String name = keyRing.put(shortLivedKey.publicCopy());
+            Message message = Commons.signedMessage(trustedKey);
+            assertEquals(IntegrityState.VALID_SIGNATURE, keyRing.verify(message));
+            for (int i = 0; i < 100 && expired.isEmpty(); i++) {
+                Thread.sleep(50);
+            }
+            assertEquals(List.of(name), List.copyOf(expired));
+            assertEquals(1, keyRing.size());
+            assertFalse(keyRing.containsName(name));
+            assertNull(scheduler.getNextExpiry());
+            assertEquals(IntegrityState.VALID_SIGNATURE, keyRing.verify(message));
+            assertEquals(IntegrityState.FAILED_KEY_MISMATCH, keyRing.verify(Commons.signedMessage(shortLivedKey)));
+        } catch (Exception e) {
+            fail("Unexpected exception thrown: " + e);
+        }
+    }
+
+    @Test
+    void expirySchedulerTest2() {
+        KeyRing keyRing = new KeyRing();
+        DimeContext context = new DimeContext();
+        try {
+            Key trustedKey = Key.generateKey(KeyCapability.SIGN);
+            Key expiringKey = Key.generateKey(List.of(KeyCapability.SIGN), Dime.VALID_FOR_1_HOUR, null, null);
+            keyRing.put(trustedKey.publicCopy());
+            keyRing.put(expiringKey.publicCopy());
+            Message message = Commons.signedMessage(expiringKey);
+            ExpiryScheduler scheduler = context.execute(() -> new ExpiryScheduler(keyRing, null));
+            assertEquals(0, scheduler.evictExpired());
+            assertEquals((Instant) expiringKey.getClaim(Claim.EXP), scheduler.getNextExpiry());
+            assertEquals(IntegrityState.VALID_SIGNATURE, keyRing.verify(message));
+            context.setClock(Clock.fixed(Instant.now().plusSeconds(Dime.VALID_FOR_1_HOUR * 2), ZoneOffset.UTC));
+            scheduler.evictExpired(); // The scheduler thread may also see the new time, and remove the item first
+            assertEquals(1, keyRing.size());
+            assertTrue(keyRing.containsItem(trustedKey));
+            assertThrows(IllegalStateException.class, () -> new ExpiryScheduler(keyRing, null));
+            scheduler.close();
+            assertThrows(IllegalStateException.class, scheduler::evictExpired);
+            new ExpiryScheduler(keyRing, null).close(); // A closed scheduler is detached from the key ring
+        } catch (Exception e) {
+            fail("Unexpected exception thrown: " + e);
+        }
+        assertThrows(IllegalArgumentException.class, () -> new ExpiryScheduler(null, null));
+    }
+
+    @Test
+    void expirySchedulerTest3() {
+        KeyRing keyRing = new KeyRing();
+        DimeContext context = new DimeContext(); // Keeps the scheduler from seeing the override time set below
+        try (ExpiryScheduler scheduler = context.execute(() -> new ExpiryScheduler(keyRing, null))) {
+            Key trustedKey = Key.generateKey(List.of(KeyCapability.SIGN), Dime.VALID_FOR_1_HOUR, null, null);
+            keyRing.put(trustedKey.publicCopy());
+            Message message = Commons.signedMessage(trustedKey);
+            scheduler.evictExpired();
+            assertEquals(IntegrityState.VALID_SIGNATURE, keyRing.verify(message));
+            // Dates are checked one by one again as soon as the key ring changes, or the item has expired
+            Dime.setOverrideTime(Instant.now().plusSeconds(Dime.VALID_FOR_1_HOUR * 2));
+            assertEquals(IntegrityState.FAILED_USED_AFTER_EXPIRED, keyRing.verify(message));
+        } catch (Exception e) {
+            fail("Unexpected exception thrown: " + e);
+        } finally {
+            Dime.setOverrideTime(null);
+        }
+    }
+
+    @Test
+    void expirySchedulerTest4() {
+        Path path = directory.resolve("keyring.dime");
+        ConcurrentLinkedQueue<Item> expired = new ConcurrentLinkedQueue<>();
+        DimeContext context = new DimeContext();
+        try (FileKeyRing keyRing = new FileKeyRing(path)) {
+            Key trustedKey = Key.generateKey(KeyCapability.SIGN);
+            Key expiringKey = Key.generateKey(List.of(KeyCapability.SIGN), Dime.VALID_FOR_1_MINUTE, null, null);
+            keyRing.put(trustedKey);
+            String name = keyRing.put(expiringKey);
+            try (ExpiryScheduler scheduler = context.execute(() -> new ExpiryScheduler(keyRing, (itemName, item) -> expired.add(item)))) {
+                scheduler.evictExpired();
+                assertEquals(IntegrityState.VALID_SIGNATURE, keyRing.verify(Commons.signedMessage(trustedKey)));
+                context.setClock(Clock.fixed(Instant.now().plusSeconds(Dime.VALID_FOR_1_MINUTE * 2), ZoneOffset.UTC));
+                scheduler.evictExpired();
+                assertEquals(1, expired.size());
+                assertFalse(keyRing.containsName(name));
+            }
+        } catch (Exception e) {
+            fail("Unexpected exception thrown: " + e);
+        }
+    }
+
+}
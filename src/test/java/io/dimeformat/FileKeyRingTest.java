@@ -0,0 +1,319 @@
+//
+//  FileKeyRingTest.java
+//  DiME - Data Identity Message Envelope
+//  A powerful universal data format that is built for secure, and integrity protected communication between trusted
+//  entities in a network.
+//
+//  Released under the MIT licence, see LICENSE for more information.
+//  Copyright (c) 2024 Shift Everywhere AB. All rights reserved.
+//
+package io.dimeformat;
+
+import io.dimeformat.enums.Claim;
+import io.dimeformat.enums.IdentityCapability;
+import io.dimeformat.enums.KeyCapability;
+import io.dimeformat.keyring.FileKeyRing;
+import io.dimeformat.keyring.IntegrityState;
+import io.dimeformat.keyring.KeyRing;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileKeyRingTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void fileKeyRingTest1() {
+        Path path = directory.resolve("keyring.dime");
+        try {
+            Key key = Key.generateKey(KeyCapability.SIGN);
+            Identity identity = FileKeyRingTest.selfIssuedIdentity(Key.generateKey(KeyCapability.SIGN));
+            String keyName;
+            String identityName;
+            try (FileKeyRing keyRing = new FileKeyRing(path)) {
+                assertTrue(keyRing.isEmpty());
+                keyName = keyRing.put(key);
+                identityName = keyRing.put(identity);
+                assertEquals(2, keyRing.size());
+                assertTrue(keyRing.containsName(keyName));
+                assertNull(((Key) keyRing.get(keyName)).getSecret()); // Only the public key is stored
+                assertTrue(keyRing.containsItem(identity));
+            }
+            assertTrue(Files.exists(directory.resolve("keyring.dime" + FileKeyRing.INDEX_SUFFIX)));
+            try (FileKeyRing keyRing = new FileKeyRing(path)) {
+                assertEquals(2, keyRing.size());
+                assertEquals(key.getPublic(), ((Key) keyRing.get(keyName)).getPublic());
+                assertEquals((UUID) identity.getClaim(Claim.SUB), keyRing.get(identityName).getClaim(Claim.SUB));
+                assertTrue(keyRing.nameSet().contains(identityName));
+                assertEquals(2, keyRing.items().size());
+                assertTrue(keyRing.remove(key));
+                assertFalse(keyRing.remove(key));
+                assertFalse(keyRing.containsName(keyName));
+                keyRing.put(key);
+                assertTrue(keyRing.containsName(keyName));
+                keyRing.remove(identityName);
+            }
+            try (FileKeyRing keyRing = new FileKeyRing(path)) {
+                assertEquals(1, keyRing.size());
+                assertTrue(keyRing.containsName(keyName));
+                assertFalse(keyRing.containsName(identityName));
+                keyRing.clear();
+                assertTrue(keyRing.isEmpty());
+            }
+            try (FileKeyRing keyRing = new FileKeyRing(path)) {
+                assertTrue(keyRing.isEmpty());
+            }
+        } catch (Exception e) {
+            fail("Unexpected exception thrown: " + e);
+        }
+    }
+
+    @Test
+    void fileKeyRingTest2() {
+        Path path = directory.resolve("keyring.dime");
+        try {
+            Key trustedKey = Key.generateKey(KeyCapability.SIGN);
+            Key identityKey = Key.generateKey(KeyCapability.SIGN);
+            Identity identity = FileKeyRingTest.selfIssuedIdentity(identityKey);
+            Message message1 = Commons.signedMessage(trustedKey);
+            Message message2 = Commons.signedMessage(identityKey);
+            try (FileKeyRing keyRing = new FileKeyRing(path)) {
+                assertEquals(IntegrityState.FAILED_NO_KEY_RING, keyRing.verify(message1));
+                keyRing.put(trustedKey);
+                keyRing.put(identity);
+                assertEquals(IntegrityState.VALID_SIGNATURE, keyRing.verify(message1));
+                assertEquals(IntegrityState.VALID_SIGNATURE, keyRing.verify(message2));
+            }
+            try (FileKeyRing keyRing = new FileKeyRing(path)) {
+                assertEquals(IntegrityState.VALID_SIGNATURE, keyRing.verify(message1));
+                assertEquals(IntegrityState.VALID_SIGNATURE, keyRing.verify(message2));
+                keyRing.remove(identity);
+                assertEquals(IntegrityState.FAILED_KEY_MISMATCH, keyRing.verify(message2));
+                assertEquals(IntegrityState.FAILED_KEY_MISMATCH, keyRing.verify(Commons.signedMessage(Key.generateKey(KeyCapability.SIGN))));
+            }
+        } catch (Exception e) {
+            fail("Unexpected exception thrown: " + e);
+        }
+    }
+
+    @Test
+    void fileKeyRingTest3() {
+        Path path = directory.resolve("keyring.dime");
+        try {
+            List<String> names = new ArrayList<>();
+            try (FileKeyRing keyRing = new FileKeyRing(path)) {
+                for (int i = 0; i < 300; i++) { // Grows both the log and the index
+                    names.add(keyRing.put(Key.generateKey(KeyCapability.SIGN)));
+                }
+                for (int i = 0; i < 250; i++) {
+                    assertTrue(keyRing.remove(names.get(i)));
+                }
+                assertEquals(50, keyRing.size());
+                keyRing.compact();
+                assertEquals(50, keyRing.size());
+                assertNotNull(keyRing.get(names.get(299)));
+                keyRing.put(Key.generateKey(KeyCapability.SIGN));
+            }
+            // A lost index is rebuilt from the log
+            Files.delete(directory.resolve("keyring.dime" + FileKeyRing.INDEX_SUFFIX));
+            try (FileKeyRing keyRing = new FileKeyRing(path)) {
+                assertEquals(51, keyRing.size());
+                assertFalse(keyRing.containsName(names.get(0)));
+                for (int i = 250; i < 300; i++) {
+                    assertTrue(keyRing.containsName(names.get(i)));
+                }
+            }
+        } catch (Exception e) {
+            fail("Unexpected exception thrown: " + e);
+        }
+    }
+
+    @Test
+    void fileKeyRingTest4() {
+        Path path = directory.resolve("keyring.dime");
+        try {
+            Key key = Key.generateKey(KeyCapability.SIGN);
+            String name;
+            try (FileKeyRing keyRing = new FileKeyRing(path)) {
+                name = keyRing.put(key);
+            }
+            // Simulate a crash while a record was written after the key
+            try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+                byte[] bytes = new byte[(int) file.length()];
+                file.readFully(bytes);
+                int end = 16;
+                while (end + 4 <= bytes.length) {
+                    int recordLength = ((bytes[end] & 0xFF) << 24) | ((bytes[end + 1] & 0xFF) << 16) | ((bytes[end + 2] & 0xFF) << 8) | (bytes[end + 3] & 0xFF);
+                    if (recordLength == 0) { break; }
+                    end += 4 + recordLength;
+                }
+                file.seek(end);
+                file.write(new byte[] { 0, 0, 0, 100, 1, 0, 5 });
+                file.write("garbage".getBytes(StandardCharsets.UTF_8));
+            }
+            Files.delete(directory.resolve("keyring.dime" + FileKeyRing.INDEX_SUFFIX));
+            try (FileKeyRing keyRing = new FileKeyRing(path)) {
+                assertEquals(1, keyRing.size());
+                assertTrue(keyRing.containsName(name));
+                keyRing.put(Key.generateKey(KeyCapability.SIGN));
+            }
+            try (FileKeyRing keyRing = new FileKeyRing(path)) {
+                assertEquals(2, keyRing.size());
+            }
+        } catch (Exception e) {
+            fail("Unexpected exception thrown: " + e);
+        }
+    }
+
+    @Test
+    void fileKeyRingTest5() {
+        try {
+            Path path = directory.resolve("other.dime");
+            Files.write(path, "This is not a key ring file".getBytes(StandardCharsets.UTF_8));
+            assertThrows(java.io.IOException.class, () -> new FileKeyRing(path));
+            assertThrows(IllegalArgumentException.class, () -> new FileKeyRing(null));
+            FileKeyRing keyRing = new FileKeyRing(directory.resolve("keyring.dime"));
+            keyRing.close();
+            assertThrows(IllegalStateException.class, () -> keyRing.put(Key.generateKey(KeyCapability.SIGN)));
+        } catch (Exception e) {
+            fail("Unexpected exception thrown: " + e);
+        }
+    }
+
+    @Test
+    void fileKeyRingTest6() {
+        Path path = directory.resolve("keyring.dime");
+        try {
+            Key signingKey = Key.generateKey(KeyCapability.SIGN);
+            Key trustedKey = Key.generateKey(KeyCapability.SIGN);
+            Key otherKey = Key.generateKey(KeyCapability.SIGN);
+            Message message = Commons.signedMessage(trustedKey);
+            KeyRing source = new KeyRing();
+            source.put(trustedKey.publicCopy());
+            source.put(FileKeyRingTest.selfIssuedIdentity(Key.generateKey(KeyCapability.SIGN)));
+            try (FileKeyRing keyRing = new FileKeyRing(path)) {
+                keyRing.put(otherKey);
+                long version = keyRing.getVersion();
+                keyRing.reload(source.exportToEncoded(signingKey), signingKey);
+                assertTrue(keyRing.getVersion() > version);
+                assertEquals(2, keyRing.size());
+                assertFalse(keyRing.containsItem(otherKey));
+                assertEquals(IntegrityState.VALID_SIGNATURE, keyRing.verify(message));
+            }
+            try (FileKeyRing keyRing = new FileKeyRing(path)) {
+                assertEquals(2, keyRing.size());
+                assertTrue(keyRing.containsItem(trustedKey));
+                assertEquals(IntegrityState.VALID_SIGNATURE, keyRing.verify(message));
+            }
+        } catch (Exception e) {
+            fail("Unexpected exception thrown: " + e);
+        }
+    }
+
+    @Test
+    void fileKeyRingTest7() {
+        try {
+            Key signingKey = Key.generateKey(KeyCapability.SIGN);
+            KeyRing source = new KeyRing();
+            Key removedKey = Key.generateKey(KeyCapability.SIGN).publicCopy();
+            source.put(removedKey);
+            source.put(Key.generateKey(KeyCapability.SIGN).publicCopy());
+            try (FileKeyRing receiver = new FileKeyRing(directory.resolve("receiver.dime"));
+                 FileKeyRing fileSource = new FileKeyRing(directory.resolve("source.dime"))) {
+                long version = receiver.applyDelta(source.exportDelta(KeyRing.FULL_DELTA, signingKey), signingKey);
+                Key key = Key.generateKey(KeyCapability.SIGN).publicCopy();
+                source.put(key);
+                source.remove(removedKey);
+                receiver.applyDelta(source.exportDelta(version, signingKey), signingKey);
+                assertEquals(source.nameSet(), receiver.nameSet());
+                assertFalse(receiver.containsItem(removedKey));
+                // A key ring on file always exports all items
+                fileSource.put(key);
+                String delta = fileSource.exportDelta(fileSource.getVersion(), signingKey);
+                assertEquals(2, Envelope.importFromEncoded(delta).getItems().size());
+                receiver.applyDelta(delta, signingKey);
+                assertEquals(1, receiver.size());
+                assertTrue(receiver.containsItem(key));
+            }
+        } catch (Exception e) {
+            fail("Unexpected exception thrown: " + e);
+        }
+    }
+
+    @Test
+    void fileKeyRingTest8() {
+        Path path = directory.resolve("keyring.dime");
+        try {
+            Key key = Key.generateKey(KeyCapability.SIGN);
+            String name;
+            try (FileKeyRing keyRing = new FileKeyRing(path)) {
+                name = keyRing.put(key);
+            }
+            // Damage the stored item, but keep the index referring to it
+            try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+                file.seek(16);
+                int recordLength = file.readInt();
+                long position = 16 + 4 + recordLength - 5;
+                file.seek(position);
+                int value = file.read();
+                file.seek(position);
+                file.write(value ^ 0x01);
+            }
+            try (FileKeyRing keyRing = new FileKeyRing(path)) {
+                assertEquals(1, keyRing.size());
+                assertEquals(IntegrityState.FAILED_INVALID_KEY_RING_ITEM, keyRing.verify(Commons.signedMessage(key)));
+                assertThrows(IllegalStateException.class, () -> keyRing.get(name));
+            }
+        } catch (Exception e) {
+            fail("Unexpected exception thrown: " + e);
+        }
+    }
+
+    @Test
+    void fileKeyRingTest9() {
+        Path path = directory.resolve("keyring.dime");
+        Path indexPath = directory.resolve("keyring.dime" + FileKeyRing.INDEX_SUFFIX);
+        try {
+            Key key = Key.generateKey(KeyCapability.SIGN);
+            try (FileKeyRing keyRing = new FileKeyRing(path)) {
+                keyRing.put(key);
+            }
+            // Simulate a crash where the index was written, but neither the record nor the committed log length was
+            try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+                file.seek(16);
+                int recordLength = file.readInt();
+                file.seek(16);
+                file.write(new byte[4 + recordLength]);
+            }
+            try (RandomAccessFile file = new RandomAccessFile(indexPath.toFile(), "rw")) {
+                file.seek(16);
+                file.writeLong(16);
+            }
+            try (FileKeyRing keyRing = new FileKeyRing(path)) {
+                assertEquals(0, keyRing.size()); // The index is rebuilt from the log
+                assertEquals(IntegrityState.FAILED_NO_KEY_RING, keyRing.verify(Commons.signedMessage(key)));
+                keyRing.put(key);
+            }
+            try (FileKeyRing keyRing = new FileKeyRing(path)) {
+                assertEquals(IntegrityState.VALID_SIGNATURE, keyRing.verify(Commons.signedMessage(key)));
+            }
+        } catch (Exception e) {
+            fail("Unexpected exception thrown: " + e);
+        }
+    }
+
+    private static Identity selfIssuedIdentity(Key key) throws Exception {
+        IdentityCapability[] caps = new IdentityCapability[]{IdentityCapability.GENERIC, IdentityCapability.ISSUE};
+        return IdentityIssuingRequest.generateIIR(key, caps).selfIssueIdentity(UUID.randomUUID(), Dime.VALID_FOR_1_YEAR, key, Commons.SYSTEM_NAME);
+    }
+
+}
@@ -9,14 +9,27 @@
 //
 package io.dimeformat;
 
+import io.dimeformat.enums.Claim;
 import io.dimeformat.enums.IdentityCapability;
 import io.dimeformat.enums.KeyCapability;
 import io.dimeformat.exceptions.IntegrityStateException;
+import io.dimeformat.exceptions.InvalidFormatException;
 import io.dimeformat.keyring.IntegrityState;
+import io.dimeformat.keyring.KeyRing;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 import static org.junit.jupiter.api.Assertions.*;
 
 class KeyRingTest {
@@ -132,6 +145,56 @@ class KeyRingTest {
         }
     }
 
+    @Test
+    void verifyTest7() {
+        try {
+            KeyRing keyRing = new KeyRing();
+            for (int i = 0; i < 20; i++) {
+                keyRing.put(Key.generateKey(KeyCapability.SIGN).publicCopy());
+            }
+            Key trustedKey = Key.generateKey(KeyCapability.SIGN);
+            Key untrustedKey = Key.generateKey(KeyCapability.SIGN);
+            Message message = new Message(Commons.getIssuerIdentity().getClaim(Claim.SUB));
+            message.setPayload(Commons.PAYLOAD.getBytes(StandardCharsets.UTF_8));
+            assertEquals(IntegrityState.FAILED_NO_SIGNATURE, keyRing.verify(message));
+            message.sign(untrustedKey);
+            message.sign(trustedKey);
+            assertEquals(IntegrityState.FAILED_KEY_MISMATCH, keyRing.verify(message));
+            keyRing.put(trustedKey.publicCopy());
+            assertEquals(IntegrityState.VALID_SIGNATURE, keyRing.verify(message));
+            Message imported = Item.importFromEncoded(message.exportToEncoded());
+            assertNotNull(imported);
+            assertEquals(IntegrityState.VALID_SIGNATURE, keyRing.verify(imported));
+            keyRing.remove(trustedKey);
+            assertEquals(IntegrityState.FAILED_KEY_MISMATCH, keyRing.verify(message));
+        } catch (Exception e) {
+            fail("Unexpected exception thrown: " + e);
+        }
+    }
+
+    @Test
+    void verifyTest8() {
+        try {
+            KeyRing keyRing = new KeyRing();
+            Key identityKey = Key.generateKey(KeyCapability.SIGN);
+            IdentityCapability[] caps = new IdentityCapability[]{IdentityCapability.GENERIC, IdentityCapability.ISSUE};
+            Identity identity = IdentityIssuingRequest.generateIIR(identityKey, caps).selfIssueIdentity(UUID.randomUUID(), Dime.VALID_FOR_1_YEAR, identityKey, Commons.SYSTEM_NAME);
+            Message message = new Message(Commons.getIssuerIdentity().getClaim(Claim.SUB));
+            message.setPayload(Commons.PAYLOAD.getBytes(StandardCharsets.UTF_8));
+            message.sign(identityKey);
+            // An identity and a key sharing the same public key, removing one must not remove the other from the index
+            keyRing.put(identity);
+            keyRing.put(identityKey.publicCopy());
+            assertEquals(IntegrityState.VALID_SIGNATURE, keyRing.verify(message));
+            keyRing.remove(identityKey);
+            assertEquals(IntegrityState.VALID_SIGNATURE, keyRing.verify(message));
+            keyRing.remove(identity);
+            assertEquals(IntegrityState.FAILED_NO_KEY_RING, keyRing.verify(message));
+        } catch (Exception e) {
+            fail("Unexpected exception thrown: " + e);
+        }
+    }
+
     @Test
     void keyRingTest1() {
         Commons.initializeKeyRing();
@@ -171,6 +234,225 @@ class KeyRingTest {
         }
     }
 
+    @Test
+    void keyRingTest4() {
+        KeyRing keyRing = new KeyRing();
+        Key key1 = Key.generateKey(KeyCapability.SIGN);
+        String name1 = keyRing.put(key1);
+        Set<String> names = keyRing.nameSet();
+        keyRing.put(Key.generateKey(KeyCapability.SIGN));
+        assertEquals(1, names.size()); // Snapshot, not changed by later puts
+        assertTrue(names.contains(name1));
+        assertEquals(2, keyRing.nameSet().size());
+        assertThrows(UnsupportedOperationException.class, () -> keyRing.nameSet().remove(name1));
+        assertThrows(UnsupportedOperationException.class, () -> keyRing.items().clear());
+        keyRing.clear();
+        assertTrue(keyRing.nameSet().isEmpty());
+        assertTrue(keyRing.items().isEmpty());
+        assertFalse(keyRing.remove(name1));
+    }
+
+    @Test
+    void keyRingTest5() {
+        KeyRing keyRing = new KeyRing();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        AtomicBoolean running = new AtomicBoolean(true);
+        try {
+            Key trustedKey = Key.generateKey(KeyCapability.SIGN);
+            keyRing.put(trustedKey.publicCopy());
+            Message message = new Message(Commons.getIssuerIdentity().getClaim(Claim.SUB));
+            message.setPayload(Commons.PAYLOAD.getBytes(StandardCharsets.UTF_8));
+            message.sign(trustedKey);
+            List<Key> otherKeys = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                otherKeys.add(Key.generateKey(KeyCapability.SIGN).publicCopy());
+            }
+            List<Future<?>> futures = new ArrayList<>();
+            futures.add(executor.submit(() -> {
+                while (running.get()) {
+                    for (Key key : otherKeys) { keyRing.put(key); }
+                    for (Key key : otherKeys) { keyRing.remove(key); }
+                }
+                return null;
+            }));
+            for (int t = 0; t < 3; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 200; i++) {
+                        assertEquals(IntegrityState.VALID_SIGNATURE, keyRing.verify(message));
+                        for (String name : keyRing.nameSet()) {
+                            assertNotNull(name);
+                        }
+                        assertNotNull(keyRing.exportToEncoded(null));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures.subList(1, futures.size())) {
+                future.get();
+            }
+            running.set(false);
+            futures.get(0).get();
+            assertEquals(1, keyRing.size());
+        } catch (Exception e) {
+            fail("Unexpected exception thrown: " + e);
+        } finally {
+            running.set(false);
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void keyRingTest6() {
+        KeyRing keyRing = new KeyRing();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        AtomicBoolean running = new AtomicBoolean(true);
+        try {
+            Key signingKey = Key.generateKey(KeyCapability.SIGN);
+            Key trustedKey = Key.generateKey(KeyCapability.SIGN);
+            Key otherKey1 = Key.generateKey(KeyCapability.SIGN).publicCopy();
+            Key otherKey2 = Key.generateKey(KeyCapability.SIGN).publicCopy();
+            KeyRing source = new KeyRing();
+            source.put(trustedKey.publicCopy());
+            source.put(otherKey1);
+            String encoded1 = source.exportToEncoded(signingKey);
+            source.remove(otherKey1);
+            source.put(otherKey2);
+            String encoded2 = source.exportToEncoded(signingKey);
+            keyRing.reload(encoded1, signingKey);
+            Message message = new Message(Commons.getIssuerIdentity().getClaim(Claim.SUB));
+            message.setPayload(Commons.PAYLOAD.getBytes(StandardCharsets.UTF_8));
+            message.sign(trustedKey);
+            List<Future<?>> futures = new ArrayList<>();
+            futures.add(executor.submit(() -> {
+                while (running.get()) {
+                    keyRing.reload(encoded2, signingKey);
+                    keyRing.reload(encoded1, signingKey);
+                }
+                return null;
+            }));
+            for (int t = 0; t < 3; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 500; i++) {
+                        assertEquals(IntegrityState.VALID_SIGNATURE, keyRing.verify(message)); // Never sees an empty key ring
+                        assertEquals(2, keyRing.size());
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures.subList(1, futures.size())) {
+                future.get();
+            }
+            running.set(false);
+            futures.get(0).get();
+            keyRing.reload(encoded2, signingKey);
+            assertTrue(keyRing.containsItem(otherKey2));
+            assertFalse(keyRing.containsItem(otherKey1));
+            // A reload that fails verification leaves the key ring unchanged
+            assertThrows(IntegrityStateException.class, () -> keyRing.reload(encoded1, Key.generateKey(KeyCapability.SIGN)));
+            assertTrue(keyRing.containsItem(otherKey2));
+            assertEquals(IntegrityState.VALID_SIGNATURE, keyRing.verify(message));
+        } catch (Exception e) {
+            fail("Unexpected exception thrown: " + e);
+        } finally {
+            running.set(false);
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void deltaTest1() {
+        try {
+            Key signingKey = Key.generateKey(KeyCapability.SIGN);
+            KeyRing source = new KeyRing();
+            KeyRing receiver = new KeyRing();
+            Key key1 = Key.generateKey(KeyCapability.SIGN).publicCopy();
+            source.put(key1);
+            source.put(Key.generateKey(KeyCapability.SIGN).publicCopy());
+            source.put(Commons.getTrustedIdentity());
+            long version = receiver.applyDelta(source.exportDelta(KeyRing.FULL_DELTA, signingKey), signingKey);
+            assertEquals(source.getVersion(), version);
+            assertEquals(source.nameSet(), receiver.nameSet());
+            Key key2 = Key.generateKey(KeyCapability.SIGN).publicCopy();
+            source.put(key2);
+            source.remove(key1);
+            String delta = source.exportDelta(version, signingKey);
+            assertEquals(2, Envelope.importFromEncoded(delta).getItems().size()); // Only the added key, after the data item
+            version = receiver.applyDelta(delta, signingKey);
+            assertEquals(source.getVersion(), version);
+            assertEquals(source.nameSet(), receiver.nameSet());
+            assertTrue(receiver.containsItem(key2));
+            assertFalse(receiver.containsItem(key1));
+            // An empty delta only moves the version forward
+            assertEquals(version, receiver.applyDelta(source.exportDelta(version, signingKey), signingKey));
+        } catch (Exception e) {
+            fail("Unexpected exception thrown: " + e);
+        }
+    }
+
+    @Test
+    void deltaTest2() {
+        try {
+            Key signingKey = Key.generateKey(KeyCapability.SIGN);
+            KeyRing source = new KeyRing();
+            KeyRing receiver = new KeyRing();
+            source.put(Key.generateKey(KeyCapability.SIGN).publicCopy());
+            long version = receiver.applyDelta(source.exportDelta(KeyRing.FULL_DELTA, signingKey), signingKey);
+            Key key = Key.generateKey(KeyCapability.SIGN).publicCopy();
+            source.put(key);
+            String delta = source.exportDelta(version, signingKey);
+            assertThrows(IntegrityStateException.class, () -> receiver.applyDelta(delta, Key.generateKey(KeyCapability.SIGN)));
+            assertThrows(InvalidFormatException.class, () -> receiver.applyDelta(source.exportToEncoded(signingKey), signingKey));
+            receiver.applyDelta(delta, signingKey);
+            // A delta that does not follow the last one applied is rejected, and the key ring left unchanged
+            source.put(Key.generateKey(KeyCapability.SIGN).publicCopy());
+            String stale = source.exportDelta(version, signingKey);
+            assertThrows(IllegalStateException.class, () -> receiver.applyDelta(stale, signingKey));
+            assertEquals(2, receiver.size());
+            // Changes from before a clear are not known, the delta then holds all items
+            source.clear();
+            source.put(key);
+            version = receiver.applyDelta(source.exportDelta(version + 1, signingKey), signingKey);
+            assertEquals(source.getVersion(), version);
+            assertEquals(1, receiver.size());
+            assertTrue(receiver.containsItem(key));
+        } catch (Exception e) {
+            fail("Unexpected exception thrown: " + e);
+        }
+    }
+
+    @Test
+    void deltaTest3() {
+        try {
+            Key signingKey = Key.generateKey(KeyCapability.SIGN);
+            KeyRing source = new KeyRing();
+            KeyRing receiver = new KeyRing();
+            source.put(Key.generateKey(KeyCapability.SIGN).publicCopy());
+            String earlier = source.exportDelta(KeyRing.FULL_DELTA, signingKey);
+            Key key = Key.generateKey(KeyCapability.SIGN).publicCopy();
+            source.put(key);
+            String later = source.exportDelta(KeyRing.FULL_DELTA, signingKey);
+            long version = receiver.applyDelta(later, signingKey);
+            // A full delta from the same key ring must be later than the last delta applied
+            assertThrows(IllegalStateException.class, () -> receiver.applyDelta(earlier, signingKey));
+            assertThrows(IllegalStateException.class, () -> receiver.applyDelta(later, signingKey));
+            assertEquals(2, receiver.size());
+            assertTrue(receiver.containsItem(key));
+            // A full delta from another key ring starts over
+            KeyRing other = new KeyRing();
+            other.put(key);
+            assertTrue(receiver.applyDelta(other.exportDelta(KeyRing.FULL_DELTA, signingKey), signingKey) < version);
+            assertEquals(1, receiver.size());
+            // An expired delta is not applied
+            DimeContext context = new DimeContext();
+            String delta = other.exportDelta(KeyRing.FULL_DELTA, signingKey);
+            context.setClock(Clock.fixed(Instant.now().plusSeconds(KeyRing.DELTA_VALID_FOR * 2), ZoneOffset.UTC));
+            IntegrityStateException exception = assertThrows(IntegrityStateException.class, () -> context.execute(() -> receiver.applyDelta(delta, signingKey)));
+            assertEquals(IntegrityState.FAILED_USED_AFTER_EXPIRED, exception.state);
+        } catch (Exception e) {
+            fail("Unexpected exception thrown: " + e);
+        }
+    }
+
     @Test
     void exportTest1() {
         try {
@@ -9,10 +9,17 @@
 //
 package io.dimeformat;
 
+import io.dimeformat.crypto.GuardedSecret;
 import io.dimeformat.enums.Claim;
 import io.dimeformat.enums.KeyCapability;
+import io.dimeformat.exceptions.CryptographyException;
 import io.dimeformat.keyring.IntegrityState;
 import org.junit.jupiter.api.Test;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.util.HashMap;
@@ -337,4 +344,122 @@ class KeyTest {
         assertNotEquals(key1.getName(), key2.getName());
     }
 
-}
\ No newline at end of file
+    @Test
+    void guardSecretTest1() {
+        try {
+            Key key = Key.generateKey(KeyCapability.SIGN);
+            byte[] secret = key.getKeyBytes(Claim.KEY).clone();
+            GuardedSecret guarded = key.guardSecret();
+            assertNotNull(guarded);
+            assertSame(guarded, key.guardSecret());
+            assertSame(guarded, key.getGuardedSecret());
+            assertEquals(secret.length, guarded.length());
+            assertFalse(guarded.isDestroyed());
+            assertArrayEquals(secret, key.getKeyBytes(Claim.KEY));
+            assertNotNull(key.getSecret());
+            Data data = new Data(UUID.randomUUID());
+            data.setPayload(Commons.PAYLOAD.getBytes(StandardCharsets.UTF_8));
+            data.sign(key);
+            assertTrue(data.verify(key.publicCopy()).isValid());
+            guarded.destroy();
+            assertTrue(guarded.isDestroyed());
+            assertNull(key.getKeyBytes(Claim.KEY));
+            Data data2 = new Data(UUID.randomUUID());
+            data2.setPayload(Commons.PAYLOAD.getBytes(StandardCharsets.UTF_8));
+            assertThrows(CryptographyException.class, () -> data2.sign(key));
+            guarded.destroy(); // Should have no effect
+        } catch (Exception e) {
+            fail("Unexpected exception thrown: " + e);
+        }
+    }
+
+    @Test
+    void guardSecretTest2() {
+        try {
+            Key key = Key.generateKey(KeyCapability.ENCRYPT);
+            Key plainKey = Item.importFromEncoded(key.exportToEncoded());
+            key.guardSecret();
+            byte[] data = Commons.PAYLOAD.getBytes(StandardCharsets.UTF_8);
+            assertArrayEquals(data, Dime.crypto.decrypt(Dime.crypto.encrypt(data, key), plainKey));
+            assertArrayEquals(data, Dime.crypto.decrypt(Dime.crypto.encrypt(data, plainKey), key));
+            ByteBuffer cipherText = ByteBuffer.allocateDirect(data.length + 40);
+            Dime.crypto.encrypt(ByteBuffer.wrap(data), cipherText, key);
+            ByteBuffer plainText = ByteBuffer.allocate(data.length);
+            Dime.crypto.decrypt(cipherText.flip(), plainText, key);
+            assertArrayEquals(data, plainText.array());
+            Key noSecret = Key.generateKey(KeyCapability.SIGN).publicCopy();
+            assertThrows(IllegalStateException.class, noSecret::guardSecret);
+        } catch (Exception e) {
+            fail("Unexpected exception thrown: " + e);
+        }
+    }
+
+    @Test
+    void guardSecretTest3() {
+        try {
+            Key key = Key.generateKey(KeyCapability.SIGN);
+            String secret = key.getSecret();
+            String exported = key.exportToEncoded();
+            Key imported = Item.importFromEncoded(exported);
+            assertNotNull(imported);
+            for (Key guardedKey : List.of(key, imported)) {
+                GuardedSecret guarded = guardedKey.guardSecret();
+                assertNull(guardedKey.getClaim(Claim.KEY)); // The encoded secret key is dropped from the heap
+                assertTrue(guardedKey.hasSecret());
+                assertEquals(secret, guardedKey.getSecret());
+                assertEquals(exported, guardedKey.exportToEncoded());
+                assertNull(guardedKey.getClaim(Claim.KEY));
+                guarded.destroy();
+                assertTrue(guardedKey.hasSecret());
+                assertNull(guardedKey.getSecret());
+                Key exportedAfter = Item.importFromEncoded(guardedKey.exportToEncoded());
+                assertNotNull(exportedAfter);
+                assertFalse(exportedAfter.hasSecret());
+            }
+        } catch (Exception e) {
+            fail("Unexpected exception thrown: " + e);
+        }
+    }
+
+    @Test
+    void guardSecretTest4() {
+        try {
+            // Key exchange, key derivation and streams use the guarded memory directly, and give the same results
+            Key clientKey = Key.generateKey(KeyCapability.EXCHANGE);
+            Key serverKey = Key.generateKey(KeyCapability.EXCHANGE);
+            Key masterKey = Key.generateKey(KeyCapability.ENCRYPT);
+            Key shared = Dime.crypto.generateSharedSecret(clientKey, serverKey.publicCopy(), List.of(KeyCapability.ENCRYPT));
+            Key derived = Dime.crypto.deriveKey(masterKey, 1, "test");
+            GuardedSecret clientSecret = clientKey.guardSecret();
+            GuardedSecret serverSecret = serverKey.guardSecret();
+            GuardedSecret masterSecret = masterKey.guardSecret();
+            assertFalse(clientKey.isLegacy());
+            assertEquals(shared.getSecret(), Dime.crypto.generateSharedSecret(clientKey, serverKey.publicCopy(), List.of(KeyCapability.ENCRYPT)).getSecret());
+            assertEquals(shared.getSecret(), Dime.crypto.generateSharedSecret(clientKey.publicCopy(), serverKey, List.of(KeyCapability.ENCRYPT)).getSecret());
+            assertEquals(derived.getSecret(), Dime.crypto.deriveKey(masterKey, 1, "test").getSecret());
+            byte[] data = Commons.PAYLOAD.getBytes(StandardCharsets.UTF_8);
+            ByteArrayOutputStream cipherText = new ByteArrayOutputStream();
+            try (OutputStream out = Dime.crypto.encryptionStream(cipherText, masterKey)) {
+                out.write(data);
+            }
+            try (InputStream in = Dime.crypto.decryptionStream(new ByteArrayInputStream(cipherText.toByteArray()), masterKey)) {
+                assertArrayEquals(data, in.readAllBytes());
+            }
+            // Once destroyed the secret is not read from anywhere else
+            clientSecret.destroy();
+            serverSecret.destroy();
+            masterSecret.destroy();
+            assertFalse(clientKey.isLegacy());
+            assertTrue(clientKey.hasCapability(KeyCapability.EXCHANGE));
+            CryptographyException exception = assertThrows(CryptographyException.class, () -> Dime.crypto.generateSharedSecret(clientKey, serverKey.publicCopy(), List.of(KeyCapability.ENCRYPT)));
+            assertTrue(exception.getMessage().contains("destroyed"));
+            exception = assertThrows(CryptographyException.class, () -> Dime.crypto.deriveKey(masterKey, 1, "test"));
+            assertTrue(exception.getMessage().contains("destroyed"));
+            exception = assertThrows(CryptographyException.class, () -> Dime.crypto.encryptionStream(new ByteArrayOutputStream(), masterKey));
+            assertTrue(exception.getMessage().contains("destroyed"));
+        } catch (Exception e) {
+            fail("Unexpected exception thrown: " + e);
+        }
+    }
+
+}
@@ -0,0 +1,155 @@
+//
+//  MessageSessionTest.java
+//  DiME - Data Identity Message Envelope
+//  A powerful universal data format that is built for secure, and integrity protected communication between trusted
+//  entities in a network.
+//
+//  Released under the MIT licence, see LICENSE for more information.
+//  Copyright (c) 2024 Shift Everywhere AB. All rights reserved.
+//
+package io.dimeformat;
+
+import io.dimeformat.crypto.SharedSecretCache;
+import io.dimeformat.enums.Claim;
+import io.dimeformat.enums.KeyCapability;
+import io.dimeformat.exceptions.CryptographyException;
+import org.junit.jupiter.api.Test;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import static org.junit.jupiter.api.Assertions.*;
+
+class MessageSessionTest {
+
+    @Test
+    void sessionTest1() {
+        try {
+            Key issuerKey = Key.generateKey(KeyCapability.EXCHANGE);
+            Key audienceKey = Key.generateKey(KeyCapability.EXCHANGE);
+            MessageSession issuerSession = new MessageSession(issuerKey, audienceKey.publicCopy());
+            MessageSession audienceSession = new MessageSession(audienceKey, issuerKey.publicCopy());
+            MessageSessionTest.start(issuerSession, audienceSession);
+            for (int i = 0; i < 5; i++) {
+                String payload = Commons.PAYLOAD + i;
+                Message message = new Message(Commons.getAudienceIdentity().getClaim(Claim.SUB), Commons.getIssuerIdentity().getClaim(Claim.SUB), Dime.VALID_FOR_1_MINUTE);
+                issuerSession.seal(message, payload.getBytes(StandardCharsets.UTF_8));
+                message.sign(Commons.getIssuerKey());
+                Message received = Item.importFromEncoded(message.exportToEncoded());
+                assertNotNull(received);
+                assertTrue(received.verify(Commons.getIssuerKey().publicCopy()).isValid());
+                assertEquals(payload, new String(audienceSession.open(received), StandardCharsets.UTF_8));
+                // Reply in the other direction
+                Message reply = new Message(Commons.getIssuerIdentity().getClaim(Claim.SUB));
+                audienceSession.seal(reply, payload.getBytes(StandardCharsets.UTF_8));
+                assertEquals(payload, new String(issuerSession.open(reply), StandardCharsets.UTF_8));
+            }
+            assertEquals(5, issuerSession.getSealedCount());
+            assertEquals(5, audienceSession.getSealedCount());
+        } catch (Exception e) {
+            fail("Unexpected exception thrown: " + e);
+        }
+    }
+
+    @Test
+    void sessionTest2() {
+        try {
+            Key issuerKey = Key.generateKey(KeyCapability.EXCHANGE);
+            Key audienceKey = Key.generateKey(KeyCapability.EXCHANGE);
+            MessageSession issuerSession = new MessageSession(issuerKey, audienceKey.publicCopy());
+            MessageSession audienceSession = new MessageSession(audienceKey, issuerKey.publicCopy());
+            MessageSessionTest.start(issuerSession, audienceSession);
+            Message message1 = new Message(Commons.getIssuerIdentity().getClaim(Claim.SUB));
+            issuerSession.seal(message1, Commons.PAYLOAD.getBytes(StandardCharsets.UTF_8));
+            Message message2 = new Message(Commons.getIssuerIdentity().getClaim(Claim.SUB));
+            issuerSession.seal(message2, Commons.PAYLOAD.getBytes(StandardCharsets.UTF_8));
+            Message message3 = new Message(Commons.getIssuerIdentity().getClaim(Claim.SUB));
+            issuerSession.seal(message3, Commons.PAYLOAD.getBytes(StandardCharsets.UTF_8));
+            assertNotNull(audienceSession.open(message2)); // message1 lost, may be skipped
+            assertThrows(CryptographyException.class, () -> audienceSession.open(message2)); // Replayed
+            assertThrows(CryptographyException.class, () -> audienceSession.open(message1)); // Out of order
+            assertThrows(CryptographyException.class, () -> issuerSession.open(message3)); // Sealed by the same party
+            Key otherKey = Key.generateKey(KeyCapability.EXCHANGE);
+            MessageSession otherSession = new MessageSession(otherKey, issuerKey.publicCopy());
+            otherSession.start(issuerSession.getSessionId());
+            assertThrows(CryptographyException.class, () -> otherSession.open(message3)); // Wrong session
+            assertNotNull(audienceSession.open(message3));
+        } catch (Exception e) {
+            fail("Unexpected exception thrown: " + e);
+        }
+    }
+
+    @Test
+    void sessionTest3() {
+        Key key = Key.generateKey(KeyCapability.EXCHANGE);
+        assertThrows(IllegalArgumentException.class, () -> new MessageSession(null, key));
+        assertThrows(IllegalArgumentException.class, () -> new MessageSession(key.publicCopy(), Key.generateKey(KeyCapability.EXCHANGE)));
+        assertThrows(IllegalArgumentException.class, () -> new MessageSession(key, key.publicCopy()));
+        assertThrows(IllegalArgumentException.class, () -> new MessageSession(key, Key.generateKey(KeyCapability.SIGN)));
+        try {
+            MessageSession session = new MessageSession(key, Key.generateKey(KeyCapability.EXCHANGE).publicCopy());
+            Message message = new Message(Commons.getIssuerIdentity().getClaim(Claim.SUB));
+            assertThrows(IllegalStateException.class, () -> session.seal(message, Commons.PAYLOAD.getBytes(StandardCharsets.UTF_8)));
+            assertThrows(IllegalArgumentException.class, () -> session.start(new byte[8]));
+            assertThrows(IllegalArgumentException.class, () -> session.start(session.getSessionId()));
+            session.start(new byte[MessageSession.SESSION_ID_LENGTH]);
+            assertThrows(IllegalStateException.class, () -> session.start(new byte[MessageSession.SESSION_ID_LENGTH]));
+        } catch (Exception e) {
+            fail("Unexpected exception thrown: " + e);
+        }
+    }
+
+    @Test
+    void sessionTest4() {
+        try {
+            Key issuerKey = Key.generateKey(KeyCapability.EXCHANGE);
+            Key audienceKey = Key.generateKey(KeyCapability.EXCHANGE);
+            byte[] payload = Commons.PAYLOAD.getBytes(StandardCharsets.UTF_8);
+            MessageSession issuerSession1 = new MessageSession(issuerKey, audienceKey.publicCopy());
+            MessageSession audienceSession1 = new MessageSession(audienceKey, issuerKey.publicCopy());
+            MessageSessionTest.start(issuerSession1, audienceSession1);
+            MessageSession issuerSession2 = new MessageSession(issuerKey, audienceKey.publicCopy());
+            MessageSession audienceSession2 = new MessageSession(audienceKey, issuerKey.publicCopy());
+            MessageSessionTest.start(issuerSession2, audienceSession2);
+            Message message1 = new Message(Commons.getIssuerIdentity().getClaim(Claim.SUB));
+            issuerSession1.seal(message1, payload);
+            Message message2 = new Message(Commons.getIssuerIdentity().getClaim(Claim.SUB));
+            issuerSession2.seal(message2, payload);
+            // Same keys, payload and counter, but a different nonce and session key
+            assertFalse(Arrays.equals(message1.getPayload(), message2.getPayload()));
+            assertFalse(Arrays.equals(Utility.subArray(message1.getPayload(), 24), Utility.subArray(message2.getPayload(), 24)));
+            // Payloads from an earlier session are not accepted by a new session
+            assertThrows(CryptographyException.class, () -> audienceSession2.open(message1));
+            assertArrayEquals(payload, audienceSession2.open(message2));
+            assertArrayEquals(payload, audienceSession1.open(message1));
+        } catch (Exception e) {
+            fail("Unexpected exception thrown: " + e);
+        }
+    }
+
+    @Test
+    void sessionTest5() {
+        try {
+            Key issuerKey = Key.generateKey(KeyCapability.EXCHANGE);
+            Key audienceKey = Key.generateKey(KeyCapability.EXCHANGE);
+            Dime.crypto.setSharedSecretCache(new SharedSecretCache());
+            MessageSessionTest.start(new MessageSession(issuerKey, audienceKey.publicCopy()), new MessageSession(audienceKey, issuerKey.publicCopy()));
+            // The cached shared secret must still be intact once a session has been started from it
+            MessageSession issuerSession = new MessageSession(issuerKey, audienceKey.publicCopy());
+            Dime.crypto.setSharedSecretCache(null);
+            MessageSession audienceSession = new MessageSession(audienceKey, issuerKey.publicCopy());
+            MessageSessionTest.start(issuerSession, audienceSession);
+            Message message = new Message(Commons.getIssuerIdentity().getClaim(Claim.SUB));
+            issuerSession.seal(message, Commons.PAYLOAD.getBytes(StandardCharsets.UTF_8));
+            assertEquals(Commons.PAYLOAD, new String(audienceSession.open(message), StandardCharsets.UTF_8));
+        } catch (Exception e) {
+            fail("Unexpected exception thrown: " + e);
+        } finally {
+            Dime.crypto.setSharedSecretCache(null);
+        }
+    }
+
+    private static void start(MessageSession session1, MessageSession session2) throws Exception {
+        session1.start(session2.getSessionId());
+        session2.start(session1.getSessionId());
+    }
+
+}
@@ -9,19 +9,26 @@
 //
 package io.dimeformat;
 
+import io.dimeformat.crypto.EphemeralKeyPool;
 import io.dimeformat.enums.Claim;
 import io.dimeformat.exceptions.CryptographyException;
 import org.junit.jupiter.api.Test;
 import io.dimeformat.exceptions.InvalidFormatException;
 import io.dimeformat.enums.KeyCapability;
 import static org.junit.jupiter.api.Assertions.*;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 class MessageTest {
 
@@ -546,6 +553,114 @@ class MessageTest {
         }
     }
 
+    @Test
+    void setPayloadTest10() {
+        try {
+            byte[] payload = Utility.randomBytes(200_000); // Spans several encryption chunks
+            Key key = Key.generateKey(KeyCapability.ENCRYPT);
+            Message message1 = new Message(Commons.getAudienceIdentity().getClaim(Claim.SUB), Commons.getIssuerIdentity().getClaim(Claim.SUB), Dime.VALID_FOR_1_MINUTE);
+            assertSame(key, message1.setPayload(new ByteArrayInputStream(payload), key));
+            assertEquals((UUID) key.getClaim(Claim.UID), message1.getClaim(Claim.KID));
+            message1.sign(Commons.getIssuerKey());
+            Message message2 = Item.importFromEncoded(message1.exportToEncoded());
+            assertNotNull(message2);
+            try (InputStream in = message2.openPayload(key)) {
+                assertArrayEquals(payload, in.readAllBytes());
+            }
+            try { message2.openPayload(Key.generateKey(KeyCapability.ENCRYPT)); fail("Exception not thrown."); } catch (CryptographyException e) { /* all is well */ }
+            assertEquals(Message.STREAM_ENCODING, message2.getClaim(Claim.ENC));
+            assertThrows(IllegalStateException.class, message2::getPayload);
+            assertThrows(IllegalStateException.class, () -> message2.getPayload(key));
+            Message message3 = new Message(Commons.getAudienceIdentity().getClaim(Claim.SUB), Commons.getIssuerIdentity().getClaim(Claim.SUB), Dime.VALID_FOR_1_MINUTE);
+            message3.setPayload(payload, key);
+            assertNull(message3.getClaim(Claim.ENC));
+            assertThrows(IllegalStateException.class, () -> message3.openPayload(key));
+        } catch (Exception e) {
+            fail("Unexpected exception thrown: " + e);
+        }
+    }
+
+    @Test
+    void setPayloadTest11() {
+        try {
+            Key audienceKey = Key.generateKey(KeyCapability.EXCHANGE);
+            Message message = new Message(Commons.getAudienceIdentity().getClaim(Claim.SUB), Commons.getIssuerIdentity().getClaim(Claim.SUB), Dime.VALID_FOR_1_MINUTE);
+            Key issuerKey = message.setPayload(new ByteArrayInputStream(Commons.PAYLOAD.getBytes(StandardCharsets.UTF_8)), audienceKey.publicCopy());
+            assertNotNull(message.getPublicKey());
+            try (InputStream in = message.openPayload(audienceKey)) {
+                assertEquals(Commons.PAYLOAD, new String(in.readAllBytes(), StandardCharsets.UTF_8));
+            }
+            try (InputStream in = message.openPayload(issuerKey, audienceKey.publicCopy())) {
+                assertEquals(Commons.PAYLOAD, new String(in.readAllBytes(), StandardCharsets.UTF_8));
+            }
+        } catch (Exception e) {
+            fail("Unexpected exception thrown: " + e);
+        }
+    }
+
+    @Test
+    void setPayloadTest12() {
+        try (EphemeralKeyPool pool = new EphemeralKeyPool(2, 4, Dime.crypto.getDefaultSuiteName())) {
+            Dime.crypto.setEphemeralKeyPool(pool);
+            Key audienceKey = Key.generateKey(KeyCapability.EXCHANGE);
+            Set<String> names = new HashSet<>();
+            for (int i = 0; i < 10; i++) {
+                Message message = new Message(Commons.getAudienceIdentity().getClaim(Claim.SUB));
+                Key ephemeralKey = message.setPayload(Commons.PAYLOAD.getBytes(StandardCharsets.UTF_8), audienceKey.publicCopy());
+                assertTrue(names.add(ephemeralKey.getName()));
+                assertEquals(ephemeralKey.getName(), message.getPublicKey().getName());
+                assertEquals(Commons.PAYLOAD, new String(message.getPayload(audienceKey), StandardCharsets.UTF_8));
+            }
+        } catch (Exception e) {
+            fail("Unexpected exception thrown: " + e);
+        } finally {
+            Dime.crypto.setEphemeralKeyPool(null);
+        }
+    }
+
+    @Test
+    void setPayloadTest13() {
+        try {
+            List<Key> recipientKeys = List.of(Key.generateKey(KeyCapability.EXCHANGE), Key.generateKey(KeyCapability.EXCHANGE), Key.generateKey(KeyCapability.EXCHANGE));
+            Message message = new Message(Commons.getIssuerIdentity().getClaim(Claim.SUB));
+            Key exchangeKey = message.setPayload(Commons.PAYLOAD.getBytes(StandardCharsets.UTF_8), recipientKeys.stream().map(Key::publicCopy).collect(Collectors.toList()));
+            assertNotNull(exchangeKey);
+            assertTrue(message.hasRecipients());
+            assertEquals(exchangeKey.getPublic(), message.getPublicKey().getPublic());
+            assertEquals(Commons.PAYLOAD.length() + 40, message.getPayload().length); // Payload encrypted once
+            message.sign(Commons.getIssuerKey());
+            Message imported = Item.importFromEncoded(message.exportToEncoded());
+            assertNotNull(imported);
+            assertTrue(imported.hasRecipients());
+            for (Key recipientKey : recipientKeys) {
+                assertEquals(Commons.PAYLOAD, new String(imported.getPayload(recipientKey), StandardCharsets.UTF_8));
+            }
+            Key otherKey = Key.generateKey(KeyCapability.EXCHANGE);
+            assertThrows(CryptographyException.class, () -> imported.getPayload(otherKey));
+            assertThrows(IllegalArgumentException.class, () -> imported.getPayload(recipientKeys.get(0).publicCopy()));
+        } catch (Exception e) {
+            fail("Unexpected exception thrown: " + e);
+        }
+    }
+
+    @Test
+    void setPayloadTest14() {
+        Message message = new Message(Commons.getIssuerIdentity().getClaim(Claim.SUB));
+        byte[] payload = Commons.PAYLOAD.getBytes(StandardCharsets.UTF_8);
+        Key recipientKey = Key.generateKey(KeyCapability.EXCHANGE);
+        assertThrows(IllegalArgumentException.class, () -> message.setPayload(payload, List.of()));
+        assertThrows(IllegalArgumentException.class, () -> message.setPayload(payload, List.of(recipientKey)));
+        assertThrows(IllegalArgumentException.class, () -> message.setPayload(payload, List.of(recipientKey.publicCopy(), recipientKey.publicCopy())));
+        assertThrows(IllegalArgumentException.class, () -> message.setPayload(payload, List.of(Key.generateKey(KeyCapability.SIGN).publicCopy())));
+        assertThrows(IllegalArgumentException.class, () -> message.setPayload(payload, Arrays.asList(null, recipientKey.publicCopy())));
+        try (EphemeralKeyPool pool = new EphemeralKeyPool(2, 4, Dime.crypto.getDefaultSuiteName())) {
+            Dime.crypto.setEphemeralKeyPool(pool);
+            assertThrows(IllegalArgumentException.class, () -> message.setPayload(payload, Arrays.asList(null, recipientKey.publicCopy())));
+        } finally {
+            Dime.crypto.setEphemeralKeyPool(null);
+        }
+    }
+
     @Test
     void linkItemTest1() {
         try {
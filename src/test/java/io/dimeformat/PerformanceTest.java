@@ -9,18 +9,40 @@
 //
 package io.dimeformat;
 
+import io.dimeformat.crypto.EphemeralKeyPool;
 import io.dimeformat.enums.Claim;
 import io.dimeformat.enums.IdentityCapability;
 import org.junit.jupiter.api.Test;
 import io.dimeformat.enums.KeyCapability;
+import io.dimeformat.keyring.FileKeyRing;
+import io.dimeformat.keyring.KeyRing;
+import io.dimeformat.keyring.RevocationList;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
 class PerformanceTest {
 
     static final int PERFORMANCE_ROUNDS = 10;
+    static final int LATENCY_ROUNDS = 500;
+    static final int REVOKED_ENTRIES = 100000;
+    static final int REVOCATION_ROUNDS = 1000000;
+    static final int RECIPIENTS = 50;
+    static final int THREADS = 4;
+    static final int TRUSTED_ITEMS = 2000;
 
     @Test
     void signaturePerformanceTest() throws Exception {
@@ -364,6 +386,576 @@ class PerformanceTest {
         }
     }
 
+    @Test
+    void cryptoSuitePerformanceTest() {
+        assumeTrue(Runtime.version().feature() >= 15);
+        try {
+
+            System.out.println("-- Cryptographic suite performance tests (NaCl vs JDK) --\n");
+            System.out.println("Number of rounds: " + PERFORMANCE_ROUNDS + "\n");
+
+            Message message = new Message(Commons.getAudienceIdentity().getClaim(Claim.SUB),
+                    Commons.getIssuerIdentity().getClaim(Claim.SUB),
+                    Dime.VALID_FOR_1_HOUR,
+                    Commons.CONTEXT);
+            message.setPayload(Commons.PAYLOAD.getBytes(StandardCharsets.UTF_8));
+            byte[] data = new byte[1024];
+
+            long totalStart = System.nanoTime();
+            for (String suiteName : List.of("NaCl", "JDK")) {
+
+                System.out.println("# " + suiteName + "\n");
+                Key signingKey = Key.generateKey(List.of(KeyCapability.SIGN), Dime.NO_EXPIRATION, null, null, suiteName);
+                Key clientKey = Key.generateKey(List.of(KeyCapability.EXCHANGE), Dime.NO_EXPIRATION, null, null, suiteName);
+                Key serverKey = Key.generateKey(List.of(KeyCapability.EXCHANGE), Dime.NO_EXPIRATION, null, null, suiteName).publicCopy();
+                Key encryptionKey = clientKey.generateSharedSecret(serverKey, List.of(KeyCapability.ENCRYPT));
+
+                System.out.print("* Running key generation tests...");
+                System.out.flush();
+                long start = System.nanoTime();
+                for(int i = 0; i < PerformanceTest.PERFORMANCE_ROUNDS; i++) {
+                    Key.generateKey(List.of(KeyCapability.SIGN), Dime.NO_EXPIRATION, null, null, suiteName);
+                }
+                long end = System.nanoTime();
+                System.out.println(" DONE \n\t - Total: " + PerformanceTest.convertToSeconds(end - start) + "s\n");
+
+                System.out.print("* Running signing tests...");
+                System.out.flush();
+                start = System.nanoTime();
+                for(int i = 0; i < PerformanceTest.PERFORMANCE_ROUNDS; i++) {
+                    Dime.crypto.generateSignature(message, signingKey);
+                }
+                end = System.nanoTime();
+                System.out.println(" DONE \n\t - Total: " + PerformanceTest.convertToSeconds(end - start) + "s\n");
+
+                Signature signature = Dime.crypto.generateSignature(message, signingKey);
+                System.out.print("* Running verification tests...");
+                System.out.flush();
+                start = System.nanoTime();
+                for(int i = 0; i < PerformanceTest.PERFORMANCE_ROUNDS; i++) {
+                    assertTrue(Dime.crypto.verifySignature(message, signature, signingKey));
+                }
+                end = System.nanoTime();
+                System.out.println(" DONE \n\t - Total: " + PerformanceTest.convertToSeconds(end - start) + "s\n");
+
+                System.out.print("* Running hashing tests...");
+                System.out.flush();
+                start = System.nanoTime();
+                for(int i = 0; i < PerformanceTest.PERFORMANCE_ROUNDS; i++) {
+                    Dime.crypto.generateHash(data, suiteName);
+                }
+                end = System.nanoTime();
+                System.out.println(" DONE \n\t - Total: " + PerformanceTest.convertToSeconds(end - start) + "s\n");
+
+                System.out.print("* Running key exchange tests...");
+                System.out.flush();
+                start = System.nanoTime();
+                for(int i = 0; i < PerformanceTest.PERFORMANCE_ROUNDS; i++) {
+                    clientKey.generateSharedSecret(serverKey, List.of(KeyCapability.ENCRYPT));
+                }
+                end = System.nanoTime();
+                System.out.println(" DONE \n\t - Total: " + PerformanceTest.convertToSeconds(end - start) + "s\n");
+
+                System.out.print("* Running encryption/decryption tests...");
+                System.out.flush();
+                start = System.nanoTime();
+                for(int i = 0; i < PerformanceTest.PERFORMANCE_ROUNDS; i++) {
+                    Dime.crypto.decrypt(Dime.crypto.encrypt(data, encryptionKey), encryptionKey);
+                }
+                end = System.nanoTime();
+                System.out.println(" DONE \n\t - Total: " + PerformanceTest.convertToSeconds(end - start) + "s\n");
+
+            }
+
+            long totalEnd = System.nanoTime();
+            double totalResult = PerformanceTest.convertToSeconds(totalEnd - totalStart);
+            System.out.println("\nTOTAL: " + totalResult + "s");
+
+        } catch (Exception e) {
+            fail("Unexpected exception thrown: " + e);
+        }
+    }
+
+    @Test
+    void ephemeralKeyPoolPerformanceTest() {
+        try {
+
+            System.out.println("-- Ephemeral key pool performance tests --\n");
+            System.out.println("Number of messages: " + PerformanceTest.LATENCY_ROUNDS + "\n");
+
+            Key audienceKey = Key.generateKey(KeyCapability.EXCHANGE).publicCopy();
+            byte[] payload = Commons.PAYLOAD.getBytes(StandardCharsets.UTF_8);
+            for (boolean pooled : List.of(false, true)) {
+                EphemeralKeyPool pool = pooled ? new EphemeralKeyPool(16, PerformanceTest.LATENCY_ROUNDS, Dime.crypto.getDefaultSuiteName()) : null;
+                if (pool != null) {
+                    while (pool.size() < PerformanceTest.LATENCY_ROUNDS) { Thread.sleep(10); }
+                }
+                Dime.crypto.setEphemeralKeyPool(pool);
+                System.out.print("* Running send tests (" + (pooled ? "pooled" : "direct") + ")...");
+                System.out.flush();
+                long[] latencies = new long[PerformanceTest.LATENCY_ROUNDS];
+                for (int i = 0; i < PerformanceTest.LATENCY_ROUNDS; i++) {
+                    long start = System.nanoTime();
+                    Message message = new Message(Commons.getAudienceIdentity().getClaim(Claim.SUB));
+                    message.setPayload(payload, audienceKey);
+                    latencies[i] = System.nanoTime() - start;
+                }
+                Arrays.sort(latencies);
+                System.out.println(" DONE \n\t - p50: " + PerformanceTest.convertToSeconds(latencies[latencies.length / 2])
+                        + "s, p99: " + PerformanceTest.convertToSeconds(latencies[(int) (latencies.length * 0.99)]) + "s\n");
+                if (pool != null) {
+                    pool.close();
+                }
+            }
+
+        } catch (Exception e) {
+            fail("Unexpected exception thrown: " + e);
+        } finally {
+            Dime.crypto.setEphemeralKeyPool(null);
+        }
+    }
+
+    @Test
+    void multiRecipientPerformanceTest() {
+        try {
+
+            System.out.println("-- Multi-recipient performance tests --\n");
+            System.out.println("Number of recipients: " + PerformanceTest.RECIPIENTS + "\n");
+
+            byte[] payload = new byte[1024 * 1024];
+            List<Key> recipientKeys = new ArrayList<>();
+            for (int i = 0; i < PerformanceTest.RECIPIENTS; i++) {
+                recipientKeys.add(Key.generateKey(KeyCapability.EXCHANGE).publicCopy());
+            }
+
+            System.out.print("* Running one message per recipient tests...");
+            System.out.flush();
+            long start = System.nanoTime();
+            for (Key recipientKey : recipientKeys) {
+                Message message = new Message(Commons.getIssuerIdentity().getClaim(Claim.SUB));
+                message.setPayload(payload, recipientKey);
+            }
+            long end = System.nanoTime();
+            System.out.println(" DONE \n\t - Total: " + PerformanceTest.convertToSeconds(end - start) + "s\n");
+
+            System.out.print("* Running multi-recipient message tests...");
+            System.out.flush();
+            start = System.nanoTime();
+            Message message = new Message(Commons.getIssuerIdentity().getClaim(Claim.SUB));
+            message.setPayload(payload, recipientKeys);
+            end = System.nanoTime();
+            System.out.println(" DONE \n\t - Total: " + PerformanceTest.convertToSeconds(end - start) + "s\n");
+
+        } catch (Exception e) {
+            fail("Unexpected exception thrown: " + e);
+        }
+    }
+
+    @Test
+    void keyRingVerificationPerformanceTest() {
+        try {
+
+            System.out.println("-- Key ring verification performance tests --\n");
+            System.out.println("Number of trusted items: " + PerformanceTest.TRUSTED_ITEMS);
+            System.out.println("Number of rounds: " + PerformanceTest.LATENCY_ROUNDS + "\n");
+
+            KeyRing keyRing = new KeyRing();
+            for (int i = 0; i < PerformanceTest.TRUSTED_ITEMS - 1; i++) {
+                keyRing.put(Key.generateKey(KeyCapability.SIGN).publicCopy());
+            }
+            Key trustedKey = Key.generateKey(KeyCapability.SIGN);
+            keyRing.put(trustedKey.publicCopy());
+            Message message = new Message(Commons.getIssuerIdentity().getClaim(Claim.SUB));
+            message.setPayload(Commons.PAYLOAD.getBytes(StandardCharsets.UTF_8));
+            message.sign(trustedKey);
+
+            System.out.print("* Running verification tests...");
+            System.out.flush();
+            long start = System.nanoTime();
+            for (int i = 0; i < PerformanceTest.LATENCY_ROUNDS; i++) {
+                assertTrue(keyRing.verify(message).isValid());
+            }
+            long end = System.nanoTime();
+            System.out.println(" DONE \n\t - Total: " + PerformanceTest.convertToSeconds(end - start) + "s\n");
+
+        } catch (Exception e) {
+            fail("Unexpected exception thrown: " + e);
+        }
+    }
+
+    @Test
+    void fileKeyRingPerformanceTest() {
+        try {
+
+            System.out.println("-- File key ring performance tests --\n");
+            System.out.println("Number of trusted items: " + PerformanceTest.TRUSTED_ITEMS + "\n");
+
+            Path directory = Files.createTempDirectory("dime");
+            Path path = directory.resolve("keyring.dime");
+            KeyRing keyRing = new KeyRing();
+            try (FileKeyRing fileKeyRing = new FileKeyRing(path)) {
+                for (int i = 0; i < PerformanceTest.TRUSTED_ITEMS; i++) {
+                    Key key = Key.generateKey(KeyCapability.SIGN).publicCopy();
+                    keyRing.put(key);
+                    fileKeyRing.put(key);
+                }
+            }
+            Key trustedKey = Key.generateKey(KeyCapability.SIGN);
+            String encoded = keyRing.exportToEncoded(trustedKey);
+            Message message = new Message(Commons.getIssuerIdentity().getClaim(Claim.SUB));
+            message.setPayload(Commons.PAYLOAD.getBytes(StandardCharsets.UTF_8));
+            message.sign(trustedKey);
+
+            System.out.print("* Running start-up from exported envelope tests...");
+            System.out.flush();
+            long start = System.nanoTime();
+            KeyRing importedKeyRing = new KeyRing();
+            importedKeyRing.importFromEncoded(encoded, trustedKey.publicCopy());
+            importedKeyRing.put(trustedKey.publicCopy());
+            assertTrue(importedKeyRing.verify(message).isValid());
+            long end = System.nanoTime();
+            System.out.println(" DONE \n\t - Total: " + PerformanceTest.convertToSeconds(end - start) + "s\n");
+
+            System.out.print("* Running start-up from file key ring tests...");
+            System.out.flush();
+            start = System.nanoTime();
+            try (FileKeyRing fileKeyRing = new FileKeyRing(path)) {
+                fileKeyRing.put(trustedKey.publicCopy());
+                assertTrue(fileKeyRing.verify(message).isValid());
+                end = System.nanoTime();
+                assertEquals(PerformanceTest.TRUSTED_ITEMS + 1, fileKeyRing.size());
+            }
+            System.out.println(" DONE \n\t - Total: " + PerformanceTest.convertToSeconds(end - start) + "s\n");
+
+            Files.deleteIfExists(path);
+            Files.deleteIfExists(directory.resolve("keyring.dime" + FileKeyRing.INDEX_SUFFIX));
+            Files.deleteIfExists(directory);
+
+        } catch (Exception e) {
+            fail("Unexpected exception thrown: " + e);
+        }
+    }
+
+    @Test
+    void verificationCachePerformanceTest() {
+        try {
+
+            System.out.println("-- Verification cache performance tests --\n");
+            System.out.println("Number of rounds: " + PerformanceTest.LATENCY_ROUNDS + "\n");
+
+            Key key = Key.generateKey(KeyCapability.SIGN);
+            Message message = new Message(Commons.getIssuerIdentity().getClaim(Claim.SUB), Dime.VALID_FOR_1_MINUTE);
+            message.setPayload(Commons.PAYLOAD.getBytes(StandardCharsets.UTF_8));
+            message.sign(key);
+
+            System.out.print("* Running verification without cache tests...");
+            System.out.flush();
+            long start = System.nanoTime();
+            for (int i = 0; i < PerformanceTest.LATENCY_ROUNDS; i++) {
+                assertTrue(message.verify(key).isValid());
+            }
+            long end = System.nanoTime();
+            System.out.println(" DONE \n\t - Total: " + PerformanceTest.convertToSeconds(end - start) + "s\n");
+
+            Dime.setVerificationCache(new VerificationCache());
+            System.out.print("* Running verification with cache tests...");
+            System.out.flush();
+            start = System.nanoTime();
+            for (int i = 0; i < PerformanceTest.LATENCY_ROUNDS; i++) {
+                assertTrue(message.verify(key).isValid());
+            }
+            end = System.nanoTime();
+            System.out.println(" DONE \n\t - Total: " + PerformanceTest.convertToSeconds(end - start) + "s\n");
+
+        } catch (Exception e) {
+            fail("Unexpected exception thrown: " + e);
+        } finally {
+            Dime.setVerificationCache(null);
+        }
+    }
+
+    @Test
+    void trustChainPerformanceTest() {
+        try {
+
+            System.out.println("-- Trust chain verification performance tests --\n");
+            System.out.println("Number of rounds: " + PerformanceTest.LATENCY_ROUNDS + "\n");
+
+            IdentityCapability[] caps = new IdentityCapability[] { IdentityCapability.ISSUE };
+            Key rootKey = Key.generateKey(KeyCapability.SIGN);
+            Identity root = Commons.generateIdentity(rootKey, rootKey, null, Dime.VALID_FOR_1_HOUR, caps);
+            Key interKey1 = Key.generateKey(KeyCapability.SIGN);
+            Identity inter1 = Commons.generateIdentity(interKey1, rootKey, root, Dime.VALID_FOR_1_HOUR, caps);
+            Key interKey2 = Key.generateKey(KeyCapability.SIGN);
+            Identity inter2 = Commons.generateIdentity(interKey2, interKey1, inter1, Dime.VALID_FOR_1_HOUR, caps);
+            List<Identity> leaves = new ArrayList<>();
+            for (int i = 0; i < PerformanceTest.LATENCY_ROUNDS; i++) {
+                leaves.add(Item.importFromEncoded(Commons.generateIdentity(Key.generateKey(KeyCapability.SIGN), interKey2, inter2, Dime.VALID_FOR_1_HOUR, caps).exportToEncoded()));
+            }
+
+            System.out.print("* Running leaf verification without cache tests...");
+            System.out.flush();
+            long start = System.nanoTime();
+            for (Identity leaf: leaves) {
+                assertTrue(leaf.verify(root).isValid());
+            }
+            long end = System.nanoTime();
+            System.out.println(" DONE \n\t - Total: " + PerformanceTest.convertToSeconds(end - start) + "s\n");
+
+            Dime.setVerificationCache(new VerificationCache());
+            System.out.print("* Running leaf verification with memoized trust chain tests...");
+            System.out.flush();
+            start = System.nanoTime();
+            for (Identity leaf: leaves) {
+                assertTrue(leaf.verify(root).isValid());
+            }
+            end = System.nanoTime();
+            System.out.println(" DONE \n\t - Total: " + PerformanceTest.convertToSeconds(end - start) + "s\n");
+
+        } catch (Exception e) {
+            fail("Unexpected exception thrown: " + e);
+        } finally {
+            Dime.setVerificationCache(null);
+        }
+    }
+
+    @Test
+    void revocationListPerformanceTest() {
+        try {
+
+            System.out.println("-- Revocation list performance tests --\n");
+            System.out.println("Number of revoked entries: " + PerformanceTest.REVOKED_ENTRIES);
+            System.out.println("Number of rounds: " + PerformanceTest.REVOCATION_ROUNDS + "\n");
+
+            Path directory = Files.createTempDirectory("dime");
+            Path path = directory.resolve("revoked.dime");
+            List<UUID> revoked = new ArrayList<>();
+            try (RevocationList revocationList = new RevocationList(path)) {
+                System.out.print("* Running revocation tests...");
+                System.out.flush();
+                long start = System.nanoTime();
+                for (int i = 0; i < PerformanceTest.REVOKED_ENTRIES; i++) {
+                    UUID id = UUID.randomUUID();
+                    revocationList.revoke(id);
+                    if (i % 100 == 0) {
+                        revoked.add(id);
+                    }
+                }
+                long end = System.nanoTime();
+                System.out.println(" DONE \n\t - Total: " + PerformanceTest.convertToSeconds(end - start) + "s\n");
+            }
+
+            System.out.print("* Running opening tests...");
+            System.out.flush();
+            long start = System.nanoTime();
+            try (RevocationList revocationList = new RevocationList(path)) {
+                long end = System.nanoTime();
+                System.out.println(" DONE \n\t - Total: " + PerformanceTest.convertToSeconds(end - start) + "s\n");
+
+                UUID id = UUID.randomUUID();
+                System.out.print("* Running not revoked check tests...");
+                System.out.flush();
+                start = System.nanoTime();
+                for (int i = 0; i < PerformanceTest.REVOCATION_ROUNDS; i++) {
+                    assertFalse(revocationList.isRevoked(id));
+                }
+                end = System.nanoTime();
+                System.out.println(" DONE \n\t - Total: " + PerformanceTest.convertToSeconds(end - start) + "s\n");
+
+                System.out.print("* Running revoked check tests...");
+                System.out.flush();
+                start = System.nanoTime();
+                for (int i = 0; i < PerformanceTest.REVOCATION_ROUNDS; i++) {
+                    assertTrue(revocationList.isRevoked(revoked.get(i % revoked.size())));
+                }
+                end = System.nanoTime();
+                System.out.println(" DONE \n\t - Total: " + PerformanceTest.convertToSeconds(end - start) + "s\n");
+
+                Message message = new Message(Commons.getIssuerIdentity().getClaim(Claim.SUB));
+                message.setPayload(Commons.PAYLOAD.getBytes(StandardCharsets.UTF_8));
+                message.sign(Key.generateKey(KeyCapability.SIGN));
+                String keyName = Key.generateKey(KeyCapability.SIGN).getName();
+                System.out.print("* Running not revoked check allocation tests...");
+                System.out.flush();
+                ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+                if (threads instanceof com.sun.management.ThreadMXBean && ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemorySupported()) {
+                    com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+                    long allocated = 0;
+                    for (int round = 0; round < 3; round++) { // Lets the JIT compiler settle, the last round is reported
+                        allocated = allocations.getCurrentThreadAllocatedBytes();
+                        for (int i = 0; i < 10000; i++) {
+                            assertFalse(revocationList.isRevoked(id));
+                            assertFalse(revocationList.isRevoked(keyName));
+                            assertFalse(message.isRevoked(revocationList));
+                        }
+                        allocated = allocations.getCurrentThreadAllocatedBytes() - allocated;
+                    }
+                    System.out.println(" DONE \n\t - Allocated: " + allocated + " bytes for 30000 checks\n");
+                } else {
+                    System.out.println(" SKIPPED (not supported by the JVM)\n");
+                }
+            }
+
+            Files.deleteIfExists(path);
+            Files.deleteIfExists(directory);
+
+        } catch (Exception e) {
+            fail("Unexpected exception thrown: " + e);
+        }
+    }
+
+    @Test
+    void keyRingDeltaPerformanceTest() {
+        try {
+
+            System.out.println("-- Key ring delta performance tests --\n");
+            System.out.println("Number of trusted items: " + PerformanceTest.TRUSTED_ITEMS);
+            System.out.println("Number of rounds: " + PerformanceTest.PERFORMANCE_ROUNDS + "\n");
+
+            Key signingKey = Key.generateKey(KeyCapability.SIGN);
+            KeyRing source = new KeyRing();
+            for (int i = 0; i < PerformanceTest.TRUSTED_ITEMS; i++) {
+                source.put(Key.generateKey(KeyCapability.SIGN).publicCopy());
+            }
+            KeyRing receiver = new KeyRing();
+            long version = receiver.applyDelta(source.exportDelta(KeyRing.FULL_DELTA, signingKey), signingKey);
+            long fullBytes = 0;
+            long deltaBytes = 0;
+
+            System.out.print("* Running full synchronization tests...");
+            System.out.flush();
+            long start = System.nanoTime();
+            for (int i = 0; i < PerformanceTest.PERFORMANCE_ROUNDS; i++) {
+                source.put(Key.generateKey(KeyCapability.SIGN).publicCopy());
+                String encoded = source.exportToEncoded(signingKey);
+                fullBytes += encoded.length();
+                receiver.reload(encoded, signingKey);
+            }
+            long end = System.nanoTime();
+            System.out.println(" DONE \n\t - Total: " + PerformanceTest.convertToSeconds(end - start) + "s, " + (fullBytes / PerformanceTest.PERFORMANCE_ROUNDS) + " bytes per change\n");
+
+            version = receiver.applyDelta(source.exportDelta(KeyRing.FULL_DELTA, signingKey), signingKey);
+            System.out.print("* Running delta synchronization tests...");
+            System.out.flush();
+            start = System.nanoTime();
+            for (int i = 0; i < PerformanceTest.PERFORMANCE_ROUNDS; i++) {
+                source.put(Key.generateKey(KeyCapability.SIGN).publicCopy());
+                String encoded = source.exportDelta(version, signingKey);
+                deltaBytes += encoded.length();
+                version = receiver.applyDelta(encoded, signingKey);
+            }
+            end = System.nanoTime();
+            System.out.println(" DONE \n\t - Total: " + PerformanceTest.convertToSeconds(end - start) + "s, " + (deltaBytes / PerformanceTest.PERFORMANCE_ROUNDS) + " bytes per change\n");
+
+            assertEquals(source.nameSet(), receiver.nameSet());
+            assertTrue(deltaBytes < fullBytes);
+        } catch (Exception e) {
+            fail("Unexpected exception thrown: " + e);
+        }
+    }
+
+    @Test
+    void keyRingConcurrencyPerformanceTest() {
+        ExecutorService executor = Executors.newFixedThreadPool(PerformanceTest.THREADS + 1);
+        AtomicBoolean running = new AtomicBoolean(true);
+        try {
+
+            System.out.println("-- Key ring concurrency performance tests --\n");
+            System.out.println("Number of rounds: " + PerformanceTest.LATENCY_ROUNDS + " per thread\n");
+
+            KeyRing keyRing = new KeyRing();
+            Key trustedKey = Key.generateKey(KeyCapability.SIGN);
+            keyRing.put(trustedKey.publicCopy());
+            Message message = new Message(Commons.getIssuerIdentity().getClaim(Claim.SUB));
+            message.setPayload(Commons.PAYLOAD.getBytes(StandardCharsets.UTF_8));
+            message.sign(trustedKey);
+            List<Key> otherKeys = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                otherKeys.add(Key.generateKey(KeyCapability.SIGN).publicCopy());
+            }
+
+            for (int threads = 1; threads <= PerformanceTest.THREADS; threads *= 2) {
+                System.out.print("* Running verification tests with " + threads + " thread(s) and a concurrent writer...");
+                System.out.flush();
+                running.set(true);
+                Future<?> writer = executor.submit(() -> {
+                    while (running.get()) {
+                        for (Key key : otherKeys) { keyRing.put(key); }
+                        for (Key key : otherKeys) { keyRing.remove(key); }
+                    }
+                    return null;
+                });
+                List<Future<?>> readers = new ArrayList<>();
+                long start = System.nanoTime();
+                for (int t = 0; t < threads; t++) {
+                    readers.add(executor.submit(() -> {
+                        for (int i = 0; i < PerformanceTest.LATENCY_ROUNDS; i++) {
+                            assertTrue(keyRing.verify(message).isValid());
+                        }
+                        return null;
+                    }));
+                }
+                for (Future<?> reader : readers) {
+                    reader.get();
+                }
+                long end = System.nanoTime();
+                running.set(false);
+                writer.get();
+                double seconds = PerformanceTest.convertToSeconds(end - start);
+                System.out.println(" DONE \n\t - Total: " + seconds + "s (" + Math.round(threads * PerformanceTest.LATENCY_ROUNDS / seconds) + " verifications/s)\n");
+            }
+
+        } catch (Exception e) {
+            fail("Unexpected exception thrown: " + e);
+        } finally {
+            running.set(false);
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void startupPerformanceTest() {
+        try {
+
+            System.out.println("-- Startup performance tests --\n");
+
+            // Startup can only be measured in a fresh JVM, where no DiME classes have been loaded yet
+            String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+            Process process = new ProcessBuilder(java,
+                    "-cp",
+                    System.getProperty("java.class.path"),
+                    PerformanceTest.class.getName(),
+                    Commons.getIssuerIdentity().exportToEncoded(),
+                    Commons.getIntermediateKey().publicCopy().exportToEncoded())
+                    .redirectErrorStream(true)
+                    .start();
+            String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+            assertEquals(0, process.waitFor(), output);
+            System.out.println(output);
+
+        } catch (Exception e) {
+            fail("Unexpected exception thrown: " + e);
+        }
+    }
+
+    /**
+     * Entry point for {@link #startupPerformanceTest()}, run in a separate JVM.
+     * @param args An encoded item to import and an encoded key to verify it with.
+     * @throws Exception If something goes wrong.
+     */
+    public static void main(String[] args) throws Exception {
+        long start = System.nanoTime();
+        Item item = Item.importFromEncoded(args[0]);
+        long end = System.nanoTime();
+        assert item != null;
+        System.out.println("* Time to first import... DONE \n\t - Total: " + PerformanceTest.convertToSeconds(end - start) + "s\n");
+        Key key = Item.importFromEncoded(args[1]);
+        start = System.nanoTime();
+        item.verify(key);
+        end = System.nanoTime();
+        System.out.println("* Time to first verification... DONE \n\t - Total: " + PerformanceTest.convertToSeconds(end - start) + "s\n");
+    }
+
     private static double convertToSeconds(long nanoTime) {
         return (double) nanoTime / 1_000_000_000;
     }
@@ -0,0 +1,164 @@
+//
+//  RevocationListTest.java
+//  DiME - Data Identity Message Envelope
+//  A powerful universal data format that is built for secure, and integrity protected communication between trusted
+//  entities in a network.
+//
+//  Released under the MIT licence, see LICENSE for more information.
+//  Copyright (c) 2024 Shift Everywhere AB. All rights reserved.
+//
+package io.dimeformat;
+
+import io.dimeformat.enums.Claim;
+import io.dimeformat.enums.IdentityCapability;
+import io.dimeformat.enums.KeyCapability;
+import io.dimeformat.keyring.IntegrityState;
+import io.dimeformat.keyring.RevocationList;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import static org.junit.jupiter.api.Assertions.*;
+
+class RevocationListTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void revocationListTest1() {
+        Path path = directory.resolve("revoked.dime");
+        try {
+            UUID id = UUID.randomUUID();
+            String keyName = Key.generateKey(KeyCapability.SIGN).getName();
+            try (RevocationList revocationList = new RevocationList(path)) {
+                assertEquals(0, revocationList.size());
+                assertFalse(revocationList.isRevoked(id));
+                assertTrue(revocationList.revoke(id));
+                assertFalse(revocationList.revoke(id));
+                assertTrue(revocationList.revoke(keyName));
+                assertTrue(revocationList.isRevoked(id));
+                assertTrue(revocationList.isRevoked(keyName));
+                assertFalse(revocationList.isRevoked(UUID.randomUUID()));
+                assertFalse(revocationList.isRevoked(Key.generateKey(KeyCapability.SIGN).getName()));
+                assertFalse(revocationList.isRevoked((UUID) null));
+                assertFalse(revocationList.isRevoked((String) null));
+                assertEquals(2, revocationList.size());
+            }
+            try (RevocationList revocationList = new RevocationList(path)) {
+                assertEquals(2, revocationList.size());
+                assertTrue(revocationList.isRevoked(id));
+                assertTrue(revocationList.isRevoked(keyName));
+            }
+        } catch (Exception e) {
+            fail("Unexpected exception thrown: " + e);
+        }
+    }
+
+    @Test
+    void revocationListTest2() {
+        Path path = directory.resolve("revoked.dime");
+        try {
+            List<UUID> ids = new ArrayList<>();
+            try (RevocationList revocationList = new RevocationList(path)) {
+                for (int i = 0; i < 10000; i++) { // Merges appended entries into the sorted set twice
+                    UUID id = UUID.randomUUID();
+                    ids.add(id);
+                    revocationList.revoke(id);
+                }
+                assertEquals(10000, revocationList.size());
+                for (UUID id: ids) {
+                    assertTrue(revocationList.isRevoked(id));
+                }
+            }
+            try (RevocationList revocationList = new RevocationList(path)) {
+                assertEquals(10000, revocationList.size());
+                for (UUID id: ids) {
+                    assertTrue(revocationList.isRevoked(id));
+                }
+                int falsePositives = 0;
+                for (int i = 0; i < 10000; i++) {
+                    if (revocationList.isRevoked(UUID.randomUUID())) { falsePositives++; }
+                }
+                assertEquals(0, falsePositives);
+            }
+        } catch (Exception e) {
+            fail("Unexpected exception thrown: " + e);
+        }
+    }
+
+    @Test
+    void revocationListTest3() {
+        try (RevocationList revocationList = new RevocationList(directory.resolve("revoked.dime"))) {
+            Key key = Key.generateKey(KeyCapability.SIGN);
+            Message message1 = Commons.signedMessage(key, Dime.VALID_FOR_1_MINUTE);
+            Message message2 = Commons.signedMessage(key, Dime.VALID_FOR_1_MINUTE);
+            Dime.setRevocationList(revocationList);
+            Dime.setVerificationCache(new VerificationCache());
+            assertEquals(IntegrityState.COMPLETE, message1.verify(key));
+            assertEquals(IntegrityState.COMPLETE, message2.verify(key));
+            revocationList.revoke((UUID) message1.getClaim(Claim.UID));
+            assertEquals(IntegrityState.FAILED_REVOKED, message1.verify(key));
+            assertEquals(IntegrityState.COMPLETE, message2.verify(key));
+            revocationList.revoke(key.getName());
+            assertEquals(IntegrityState.FAILED_REVOKED, message2.verify(key));
+        } catch (Exception e) {
+            fail("Unexpected exception thrown: " + e);
+        } finally {
+            Dime.setVerificationCache(null);
+            Dime.setRevocationList(null);
+        }
+    }
+
+    @Test
+    void revocationListTest4() {
+        try (RevocationList revocationList = new RevocationList(directory.resolve("revoked.dime"))) {
+            IdentityCapability[] caps = new IdentityCapability[] { IdentityCapability.ISSUE };
+            Key rootKey = Key.generateKey(KeyCapability.SIGN);
+            Identity root = Commons.generateIdentity(rootKey, rootKey, null, Dime.VALID_FOR_1_YEAR, caps);
+            Key interKey1 = Key.generateKey(KeyCapability.SIGN);
+            Identity inter1 = Commons.generateIdentity(interKey1, rootKey, root, Dime.VALID_FOR_1_YEAR, caps);
+            Key interKey2 = Key.generateKey(KeyCapability.SIGN);
+            Identity inter2 = Commons.generateIdentity(interKey2, interKey1, inter1, Dime.VALID_FOR_1_YEAR, caps);
+            Identity leaf = Commons.generateIdentity(Key.generateKey(KeyCapability.SIGN), interKey2, inter2, Dime.VALID_FOR_1_YEAR, caps);
+            assertNotNull(inter1);
+            assertNotNull(leaf);
+            Dime.setRevocationList(revocationList);
+            Dime.setVerificationCache(new VerificationCache());
+            assertTrue(leaf.verify(root).isValid());
+            // Revoking an intermediate identity revokes all identities issued below it, also when memoized
+            revocationList.revoke((UUID) inter1.getClaim(Claim.SUB));
+            assertEquals(IntegrityState.FAILED_REVOKED, leaf.verify(root));
+            Dime.setVerificationCache(null);
+            assertEquals(IntegrityState.FAILED_REVOKED, leaf.verify(root));
+        } catch (Exception e) {
+            fail("Unexpected exception thrown: " + e);
+        } finally {
+            Dime.setVerificationCache(null);
+            Dime.setRevocationList(null);
+        }
+    }
+
+    @Test
+    void revocationListTest5() {
+        try {
+            Path path = directory.resolve("other.dime");
+            Files.write(path, "This is not a revocation list".getBytes(StandardCharsets.UTF_8));
+            assertThrows(IOException.class, () -> new RevocationList(path));
+            assertThrows(IllegalArgumentException.class, () -> new RevocationList(null));
+            RevocationList revocationList = new RevocationList(directory.resolve("revoked.dime"));
+            assertThrows(IllegalArgumentException.class, () -> revocationList.revoke((UUID) null));
+            assertThrows(IllegalArgumentException.class, () -> revocationList.revoke(""));
+            revocationList.close();
+            assertThrows(IllegalStateException.class, () -> revocationList.revoke(UUID.randomUUID()));
+        } catch (Exception e) {
+            fail("Unexpected exception thrown: " + e);
+        }
+    }
+
+}
@@ -0,0 +1,197 @@
+//
+//  VerificationCacheTest.java
+//  DiME - Data Identity Message Envelope
+//  A powerful universal data format that is built for secure, and integrity protected communication between trusted
+//  entities in a network.
+//
+//  Released under the MIT licence, see LICENSE for more information.
+//  Copyright (c) 2024 Shift Everywhere AB. All rights reserved.
+//
+package io.dimeformat;
+
+import io.dimeformat.crypto.CryptoOperation;
+import io.dimeformat.crypto.HistogramMetrics;
+import io.dimeformat.enums.Claim;
+import io.dimeformat.enums.IdentityCapability;
+import io.dimeformat.enums.KeyCapability;
+import io.dimeformat.keyring.IntegrityState;
+import io.dimeformat.keyring.KeyRing;
+import org.junit.jupiter.api.Test;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+class VerificationCacheTest {
+
+    @Test
+    void verificationCacheTest1() {
+        VerificationCache cache = new VerificationCache();
+        HistogramMetrics metrics = new HistogramMetrics();
+        try {
+            Key key = Key.generateKey(KeyCapability.SIGN);
+            Message message = Commons.signedMessage(key, Dime.VALID_FOR_1_MINUTE);
+            Dime.setVerificationCache(cache);
+            Dime.crypto.setMetrics(metrics);
+            assertEquals(IntegrityState.COMPLETE, message.verify(key.publicCopy()));
+            assertEquals(1, cache.size());
+            assertEquals(IntegrityState.COMPLETE, message.verify(key.publicCopy()));
+            assertEquals(IntegrityState.COMPLETE, Item.importFromEncoded(message.exportToEncoded()).verify(key));
+            assertEquals(1, metrics.getHistogram(Dime.crypto.getDefaultSuiteName(), CryptoOperation.VERIFY).getCount());
+            // Failed verifications are not cached
+            assertEquals(IntegrityState.FAILED_KEY_MISMATCH, message.verify(Key.generateKey(KeyCapability.SIGN)));
+            assertEquals(1, cache.size());
+            // A changed item is verified again
+            Key otherKey = Key.generateKey(KeyCapability.SIGN);
+            message.sign(otherKey);
+            assertEquals(IntegrityState.COMPLETE, message.verify(key));
+            assertEquals(IntegrityState.COMPLETE, message.verify(otherKey));
+            assertEquals(3, cache.size());
+            assertEquals(3, metrics.getHistogram(Dime.crypto.getDefaultSuiteName(), CryptoOperation.VERIFY).getCount());
+            cache.clear();
+            assertEquals(0, cache.size());
+        } catch (Exception e) {
+            fail("Unexpected exception thrown: " + e);
+        } finally {
+            Dime.crypto.setMetrics(null);
+            Dime.setVerificationCache(null);
+        }
+    }
+
+    @Test
+    void verificationCacheTest2() {
+        try {
+            Key key = Key.generateKey(KeyCapability.SIGN);
+            Message message = Commons.signedMessage(key, Dime.VALID_FOR_1_MINUTE);
+            Dime.setVerificationCache(new VerificationCache());
+            assertEquals(IntegrityState.COMPLETE, message.verify(key));
+            Dime.setOverrideTime(Instant.now().plusSeconds(Dime.VALID_FOR_1_MINUTE * 2));
+            assertEquals(IntegrityState.FAILED_USED_AFTER_EXPIRED, message.verify(key));
+            Dime.setGracePeriod(Dime.VALID_FOR_1_MINUTE * 2);
+            assertEquals(IntegrityState.COMPLETE, message.verify(key));
+        } catch (Exception e) {
+            fail("Unexpected exception thrown: " + e);
+        } finally {
+            Dime.setGracePeriod(0);
+            Dime.setOverrideTime(null);
+            Dime.setVerificationCache(null);
+        }
+    }
+
+    @Test
+    void verificationCacheTest3() {
+        VerificationCache cache = new VerificationCache();
+        try {
+            Key key = Key.generateKey(KeyCapability.SIGN);
+            Message message = Commons.signedMessage(key, Dime.VALID_FOR_1_MINUTE);
+            Dime.setVerificationCache(cache);
+            String name = Dime.keyRing.put(key.publicCopy());
+            assertEquals(IntegrityState.COMPLETE, message.verify());
+            assertEquals(IntegrityState.COMPLETE, message.verify());
+            assertEquals(1, cache.size());
+            Dime.keyRing.remove(name); // Changes the version of the key ring, invalidating the result
+            assertFalse(message.verify().isValid());
+            // A cache shared by contexts does not mix up key rings that happen to have the same version
+            DimeContext trusting = new DimeContext(Dime.crypto, new KeyRing());
+            DimeContext other = new DimeContext(Dime.crypto, new KeyRing());
+            trusting.setVerificationCache(cache);
+            other.setVerificationCache(cache);
+            trusting.getKeyRing().put(key.publicCopy());
+            other.getKeyRing().put(Key.generateKey(KeyCapability.SIGN).publicCopy());
+            assertEquals(trusting.getKeyRing().getVersion(), other.getKeyRing().getVersion());
+            assertEquals(IntegrityState.COMPLETE, message.verify(trusting, (Key) null, null));
+            assertFalse(message.verify(other, (Key) null, null).isValid());
+        } catch (Exception e) {
+            fail("Unexpected exception thrown: " + e);
+        } finally {
+            Dime.setVerificationCache(null);
+        }
+    }
+
+    @Test
+    void verificationCacheTest4() {
+        VerificationCache cache = new VerificationCache(2, 60);
+        try {
+            Key key = Key.generateKey(KeyCapability.SIGN);
+            Key linkedKey = Key.generateKey(KeyCapability.SIGN);
+            Message message = new Message(Commons.getIssuerIdentity().getClaim(Claim.SUB), Dime.VALID_FOR_1_MINUTE);
+            message.setPayload(Commons.PAYLOAD.getBytes(StandardCharsets.UTF_8));
+            message.addItemLink(linkedKey);
+            message.sign(key);
+            Dime.setVerificationCache(cache);
+            assertEquals(IntegrityState.PARTIALLY_COMPLETE, message.verify(key));
+            assertEquals(IntegrityState.COMPLETE, message.verify(key, List.of(linkedKey)));
+            assertEquals(IntegrityState.FAILED_LINKED_ITEM_MISMATCH, message.verify(key, List.of(Key.generateKey(KeyCapability.SIGN))));
+            assertEquals(2, cache.size());
+            assertEquals(IntegrityState.COMPLETE, Commons.signedMessage(key, Dime.VALID_FOR_1_MINUTE).verify(key));
+            assertEquals(2, cache.size()); // The least recently used result is evicted
+        } catch (Exception e) {
+            fail("Unexpected exception thrown: " + e);
+        } finally {
+            Dime.setVerificationCache(null);
+        }
+        assertThrows(IllegalArgumentException.class, () -> new VerificationCache(0, 60));
+        assertThrows(IllegalArgumentException.class, () -> new VerificationCache(10, 0));
+    }
+
+    @Test
+    void verificationCacheTest5() {
+        HistogramMetrics metrics = new HistogramMetrics();
+        try {
+            IdentityCapability[] caps = new IdentityCapability[] { IdentityCapability.ISSUE };
+            Key rootKey = Key.generateKey(KeyCapability.SIGN);
+            Identity root = Commons.generateIdentity(rootKey, rootKey, null, Dime.VALID_FOR_1_YEAR, caps);
+            Key interKey1 = Key.generateKey(KeyCapability.SIGN);
+            Identity inter1 = Commons.generateIdentity(interKey1, rootKey, root, Dime.VALID_FOR_1_MINUTE, caps);
+            Key interKey2 = Key.generateKey(KeyCapability.SIGN);
+            Identity inter2 = Commons.generateIdentity(interKey2, interKey1, inter1, Dime.VALID_FOR_1_YEAR, caps);
+            Identity leaf1 = Commons.generateIdentity(Key.generateKey(KeyCapability.SIGN), interKey2, inter2, Dime.VALID_FOR_1_YEAR, caps);
+            Identity leaf2 = Commons.generateIdentity(Key.generateKey(KeyCapability.SIGN), interKey2, inter2, Dime.VALID_FOR_1_YEAR, caps);
+            assertNotNull(leaf1);
+            assertNotNull(leaf2);
+            Dime.setVerificationCache(new VerificationCache());
+            Dime.crypto.setMetrics(metrics);
+            assertTrue(leaf1.verify(root).isValid());
+            long verifications = metrics.getHistogram(Dime.crypto.getDefaultSuiteName(), CryptoOperation.VERIFY).getCount();
+            assertTrue(verifications >= 3);
+            // The intermediate identities are memoized, only the new leaf is verified
+            Identity imported = Item.importFromEncoded(leaf2.exportToEncoded());
+            assertNotNull(imported);
+            assertTrue(imported.verify(root).isValid());
+            assertEquals(verifications + 1, metrics.getHistogram(Dime.crypto.getDefaultSuiteName(), CryptoOperation.VERIFY).getCount());
+            // The memoized chain expires with its shortest lived identity
+            Dime.setOverrideTime(Instant.now().plusSeconds(Dime.VALID_FOR_1_MINUTE * 2));
+            assertEquals(IntegrityState.FAILED_USED_AFTER_EXPIRED, imported.verify(root));
+        } catch (Exception e) {
+            fail("Unexpected exception thrown: " + e);
+        } finally {
+            Dime.setOverrideTime(null);
+            Dime.crypto.setMetrics(null);
+            Dime.setVerificationCache(null);
+        }
+    }
+
+    @Test
+    void verificationCacheTest6() {
+        try {
+            VerificationCache cache = new VerificationCache(32, 60);
+            Key key = Key.generateKey(KeyCapability.SIGN);
+            for (int i = 0; i < 32; i++) {
+                cache.put("item" + i, key, IntegrityState.COMPLETE);
+            }
+            assertEquals(32, cache.size());
+            assertEquals(IntegrityState.COMPLETE, cache.get("item0")); // Now the most recently used
+            cache.put("item32", key, IntegrityState.COMPLETE);
+            assertEquals(30, cache.size()); // Evicted in a batch, down to 1/16 below the maximum
+            assertEquals(IntegrityState.COMPLETE, cache.get("item0"));
+            assertNull(cache.get("item1"));
+            assertNull(cache.get("item2"));
+            assertNull(cache.get("item3"));
+            assertEquals(IntegrityState.COMPLETE, cache.get("item4"));
+            assertEquals(IntegrityState.COMPLETE, cache.get("item32"));
+        } catch (Exception e) {
+            fail("Unexpected exception thrown: " + e);
+        }
+    }
+
+}